@@ -180,7 +180,8 @@ public class LiquidityEntryListPage
    */
   @Override
   protected DOListExcelExporter createExcelExporter(final String filenameIdentifier) {
-    return new DOListExcelExporter("liquidity") {
+    // Streaming workbook: the sheets of all invoices may be huge.
+    return new DOListExcelExporter("liquidity", true) {
       /**
        * @see org.projectforge.export.DOListExcelExporter#putFieldFormat(ContentProvider,
        *      java.lang.reflect.Field, org.projectforge.common.anots.PropertyInfo, ExportColumn)
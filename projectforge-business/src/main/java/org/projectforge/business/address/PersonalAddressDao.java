@@ -24,10 +24,13 @@
 package org.projectforge.business.address;
 
 import org.apache.commons.lang3.Validate;
+import org.projectforge.business.sync.SyncCollectionType;
+import org.projectforge.business.sync.SyncJournalService;
 import org.projectforge.business.user.UserDao;
 import org.projectforge.business.user.UserRightId;
 import org.projectforge.framework.access.AccessChecker;
 import org.projectforge.framework.access.AccessException;
+import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.ModificationStatus;
@@ -75,6 +78,8 @@ public class PersonalAddressDao {
 
   private PersonalAddressCache personalAddressCache;
 
+  private SyncJournalService syncJournalService;
+
   private transient AddressbookRight addressbookRight;
 
   private PersonalAddressCache getPersonalAddressCache() {
@@ -84,6 +89,21 @@ public class PersonalAddressDao {
     return personalAddressCache;
   }
 
+  private SyncJournalService getSyncJournalService() {
+    if (syncJournalService == null) {
+      syncJournalService = ApplicationContextProvider.getApplicationContext().getBean(SyncJournalService.class);
+    }
+    return syncJournalService;
+  }
+
+  /**
+   * The favorites of the owner (CardDAV address book) were changed.
+   */
+  private void journalFavoriteChange(final PersonalAddressDO obj, final OperationType operationType) {
+    getSyncJournalService().journal(SyncCollectionType.ADDRESS_BOOK, obj.getOwnerId(), obj.getAddressId(),
+            obj.getAddress() != null ? obj.getAddress().getUid() : null, operationType);
+  }
+
   /**
    * @param personalAddress
    * @param ownerId         If null, then task will be set to null;
@@ -161,6 +181,7 @@ public class PersonalAddressDao {
       return null;
     });
     getPersonalAddressCache().setAsExpired(obj.getOwnerId());
+    journalFavoriteChange(obj, OperationType.INSERT);
     log.info("New object added (" + obj.getId() + "): " + obj.toString());
     return obj.getId();
   }
@@ -189,12 +210,19 @@ public class PersonalAddressDao {
       checkAccess(dbObj);
       Validate.isTrue(Objects.equals(dbObj.getAddressId(), obj.getAddressId()));
       obj.setId(dbObj.getId());
+      final boolean wasFavorite = dbObj.isFavoriteCard();
       // Copy all values of modified user to database object.
       final ModificationStatus modified = dbObj.copyValuesFrom(obj, "owner", "address", "id", "tenant");
       if (modified == ModificationStatus.MAJOR) {
         dbObj.setLastUpdate();
         em.merge(dbObj);
         getPersonalAddressCache().setAsExpired(dbObj.getOwnerId());
+        if (wasFavorite == dbObj.isFavoriteCard()) {
+          journalFavoriteChange(dbObj, OperationType.UPDATE);
+        } else {
+          // Address was removed from or (re-)added to the favorites (CardDAV address book) of the owner:
+          journalFavoriteChange(dbObj, wasFavorite ? OperationType.DELETE : OperationType.INSERT);
+        }
         log.info("Object updated: " + dbObj.toString());
       }
       return true;
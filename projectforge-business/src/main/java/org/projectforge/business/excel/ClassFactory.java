@@ -23,7 +23,7 @@
 
 package org.projectforge.business.excel;
 
-import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.ss.usermodel.Row;
 
 /**
  * Interface for dynamically creating objects for a given row in the excel sheet.
@@ -41,5 +41,5 @@ public interface ClassFactory<T>
    * @throws InstantiationException @see Class#newInstance()
    * @throws IllegalAccessException @see Class#newInstance()
    */
-  public T newInstance(HSSFRow row) throws InstantiationException, IllegalAccessException;
+  public T newInstance(Row row) throws InstantiationException, IllegalAccessException;
 }
@@ -42,7 +42,17 @@ public class ExcelExporter
 
   public ExcelExporter(final String filename)
   {
-    this.workBook = new ExportWorkbook();
+    this(filename, false);
+  }
+
+  /**
+   * @param filename
+   * @param streaming If true, a streaming workbook (xlsx) is used for large exports.
+   * @see ExportWorkbook#createStreamingWorkbook(int)
+   */
+  public ExcelExporter(final String filename, final boolean streaming)
+  {
+    this.workBook = streaming ? ExportWorkbook.createStreamingWorkbook() : new ExportWorkbook();
     this.workBook.setFilename(filename);
   }
 
@@ -27,10 +27,11 @@ import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -57,7 +58,7 @@ public class ExcelImport<T>
   /**
    * the workbook containing the values.
    */
-  private final HSSFWorkbook work;
+  private final Workbook work;
 
   /**
    * a optional map for mapping column-names to property-names.
@@ -85,15 +86,16 @@ public class ExcelImport<T>
   private ClassFactory<T> clazzFactory;
 
   /**
-   * Opens a given Excel-document. The stream is always closed.
+   * Opens a given Excel-document (xls or xlsx). The stream is always closed.
    *
    * @param xlsStream the stream of the Excel-document.
    * @throws IOException if the document is not readable
    */
   public ExcelImport(final InputStream xlsStream) throws IOException
   {
-    // Closed by HSSFWorkbook
-    work = new HSSFWorkbook(xlsStream);
+    try (final InputStream is = xlsStream) {
+      work = WorkbookFactory.create(is);
+    }
   }
 
   /**
@@ -101,7 +103,7 @@ public class ExcelImport<T>
    *
    * @return the previously loaded document
    */
-  public HSSFWorkbook getWorkbook()
+  public Workbook getWorkbook()
   {
     return work;
   }
@@ -183,8 +185,8 @@ public class ExcelImport<T>
    */
   public List<String> getColumnNames()
   {
-    final HSSFSheet sheet = work.getSheetAt(activeSheet);
-    final HSSFRow columnNames = sheet.getRow(columnNameRow);
+    final Sheet sheet = work.getSheetAt(activeSheet);
+    final Row columnNames = sheet.getRow(columnNameRow);
     final List<String> list = new ArrayList<>();
     for (int column = 0; column < columnNames.getPhysicalNumberOfCells(); column++) {
       if (columnNames.getCell(column) == null) {
@@ -210,10 +212,10 @@ public class ExcelImport<T>
     if (clazzFactory == null) {
       setRowClass(clazz);
     }
-    final HSSFSheet sheet = work.getSheetAt(activeSheet);
+    final Sheet sheet = work.getSheetAt(activeSheet);
     final int numberOfRows = sheet.getLastRowNum();
     final List<T> list = new ArrayList<>(numberOfRows);
-    final HSSFRow columnNames = sheet.getRow(columnNameRow);
+    final Row columnNames = sheet.getRow(columnNameRow);
     for (int i = startAtRow; i <= numberOfRows; i++) {
       try {
         T line;
@@ -266,7 +268,7 @@ public class ExcelImport<T>
    * @throws InvocationTargetException if the object creation fails with an exception or the setter threw an exception.
    * @throws NoSuchMethodException     if the setter for the property name is not existant.
    */
-  private T convertToBean(final HSSFRow row, final HSSFRow columnNames, final int rowNum) throws InstantiationException,
+  private T convertToBean(final Row row, final Row columnNames, final int rowNum) throws InstantiationException,
       IllegalAccessException, InvocationTargetException, NoSuchMethodException
   {
     if (row == null) {
@@ -320,7 +322,7 @@ public class ExcelImport<T>
    * @param destClazz the target class
    * @return a String, Boolean, Date or BigDecimal
    */
-  private Object toNativeType(final HSSFCell cell, final Class<?> destClazz)
+  private Object toNativeType(final Cell cell, final Class<?> destClazz)
   {
     if (cell == null) {
       return null;
@@ -25,9 +25,12 @@ package org.projectforge.business.excel;
 
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 public class ExportSheet
@@ -60,12 +63,32 @@ public class ExportSheet
 
   private CellStyle cellStyle;
 
+  /**
+   * Number of rows held in memory by a streaming sheet, 0 for non-streaming sheets (all rows are held in memory).
+   */
+  private final int rowAccessWindowSize;
+
+  /**
+   * Number of rows of a streaming sheet already styled and removed from {@link #rows}.
+   */
+  private int flushedRowCounter = 0;
+
+  /**
+   * The first (heading) row is needed by {@link #setAutoFilter()} also after flushing.
+   */
+  private ExportRow firstRow;
+
   public ExportSheet(final ContentProvider contentProvider, final String name, final Sheet poiSheet)
   {
     this.contentProvider = contentProvider;
     this.name = name;
     this.poiSheet = poiSheet;
     this.rows = new ArrayList<>();
+    if (poiSheet instanceof SXSSFSheet) {
+      this.rowAccessWindowSize = ((SXSSFWorkbook) poiSheet.getWorkbook()).getRandomAccessWindowSize();
+    } else {
+      this.rowAccessWindowSize = 0;
+    }
     initRowList();
     final PrintSetup printSetup = getPrintSetup();
     printSetup.setPaperSize(ExportConfig.getInstance().getDefaultPaperSizeId());
@@ -85,7 +108,9 @@ public class ExportSheet
         }
         final ExportRow row = new ExportRow(contentProvider, this, poiRow, i);
         rows.add(row);
-        this.rowCounter++;
+        if (this.rowCounter++ == 0) {
+          firstRow = row;
+        }
       }
     }
   }
@@ -142,21 +167,87 @@ public class ExportSheet
     return poiSheet.getPrintSetup();
   }
 
+  /**
+   * Inserts a copy of the given row above it, all following rows are shifted down.<br/>
+   * Streaming sheets can't shift rows, so only the last row of a streaming sheet may be copied: the copy is appended
+   * (same content as inserting it above).
+   *
+   * @param targetRow
+   * @return The row at the position of the given row.
+   * @throws IllegalStateException if the given row of a streaming sheet isn't the last row.
+   */
   public ExportRow copyRow(ExportRow targetRow)
   {
+    if (isStreaming()) {
+      return copyLastRow(targetRow);
+    }
     final Row poiRow = copyRow(targetRow.getSheet().getPoiSheet(), targetRow.getRowNum());
     initRowList();
     return rows.get(poiRow.getRowNum());
   }
 
+  private ExportRow copyLastRow(final ExportRow targetRow)
+  {
+    final int rowNum = targetRow.getRowNum();
+    if (rowNum != rowCounter - 1) {
+      throw new IllegalStateException("Only the last row of streaming sheet '" + name + "' can be copied, not row #" + rowNum + ".");
+    }
+    final ExportRow sourceRow = getRow(rowNum);
+    final ExportCell[] sourceCells = sourceRow.getCells();
+    final ExportRow newRow = addRow();
+    for (final ExportCell sourceCell : sourceCells) {
+      final Cell oldCell = sourceCell.getPoiCell();
+      final ExportCell cell = newRow.addCell(sourceCell.getCol());
+      final Cell newCell = cell.getPoiCell();
+      cell.setCellFormat(sourceCell.getCellFormat());
+      newCell.setCellStyle(oldCell.getCellStyle()); // Styles are shared by the workbook.
+      switch (oldCell.getCellTypeEnum()) {
+        case BOOLEAN:
+          newCell.setCellValue(oldCell.getBooleanCellValue());
+          break;
+        case ERROR:
+          newCell.setCellErrorValue(oldCell.getErrorCellValue());
+          break;
+        case FORMULA:
+          newCell.setCellFormula(oldCell.getCellFormula());
+          break;
+        case NUMERIC:
+          newCell.setCellValue(oldCell.getNumericCellValue());
+          break;
+        case STRING:
+          newCell.setCellValue(oldCell.getRichStringCellValue());
+          break;
+        default:
+          break;
+      }
+    }
+    return sourceRow;
+  }
+
   public ExportRow addRow()
   {
+    if (isStreaming() && rows.size() >= rowAccessWindowSize) {
+      // The oldest row will be flushed by poi on creating the new row, so it has to be styled now.
+      flushRow();
+    }
     final Row poiRow = poiSheet.createRow(rowCounter);
-    final ExportRow row = new ExportRow(contentProvider, this, poiRow, rowCounter++);
+    final ExportRow row = new ExportRow(contentProvider, this, poiRow, rowCounter);
+    if (rowCounter++ == 0) {
+      firstRow = row;
+    }
     this.rows.add(row);
     return row;
   }
 
+  private void flushRow()
+  {
+    final ExportRow row = rows.remove(0);
+    if (contentProvider != null) {
+      row.updateStyles(contentProvider);
+    }
+    ++flushedRowCounter;
+  }
+
   public ExportRow addRow(final Object... values)
   {
     final ExportRow row = addRow();
@@ -195,8 +286,25 @@ public class ExportSheet
 
   public void addRows(final Collection<?> rowBeans, final int startCol)
   {
-    for (final Object rowBean : rowBeans) {
-      addRow(rowBean, startCol);
+    addRows(rowBeans.iterator(), startCol);
+  }
+
+  /**
+   * Adds the row beans one by one, so the beans may be loaded lazily (e. g. by a data base cursor). In combination with
+   * a streaming workbook, huge exports are done without holding all rows in memory.
+   *
+   * @param rowBeans
+   * @see ExportWorkbook#createStreamingWorkbook(int)
+   */
+  public void addRows(final Iterator<?> rowBeans)
+  {
+    addRows(rowBeans, 0);
+  }
+
+  public void addRows(final Iterator<?> rowBeans, final int startCol)
+  {
+    while (rowBeans.hasNext()) {
+      addRow(rowBeans.next(), startCol);
     }
   }
 
@@ -205,9 +313,19 @@ public class ExportSheet
     return name;
   }
 
+  /**
+   * Rows of streaming sheets are only available as long as they aren't flushed (the last rows of the row access
+   * window).
+   *
+   * @param row
+   * @throws IllegalStateException if the row of a streaming sheet is already flushed.
+   */
   public ExportRow getRow(final int row)
   {
-    return this.rows.get(row);
+    if (row < flushedRowCounter) {
+      throw new IllegalStateException("Row #" + row + " of streaming sheet '" + name + "' is already flushed.");
+    }
+    return this.rows.get(row - flushedRowCounter);
   }
 
   /**
@@ -218,11 +336,23 @@ public class ExportSheet
     return rowCounter;
   }
 
+  /**
+   * @return All rows or only the rows not yet flushed for streaming sheets.
+   */
   public List<ExportRow> getRows()
   {
     return rows;
   }
 
+  /**
+   * @return true, if this sheet belongs to a streaming workbook.
+   * @see ExportWorkbook#createStreamingWorkbook(int)
+   */
+  public boolean isStreaming()
+  {
+    return rowAccessWindowSize > 0;
+  }
+
   /**
    * For filling the table via beans.
    *
@@ -319,8 +449,7 @@ public class ExportSheet
   public ExportSheet setAutoFilter()
   {
     final int headingRow = 0;
-    final ExportRow row = getRow(headingRow);
-    final int lastCol = row.getMaxCol();
+    final int lastCol = firstRow.getMaxCol();
     final CellRangeAddress range = new CellRangeAddress(headingRow, headingRow, 0, lastCol);
     getPoiSheet().setAutoFilter(range);
     return this;
@@ -26,17 +26,24 @@ package org.projectforge.business.excel;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class ExportWorkbook
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ExportWorkbook.class);
 
+  /**
+   * Number of rows of a streaming workbook held in memory per sheet, all older rows are flushed to disk.
+   */
+  public static final int DEFAULT_ROW_ACCESS_WINDOW_SIZE = 100;
+
   private Workbook poiWorkbook;
 
   private List<ExportSheet> sheets;
@@ -51,10 +58,44 @@ public class ExportWorkbook
 
   private final Map<String, Short> dataFormats = new HashMap<>();
 
+  private final Map<CellFormat, CellStyle> cellStyles = new HashMap<>();
+
+  private final Map<String, Font> fonts = new HashMap<>();
+
   public ExportWorkbook()
+  {
+    this(new HSSFWorkbook());
+  }
+
+  private ExportWorkbook(final Workbook poiWorkbook)
   {
     sheets = new ArrayList<>();
-    poiWorkbook = new HSSFWorkbook();
+    this.poiWorkbook = poiWorkbook;
+  }
+
+  /**
+   * Creates a streaming workbook (xlsx) with the default row access window size.
+   *
+   * @see #createStreamingWorkbook(int)
+   */
+  public static ExportWorkbook createStreamingWorkbook()
+  {
+    return createStreamingWorkbook(DEFAULT_ROW_ACCESS_WINDOW_SIZE);
+  }
+
+  /**
+   * Creates a streaming workbook (xlsx, not limited to 65,536 rows). Only the last rowAccessWindowSize rows of each
+   * sheet are held in memory, older rows are styled and flushed to a (compressed) temporary file while rows are added.
+   * Therefore flushed rows can't be accessed anymore (see {@link ExportSheet#getRow(int)}) and the file name of the
+   * export should end with xlsx.
+   *
+   * @param rowAccessWindowSize The number of rows per sheet held in memory.
+   */
+  public static ExportWorkbook createStreamingWorkbook(final int rowAccessWindowSize)
+  {
+    final SXSSFWorkbook poiWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+    poiWorkbook.setCompressTempFiles(true);
+    return new ExportWorkbook(poiWorkbook);
   }
 
   public ExportWorkbook(final File excelFile) throws FileNotFoundException, IOException
@@ -126,7 +167,17 @@ public class ExportWorkbook
   }
 
   /**
-   * Calls updateStyles first. The OutputStream will be closed by this method.
+   * @return true, if this workbook is a streaming workbook.
+   * @see #createStreamingWorkbook(int)
+   */
+  public boolean isStreaming()
+  {
+    return poiWorkbook instanceof SXSSFWorkbook;
+  }
+
+  /**
+   * Calls updateStyles first. The OutputStream will be closed by this method. The temporary files of a streaming
+   * workbook are deleted afterwards, so a streaming workbook can only be written once.
    *
    * @param out
    * @throws IOException
@@ -145,6 +196,9 @@ public class ExportWorkbook
       }
     } finally {
       out.close();
+      if (isStreaming()) {
+        ((SXSSFWorkbook) poiWorkbook).dispose();
+      }
     }
   }
 
@@ -208,7 +262,7 @@ public class ExportWorkbook
   }
 
   /**
-   * Clones the current sheet.
+   * Clones the current sheet. Not supported by streaming workbooks.
    *
    * @see Workbook#cloneSheet(int)
    */
@@ -252,6 +306,36 @@ public class ExportWorkbook
     return poiWorkbook.createFont();
   }
 
+  /**
+   * Fonts are shared by all content providers (sheets) of this workbook, so equal cell formats of different sheets
+   * share the same cell style.
+   *
+   * @param name        The name of the font, e. g. "normal-bold".
+   * @param initializer Initializes the font if not yet created.
+   * @return The font created on the first call for the given name.
+   */
+  public Font getSharedFont(final String name, final Consumer<Font> initializer)
+  {
+    Font font = fonts.get(name);
+    if (font == null) {
+      font = createFont();
+      initializer.accept(font);
+      fonts.put(name, font);
+    }
+    return font;
+  }
+
+  /**
+   * Excel supports only a limited number of cell styles, therefore the cell styles are re-used for equal cell formats
+   * by all sheets of this workbook.
+   *
+   * @return The cell styles of this workbook mapped by their cell formats.
+   */
+  public Map<CellFormat, CellStyle> getCellStyles()
+  {
+    return cellStyles;
+  }
+
   public CreationHelper getCreationHelper()
   {
     return poiWorkbook.getCreationHelper();
@@ -23,7 +23,7 @@
 
 package org.projectforge.business.excel;
 
-import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.ss.usermodel.Row;
 
 /**
  * Simple implementation of a class factory returning a given instance.
@@ -51,7 +51,7 @@ public class SimpleClassFactory<T> implements ClassFactory<T>
   /**
    * return a new instance of the class given in the constructor.
    */
-  public T newInstance(HSSFRow row) throws InstantiationException, IllegalAccessException
+  public T newInstance(Row row) throws InstantiationException, IllegalAccessException
   {
     return clazz.newInstance();
   }
@@ -80,7 +80,12 @@ public class XlsContentProvider implements ContentProvider
 
   static protected Font FONT_RED_BOLD;
 
-  protected Map<CellFormat, CellStyle> reusableCellFormats = new HashMap<>();
+  /**
+   * Shared by all content providers of the workbook.
+   *
+   * @see ExportWorkbook#getCellStyles()
+   */
+  protected Map<CellFormat, CellStyle> reusableCellFormats;
 
   protected ExportWorkbook workbook;
 
@@ -105,6 +110,7 @@ public class XlsContentProvider implements ContentProvider
   {
     this.exportContext = exportContext;
     this.workbook = workbook;
+    this.reusableCellFormats = workbook.getCellStyles();
     createFonts();
     defaultFormatMap.put(Integer.class, new CellFormat("#,##0", HorizontalAlignment.RIGHT.getCode()));
     defaultFormatMap.put(Number.class, new CellFormat("#,###.######", HorizontalAlignment.RIGHT.getCode()));
@@ -410,24 +416,21 @@ public class XlsContentProvider implements ContentProvider
 
   private void createFonts()
   {
-    FONT_HEADER = workbook.createFont();
-    FONT_HEADER.setFontHeightInPoints(FONT_HEADER_SIZE);
-    FONT_HEADER.setBold(true);
-
-    FONT_NORMAL_BOLD = workbook.createFont();
-    FONT_NORMAL_BOLD.setBold(true);
-
-    FONT_WHITE_BOLD = workbook.createFont();
-    FONT_WHITE_BOLD.setColor(HSSFColor.HSSFColorPredefined.WHITE.getIndex());
-    FONT_WHITE_BOLD.setBold(true);
-
-    FONT_RED = workbook.createFont();
-    FONT_RED.setColor(HSSFColor.HSSFColorPredefined.RED.getIndex());
-
-    FONT_RED_BOLD = workbook.createFont();
-    FONT_RED_BOLD.setColor(HSSFColor.HSSFColorPredefined.RED.getIndex());
-    FONT_RED_BOLD.setBold(true);
-
-    FONT_NORMAL = workbook.createFont();
+    FONT_HEADER = workbook.getSharedFont("header", font -> {
+      font.setFontHeightInPoints(FONT_HEADER_SIZE);
+      font.setBold(true);
+    });
+    FONT_NORMAL_BOLD = workbook.getSharedFont("normal-bold", font -> font.setBold(true));
+    FONT_WHITE_BOLD = workbook.getSharedFont("white-bold", font -> {
+      font.setColor(HSSFColor.HSSFColorPredefined.WHITE.getIndex());
+      font.setBold(true);
+    });
+    FONT_RED = workbook.getSharedFont("red", font -> font.setColor(HSSFColor.HSSFColorPredefined.RED.getIndex()));
+    FONT_RED_BOLD = workbook.getSharedFont("red-bold", font -> {
+      font.setColor(HSSFColor.HSSFColorPredefined.RED.getIndex());
+      font.setBold(true);
+    });
+    FONT_NORMAL = workbook.getSharedFont("normal", font -> {
+    });
   }
 }
@@ -53,6 +53,7 @@ import javax.persistence.criteria.JoinType;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Repository
@@ -83,7 +84,18 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Autowired
   private SendMail sendMail;
 
-  private Integer toBeInvoicedCounter;
+  /**
+   * Cached number of orders to be invoiced, null if it has to be recalculated.
+   */
+  private volatile Integer toBeInvoicedCounter;
+
+  /**
+   * Incremented on every invalidation of {@link #toBeInvoicedCounter}, so a calculation running concurrently to a
+   * modification doesn't store an outdated value.
+   */
+  private final AtomicInteger toBeInvoicedCounterVersion = new AtomicInteger();
+
+  private final Object toBeInvoicedCounterLock = new Object();
 
   @Autowired
   private TaskDao taskDao;
@@ -166,10 +178,10 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   }
 
   /**
-   * Get all invoices and set the field fakturiertSum for every order of the given col.
+   * Sets the field fakturiertSum for every order of the given col.
    *
    * @param col
-   * @see RechnungCache#getRechnungsPositionVOSetByAuftragsPositionId(Integer)
+   * @see #calculateInvoicedSum(AuftragDO)
    */
   public void calculateInvoicedSum(final Collection<AuftragDO> col) {
     if (col == null) {
@@ -181,23 +193,28 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   }
 
   /**
-   * Get all invoices and set the field fakturiertSum for the given order.
+   * Sets the field fakturiertSum for the given order and its positions. The invoiced sums are precomputed by the
+   * {@link RechnungCache}, so no invoice positions are summed here.
    *
    * @param order
-   * @see RechnungCache#getRechnungsPositionVOSetByAuftragsPositionId(Integer)
+   * @see RechnungCache#getInvoicedSumByAuftragsPositionId(Integer)
    */
   public void calculateInvoicedSum(final AuftragDO order) {
     if (order == null) {
       return;
     }
     if (order.getPositionenExcludingDeleted() != null) {
+      BigDecimal orderSum = BigDecimal.ZERO;
       for (final AuftragsPositionDO pos : order.getPositionenExcludingDeleted()) {
-        final Set<RechnungsPositionVO> set = rechnungCache
-                .getRechnungsPositionVOSetByAuftragsPositionId(pos.getId());
-        if (set != null) {
-          pos.setFakturiertSum(RechnungDao.getNettoSumme(set));
+        // null, if no invoice position is assigned (e. g. the last assigned invoice was deleted):
+        final BigDecimal invoicedSum = rechnungCache.getInvoicedSumByAuftragsPositionId(pos.getId());
+        pos.setFakturiertSum(invoicedSum);
+        if (NumberHelper.isNotZero(invoicedSum)) {
+          orderSum = orderSum.add(invoicedSum);
         }
       }
+      // The order sum may be already computed by AuftragDO.getFakturiertSum():
+      order.setFakturiertSum(orderSum);
     }
   }
 
@@ -272,22 +289,35 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   }
 
   /**
-   * Number of all orders (finished, signed or escalated) which has to be invoiced.
+   * Number of all orders (finished, signed or escalated) which has to be invoiced. The number is cached until the next
+   * modification of an order, readers of the cached number don't synchronize (the menu badge is requested by every
+   * page).
    */
-  public synchronized int getToBeInvoicedCounter() {
-    if (toBeInvoicedCounter != null) {
-      return toBeInvoicedCounter;
-    }
-    final AuftragFilter filter = new AuftragFilter();
-    filter.setAuftragFakturiertFilterStatus(AuftragFakturiertFilterStatus.ZU_FAKTURIEREN);
-    try {
-      final List<AuftragDO> list = getList(filter, false);
-      toBeInvoicedCounter = list != null ? list.size() : 0;
-      return toBeInvoicedCounter;
-    } catch (final Exception ex) {
-      log.error("Exception occured while getting number of closed and not invoiced orders: " + ex.getMessage(), ex);
-      // Exception e. g. if data-base update is needed.
-      return 0;
+  public int getToBeInvoicedCounter() {
+    final Integer counter = toBeInvoicedCounter;
+    if (counter != null) {
+      return counter;
+    }
+    synchronized (toBeInvoicedCounterLock) {
+      if (toBeInvoicedCounter != null) {
+        // Calculated by another thread in the meantime.
+        return toBeInvoicedCounter;
+      }
+      final int version = toBeInvoicedCounterVersion.get();
+      final AuftragFilter filter = new AuftragFilter();
+      filter.setAuftragFakturiertFilterStatus(AuftragFakturiertFilterStatus.ZU_FAKTURIEREN);
+      try {
+        final List<AuftragDO> list = getList(filter, false);
+        final int result = list != null ? list.size() : 0;
+        if (version == toBeInvoicedCounterVersion.get()) {
+          toBeInvoicedCounter = result;
+        }
+        return result;
+      } catch (final Exception ex) {
+        log.error("Exception occured while getting number of closed and not invoiced orders: " + ex.getMessage(), ex);
+        // Exception e. g. if data-base update is needed.
+        return 0;
+      }
     }
   }
 
@@ -463,7 +493,6 @@ public class AuftragDao extends BaseDao<AuftragDO> {
         position.checkVollstaendigFakturiert();
       }
     }
-    toBeInvoicedCounter = null;
     final String uiStatusAsXml = XmlObjectWriter.writeAsXml(obj.getUiStatus());
     obj.setUiStatusAsXml(uiStatusAsXml);
     final List<PaymentScheduleDO> paymentSchedules = obj.getPaymentSchedules();
@@ -540,6 +569,9 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Override
   protected void afterSaveOrModify(final AuftragDO obj) {
     super.afterSaveOrModify(obj);
+    // Invalidate after the order is committed (a counter calculated before may not contain it):
+    toBeInvoicedCounterVersion.incrementAndGet();
+    toBeInvoicedCounter = null;
     if (taskTree != null) {
       taskTree.refreshOrderPositionReferences();
     }
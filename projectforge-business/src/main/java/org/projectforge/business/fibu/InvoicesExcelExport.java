@@ -29,7 +29,6 @@ import org.projectforge.common.props.PropUtils;
 import org.projectforge.export.MyExcelExporter;
 
 import java.lang.reflect.Field;
-import java.util.Collection;
 
 public class InvoicesExcelExport
 {
@@ -37,7 +36,7 @@ public class InvoicesExcelExport
   {
   }
 
-  public void addDebitorInvoicesSheet(final MyExcelExporter exporter, final String title, final Collection<RechnungDO> list)
+  public void addDebitorInvoicesSheet(final MyExcelExporter exporter, final String title, final Iterable<RechnungDO> list)
   {
     final ExportSheet sheet = exporter.addSheet(title);
     sheet.createFreezePane(0, 1);
@@ -67,7 +66,7 @@ public class InvoicesExcelExport
     }
   }
 
-  public void addCreditorInvoicesSheet(final MyExcelExporter exporter, final String title, final Collection<EingangsrechnungDO> list)
+  public void addCreditorInvoicesSheet(final MyExcelExporter exporter, final String title, final Iterable<EingangsrechnungDO> list)
   {
     final ExportSheet sheet = exporter.addSheet(title);
     sheet.createFreezePane(0, 1);
@@ -25,13 +25,14 @@ package org.projectforge.business.fibu;
 
 import org.apache.commons.collections.MapUtils;
 import org.hibernate.LazyInitializationException;
-import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.cache.AbstractSnapshotCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,28 +43,22 @@ import java.util.Map;
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 @Component
-public class KontoCache extends AbstractCache {
+public class KontoCache extends AbstractSnapshotCache<Map<Integer, KontoDO>> {
   private static Logger log = LoggerFactory.getLogger(KontoCache.class);
 
   @Autowired
   private EntityManager em;
 
-  /**
-   * The key is the order id.
-   */
-  private Map<Integer, KontoDO> accountMapById;
-
   public boolean isEmpty() {
-    checkRefresh();
-    return MapUtils.isEmpty(accountMapById);
+    return MapUtils.isEmpty(getSnapshot());
   }
 
   public KontoDO getKonto(final Integer id) {
     if (id == null) {
       return null;
     }
-    checkRefresh();
-    return accountMapById.get(id);
+    final Map<Integer, KontoDO> accountMapById = getSnapshot();
+    return accountMapById != null ? accountMapById.get(id) : null;
   }
 
   /**
@@ -79,7 +74,6 @@ public class KontoCache extends AbstractCache {
     if (project == null) {
       return null;
     }
-    checkRefresh();
     KontoDO konto = getKonto(project.getKontoId());
     if (konto != null) {
       return konto;
@@ -108,7 +102,6 @@ public class KontoCache extends AbstractCache {
     if (invoice == null) {
       return null;
     }
-    checkRefresh();
     KontoDO konto = getKonto(invoice.getKontoId());
     if (konto != null) {
       return konto;
@@ -137,21 +130,18 @@ public class KontoCache extends AbstractCache {
   }
 
   /**
-   * This method will be called by CacheHelper and is synchronized via getData();
+   * Builds the snapshot (the key of the map is the account id).
    */
   @Override
-  @SuppressWarnings("unchecked")
-  protected void refresh() {
+  protected Map<Integer, KontoDO> buildSnapshot() {
     log.info("Initializing KontoCache ...");
-    // This method must not be synchronized because it works with a new copy of maps.
     final Map<Integer, KontoDO> map = new HashMap<>();
     final List<KontoDO> list = em.createQuery("from KontoDO t where deleted=false", KontoDO.class)
             .getResultList();
     for (final KontoDO konto : list) {
       map.put(konto.getId(), konto);
     }
-    this.accountMapById = map;
     log.info("Initializing of KontoCache done.");
+    return Collections.unmodifiableMap(map);
   }
-
 }
@@ -44,10 +44,13 @@ public class KontoDao extends BaseDao<KontoDO>
     userRightId = USER_RIGHT_ID;
   }
 
+  /**
+   * The cache is reloaded in the background on next use (cheap for batch imports of many accounts).
+   */
   @Override
   protected void afterSaveOrModify(final KontoDO obj)
   {
-    getKontoCache().refresh();
+    getKontoCache().setExpired();
   }
 
   @SuppressWarnings("unchecked")
@@ -280,7 +280,7 @@ public class OrderExport
       return null;
     }
     log.info("Exporting order list.");
-    final ExportWorkbook xls = new ExportWorkbook();
+    final ExportWorkbook xls = ExportWorkbook.createStreamingWorkbook();
     final ContentProvider contentProvider = new MyContentProvider(xls);
     // create a default Date format and currency column
     xls.setContentProvider(contentProvider);
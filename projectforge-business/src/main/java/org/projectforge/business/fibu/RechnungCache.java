@@ -31,10 +31,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.persistence.EntityManager;
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Caches the order positions assigned to invoice positions.
+ * Caches the order positions assigned to invoice positions and the invoiced net sums of the order positions. After
+ * saving or deleting an invoice, only the entries of this invoice are updated (see {@link #update(Integer)}).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -42,78 +45,188 @@ import java.util.*;
 public class RechnungCache extends AbstractCache {
   private static Logger log = LoggerFactory.getLogger(RechnungCache.class);
 
+  private static final String SELECT_ASSIGNED_POSITIONS = "from RechnungsPositionDO t left join fetch t.auftragsPosition left join fetch t.auftragsPosition.auftrag where t.auftragsPosition is not null";
+
   @Autowired
   protected PfEmgrFactory emgrFactory;
 
-  /**
-   * The key is the order id.
-   */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId;
-
-  /**
-   * The key is the order position id.
-   */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId;
+  private transient volatile Index index;
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragId(final Integer auftragId) {
     checkRefresh();
-    return invoicePositionMapByAuftragId.get(auftragId);
+    return index.byAuftragId.get(auftragId);
   }
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragsPositionId(final Integer auftragsPositionId) {
     checkRefresh();
-    return invoicePositionMapByAuftragsPositionId.get(auftragsPositionId);
+    return index.byAuftragsPositionId.get(auftragsPositionId);
+  }
+
+  /**
+   * @return The net sum of all invoice positions assigned to the given order position or null, if no invoice position
+   * is assigned.
+   */
+  public BigDecimal getInvoicedSumByAuftragsPositionId(final Integer auftragsPositionId) {
+    checkRefresh();
+    return auftragsPositionId != null ? index.invoicedSumByAuftragsPositionId.get(auftragsPositionId) : null;
+  }
+
+  /**
+   * Updates the entries of the given invoice after saving, modifying, deleting or undeleting the invoice, instead of
+   * reloading all invoice positions. The assigned invoice positions of this invoice are read from the data base.
+   * Synchronized with {@link #refresh()}.
+   *
+   * @param rechnungId
+   */
+  public synchronized void update(final Integer rechnungId) {
+    final Index current = this.index;
+    if (rechnungId == null || current == null) {
+      // Nothing to update, the cache will be initialized on first usage.
+      return;
+    }
+    final List<RechnungsPositionDO> list = emgrFactory.runRoTrans(emgr -> {
+      EntityManager em = emgr.getEntityManager();
+      return em.createQuery(SELECT_ASSIGNED_POSITIONS + " and t.rechnung.id = :rechnungId", RechnungsPositionDO.class)
+              .setParameter("rechnungId", rechnungId)
+              .getResultList();
+    });
+    final List<RechnungsPositionVO> voList = new ArrayList<>();
+    for (final RechnungsPositionDO pos : list) {
+      if (isIndexed(pos)) {
+        voList.add(new RechnungsPositionVO(pos));
+      }
+    }
+    current.replace(rechnungId, voList);
   }
 
   /**
    * This method will be called by CacheHelper and is synchronized via getData();
    */
   @Override
-  @SuppressWarnings("unchecked")
   protected void refresh() {
     log.info("Initializing RechnungCache ...");
     // This method must not be synchronized because it works with a new copy of maps.
-    final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragId = new HashMap<>();
-    final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragsPositionId = new HashMap<>();
     final List<RechnungsPositionDO> list = emgrFactory.runRoTrans(emgr -> {
       EntityManager em = emgr.getEntityManager();
       em.clear();
-      return em.createQuery("from RechnungsPositionDO t left join fetch t.auftragsPosition left join fetch t.auftragsPosition.auftrag where t.auftragsPosition is not null",
-              RechnungsPositionDO.class)
+      return em.createQuery(SELECT_ASSIGNED_POSITIONS, RechnungsPositionDO.class)
               .getResultList();
     });
+    final List<RechnungsPositionVO> voList = new ArrayList<>();
     for (final RechnungsPositionDO pos : list) {
-      RechnungDO rechnung = pos.getRechnung();
-      if (pos.getAuftragsPosition() == null || pos.getAuftragsPosition().getAuftrag() == null) {
-        log.error("Assigned order position expected: " + pos);
-        continue;
-      } else if (pos.isDeleted() || rechnung == null || rechnung.isDeleted()
-              || rechnung.getNummer() == null) {
-        // Invoice position or invoice is deleted.
-        continue;
+      if (isIndexed(pos)) {
+        voList.add(new RechnungsPositionVO(pos));
       }
-      final AuftragsPositionDO auftragsPosition = pos.getAuftragsPosition();
-      final AuftragDO auftrag = auftragsPosition.getAuftrag();
-      Set<RechnungsPositionVO> setByAuftragId = mapByAuftragId.get(auftrag.getId());
-      if (setByAuftragId == null) {
-        setByAuftragId = new TreeSet<>();
-        mapByAuftragId.put(auftrag.getId(), setByAuftragId);
+    }
+    this.index = new Index(voList);
+    log.info("Initializing of RechnungCache done.");
+  }
+
+  /**
+   * @return false for invoice positions without order position and for deleted invoice positions or invoices.
+   */
+  private static boolean isIndexed(final RechnungsPositionDO pos) {
+    final RechnungDO rechnung = pos.getRechnung();
+    if (pos.getAuftragsPosition() == null || pos.getAuftragsPosition().getAuftrag() == null) {
+      log.error("Assigned order position expected: " + pos);
+      return false;
+    } else if (pos.isDeleted() || rechnung == null || rechnung.isDeleted()
+            || rechnung.getNummer() == null) {
+      // Invoice position or invoice is deleted.
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * The sets are unmodifiable and replaced on changes (copy on write), so readers don't need any synchronization.
+   */
+  private static class Index {
+    /**
+     * The key is the order id.
+     */
+    private final Map<Integer, Set<RechnungsPositionVO>> byAuftragId = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the order position id.
+     */
+    private final Map<Integer, Set<RechnungsPositionVO>> byAuftragsPositionId = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the invoice id (needed for replacing the entries of an invoice).
+     */
+    private final Map<Integer, Set<RechnungsPositionVO>> byRechnungId = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the order position id.
+     */
+    private final Map<Integer, BigDecimal> invoicedSumByAuftragsPositionId = new ConcurrentHashMap<>();
+
+    private Index(final Collection<RechnungsPositionVO> voList) {
+      final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragId = new HashMap<>();
+      final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragsPositionId = new HashMap<>();
+      final Map<Integer, Set<RechnungsPositionVO>> mapByRechnungId = new HashMap<>();
+      for (final RechnungsPositionVO vo : voList) {
+        mapByAuftragId.computeIfAbsent(vo.getAuftragsId(), key -> new TreeSet<>()).add(vo);
+        mapByAuftragsPositionId.computeIfAbsent(vo.getAuftragsPositionId(), key -> new TreeSet<>()).add(vo);
+        mapByRechnungId.computeIfAbsent(vo.getRechnungId(), key -> new TreeSet<>()).add(vo);
       }
-      Set<RechnungsPositionVO> setByAuftragsPositionId = mapByAuftragsPositionId.get(auftragsPosition.getId());
-      if (setByAuftragsPositionId == null) {
-        setByAuftragsPositionId = new TreeSet<>();
-        mapByAuftragsPositionId.put(auftragsPosition.getId(), setByAuftragsPositionId);
+      mapByAuftragId.forEach((key, set) -> byAuftragId.put(key, Collections.unmodifiableSet(set)));
+      mapByAuftragsPositionId.forEach((key, set) -> {
+        byAuftragsPositionId.put(key, Collections.unmodifiableSet(set));
+        invoicedSumByAuftragsPositionId.put(key, RechnungDao.getNettoSumme(set));
+      });
+      mapByRechnungId.forEach((key, set) -> byRechnungId.put(key, Collections.unmodifiableSet(set)));
+    }
+
+    /**
+     * Replaces all entries of the given invoice by the given ones.
+     */
+    private void replace(final Integer rechnungId, final Collection<RechnungsPositionVO> voList) {
+      final Set<Integer> modifiedAuftragsPositionIds = new HashSet<>();
+      final Set<RechnungsPositionVO> oldSet = byRechnungId.remove(rechnungId);
+      if (oldSet != null) {
+        for (final RechnungsPositionVO vo : oldSet) {
+          remove(byAuftragId, vo.getAuftragsId(), vo);
+          remove(byAuftragsPositionId, vo.getAuftragsPositionId(), vo);
+          modifiedAuftragsPositionIds.add(vo.getAuftragsPositionId());
+        }
       }
-      final RechnungsPositionVO vo = new RechnungsPositionVO(pos);
-      if (!setByAuftragId.contains(vo)) {
-        setByAuftragId.add(vo);
+      if (!voList.isEmpty()) {
+        byRechnungId.put(rechnungId, Collections.unmodifiableSet(new TreeSet<>(voList)));
+        for (final RechnungsPositionVO vo : voList) {
+          add(byAuftragId, vo.getAuftragsId(), vo);
+          add(byAuftragsPositionId, vo.getAuftragsPositionId(), vo);
+          modifiedAuftragsPositionIds.add(vo.getAuftragsPositionId());
+        }
       }
-      if (!setByAuftragsPositionId.contains(vo)) {
-        setByAuftragsPositionId.add(vo);
+      for (final Integer auftragsPositionId : modifiedAuftragsPositionIds) {
+        final Set<RechnungsPositionVO> set = byAuftragsPositionId.get(auftragsPositionId);
+        if (set == null) {
+          invoicedSumByAuftragsPositionId.remove(auftragsPositionId);
+        } else {
+          invoicedSumByAuftragsPositionId.put(auftragsPositionId, RechnungDao.getNettoSumme(set));
+        }
       }
     }
-    this.invoicePositionMapByAuftragId = mapByAuftragId;
-    this.invoicePositionMapByAuftragsPositionId = mapByAuftragsPositionId;
-    log.info("Initializing of RechnungCache done.");
+
+    private static void add(final Map<Integer, Set<RechnungsPositionVO>> map, final Integer key,
+                            final RechnungsPositionVO vo) {
+      map.compute(key, (k, set) -> {
+        final Set<RechnungsPositionVO> copy = set != null ? new TreeSet<>(set) : new TreeSet<>();
+        copy.add(vo);
+        return Collections.unmodifiableSet(copy);
+      });
+    }
+
+    private static void remove(final Map<Integer, Set<RechnungsPositionVO>> map, final Integer key,
+                               final RechnungsPositionVO vo) {
+      map.computeIfPresent(key, (k, set) -> {
+        final Set<RechnungsPositionVO> copy = new TreeSet<>(set);
+        copy.remove(vo);
+        // Returning null removes the entry:
+        return copy.isEmpty() ? null : Collections.unmodifiableSet(copy);
+      });
+    }
   }
 }
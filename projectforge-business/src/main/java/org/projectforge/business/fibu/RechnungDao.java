@@ -244,7 +244,8 @@ public class RechnungDao extends BaseDao<RechnungDO> {
 
   @Override
   protected void afterSaveOrModify(final RechnungDO obj) {
-    getRechnungCache().setExpired(); // Expire the cache because assignments to order position may be changed.
+    // Assignments to order positions or invoiced sums may be changed:
+    getRechnungCache().update(obj.getId());
   }
 
   @Override
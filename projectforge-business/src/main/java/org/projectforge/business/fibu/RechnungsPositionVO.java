@@ -52,6 +52,8 @@ public class RechnungsPositionVO implements Comparable<RechnungsPositionVO>, Ser
 
   private Integer auftragsId;
 
+  private Integer auftragsPositionId;
+
   private short auftragsPositionNummer;
 
   private final BigDecimal netSum;
@@ -72,6 +74,7 @@ public class RechnungsPositionVO implements Comparable<RechnungsPositionVO>, Ser
       if (auftrag != null) {
         this.auftragsId = auftrag.getId();
       }
+      this.auftragsPositionId = auftragsPosition.getId();
       this.auftragsPositionNummer = auftragsPosition.getNumber();
     }
   }
@@ -122,6 +125,11 @@ public class RechnungsPositionVO implements Comparable<RechnungsPositionVO>, Ser
     return auftragsId;
   }
 
+  public Integer getAuftragsPositionId()
+  {
+    return auftragsPositionId;
+  }
+
   public short getAuftragsPositionNummer()
   {
     return auftragsPositionNummer;
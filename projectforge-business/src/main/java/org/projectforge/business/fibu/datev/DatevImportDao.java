@@ -32,6 +32,7 @@ import org.projectforge.business.fibu.kost.BuchungssatzDO;
 import org.projectforge.business.fibu.kost.BuchungssatzDao;
 import org.projectforge.business.fibu.kost.Kost1Dao;
 import org.projectforge.business.fibu.kost.Kost2Dao;
+import org.projectforge.business.fibu.kost.LedgerCubeCache;
 import org.projectforge.business.user.UserRightId;
 import org.projectforge.business.user.UserRightValue;
 import org.projectforge.framework.access.AccessChecker;
@@ -56,16 +57,6 @@ public class DatevImportDao {
   static final String[] BUCHUNGSSATZ_DIFF_PROPERTIES = {"satznr", "betrag", "sh", "konto", "kost2", "menge", "beleg",
           "datum",
           "gegenKonto", "text", "kost1", "comment"};
-  /**
-   * Size of bulk inserts. If this value is too large, exceptions are expected and as more small the value is so as more
-   * slowly is the insert process.
-   */
-  private static final int BUCHUNGSSATZ_INSERT_BLOCK_SIZE = 50;
-  /**
-   * Size of bulk inserts. If this value is too large, exceptions are expected and as more small the value is so as more
-   * slowly is the insert process.
-   */
-  private static final int KONTO_INSERT_BLOCK_SIZE = 50;
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DatevImportDao.class);
   @Autowired
   private PfEmgrFactory emgrFactory;
@@ -79,6 +70,8 @@ public class DatevImportDao {
   private Kost2Dao kost2Dao;
   @Autowired
   private BuchungssatzDao buchungssatzDao;
+  @Autowired
+  private LedgerCubeCache ledgerCubeCache;
 
   /**
    * Has the user the right FIBU_DATEV_IMPORT (value true)?
@@ -232,7 +225,7 @@ public class DatevImportDao {
         }
         col.add(konto);
       }
-      kontoDao.internalSaveOrUpdate(col, KONTO_INSERT_BLOCK_SIZE);
+      kontoDao.internalSaveOrUpdateInBatch(col);
     }
     return col.size();
   }
@@ -251,7 +244,9 @@ public class DatevImportDao {
         }
         col.add(satz);
       }
-      buchungssatzDao.internalSaveOrUpdate(col, BUCHUNGSSATZ_INSERT_BLOCK_SIZE);
+      buchungssatzDao.internalSaveOrUpdateInBatch(col);
+      // Aggregate the imported months (marked as dirty while saving) after commit:
+      ledgerCubeCache.refreshDirtyPeriods();
     }
     return col.size();
   }
@@ -144,15 +144,10 @@ public class BusinessAssessment implements Serializable
           continue;
         }
         final int accountNumber = account.getNummer();
-        boolean found = false;
-        for (final BusinessAssessmentRow row : rows) {
-          if (row.doesMatch(accountNumber)) {
-            row.addAccountRecord(record);
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
+        final BusinessAssessmentRow row = getRowByAccountNumber(accountNumber);
+        if (row != null) {
+          row.addAccountRecord(record);
+        } else {
           log.warn("Ignoring Satz: " + record);
           record.setIgnore(true);
         }
@@ -161,6 +156,44 @@ public class BusinessAssessment implements Serializable
     }
   }
 
+  /**
+   * Sets the amounts of the rows from the given ledger cube instead of summing up the account records. The account
+   * records aren't stored in the rows.
+   *
+   * @param cube      The ledger cube, see {@link LedgerCubeCache#getCube()}.
+   * @param fromYear
+   * @param fromMonth 1-January, ..., 12-December or null for the whole year.
+   * @param toYear
+   * @param toMonth   1-January, ..., 12-December or null for the whole year.
+   * @param filter    Optional filter of kost1 and kost2 (e. g. of a report objective).
+   */
+  public void setAmounts(final LedgerCube cube, final int fromYear, final Integer fromMonth, final int toYear,
+      final Integer toMonth, final LedgerCube.CellFilter filter)
+  {
+    if (CollectionUtils.isEmpty(rows) || config == null) {
+      return;
+    }
+    final Long[] sums = cube.sumByRow(config.getRowIndex(), rows.size(), fromYear, fromMonth, toYear, toMonth, filter);
+    for (int i = 0; i < sums.length; i++) {
+      if (sums[i] != null) {
+        rows.get(i).addAmount(BigDecimal.valueOf(sums[i], 2));
+      }
+    }
+    recalculate();
+  }
+
+  /**
+   * @return The first row matching the given account number or null, if no row matches.
+   */
+  private BusinessAssessmentRow getRowByAccountNumber(final int accountNumber)
+  {
+    if (config == null) {
+      return null;
+    }
+    final int index = config.getRowIndex().getRowIndex(accountNumber);
+    return index >= 0 ? rows.get(index) : null;
+  }
+
   public void recalculate()
   {
     if (rows == null) {
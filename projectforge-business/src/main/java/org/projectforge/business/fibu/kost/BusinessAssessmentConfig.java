@@ -49,6 +49,8 @@ public class BusinessAssessmentConfig implements Serializable
 
   private String overallPerformance, merchandisePurchase, preliminaryResult;
 
+  private transient BusinessAssessmentRowIndex rowIndex;
+
   public BusinessAssessmentConfig()
   {
   }
@@ -58,6 +60,19 @@ public class BusinessAssessmentConfig implements Serializable
     return rows;
   }
 
+  /**
+   * @return The index for finding the row (index of {@link #getRows()}) of an account number.
+   */
+  public BusinessAssessmentRowIndex getRowIndex()
+  {
+    BusinessAssessmentRowIndex index = rowIndex;
+    if (index == null) {
+      index = new BusinessAssessmentRowIndex(rows);
+      rowIndex = index;
+    }
+    return index;
+  }
+
   /**
    * @param id id or number of the row.
    * @return The found row or null if not found.
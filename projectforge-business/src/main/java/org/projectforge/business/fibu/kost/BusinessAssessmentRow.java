@@ -96,15 +96,23 @@ public class BusinessAssessmentRow implements Serializable
    * @param record
    */
   public void addAccountRecord(final BuchungssatzDO record)
+  {
+    addAmount(record.getBetrag());
+    if (this.accountRecords != null) {
+      this.accountRecords.add(record);
+    }
+  }
+
+  /**
+   * Adds the amount of account records (e. g. summed up by a {@link LedgerCube}).
+   */
+  void addAmount(final BigDecimal value)
   {
     accountRecordsExist = true;
     if (amount == null) {
       amount = BigDecimal.ZERO;
     }
-    amount = amount.add(record.getBetrag());
-    if (this.accountRecords != null) {
-      this.accountRecords.add(record);
-    }
+    amount = amount.add(value);
   }
 
   /**
@@ -0,0 +1,136 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.fibu.kost;
+
+import org.projectforge.framework.utils.IntRanges;
+import org.projectforge.framework.utils.Range;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps account numbers to the rows of a business assessment. The account number ranges of all rows are merged into
+ * sorted, disjoint intervals, so the row of an account number is found by a binary search instead of testing the
+ * account number ranges of every row. If the ranges of rows overlap, the first row wins (as for the former linear
+ * search).
+ */
+public class BusinessAssessmentRowIndex implements Serializable
+{
+  private static final long serialVersionUID = 3027428613434315866L;
+
+  private final int[] from;
+
+  private final int[] to;
+
+  private final int[] rowIndex;
+
+  /**
+   * @param rows The rows of the business assessment config. The index of a row in this list is returned by
+   *             {@link #getRowIndex(int)}.
+   */
+  public BusinessAssessmentRowIndex(final List<BusinessAssessmentRowConfig> rows)
+  {
+    // Key is the begin of an interval, value is {end of interval, row index}.
+    final TreeMap<Integer, int[]> intervals = new TreeMap<>();
+    if (rows != null) {
+      for (int i = 0; i < rows.size(); i++) {
+        final IntRanges ranges = rows.get(i).getAccountNumberRanges();
+        if (ranges == null) {
+          continue;
+        }
+        if (ranges.getRanges() != null) {
+          for (final Range<Integer> range : ranges.getRanges()) {
+            add(intervals, range.getMinValue(), range.getMaxValue(), i);
+          }
+        }
+        if (ranges.getValues() != null) {
+          for (final Integer value : ranges.getValues()) {
+            add(intervals, value, value, i);
+          }
+        }
+      }
+    }
+    from = new int[intervals.size()];
+    to = new int[intervals.size()];
+    rowIndex = new int[intervals.size()];
+    int i = 0;
+    for (final Map.Entry<Integer, int[]> entry : intervals.entrySet()) {
+      from[i] = entry.getKey();
+      to[i] = entry.getValue()[0];
+      rowIndex[i++] = entry.getValue()[1];
+    }
+  }
+
+  /**
+   * @param accountNumber
+   * @return The index of the first row matching the given account number or -1 if no row matches.
+   */
+  public int getRowIndex(final int accountNumber)
+  {
+    int low = 0;
+    int high = from.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (from[mid] > accountNumber) {
+        high = mid - 1;
+      } else if (to[mid] < accountNumber) {
+        low = mid + 1;
+      } else {
+        return rowIndex[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The number of disjoint intervals.
+   */
+  public int size()
+  {
+    return from.length;
+  }
+
+  /**
+   * Adds only the parts of the given interval not yet covered by previous rows.
+   */
+  private static void add(final TreeMap<Integer, int[]> intervals, final int begin, final int end, final int row)
+  {
+    long current = begin;
+    while (current <= end) {
+      final Map.Entry<Integer, int[]> floor = intervals.floorEntry((int) current);
+      if (floor != null && floor.getValue()[0] >= current) {
+        // current is already covered by a previous row, continue after this interval:
+        current = (long) floor.getValue()[0] + 1;
+        continue;
+      }
+      final Map.Entry<Integer, int[]> higher = intervals.higherEntry((int) current);
+      final int gapEnd = higher != null && higher.getKey() <= end ? higher.getKey() - 1 : end;
+      intervals.put((int) current, new int[] { gapEnd, row });
+      current = (long) gapEnd + 1;
+    }
+  }
+}
@@ -0,0 +1,329 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.fibu.kost;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable aggregation of the accounting records (DATEV) by (year, month, account number, kost1, kost2). The amounts
+ * are summed up in cents (long), so business assessments and report drill-downs of any period may be calculated from
+ * the cube without loading the accounting records.
+ * <br/>
+ * The cells are sorted by period (year and month), account number, kost1 and kost2, so all cells of a time period are
+ * found by a binary search.
+ *
+ * @see LedgerCubeCache
+ */
+public class LedgerCube implements Serializable
+{
+  private static final long serialVersionUID = -4518720196361426227L;
+
+  private static final Comparator<Integer> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+
+  private static final Comparator<Cell> CELL_ORDER = Comparator.<Cell>comparingInt(cell -> cell.period)
+      .thenComparingInt(cell -> cell.account)
+      .thenComparing(cell -> cell.kost1Id, NULLS_FIRST)
+      .thenComparing(cell -> cell.kost2Id, NULLS_FIRST);
+
+  public static final LedgerCube EMPTY = new Builder().build();
+
+  /**
+   * Filter for the cells, e. g. for the kost1 and kost2 selection of a report objective.
+   */
+  @FunctionalInterface
+  public interface CellFilter
+  {
+    boolean matches(Integer kost1Id, Integer kost2Id);
+  }
+
+  private final int[] periods;
+
+  private final int[] accounts;
+
+  private final Integer[] kost1Ids;
+
+  private final Integer[] kost2Ids;
+
+  private final long[] cents;
+
+  private final int[] counts;
+
+  private LedgerCube(final List<Cell> cells)
+  {
+    final int size = cells.size();
+    periods = new int[size];
+    accounts = new int[size];
+    kost1Ids = new Integer[size];
+    kost2Ids = new Integer[size];
+    cents = new long[size];
+    counts = new int[size];
+    for (int i = 0; i < size; i++) {
+      final Cell cell = cells.get(i);
+      periods[i] = cell.period;
+      accounts[i] = cell.account;
+      kost1Ids[i] = cell.kost1Id;
+      kost2Ids[i] = cell.kost2Id;
+      cents[i] = cell.cents;
+      counts[i] = cell.count;
+    }
+  }
+
+  /**
+   * @param year
+   * @param month 1-January, ..., 12-December.
+   * @return The period used as first dimension of this cube (number of months since year 0).
+   */
+  public static int getPeriod(final int year, final int month)
+  {
+    return year * 12 + month - 1;
+  }
+
+  /**
+   * @return The number of cells.
+   */
+  public int size()
+  {
+    return periods.length;
+  }
+
+  /**
+   * Sums the amounts per row of the given business assessment config.
+   *
+   * @param rowIndex  The row index of the business assessment config.
+   * @param rowCount  The number of rows of the business assessment config.
+   * @param fromYear
+   * @param fromMonth 1-January, ..., 12-December or null for the whole year.
+   * @param toYear
+   * @param toMonth   1-January, ..., 12-December or null for the whole year.
+   * @param filter    Optional filter of the cells (kost1 and kost2).
+   * @return The sum in cents per row. Rows without any matching cell are null (not 0).
+   */
+  public Long[] sumByRow(final BusinessAssessmentRowIndex rowIndex, final int rowCount, final int fromYear,
+      final Integer fromMonth, final int toYear, final Integer toMonth, final CellFilter filter)
+  {
+    final long[] result = new long[rowCount];
+    final boolean[] found = new boolean[rowCount];
+    final int toPeriod = getPeriod(toYear, toMonth != null ? toMonth : 12);
+    for (int i = firstIndex(getPeriod(fromYear, fromMonth != null ? fromMonth : 1)); i < periods.length
+        && periods[i] <= toPeriod; i++) {
+      if (filter != null && !filter.matches(kost1Ids[i], kost2Ids[i])) {
+        continue;
+      }
+      final int row = rowIndex.getRowIndex(accounts[i]);
+      if (row >= 0) {
+        result[row] += cents[i];
+        found[row] = true;
+      }
+    }
+    final Long[] sums = new Long[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      if (found[row]) {
+        sums[row] = result[row];
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * @return The sum of the given account in cents.
+   */
+  public long getCents(final int account, final int fromYear, final Integer fromMonth, final int toYear,
+      final Integer toMonth, final CellFilter filter)
+  {
+    long result = 0;
+    final int toPeriod = getPeriod(toYear, toMonth != null ? toMonth : 12);
+    for (int i = firstIndex(getPeriod(fromYear, fromMonth != null ? fromMonth : 1)); i < periods.length
+        && periods[i] <= toPeriod; i++) {
+      if (accounts[i] == account && (filter == null || filter.matches(kost1Ids[i], kost2Ids[i]))) {
+        result += cents[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true, if any cell of the given time period matches the given filter.
+   */
+  public boolean contains(final int fromYear, final Integer fromMonth, final int toYear, final Integer toMonth,
+      final CellFilter filter)
+  {
+    final int toPeriod = getPeriod(toYear, toMonth != null ? toMonth : 12);
+    for (int i = firstIndex(getPeriod(fromYear, fromMonth != null ? fromMonth : 1)); i < periods.length
+        && periods[i] <= toPeriod; i++) {
+      if (filter == null || filter.matches(kost1Ids[i], kost2Ids[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The number of accounting records of the given period.
+   */
+  public int getCount(final int year, final int month)
+  {
+    final int period = getPeriod(year, month);
+    int result = 0;
+    for (int i = firstIndex(period); i < periods.length && periods[i] == period; i++) {
+      result += counts[i];
+    }
+    return result;
+  }
+
+  /**
+   * Creates a new cube, the cells of the given periods are replaced by the given cells.
+   *
+   * @param replacedPeriods The periods to replace (see {@link #getPeriod(int, int)}).
+   * @param cells           The new cells of the replaced periods.
+   * @return The new cube, this cube isn't modified.
+   */
+  public LedgerCube replacePeriods(final Collection<Integer> replacedPeriods, final LedgerCube cells)
+  {
+    final Builder builder = new Builder();
+    for (int i = 0; i < periods.length; i++) {
+      if (!replacedPeriods.contains(periods[i])) {
+        builder.cells.add(getCell(i));
+      }
+    }
+    for (int i = 0; i < cells.periods.length; i++) {
+      if (replacedPeriods.contains(cells.periods[i])) {
+        builder.cells.add(cells.getCell(i));
+      }
+    }
+    return builder.build();
+  }
+
+  private Cell getCell(final int index)
+  {
+    return new Cell(periods[index], accounts[index], kost1Ids[index], kost2Ids[index], cents[index], counts[index]);
+  }
+
+  /**
+   * @return The index of the first cell with a period equal or after the given period.
+   */
+  private int firstIndex(final int period)
+  {
+    int low = 0;
+    int high = periods.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (periods[mid] < period) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return The amount in cents (the amounts of the accounting records have a scale of 2).
+   */
+  public static long toCents(final BigDecimal amount)
+  {
+    if (amount == null) {
+      return 0;
+    }
+    return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+  }
+
+  private static class Cell implements Serializable
+  {
+    private static final long serialVersionUID = 1834425736046536402L;
+
+    private final int period, account;
+
+    private final Integer kost1Id, kost2Id;
+
+    private long cents;
+
+    private int count;
+
+    private Cell(final int period, final int account, final Integer kost1Id, final Integer kost2Id,
+        final long cents, final int count)
+    {
+      this.period = period;
+      this.account = account;
+      this.kost1Id = kost1Id;
+      this.kost2Id = kost2Id;
+      this.cents = cents;
+      this.count = count;
+    }
+  }
+
+  /**
+   * Collects the cells, multiple cells with the same coordinates are summed up.
+   */
+  public static class Builder
+  {
+    private final List<Cell> cells = new ArrayList<>();
+
+    /**
+     * @param month 1-January, ..., 12-December.
+     */
+    public Builder add(final int year, final int month, final int account, final Integer kost1Id,
+        final Integer kost2Id, final long cents, final int count)
+    {
+      cells.add(new Cell(getPeriod(year, month), account, kost1Id, kost2Id, cents, count));
+      return this;
+    }
+
+    public Builder add(final BuchungssatzDO record)
+    {
+      if (record.getYear() == null || record.getMonth() == null || record.getKonto() == null
+          || record.getKonto().getNummer() == null) {
+        return this;
+      }
+      return add(record.getYear(), record.getMonth(), record.getKonto().getNummer(), record.getKost1Id(),
+          record.getKost2Id(), toCents(record.getBetrag()), 1);
+    }
+
+    public LedgerCube build()
+    {
+      final Cell[] array = cells.toArray(new Cell[0]);
+      Arrays.sort(array, CELL_ORDER);
+      final List<Cell> merged = new ArrayList<>(array.length);
+      Cell last = null;
+      for (final Cell cell : array) {
+        if (last != null && CELL_ORDER.compare(last, cell) == 0) {
+          last.cents += cell.cents;
+          last.count += cell.count;
+          continue;
+        }
+        // Copy, because cells of other cubes are reused while replacing periods:
+        last = new Cell(cell.period, cell.account, cell.kost1Id, cell.kost2Id, cell.cents, cell.count);
+        merged.add(last);
+      }
+      return new LedgerCube(merged);
+    }
+  }
+}
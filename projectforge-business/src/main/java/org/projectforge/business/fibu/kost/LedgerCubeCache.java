@@ -0,0 +1,147 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.fibu.kost;
+
+import org.projectforge.framework.cache.AbstractSnapshotCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link LedgerCube} of all accounting records. The cube is built by aggregating the accounting records by
+ * the data base. Modified accounting records (e. g. by DATEV imports) mark their months as dirty and only the dirty
+ * months are aggregated again on the next access.
+ */
+@Component
+public class LedgerCubeCache extends AbstractSnapshotCache<LedgerCube>
+{
+  private static final Logger log = LoggerFactory.getLogger(LedgerCubeCache.class);
+
+  private static final String SELECT_CELLS = "select b.year, b.month, b.konto.nummer, b.kost1.id, b.kost2.id, sum(b.betrag), count(b)"
+      + " from BuchungssatzDO b where b.deleted=false";
+
+  private static final String GROUP_BY = " group by b.year, b.month, b.konto.nummer, b.kost1.id, b.kost2.id";
+
+  @Autowired
+  private EntityManager em;
+
+  private final Set<Integer> dirtyPeriods = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @return The current cube, the dirty months are aggregated again first.
+   */
+  public LedgerCube getCube()
+  {
+    final LedgerCube cube = getSnapshot();
+    if (dirtyPeriods.isEmpty()) {
+      return cube;
+    }
+    return refreshDirtyPeriods();
+  }
+
+  /**
+   * Marks the month of the given record as dirty.
+   */
+  public void setDirty(final BuchungssatzDO record)
+  {
+    if (record.getYear() != null && record.getMonth() != null) {
+      dirtyPeriods.add(LedgerCube.getPeriod(record.getYear(), record.getMonth()));
+    }
+  }
+
+  /**
+   * Aggregates the dirty months again and publishes the new cube. Should be called after committing the modified
+   * accounting records (e. g. after DATEV imports).
+   */
+  public synchronized LedgerCube refreshDirtyPeriods()
+  {
+    final LedgerCube cube = getSnapshot();
+    if (dirtyPeriods.isEmpty()) {
+      return cube;
+    }
+    final Set<Integer> periods = new HashSet<>(dirtyPeriods);
+    // Removed before aggregating, so months marked as dirty meanwhile are aggregated again by the next refresh:
+    dirtyPeriods.removeAll(periods);
+    final long begin = System.currentTimeMillis();
+    final LedgerCube newCube;
+    boolean success = false;
+    try {
+      final LedgerCube.Builder builder = new LedgerCube.Builder();
+      for (final Integer period : periods) {
+        query(builder, " and b.year=:year and b.month=:month", period / 12, period % 12 + 1);
+      }
+      newCube = cube.replacePeriods(periods, builder.build());
+      updateSnapshot(newCube);
+      success = true;
+    } finally {
+      if (!success) {
+        // Aggregation failed, the months are still dirty:
+        dirtyPeriods.addAll(periods);
+      }
+    }
+    if (isRefreshInProgress()) {
+      // A full build started before may not contain the modifications:
+      setExpired();
+    }
+    log.info("LedgerCube: " + periods.size() + " months aggregated in " + (System.currentTimeMillis() - begin)
+        + "ms (" + newCube.size() + " cells).");
+    return newCube;
+  }
+
+  @Override
+  protected LedgerCube buildSnapshot()
+  {
+    log.info("Initializing LedgerCubeCache ...");
+    final LedgerCube.Builder builder = new LedgerCube.Builder();
+    query(builder, "", null, null);
+    final LedgerCube cube = builder.build();
+    log.info("Initializing of LedgerCubeCache done (" + cube.size() + " cells).");
+    return cube;
+  }
+
+  private void query(final LedgerCube.Builder builder, final String where, final Integer year, final Integer month)
+  {
+    final javax.persistence.Query query = em.createQuery(SELECT_CELLS + where + GROUP_BY);
+    if (year != null) {
+      query.setParameter("year", year).setParameter("month", month);
+    }
+    @SuppressWarnings("unchecked") final List<Object[]> list = query.getResultList();
+    for (final Object[] row : list) {
+      if (row[0] == null || row[1] == null || row[2] == null) {
+        continue;
+      }
+      builder.add((Integer) row[0], (Integer) row[1], (Integer) row[2], (Integer) row[3], (Integer) row[4],
+          LedgerCube.toCents((BigDecimal) row[5]), ((Number) row[6]).intValue());
+    }
+  }
+}
@@ -26,10 +26,7 @@ package org.projectforge.business.fibu.kost.reporting;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
 import org.projectforge.business.fibu.KostFormatter;
-import org.projectforge.business.fibu.kost.AccountingConfig;
-import org.projectforge.business.fibu.kost.BuchungssatzDO;
-import org.projectforge.business.fibu.kost.BusinessAssessment;
-import org.projectforge.business.fibu.kost.BusinessAssessmentTable;
+import org.projectforge.business.fibu.kost.*;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.time.PFDayUtils;
 
@@ -74,6 +71,18 @@ public class Report implements Serializable
 
   private transient Report parent;
 
+  /**
+   * If given (and no account records are selected), the business assessments are calculated from this cube.
+   */
+  private transient LedgerCube ledgerCube;
+
+  private transient KostCache kostCache;
+
+  /**
+   * Filter of kost1 and kost2 of this report including the filters of the parent reports (ledger cube mode).
+   */
+  private transient LedgerCube.CellFilter cellFilter;
+
   public Report(final ReportObjective reportObjective)
   {
     this.reportObjective = reportObjective;
@@ -166,9 +175,16 @@ public class Report implements Serializable
     return reportObjective;
   }
 
+  /**
+   * @return The business assessment of the selected account records or, if no account records are selected, of the
+   * ledger cube (see {@link #setLedgerCube(LedgerCube, KostCache)}). The account records are stored in the rows
+   * only for the first variant.
+   */
   public BusinessAssessment getBusinessAssessment()
   {
-    if (this.businessAssessment == null) {
+    if (this.businessAssessment == null && this.buchungssaetze == null && this.ledgerCube != null) {
+      this.businessAssessment = createBusinessAssessment(this.ledgerCube, this.kostCache);
+    } else if (this.businessAssessment == null) {
       this.businessAssessment = new BusinessAssessment(AccountingConfig.getInstance().getBusinessAssessmentConfig());
       this.businessAssessment.setReference(this);
       this.businessAssessment.setStoreAccountRecordsInRows(true);
@@ -206,7 +222,16 @@ public class Report implements Serializable
    */
   public boolean isLoad()
   {
-    return this.buchungssaetze != null;
+    return this.buchungssaetze != null || this.ledgerCube != null;
+  }
+
+  /**
+   * @return true, if the business assessments are calculated by the ledger cube and the account records aren't
+   * selected yet (see {@link #selectAccountRecordsOfPeriod(List)}).
+   */
+  public boolean isLedgerCubeMode()
+  {
+    return this.buchungssaetze == null && this.ledgerCube != null;
   }
 
   /**
@@ -291,12 +316,19 @@ public class Report implements Serializable
   {
     if (childReports == null && hasChildren()) {
       childReports = new ArrayList<>();
+      final boolean ledgerCubeMode = isLedgerCubeMode();
       for (final ReportObjective child : reportObjective.getChildReportObjectives()) {
         final Report report = new Report(child, this);
-        report.select(this.buchungssaetze);
+        if (ledgerCubeMode) {
+          report.setLedgerCube(this.ledgerCube, this.kostCache);
+        } else {
+          report.select(this.buchungssaetze);
+        }
         childReports.add(report);
       }
-      if (this.buchungssaetze != null && (!reportObjective.isSuppressOther() || !reportObjective.isSuppressDuplicates())) {
+      if (ledgerCubeMode) {
+        addLedgerCubeOtherAndDuplicates();
+      } else if (this.buchungssaetze != null && (!reportObjective.isSuppressOther() || !reportObjective.isSuppressDuplicates())) {
         for (final BuchungssatzDO satz : this.buchungssaetze) {
           int n = 0;
           for (final Report child : getChildren()) {
@@ -320,20 +352,12 @@ public class Report implements Serializable
         }
       }
       if (!reportObjective.isSuppressOther() && this.other != null) {
-        final ReportObjective objective = new ReportObjective();
-        final String other = ThreadLocalUserContext.getLocalizedString("fibu.reporting.other");
-        objective.setId(this.getId() + " - " + other);
-        objective.setTitle(this.getTitle() + " - " + other);
-        final Report report = new Report(objective, this);
+        final Report report = createSubReport("fibu.reporting.other");
         report.setBuchungssaetze(this.other);
         childReports.add(report);
       }
       if (!reportObjective.isSuppressDuplicates() && this.duplicates != null) {
-        final ReportObjective objective = new ReportObjective();
-        final String duplicates = ThreadLocalUserContext.getLocalizedString("fibu.reporting.duplicates");
-        objective.setId(this.getId() + " - " + duplicates);
-        objective.setTitle(this.getTitle() + " - " + duplicates);
-        final Report report = new Report(objective, this);
+        final Report report = createSubReport("fibu.reporting.duplicates");
         report.setBuchungssaetze(this.duplicates);
         childReports.add(report);
       }
@@ -341,6 +365,52 @@ public class Report implements Serializable
     return childReports;
   }
 
+  /**
+   * Adds the reports of the kost1/kost2 combinations of the ledger cube matching none or several child reports.
+   */
+  private void addLedgerCubeOtherAndDuplicates()
+  {
+    final List<Report> children = new ArrayList<>(childReports);
+    final LedgerCube.CellFilter otherFilter = (kost1Id, kost2Id) -> matches(kost1Id, kost2Id)
+        && countMatches(children, kost1Id, kost2Id) == 0;
+    final LedgerCube.CellFilter duplicatesFilter = (kost1Id, kost2Id) -> matches(kost1Id, kost2Id)
+        && countMatches(children, kost1Id, kost2Id) > 1;
+    if (!reportObjective.isSuppressOther() && ledgerCube.contains(getFromYearValue(), getFromMonthValue(),
+        getToYearValue(), getToMonthValue(), otherFilter)) {
+      final Report report = createSubReport("fibu.reporting.other");
+      report.setLedgerCube(this.ledgerCube, this.kostCache);
+      report.cellFilter = cached(otherFilter);
+      childReports.add(report);
+    }
+    if (!reportObjective.isSuppressDuplicates() && ledgerCube.contains(getFromYearValue(), getFromMonthValue(),
+        getToYearValue(), getToMonthValue(), duplicatesFilter)) {
+      final Report report = createSubReport("fibu.reporting.duplicates");
+      report.setLedgerCube(this.ledgerCube, this.kostCache);
+      report.cellFilter = cached(duplicatesFilter);
+      childReports.add(report);
+    }
+  }
+
+  private static int countMatches(final List<Report> reports, final Integer kost1Id, final Integer kost2Id)
+  {
+    int n = 0;
+    for (final Report report : reports) {
+      if (report.matches(kost1Id, kost2Id)) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  private Report createSubReport(final String i18nKey)
+  {
+    final ReportObjective objective = new ReportObjective();
+    final String title = ThreadLocalUserContext.getLocalizedString(i18nKey);
+    objective.setId(this.getId() + " - " + title);
+    objective.setTitle(this.getTitle() + " - " + title);
+    return new Report(objective, this);
+  }
+
   public List<BuchungssatzDO> getBuchungssaetze()
   {
     return buchungssaetze;
@@ -355,6 +425,51 @@ public class Report implements Serializable
     this.buchungssaetze = buchungssaetze;
   }
 
+  /**
+   * The business assessments of this report and its children are calculated from the given cube without loading and
+   * selecting the account records. The account records are needed only for drill-downs, see
+   * {@link #selectAccountRecordsOfPeriod(List)}.
+   * @param ledgerCube The ledger cube, see {@link LedgerCubeCache#getCube()}.
+   * @param kostCache Needed for formatting the kost1 and kost2 of the cells for the regular expressions.
+   */
+  public void setLedgerCube(final LedgerCube ledgerCube, final KostCache kostCache)
+  {
+    this.ledgerCube = ledgerCube;
+    this.kostCache = kostCache;
+    this.cellFilter = null;
+    this.buchungssaetze = null;
+    this.buchungssatzSet = null;
+    this.businessAssessment = null;
+    this.businessAssessmentTable = null;
+    this.childReports = null;
+    this.duplicates = null;
+    this.other = null;
+  }
+
+  /**
+   * Selects the account records of this report from all account records of the report's period (for drill-downs of
+   * reports in ledger cube mode). The filters of the parent reports are applied as well.
+   * @param list All account records of the period.
+   */
+  public void selectAccountRecordsOfPeriod(final List<BuchungssatzDO> list)
+  {
+    final List<BuchungssatzDO> result = new ArrayList<>();
+    if (list != null) {
+      for (final BuchungssatzDO satz : list) {
+        if (matches(satz.getKost1Id(), satz.getKost2Id())) {
+          result.add(satz);
+        }
+      }
+    }
+    this.buchungssaetze = result;
+    this.buchungssatzSet = new HashSet<>(result);
+    this.businessAssessment = null;
+    this.businessAssessmentTable = null;
+    this.childReports = null;
+    this.duplicates = null;
+    this.other = null;
+  }
+
   /**
    * Gibt die Liste aller sonstigen Buchungssätze zurück, d. h. Buchungssätze, die zwar in diesem Report vorkommen aber in keinem der
    * Childreports vorkommen.
@@ -385,26 +500,10 @@ public class Report implements Serializable
    */
   public void select(final List<BuchungssatzDO> list)
   {
-    final Predicate regExpPredicate = new Predicate() {
-      @Override
-      public boolean evaluate(final Object obj)
-      {
-        final BuchungssatzDO satz = (BuchungssatzDO) obj;
-        final String kost1 = KostFormatter.format(satz.getKost1());
-        final String kost2 = KostFormatter.format(satz.getKost2());
-
-        // 1st of all the Blacklists
-        if (match(reportObjective.getKost1ExcludeRegExpList(), kost1, false)) {
-          return false;
-        }
-        if (match(reportObjective.getKost2ExcludeRegExpList(), kost2, false)) {
-          return false;
-        }
-        // 2nd the whitelists
-        final boolean kost1Match = match(reportObjective.getKost1IncludeRegExpList(), kost1, true);
-        final boolean kost2Match = match(reportObjective.getKost2IncludeRegExpList(), kost2, true);
-        return kost1Match && kost2Match;
-      }
+    final KostMatcher matcher = new KostMatcher(reportObjective);
+    final Predicate regExpPredicate = obj -> {
+      final BuchungssatzDO satz = (BuchungssatzDO) obj;
+      return matcher.matches(satz.getKost1(), satz.getKost2());
     };
     this.buchungssaetze = new ArrayList<>();
     this.buchungssatzSet = new HashSet<>();
@@ -419,6 +518,75 @@ public class Report implements Serializable
     }
   }
 
+  /**
+   * Calculates the business assessment of this report (period and kost1/kost2 filters of this report and its parents)
+   * from the given ledger cube without loading and selecting the accounting records. The account records aren't stored
+   * in the rows.
+   * @param cube The ledger cube, see {@link LedgerCubeCache#getCube()}.
+   * @param kostCache Needed for formatting the kost1 and kost2 of the cells for the regular expressions.
+   */
+  public BusinessAssessment createBusinessAssessment(final LedgerCube cube, final KostCache kostCache)
+  {
+    if (this.kostCache == null) {
+      this.kostCache = kostCache;
+    }
+    final BusinessAssessment bwa = new BusinessAssessment(AccountingConfig.getInstance().getBusinessAssessmentConfig());
+    bwa.setReference(this);
+    bwa.setAmounts(cube, getFromYearValue(), getFromMonthValue(), getToYearValue(), getToMonthValue(), this::matches);
+    return bwa;
+  }
+
+  /**
+   * @return true, if the given kost1/kost2 combination matches the filters of this report and of all parent reports.
+   */
+  private boolean matches(final Integer kost1Id, final Integer kost2Id)
+  {
+    if (cellFilter == null) {
+      final KostMatcher matcher = new KostMatcher(reportObjective);
+      final Report parentReport = this.parent;
+      cellFilter = cached((id1, id2) -> (parentReport == null || parentReport.matches(id1, id2))
+          && matcher.matches(getKostCache().getKost1(id1), getKostCache().getKost2(id2)));
+    }
+    return cellFilter.matches(kost1Id, kost2Id);
+  }
+
+  private KostCache getKostCache()
+  {
+    if (kostCache == null && parent != null) {
+      kostCache = parent.getKostCache();
+    }
+    return kostCache;
+  }
+
+  /**
+   * Caches the results of the given filter per kost1/kost2 combination (many cells share the same combination).
+   */
+  private static LedgerCube.CellFilter cached(final LedgerCube.CellFilter filter)
+  {
+    final Map<String, Boolean> cache = new HashMap<>();
+    return (kost1Id, kost2Id) -> cache.computeIfAbsent(kost1Id + "|" + kost2Id, key -> filter.matches(kost1Id, kost2Id));
+  }
+
+  private int getFromYearValue()
+  {
+    return fromYear != null ? fromYear : 0;
+  }
+
+  private Integer getFromMonthValue()
+  {
+    return fromYear != null ? fromMonth : null;
+  }
+
+  private int getToYearValue()
+  {
+    return toYear != null ? toYear : 9999;
+  }
+
+  private Integer getToMonthValue()
+  {
+    return toYear != null ? toMonth : null;
+  }
+
   public boolean contains(final BuchungssatzDO satz)
   {
     if (buchungssatzSet == null) {
@@ -427,6 +595,65 @@ public class Report implements Serializable
     return this.buchungssatzSet.contains(satz);
   }
 
+  /**
+   * Matches kost1 and kost2 against the regular expressions of a report objective. The regular expressions are compiled
+   * only once and the result is cached per combination of kost1 and kost2 (many accounting records share the same
+   * combination).
+   */
+  private static class KostMatcher
+  {
+    private final List<Pattern> kost1Exclude, kost2Exclude, kost1Include, kost2Include;
+
+    private final Map<String, Boolean> cache = new HashMap<>();
+
+    private KostMatcher(final ReportObjective reportObjective)
+    {
+      kost1Exclude = compile(reportObjective.getKost1ExcludeRegExpList());
+      kost2Exclude = compile(reportObjective.getKost2ExcludeRegExpList());
+      kost1Include = compile(reportObjective.getKost1IncludeRegExpList());
+      kost2Include = compile(reportObjective.getKost2IncludeRegExpList());
+    }
+
+    private boolean matches(final Kost1DO kost1DO, final Kost2DO kost2DO)
+    {
+      final String kost1 = KostFormatter.format(kost1DO);
+      final String kost2 = KostFormatter.format(kost2DO);
+      return cache.computeIfAbsent(kost1 + "|" + kost2, key -> {
+        // 1st of all the Blacklists
+        if (match(kost1Exclude, kost1, false) || match(kost2Exclude, kost2, false)) {
+          return false;
+        }
+        // 2nd the whitelists
+        return match(kost1Include, kost1, true) && match(kost2Include, kost2, true);
+      });
+    }
+
+    private static List<Pattern> compile(final List<String> regExpList)
+    {
+      if (CollectionUtils.isEmpty(regExpList)) {
+        return null;
+      }
+      final List<Pattern> patterns = new ArrayList<>(regExpList.size());
+      for (final String str : regExpList) {
+        patterns.add(Pattern.compile(modifyRegExp(str)));
+      }
+      return patterns;
+    }
+
+    private static boolean match(final List<Pattern> patterns, final String kost, final boolean emptyListMatches)
+    {
+      if (patterns == null) {
+        return emptyListMatches;
+      }
+      for (final Pattern pattern : patterns) {
+        if (pattern.matcher(kost).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
   /**
    * In jedem regulärem Ausdruck werden alle Punkte gequoted und alle * durch ".*" ersetzt, bevor der Ausdruck durch
    * {@link Pattern#compile(String)} kompiliert wird.<br/>
@@ -27,6 +27,8 @@ import com.thoughtworks.xstream.XStream;
 import org.projectforge.business.fibu.kost.BuchungssatzDO;
 import org.projectforge.business.fibu.kost.BuchungssatzDao;
 import org.projectforge.business.fibu.kost.BuchungssatzFilter;
+import org.projectforge.business.fibu.kost.KostCache;
+import org.projectforge.business.fibu.kost.LedgerCubeCache;
 import org.projectforge.business.user.ProjectForgeGroup;
 import org.projectforge.framework.access.AccessChecker;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,6 +52,12 @@ public class ReportDao {
   @Autowired
   private BuchungssatzDao buchungssatzDao;
 
+  @Autowired
+  private KostCache kostCache;
+
+  @Autowired
+  private LedgerCubeCache ledgerCubeCache;
+
   public ReportDao() {
     xstream = new XStream();
     xstream.processAnnotations(ReportObjective.class);
@@ -90,22 +98,43 @@ public class ReportDao {
   }
 
   /**
-   * Zeitraum muss gegeben sein. Liest die Buchungssätze anhand des Zeitraums aus der Datenbank und selektiert anhand
-   * des ReportObjectives die zu verwendenden Buchungssätze.
+   * Zeitraum muss gegeben sein. Die betriebswirtschaftlichen Auswertungen des Reports werden aus dem Ledger-Cube
+   * berechnet, die Buchungssätze werden erst bei Bedarf (Drill-down) geladen.
    *
    * @param report
-   * @see Report#select(List)
+   * @see Report#setLedgerCube(org.projectforge.business.fibu.kost.LedgerCube, KostCache)
+   * @see #loadAccountRecords(Report)
    */
   public void loadReport(Report report) {
     accessChecker.checkIsLoggedInUserMemberOfGroup(ProjectForgeGroup.FINANCE_GROUP,
             ProjectForgeGroup.CONTROLLING_GROUP);
+    report.setLedgerCube(ledgerCubeCache.getCube(), kostCache);
+  }
+
+  /**
+   * Liest die Buchungssätze des Zeitraums aus der Datenbank und selektiert die Buchungssätze des Reports (inkl. der
+   * Filter der Eltern-Reports), sofern noch nicht geschehen. Wird für Drill-downs benötigt.
+   *
+   * @param report
+   * @see Report#selectAccountRecordsOfPeriod(List)
+   */
+  public void loadAccountRecords(Report report) {
+    accessChecker.checkIsLoggedInUserMemberOfGroup(ProjectForgeGroup.FINANCE_GROUP,
+            ProjectForgeGroup.CONTROLLING_GROUP);
+    if (!report.isLedgerCubeMode()) {
+      // Account records already selected (or report not loaded).
+      return;
+    }
+    report.selectAccountRecordsOfPeriod(getAccountRecordsOfPeriod(report));
+  }
+
+  private List<BuchungssatzDO> getAccountRecordsOfPeriod(Report report) {
     final BuchungssatzFilter filter = new BuchungssatzFilter();
     filter.setFromYear(report.getFromYear());
     filter.setFromMonth(report.getFromMonth());
     filter.setToYear(report.getToYear());
     filter.setToMonth(report.getToMonth());
-    final List<BuchungssatzDO> list = buchungssatzDao.getList(filter);
-    report.select(list);
+    return buchungssatzDao.getList(filter);
   }
 
   public ReportObjective deserializeFromXML(String xml) {
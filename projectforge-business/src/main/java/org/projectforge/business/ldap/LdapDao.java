@@ -30,11 +30,17 @@ import javax.naming.NameNotFoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -43,6 +49,11 @@ public abstract class LdapDao<I extends Serializable, T extends LdapObject<I>>
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LdapDao.class);
 
+  /**
+   * Number of entries requested per page by {@link #forEach(DirContext, String, Consumer)}.
+   */
+  static final int PAGE_SIZE = 500;
+
   protected LdapConnector ldapConnector;
 
   protected LdapConfig ldapConfig;
@@ -431,18 +442,72 @@ public abstract class LdapDao<I extends Serializable, T extends LdapObject<I>>
   public List<T> findAll(final DirContext ctx, final String organizationalUnit) throws NamingException
   {
     final LinkedList<T> list = new LinkedList<>();
-    NamingEnumeration<?> results = null;
+    forEach(ctx, organizationalUnit, list::add);
+    return list;
+  }
+
+  /**
+   * Streams all objects of the given organizational unit to the given consumer. If the context supports LDAP controls,
+   * the entries are requested page-wise (paged results control, RFC 2696), so the server never has to deliver (and
+   * the client never has to buffer) the whole result at once. Servers not supporting paged results deliver all
+   * entries in one page (the control isn't critical).
+   *
+   * @param ctx
+   * @param organizationalUnit
+   * @param consumer
+   * @return the number of consumed objects.
+   * @throws NamingException
+   */
+  public int forEach(final DirContext ctx, final String organizationalUnit, final Consumer<T> consumer)
+      throws NamingException
+  {
     final SearchControls controls = new SearchControls();
     controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
     final String searchBase = getSearchBase(organizationalUnit);
-    results = ctx.search(searchBase, "(objectclass=" + getObjectClass() + ")", controls);
-    while (results.hasMore()) {
-      final SearchResult searchResult = (SearchResult) results.next();
-      final String dn = searchResult.getName();
-      final Attributes attributes = searchResult.getAttributes();
-      list.add(mapToObject(dn, searchBase, attributes));
+    final String filter = "(objectclass=" + getObjectClass() + ")";
+    final LdapContext ldapContext = ctx instanceof LdapContext ? (LdapContext) ctx : null;
+    int counter = 0;
+    byte[] cookie = null;
+    try {
+      do {
+        if (ldapContext != null) {
+          ldapContext.setRequestControls(
+              new Control[] { new PagedResultsControl(PAGE_SIZE, cookie, Control.NONCRITICAL) });
+        }
+        final NamingEnumeration<SearchResult> results = ctx.search(searchBase, filter, controls);
+        try {
+          while (results.hasMore()) {
+            final SearchResult searchResult = results.next();
+            consumer.accept(mapToObject(searchResult.getName(), searchBase, searchResult.getAttributes()));
+            ++counter;
+          }
+        } finally {
+          results.close();
+        }
+        cookie = ldapContext != null ? getPagedResultsCookie(ldapContext) : null;
+      } while (cookie != null && cookie.length > 0);
+    } catch (final IOException ex) {
+      throw new RuntimeException("Can't encode paged results control: " + ex.getMessage(), ex);
+    } finally {
+      if (ldapContext != null) {
+        // The context is reused by the caller, e. g. for modifications:
+        ldapContext.setRequestControls(null);
+      }
     }
-    return list;
+    return counter;
+  }
+
+  private byte[] getPagedResultsCookie(final LdapContext ctx) throws NamingException
+  {
+    final Control[] responseControls = ctx.getResponseControls();
+    if (responseControls != null) {
+      for (final Control control : responseControls) {
+        if (control instanceof PagedResultsResponseControl) {
+          return ((PagedResultsResponseControl) control).getCookie();
+        }
+      }
+    }
+    return null;
   }
 
   @SuppressWarnings("unchecked")
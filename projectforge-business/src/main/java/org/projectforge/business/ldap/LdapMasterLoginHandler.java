@@ -32,7 +32,11 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * TODO: nested groups.<br/>
@@ -60,7 +64,41 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LdapMasterLoginHandler.class);
 
-  private boolean refreshInProgress;
+  /**
+   * Maximum number of parallel LDAP connections used for writing the changes.
+   */
+  static final int MAX_PARALLEL_CONNECTIONS = 4;
+
+  /**
+   * All users and groups are compared with their LDAP entries at least once within this period, even if unchanged
+   * since the last synchronization.
+   */
+  static final long FULL_SYNC_INTERVAL = 24L * 60 * 60 * 1000; // 1 day
+
+  private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "LdapMasterSync");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final ExecutorService writeExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_CONNECTIONS, runnable -> {
+    final Thread thread = new Thread(runnable, "LdapMasterSyncWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicReference<SyncRequest> pendingSync = new AtomicReference<>();
+
+  private volatile boolean refreshInProgress;
+
+  /**
+   * Only accessed by the sync thread.
+   */
+  private LdapSyncFingerprints lastFingerprints;
+
+  private long lastFullSync;
+
+  private volatile LdapSyncStatistics lastSyncStatistics;
 
   @Autowired
   private GroupDOConverter groupDOConverter;
@@ -133,28 +171,30 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
   }
 
   /**
-   * Refreshes the LDAP.
+   * Refreshes the LDAP. The refresh runs asynchronously. Refreshes requested while a refresh is running are coalesced:
+   * only the newest users and groups are synchronized afterwards.
    *
    * @see org.projectforge.business.login.LoginHandler#afterUserGroupCacheRefresh(java.util.List, java.util.List)
    */
   @Override
   public void afterUserGroupCacheRefresh(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
   {
-    new Thread()
-    {
-      @Override
-      public void run()
-      {
-        synchronized (LdapMasterLoginHandler.this) {
-          try {
-            refreshInProgress = true;
-            updateLdap(users, groups);
-          } finally {
-            refreshInProgress = false;
-          }
-        }
+    pendingSync.set(new SyncRequest(users, groups));
+    syncExecutor.execute(() -> {
+      final SyncRequest request = pendingSync.getAndSet(null);
+      if (request == null) {
+        // Already synchronized by a previous run.
+        return;
+      }
+      try {
+        refreshInProgress = true;
+        updateLdap(request.users, request.groups);
+      } catch (final Exception ex) {
+        log.error("Error while updating LDAP: " + ex.getMessage(), ex);
+      } finally {
+        refreshInProgress = false;
       }
-    }.start();
+    });
   }
 
   /**
@@ -165,157 +205,319 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     return refreshInProgress;
   }
 
-  private void updateLdap(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+  /**
+   * @return The statistics of the last synchronization or null, if no synchronization was done yet.
+   */
+  public LdapSyncStatistics getLastSyncStatistics()
+  {
+    return lastSyncStatistics;
+  }
+
+  /**
+   * Synchronizes the given users and groups with the LDAP server:
+   * <ol>
+   * <li>All LDAP users and groups are read page-wise and indexed (users by uid and employee number, groups by business
+   * category).</li>
+   * <li>The change set is computed. Users and groups unchanged since the last synchronization (see
+   * {@link LdapSyncFingerprints}) aren't compared with their LDAP entries, unless a full sync is due (first
+   * synchronization, synchronization after errors or the last full sync is older than {@link #FULL_SYNC_INTERVAL}).
+   * If nothing changed at all, the LDAP server isn't contacted.</li>
+   * <li>The changes are written by up to {@link #MAX_PARALLEL_CONNECTIONS} parallel connections, users first, groups
+   * afterwards (the group members refer the dn's of the users).</li>
+   * </ol>
+   */
+  LdapSyncStatistics updateLdap(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
   {
-    new LdapTemplate(ldapConnector)
+    final LdapSyncStatistics stats = new LdapSyncStatistics();
+    final LdapSyncFingerprints fingerprints = lastFingerprints;
+    final boolean fullSync = fingerprints == null || stats.getStartTime() - lastFullSync > FULL_SYNC_INTERVAL;
+    stats.setFullSync(fullSync);
+    if (!fullSync && fingerprints.isUnchanged(users, groups)) {
+      stats.setNothingToDo(true);
+      stats.finish();
+      log.info("LDAP update: " + stats);
+      lastSyncStatistics = stats;
+      return stats;
+    }
+    log.info("Updating LDAP (" + (fullSync ? "full" : "delta") + " sync)...");
+    long begin = System.currentTimeMillis();
+    final LdapUserIndex ldapUsers = new LdapUserIndex();
+    final Map<String, LdapGroup> ldapGroups = new HashMap<>();
+    final Object read = new LdapTemplate(ldapConnector)
     {
       @Override
       protected Object call() throws Exception
       {
-        log.info("Updating LDAP...");
-        // First, get set of all ldap entries:
-        final List<LdapUser> ldapUsers = getAllLdapUsers(ctx);
-        final List<LdapUser> updatedLdapUsers = new ArrayList<>();
-        int error = 0, unmodified = 0, created = 0, updated = 0, deleted = 0, renamed = 0;
-        final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
-        for (final PFUserDO user : users) {
-          final LdapUser updatedLdapUser = pfUserDOConverter.convert(user);
-          try {
-            final LdapUser ldapUser = getLdapUser(ldapUsers, user);
-            if (ldapUser == null) {
-              updatedLdapUser.setOrganizationalUnit(userBase);
-              if (!user.isDeleted() && !user.getLocalUser() && StringUtils.isNotBlank(user.getUsername())) {
-                // Do not add deleted or local users.
-                // TODO: if (ldapConfig.isSupportPosixAccounts() == true &&) {
-                // updatedLdapUser.addObjectClass(LdapUserDao.OBJECT_CLASS_POSIX_ACCOUNT);
-                // }
-                ldapUserDao.create(ctx, userBase, updatedLdapUser);
-                created++;
+        stats.setLdapUserEntries(ldapUserDao.forEach(ctx, userBase, ldapUsers::add));
+        // The first group with the business category wins:
+        stats.setLdapGroupEntries(ldapGroupDao.forEach(ctx, groupBase,
+            ldapGroup -> ldapGroups.putIfAbsent(ldapGroup.getBusinessCategory(), ldapGroup)));
+        return Boolean.TRUE;
+      }
+    }.excecute();
+    if (read != Boolean.TRUE) {
+      log.error("Can't read users and groups from LDAP, LDAP update aborted.");
+      return null;
+    }
+    stats.setReadMillis(System.currentTimeMillis() - begin);
+
+    begin = System.currentTimeMillis();
+    final List<LdapUser> updatedLdapUsers = new ArrayList<>();
+    final Collection<List<SyncTask>> userTasks = planUsers(users, fullSync ? null : fingerprints, ldapUsers,
+        updatedLdapUsers, stats.getUsers());
+    long planMillis = System.currentTimeMillis() - begin;
+
+    begin = System.currentTimeMillis();
+    apply(userTasks, stats.getUsers());
+    long applyMillis = System.currentTimeMillis() - begin;
+    log.info("Update of LDAP users: " + stats.getUsers() + ".");
+
+    begin = System.currentTimeMillis();
+    for (final LdapUser updatedLdapUser : updatedLdapUsers) {
+      // The dn of the users is needed for the group members (the organizational unit may be changed by the update):
+      ldapUserDao.buildDn(userBase, updatedLdapUser);
+    }
+    final Collection<List<SyncTask>> groupTasks = planGroups(groups, fullSync ? null : fingerprints, ldapGroups,
+        getUserMap(updatedLdapUsers), stats.getGroups());
+    planMillis += System.currentTimeMillis() - begin;
+
+    begin = System.currentTimeMillis();
+    apply(groupTasks, stats.getGroups());
+    applyMillis += System.currentTimeMillis() - begin;
+    log.info("Update of LDAP groups: " + stats.getGroups() + ".");
+
+    stats.setPlanMillis(planMillis);
+    stats.setApplyMillis(applyMillis);
+    stats.finish();
+    if (stats.hasErrors()) {
+      // Compare all users and groups next time:
+      lastFingerprints = null;
+    } else {
+      lastFingerprints = new LdapSyncFingerprints(users, groups);
+      if (fullSync) {
+        lastFullSync = stats.getStartTime();
+      }
+    }
+    lastSyncStatistics = stats;
+    log.info("LDAP update done: " + stats);
+    return stats;
+  }
+
+  /**
+   * @param fingerprints The fingerprints of the last synchronization or null for comparing all users.
+   * @return The tasks to execute, grouped by LDAP entry (the tasks of one group are executed sequentially).
+   */
+  private Collection<List<SyncTask>> planUsers(final Collection<PFUserDO> users,
+      final LdapSyncFingerprints fingerprints, final LdapUserIndex ldapUsers, final List<LdapUser> updatedLdapUsers,
+      final LdapSyncStatistics.Counters counters)
+  {
+    final Map<Object, List<SyncTask>> tasks = new LinkedHashMap<>();
+    final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
+    for (final PFUserDO user : users) {
+      final LdapUser updatedLdapUser = pfUserDOConverter.convert(user);
+      updatedLdapUsers.add(updatedLdapUser);
+      final String description = "user '" + user.getUsername() + "'";
+      try {
+        final LdapUser ldapUser = ldapUsers.get(user.getUsername(), PFUserDOConverter.buildEmployeeNumber(user));
+        if (ldapUser == null) {
+          updatedLdapUser.setOrganizationalUnit(userBase);
+          if (!user.isDeleted() && !user.getLocalUser() && StringUtils.isNotBlank(user.getUsername())) {
+            // Do not add deleted or local users.
+            // TODO: if (ldapConfig.isSupportPosixAccounts() == true &&) {
+            // updatedLdapUser.addObjectClass(LdapUserDao.OBJECT_CLASS_POSIX_ACCOUNT);
+            // }
+            addTask(tasks, user.getUsername(), description, ctx -> {
+              ldapUserDao.create(ctx, userBase, updatedLdapUser);
+              counters.incrementCreated();
+            });
+          }
+          continue;
+        }
+        // Need to set organizational unit for detecting the change of deactivated flag. The updateLdapUser needs the organizational
+        // unit of the original ldap object:
+        updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
+        // Otherwise the NT password will be deleted in copy function below:
+        updatedLdapUser.setSambaNTPassword(ldapUser.getSambaNTPassword());
+        if (fingerprints != null && fingerprints.isUnchanged(user)) {
+          counters.incrementSkipped();
+        } else if (user.isDeleted() || user.getLocalUser()) {
+          // Deleted and local users shouldn't be synchronized with LDAP:
+          addTask(tasks, ldapUser, description, ctx -> {
+            ldapUserDao.delete(ctx, updatedLdapUser);
+            counters.incrementDeleted();
+          });
+        } else {
+          final boolean modified = pfUserDOConverter.copyUserFields(updatedLdapUser, ldapUser);
+          // uid (dn) changed:
+          final boolean renamed = !StringUtils.equals(updatedLdapUser.getUid(), ldapUser.getUid());
+          if (modified) {
+            updatedLdapUser.setObjectClasses(ldapUser.getObjectClasses());
+          } else {
+            counters.incrementUnmodified();
+          }
+          boolean passwordsGiven = false;
+          if (ldapUser.isPasswordGiven()) {
+            // If the user has a Samba SID then the Samba NT password mustn't be blank:
+            if (!sambaConfigured
+                || ldapUser.getSambaSIDNumber() == null
+                || StringUtils.isNotBlank(ldapUser.getSambaNTPassword())) {
+              passwordsGiven = true;
+            }
+          }
+          // It's ok if there is no SambaNTPassword. The user has to set it manually.
+          final boolean deactivate = passwordsGiven && updatedLdapUser.isDeactivated();
+          if (renamed || modified || deactivate) {
+            addTask(tasks, ldapUser, description, ctx -> {
+              if (renamed) {
+                ldapUserDao.rename(ctx, updatedLdapUser, ldapUser);
+                counters.incrementRenamed();
               }
-            } else {
-              // Need to set organizational unit for detecting the change of deactivated flag. The updateLdapUser needs the organizational
-              // unit of the original ldap object:
-              updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
-              // Otherwise the NT password will be deleted in copy function below:
-              updatedLdapUser.setSambaNTPassword(ldapUser.getSambaNTPassword());
-              if (user.isDeleted() || user.getLocalUser()) {
-                // Deleted and local users shouldn't be synchronized with LDAP:
-                ldapUserDao.delete(ctx, updatedLdapUser);
-                deleted++;
-              } else {
-                final boolean modified = pfUserDOConverter.copyUserFields(updatedLdapUser, ldapUser);
-                if (!StringUtils.equals(updatedLdapUser.getUid(), ldapUser.getUid())) {
-                  // uid (dn) changed.
-                  ldapUserDao.rename(ctx, updatedLdapUser, ldapUser);
-                  renamed++;
-                }
-                if (modified) {
-                  updatedLdapUser.setObjectClasses(ldapUser.getObjectClasses());
-                  ldapUserDao.update(ctx, userBase, updatedLdapUser);
-                  updated++;
-                } else {
-                  unmodified++;
-                }
-                boolean passwordsGiven = false;
-                if (ldapUser.isPasswordGiven()) {
-                  // If the user has a Samba SID then the Samba NT password mustn't be blank:
-                  if (!sambaConfigured
-                      || ldapUser.getSambaSIDNumber() == null
-                      || StringUtils.isNotBlank(ldapUser.getSambaNTPassword())) {
-                    passwordsGiven = true;
-                  }
-                }
-                // It's ok if there is no SambaNTPassword. The user has to set it manually.
-                if (passwordsGiven) {
-                  if (updatedLdapUser.isDeactivated()) {
-                    log.warn("User password for deactivated user is set: " + ldapUser);
-                    ldapUserDao.deactivateUser(ctx, updatedLdapUser);
-                  }
-                }
+              if (modified) {
+                ldapUserDao.update(ctx, userBase, updatedLdapUser);
+                counters.incrementUpdated();
               }
-            }
-            ldapUserDao.buildDn(userBase, updatedLdapUser);
-            updatedLdapUsers.add(updatedLdapUser);
-          } catch (final Exception ex) {
-            ldapUserDao.buildDn(userBase, updatedLdapUser);
-            updatedLdapUsers.add(updatedLdapUser);
-            log.error("Error while proceeding user '" + user.getUsername() + "'. Continuing with next user.", ex);
-            error++;
+              if (deactivate) {
+                log.warn("User password for deactivated user is set: " + ldapUser);
+                ldapUserDao.deactivateUser(ctx, updatedLdapUser);
+              }
+            });
           }
         }
+      } catch (final Exception ex) {
+        log.error("Error while proceeding user '" + user.getUsername() + "'. Continuing with next user.", ex);
+        counters.incrementErrors();
+      }
+    }
+    return tasks.values();
+  }
 
-        log.info("Update of LDAP users: "
-            + (error > 0 ? "*** " + error + " errors ***, " : "")
-            + unmodified
-            + " unmodified, "
-            + created
-            + " created, "
-            + updated
-            + " updated, "
-            + renamed
-            + " renamed, "
-            + deleted
-            + " deleted.");
-        // Now get all groups:
-        final List<LdapGroup> ldapGroups = getAllLdapGroups(ctx);
-        final Map<Integer, LdapUser> ldapUserMap = getUserMap(updatedLdapUsers);
-        error = unmodified = created = updated = renamed = deleted = 0;
-        for (final GroupDO group : groups) {
-          try {
-            final LdapGroup updatedLdapGroup = groupDOConverter.convert(group, baseDN, ldapUserMap);
-            final LdapGroup ldapGroup = getLdapGroup(ldapGroups, group);
-            if (ldapGroup == null) {
-              updatedLdapGroup.setOrganizationalUnit(groupBase);
-              if (!group.isDeleted() && !group.getLocalGroup()) {
-                // Do not add deleted or local groups.
-                setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
-                ldapGroupDao.create(ctx, groupBase, updatedLdapGroup);
-                created++;
+  /**
+   * @param fingerprints The fingerprints of the last synchronization or null for comparing all groups.
+   * @return The tasks to execute, grouped by LDAP entry (the tasks of one group are executed sequentially).
+   */
+  private Collection<List<SyncTask>> planGroups(final Collection<GroupDO> groups,
+      final LdapSyncFingerprints fingerprints, final Map<String, LdapGroup> ldapGroups,
+      final Map<Integer, LdapUser> ldapUserMap, final LdapSyncStatistics.Counters counters)
+  {
+    final Map<Object, List<SyncTask>> tasks = new LinkedHashMap<>();
+    for (final GroupDO group : groups) {
+      final String description = "group '" + group.getName() + "'";
+      try {
+        final LdapGroup updatedLdapGroup = groupDOConverter.convert(group, baseDN, ldapUserMap);
+        final LdapGroup ldapGroup = ldapGroups.get(groupDOConverter.buildBusinessCategory(group));
+        if (ldapGroup == null) {
+          updatedLdapGroup.setOrganizationalUnit(groupBase);
+          if (!group.isDeleted() && !group.getLocalGroup()) {
+            // Do not add deleted or local groups.
+            setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
+            addTask(tasks, group.getId(), description, ctx -> {
+              ldapGroupDao.create(ctx, groupBase, updatedLdapGroup);
+              counters.incrementCreated();
+            });
+          }
+          continue;
+        }
+        updatedLdapGroup.setOrganizationalUnit(ldapGroup.getOrganizationalUnit());
+        if (fingerprints != null && fingerprints.isUnchanged(group)) {
+          counters.incrementSkipped();
+        } else if (group.isDeleted() || group.getLocalGroup()) {
+          // Deleted and local users shouldn't be synchronized with LDAP:
+          addTask(tasks, ldapGroup, description, ctx -> {
+            ldapGroupDao.delete(ctx, updatedLdapGroup);
+            counters.incrementDeleted();
+          });
+        } else {
+          final boolean modified = groupDOConverter.copyGroupFields(updatedLdapGroup, ldapGroup);
+          // CommonName (cn) and therefor dn changed:
+          final boolean renamed = !StringUtils.equals(updatedLdapGroup.getCommonName(), ldapGroup.getCommonName());
+          if (modified) {
+            updatedLdapGroup.setObjectClasses(ldapGroup.getObjectClasses());
+            setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
+          } else {
+            counters.incrementUnmodified();
+          }
+          if (modified || renamed) {
+            addTask(tasks, ldapGroup, description, ctx -> {
+              if (modified) {
+                ldapGroupDao.update(ctx, groupBase, updatedLdapGroup);
+                counters.incrementUpdated();
               }
-            } else {
-              updatedLdapGroup.setOrganizationalUnit(ldapGroup.getOrganizationalUnit());
-              if (group.isDeleted() || group.getLocalGroup()) {
-                // Deleted and local users shouldn't be synchronized with LDAP:
-                ldapGroupDao.delete(ctx, updatedLdapGroup);
-                deleted++;
-              } else {
-                final boolean modified = groupDOConverter.copyGroupFields(updatedLdapGroup, ldapGroup);
-                if (modified) {
-                  updatedLdapGroup.setObjectClasses(ldapGroup.getObjectClasses());
-                  setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
-                  ldapGroupDao.update(ctx, groupBase, updatedLdapGroup);
-                  updated++;
-                } else {
-                  unmodified++;
-                }
-                if (!StringUtils.equals(updatedLdapGroup.getCommonName(), ldapGroup.getCommonName())) {
-                  // CommonName (cn) and therefor dn changed.
-                  ldapGroupDao.rename(ctx, updatedLdapGroup, ldapGroup);
-                  renamed++;
-                }
+              if (renamed) {
+                ldapGroupDao.rename(ctx, updatedLdapGroup, ldapGroup);
+                counters.incrementRenamed();
+              }
+            });
+          }
+        }
+      } catch (final Exception ex) {
+        log.error("Error while proceeding group '" + group.getName() + "'. Continuing with next group.", ex);
+        counters.incrementErrors();
+      }
+    }
+    return tasks.values();
+  }
+
+  /**
+   * Tasks of the same LDAP entry are grouped, so they're executed sequentially in the given order.
+   */
+  private void addTask(final Map<Object, List<SyncTask>> tasks, final Object entryKey, final String description,
+      final SyncAction action)
+  {
+    tasks.computeIfAbsent(entryKey, key -> new ArrayList<>()).add(new SyncTask(description, action));
+  }
+
+  /**
+   * Executes the given tasks by up to {@link #MAX_PARALLEL_CONNECTIONS} workers. Each worker uses its own LDAP
+   * connection and takes the next task group as long as task groups are left.
+   */
+  private void apply(final Collection<List<SyncTask>> taskGroups, final LdapSyncStatistics.Counters counters)
+  {
+    if (taskGroups.isEmpty()) {
+      return;
+    }
+    final Queue<List<SyncTask>> queue = new ConcurrentLinkedQueue<>(taskGroups);
+    final int workers = Math.min(MAX_PARALLEL_CONNECTIONS, taskGroups.size());
+    final List<Future<?>> futures = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      futures.add(writeExecutor.submit(() -> new LdapTemplate(ldapConnector)
+      {
+        @Override
+        protected Object call()
+        {
+          List<SyncTask> tasks;
+          while ((tasks = queue.poll()) != null) {
+            for (final SyncTask task : tasks) {
+              try {
+                task.action.apply(ctx);
+              } catch (final Exception ex) {
+                log.error("Error while proceeding " + task.description + ". Continuing with next entry.", ex);
+                counters.incrementErrors();
               }
             }
-          } catch (final Exception ex) {
-            log.error("Error while proceeding group '" + group.getName() + "'. Continuing with next group.", ex);
-            error++;
           }
+          return null;
         }
-        log.info("Update of LDAP groups: "
-            + (error > 0 ? "*** " + error + " errors ***, " : "")
-            + unmodified
-            + " unmodified, "
-            + created
-            + " created, "
-            + updated
-            + " updated, "
-            + renamed
-            + " renamed, "
-            + deleted
-            + " deleted.");
-        log.info("LDAP update done.");
-        return null;
+      }.excecute()));
+    }
+    for (final Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (final InterruptedException ex) {
+        log.warn("Updating of LDAP interrupted.");
+        Thread.currentThread().interrupt();
+        break;
+      } catch (final ExecutionException ex) {
+        log.error("Error while updating LDAP: " + ex.getMessage(), ex);
       }
-    }.excecute();
+    }
+    // Task groups left by failed workers (e. g. no connection):
+    List<SyncTask> tasks;
+    while ((tasks = queue.poll()) != null) {
+      for (final SyncTask task : tasks) {
+        log.error("LDAP entry of " + task.description + " not updated.");
+        counters.incrementErrors();
+      }
+    }
   }
 
   /**
@@ -422,24 +624,35 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     return map;
   }
 
-  private LdapUser getLdapUser(final List<LdapUser> ldapUsers, final PFUserDO user)
+  @FunctionalInterface
+  private interface SyncAction
   {
-    for (final LdapUser ldapUser : ldapUsers) {
-      if (StringUtils.equals(ldapUser.getUid(), user.getUsername())
-          || StringUtils.equals(ldapUser.getEmployeeNumber(), PFUserDOConverter.buildEmployeeNumber(user))) {
-        return ldapUser;
-      }
+    void apply(DirContext ctx) throws NamingException;
+  }
+
+  private static class SyncTask
+  {
+    private final String description;
+
+    private final SyncAction action;
+
+    private SyncTask(final String description, final SyncAction action)
+    {
+      this.description = description;
+      this.action = action;
     }
-    return null;
   }
 
-  private LdapGroup getLdapGroup(final List<LdapGroup> ldapGroups, final GroupDO group)
+  private static class SyncRequest
   {
-    for (final LdapGroup ldapGroup : ldapGroups) {
-      if (StringUtils.equals(ldapGroup.getBusinessCategory(), groupDOConverter.buildBusinessCategory(group))) {
-        return ldapGroup;
-      }
+    private final Collection<PFUserDO> users;
+
+    private final Collection<GroupDO> groups;
+
+    private SyncRequest(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+    {
+      this.users = users;
+      this.groups = groups;
     }
-    return null;
   }
 }
@@ -0,0 +1,127 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.ldap;
+
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import java.util.*;
+
+/**
+ * Fingerprints of all users and groups of the last successful synchronization. A fingerprint contains all fields
+ * written to the LDAP server, so users and groups with unchanged fingerprints don't need to be compared with their
+ * LDAP entries again.
+ */
+final class LdapSyncFingerprints
+{
+  private final Map<Integer, String> users = new HashMap<>();
+
+  private final Map<Integer, String> groups = new HashMap<>();
+
+  LdapSyncFingerprints(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+  {
+    for (final PFUserDO user : users) {
+      this.users.put(user.getId(), of(user));
+    }
+    for (final GroupDO group : groups) {
+      this.groups.put(group.getId(), of(group));
+    }
+  }
+
+  boolean isUnchanged(final PFUserDO user)
+  {
+    return Objects.equals(users.get(user.getId()), of(user));
+  }
+
+  boolean isUnchanged(final GroupDO group)
+  {
+    return Objects.equals(groups.get(group.getId()), of(group));
+  }
+
+  /**
+   * @return true, if the given users and groups are exactly the users and groups of these fingerprints.
+   */
+  boolean isUnchanged(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+  {
+    if (users.size() != this.users.size() || groups.size() != this.groups.size()) {
+      return false;
+    }
+    for (final PFUserDO user : users) {
+      if (!isUnchanged(user)) {
+        return false;
+      }
+    }
+    for (final GroupDO group : groups) {
+      if (!isUnchanged(group)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static String of(final PFUserDO user)
+  {
+    final StringBuilder sb = new StringBuilder();
+    append(sb, user.getUsername(), user.getFirstname(), user.getLastname(), user.getEmail(), user.getOrganization(),
+        user.getDescription(), user.isDeleted(), user.getDeactivated(), user.getRestrictedUser(), user.getLocalUser(),
+        user.getLdapValues(), getTime(user.getLastWlanPasswordChange()), getTime(user.getCreated()));
+    return sb.toString();
+  }
+
+  /**
+   * The fingerprint of a group contains also the assigned users with all fields used for building the member entries
+   * (dn of the user and system access).
+   */
+  static String of(final GroupDO group)
+  {
+    final StringBuilder sb = new StringBuilder();
+    append(sb, group.getName(), group.getOrganization(), group.getDescription(), group.isDeleted(),
+        group.getLocalGroup(), group.getLdapValues());
+    final Set<PFUserDO> assignedUsers = group.getAssignedUsers();
+    if (assignedUsers != null) {
+      final List<PFUserDO> members = new ArrayList<>(assignedUsers);
+      members.sort(Comparator.comparing(PFUserDO::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+      for (final PFUserDO member : members) {
+        append(sb, member.getId(), member.getUsername(), member.isDeleted(), member.getDeactivated(),
+            member.getRestrictedUser(), member.getLocalUser());
+      }
+    }
+    return sb.toString();
+  }
+
+  private static Long getTime(final Date date)
+  {
+    return date != null ? date.getTime() : null;
+  }
+
+  private static void append(final StringBuilder sb, final Object... values)
+  {
+    for (final Object value : values) {
+      // The length prefix avoids ambiguities of values containing the separator:
+      final String str = String.valueOf(value);
+      sb.append(str.length()).append(':').append(str).append('|');
+    }
+  }
+}
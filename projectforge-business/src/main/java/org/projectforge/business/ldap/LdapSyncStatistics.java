@@ -0,0 +1,310 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.ldap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters and timings of one synchronization of the LDAP master (see {@link LdapMasterLoginHandler}).
+ */
+public class LdapSyncStatistics
+{
+  /**
+   * Counters of the synchronized users or groups. The counters are incremented by the parallel workers.
+   */
+  public static class Counters
+  {
+    private final AtomicInteger unmodified = new AtomicInteger();
+
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final AtomicInteger updated = new AtomicInteger();
+
+    private final AtomicInteger renamed = new AtomicInteger();
+
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /**
+     * @return Number of compared entries without any modification.
+     */
+    public int getUnmodified()
+    {
+      return unmodified.get();
+    }
+
+    /**
+     * @return Number of entries not compared at all, because they're unchanged since the last synchronization.
+     */
+    public int getSkipped()
+    {
+      return skipped.get();
+    }
+
+    public int getCreated()
+    {
+      return created.get();
+    }
+
+    public int getUpdated()
+    {
+      return updated.get();
+    }
+
+    public int getRenamed()
+    {
+      return renamed.get();
+    }
+
+    public int getDeleted()
+    {
+      return deleted.get();
+    }
+
+    public int getErrors()
+    {
+      return errors.get();
+    }
+
+    void incrementUnmodified()
+    {
+      unmodified.incrementAndGet();
+    }
+
+    void incrementSkipped()
+    {
+      skipped.incrementAndGet();
+    }
+
+    void incrementCreated()
+    {
+      created.incrementAndGet();
+    }
+
+    void incrementUpdated()
+    {
+      updated.incrementAndGet();
+    }
+
+    void incrementRenamed()
+    {
+      renamed.incrementAndGet();
+    }
+
+    void incrementDeleted()
+    {
+      deleted.incrementAndGet();
+    }
+
+    void incrementErrors()
+    {
+      errors.incrementAndGet();
+    }
+
+    @Override
+    public String toString()
+    {
+      return (getErrors() > 0 ? "*** " + getErrors() + " errors ***, " : "")
+          + getUnmodified()
+          + " unmodified, "
+          + getSkipped()
+          + " skipped, "
+          + getCreated()
+          + " created, "
+          + getUpdated()
+          + " updated, "
+          + getRenamed()
+          + " renamed, "
+          + getDeleted()
+          + " deleted";
+    }
+  }
+
+  private final Counters users = new Counters();
+
+  private final Counters groups = new Counters();
+
+  private final long startTime = System.currentTimeMillis();
+
+  private boolean fullSync;
+
+  private boolean nothingToDo;
+
+  private int ldapUserEntries, ldapGroupEntries;
+
+  private long readMillis, planMillis, applyMillis, totalMillis;
+
+  public Counters getUsers()
+  {
+    return users;
+  }
+
+  public Counters getGroups()
+  {
+    return groups;
+  }
+
+  public long getStartTime()
+  {
+    return startTime;
+  }
+
+  /**
+   * @return true, if all users and groups were compared with the LDAP entries, false if only the users and groups
+   * changed since the last synchronization were compared.
+   */
+  public boolean isFullSync()
+  {
+    return fullSync;
+  }
+
+  void setFullSync(final boolean fullSync)
+  {
+    this.fullSync = fullSync;
+  }
+
+  /**
+   * @return true, if no user and no group was changed since the last synchronization, so the LDAP server wasn't
+   * contacted at all.
+   */
+  public boolean isNothingToDo()
+  {
+    return nothingToDo;
+  }
+
+  void setNothingToDo(final boolean nothingToDo)
+  {
+    this.nothingToDo = nothingToDo;
+  }
+
+  /**
+   * @return Number of user entries read from the LDAP server.
+   */
+  public int getLdapUserEntries()
+  {
+    return ldapUserEntries;
+  }
+
+  void setLdapUserEntries(final int ldapUserEntries)
+  {
+    this.ldapUserEntries = ldapUserEntries;
+  }
+
+  /**
+   * @return Number of group entries read from the LDAP server.
+   */
+  public int getLdapGroupEntries()
+  {
+    return ldapGroupEntries;
+  }
+
+  void setLdapGroupEntries(final int ldapGroupEntries)
+  {
+    this.ldapGroupEntries = ldapGroupEntries;
+  }
+
+  /**
+   * @return Time in ms for reading all users and groups from the LDAP server.
+   */
+  public long getReadMillis()
+  {
+    return readMillis;
+  }
+
+  void setReadMillis(final long readMillis)
+  {
+    this.readMillis = readMillis;
+  }
+
+  /**
+   * @return Time in ms for computing the change set.
+   */
+  public long getPlanMillis()
+  {
+    return planMillis;
+  }
+
+  void setPlanMillis(final long planMillis)
+  {
+    this.planMillis = planMillis;
+  }
+
+  /**
+   * @return Time in ms for writing the change set to the LDAP server.
+   */
+  public long getApplyMillis()
+  {
+    return applyMillis;
+  }
+
+  void setApplyMillis(final long applyMillis)
+  {
+    this.applyMillis = applyMillis;
+  }
+
+  public long getTotalMillis()
+  {
+    return totalMillis;
+  }
+
+  void finish()
+  {
+    this.totalMillis = System.currentTimeMillis() - startTime;
+  }
+
+  public boolean hasErrors()
+  {
+    return users.getErrors() > 0 || groups.getErrors() > 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    if (nothingToDo) {
+      return "nothing to do (no user or group changed), took " + totalMillis + " ms.";
+    }
+    return (fullSync ? "full" : "delta")
+        + " sync, users: "
+        + users
+        + ", groups: "
+        + groups
+        + ". Read "
+        + ldapUserEntries
+        + " users and "
+        + ldapGroupEntries
+        + " groups in "
+        + readMillis
+        + " ms, planned in "
+        + planMillis
+        + " ms, applied in "
+        + applyMillis
+        + " ms, total "
+        + totalMillis
+        + " ms.";
+  }
+}
@@ -0,0 +1,76 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.ldap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the LDAP user entries by uid and by employee number (the id of the ProjectForge user). A ProjectForge user
+ * matches an entry if the uid equals the username or the employee number equals the user's employee number. If
+ * different entries match, the entry read first wins (as a linear scan over all entries would do).
+ */
+final class LdapUserIndex
+{
+  private final List<LdapUser> entries = new ArrayList<>();
+
+  private final Map<String, Integer> byUid = new HashMap<>();
+
+  private final Map<String, Integer> byEmployeeNumber = new HashMap<>();
+
+  void add(final LdapUser ldapUser)
+  {
+    final int position = entries.size();
+    entries.add(ldapUser);
+    byUid.putIfAbsent(ldapUser.getUid(), position);
+    byEmployeeNumber.putIfAbsent(ldapUser.getEmployeeNumber(), position);
+  }
+
+  /**
+   * @param uid            The username of the ProjectForge user.
+   * @param employeeNumber The employee number of the ProjectForge user, see
+   *                       {@link PFUserDOConverter#buildEmployeeNumber(org.projectforge.framework.persistence.user.entities.PFUserDO)}.
+   * @return The matching entry or null, if no entry matches.
+   */
+  LdapUser get(final String uid, final String employeeNumber)
+  {
+    final Integer byUidPosition = byUid.get(uid);
+    final Integer byEmployeeNumberPosition = byEmployeeNumber.get(employeeNumber);
+    if (byUidPosition == null) {
+      return byEmployeeNumberPosition == null ? null : entries.get(byEmployeeNumberPosition);
+    }
+    if (byEmployeeNumberPosition == null) {
+      return entries.get(byUidPosition);
+    }
+    return entries.get(Math.min(byUidPosition, byEmployeeNumberPosition));
+  }
+
+  int size()
+  {
+    return entries.size();
+  }
+}
@@ -30,8 +30,11 @@ import groovy.lang.Writable;
 import groovy.text.SimpleTemplateEngine;
 import groovy.text.Template;
 import groovy.text.TemplateEngine;
+import groovy.transform.ThreadInterrupt;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.projectforge.business.refactoring.RefactoringService;
 import org.projectforge.framework.access.AccessException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,6 +55,16 @@ public class GroovyExecutor
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(GroovyExecutor.class);
 
+  /**
+   * Maximum number of cached script classes.
+   */
+  private static final int MAX_CACHED_SCRIPTS = 200;
+
+  /**
+   * Compiled script classes shared by all executors (key is the given cache key or the hash of the script).
+   */
+  private static final CompiledScriptCache<Class<?>> compiledScripts = new CompiledScriptCache<>(MAX_CACHED_SCRIPTS);
+
   @Autowired
   private RefactoringService refService;
 
@@ -68,11 +81,21 @@ public class GroovyExecutor
   }
 
   public ScriptExecutionResult execute(final ScriptExecutionResult result, final String script, final Map<String, Object> variables)
+  {
+    return execute(result, script, variables, null);
+  }
+
+  /**
+   * @param cacheKey Key of the compiled script in the cache (e. g. id of the ScriptDO). If null, the hash of the script
+   *                 is used.
+   */
+  public ScriptExecutionResult execute(final ScriptExecutionResult result, final String script, final Map<String, Object> variables,
+      final String cacheKey)
   {
     if (script == null) {
       return result;
     }
-    final Script groovyObject = compileGroovy(result, script, true);
+    final Script groovyObject = compileGroovy(result, script, true, cacheKey);
     if (groovyObject == null) {
       return result;
     }
@@ -124,9 +147,60 @@ public class GroovyExecutor
    * @return
    */
   public Script compileGroovy(final ScriptExecutionResult result, final String script, final boolean bindScriptResult)
+  {
+    return compileGroovy(result, script, bindScriptResult, null);
+  }
+
+  /**
+   * The script class is compiled only once and cached (as long as the script isn't modified). Each call returns a new
+   * script instance with its own binding.
+   *
+   * @param script
+   * @param bindScriptResult If true then "scriptResult" from type GroovyResult is binded.
+   * @param cacheKey         Key of the compiled script in the cache (e. g. id of the ScriptDO). If null, the hash of the
+   *                         script is used.
+   * @return
+   */
+  public Script compileGroovy(final ScriptExecutionResult result, final String script, final boolean bindScriptResult,
+      final String cacheKey)
   {
     securityChecks(script);
-    final GroovyClassLoader gcl = new GroovyClassLoader()
+    Class<?> groovyClass;
+    try {
+      groovyClass = compiledScripts.getOrCompile(cacheKey, script, () -> parseClass(script));
+    } catch (final CompilationFailedException ex) {
+      log.info("Groovy-CompilationFailedException: " + ex.getMessage());
+      if (result != null) {
+        result.setException(ex);
+      }
+      return null;
+    }
+    Script groovyObject;
+    try {
+      groovyObject = (Script) groovyClass.newInstance();
+    } catch (final InstantiationException | IllegalAccessException ex) {
+      log.error(ex.getMessage(), ex);
+      if (result != null) {
+        result.setException(ex);
+      }
+      return null;
+    }
+    if (bindScriptResult) {
+      final Binding binding = groovyObject.getBinding();
+      final ScriptExecutionResult scriptResult = new ScriptExecutionResult();
+      binding.setVariable("scriptResult", scriptResult);
+    }
+    return groovyObject;
+  }
+
+  /**
+   * Compiles the script with interrupt checks (loops of scripts aborted by {@link ScriptExecutorPool} are stopped).
+   */
+  private Class<?> parseClass(final String script)
+  {
+    final CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
+    compilerConfiguration.addCompilationCustomizers(new ASTTransformationCustomizer(ThreadInterrupt.class));
+    final GroovyClassLoader gcl = new GroovyClassLoader(Thread.currentThread().getContextClassLoader(), compilerConfiguration)
     {
       @SuppressWarnings("rawtypes")
       @Override
@@ -154,32 +228,7 @@ public class GroovyExecutor
       }
     };
 
-    Class<?> groovyClass;
-    try {
-      groovyClass = gcl.parseClass(script);
-    } catch (final CompilationFailedException ex) {
-      log.info("Groovy-CompilationFailedException: " + ex.getMessage());
-      if (result != null) {
-        result.setException(ex);
-      }
-      return null;
-    }
-    Script groovyObject;
-    try {
-      groovyObject = (Script) groovyClass.newInstance();
-    } catch (final InstantiationException | IllegalAccessException ex) {
-      log.error(ex.getMessage(), ex);
-      if (result != null) {
-        result.setException(ex);
-      }
-      return null;
-    }
-    if (bindScriptResult) {
-      final Binding binding = groovyObject.getBinding();
-      final ScriptExecutionResult scriptResult = new ScriptExecutionResult();
-      binding.setVariable("scriptResult", scriptResult);
-    }
-    return groovyObject;
+    return gcl.parseClass(script);
   }
 
   public ScriptExecutionResult execute(final Script groovyScript)
@@ -59,6 +59,9 @@ public class ScriptDao extends BaseDao<ScriptDO> {
   @Autowired
   private GroovyExecutor groovyExecutor;
 
+  @Autowired
+  private ScriptExecutorPool scriptExecutorPool;
+
   public ScriptDao() {
     super(ScriptDO.class);
   }
@@ -103,8 +106,21 @@ public class ScriptDao extends BaseDao<ScriptDO> {
     return new ScriptDO();
   }
 
+  /**
+   * The script is compiled only once (as long as it isn't modified) and runs in the {@link ScriptExecutorPool} (limited
+   * run and CPU time).
+   */
   public ScriptExecutionResult execute(final ScriptDO script, final List<ScriptParameter> parameters) {
     hasLoggedInUserSelectAccess(script, true);
+    // Unsaved scripts are cached by the hash of their content:
+    final String cacheKey = script.getId() != null ? "script#" + script.getId() : null;
+    // Kotlin scripts can't be interrupted by the pool's watchdog:
+    final boolean interruptible = script.getType() != ScriptDO.ScriptType.KOTLIN;
+    return scriptExecutorPool.execute(cacheKey != null ? cacheKey : "script:" + script.getName(), interruptible,
+            () -> internalExecute(script, parameters, cacheKey));
+  }
+
+  private ScriptExecutionResult internalExecute(final ScriptDO script, final List<ScriptParameter> parameters, final String cacheKey) {
     final ReportGeneratorList reportGeneratorList = new ReportGeneratorList();
     final Map<String, Object> scriptVariables = new HashMap<>();
 
@@ -126,14 +142,14 @@ public class ScriptDao extends BaseDao<ScriptDO> {
 
     String scriptContent = script.getScriptAsString();
     if (script.getType() == ScriptDO.ScriptType.KOTLIN) {
-      return KotlinScriptExecutor.execute(scriptContent, scriptVariables, script.getFile(), script.getFilename());
+      return KotlinScriptExecutor.execute(scriptContent, scriptVariables, script.getFile(), script.getFilename(), cacheKey);
     }
     if (scriptContent.contains("import org.projectforge.export")) {
       // Package was renamed in version 5.2 and 6.13:
       scriptContent = scriptContent.replace("import org.projectforge.export",
               "import org.projectforge.export.*\nimport org.projectforge.business.excel");
     }
-    return groovyExecutor.execute(new ScriptExecutionResult(), scriptContent, scriptVariables);
+    return groovyExecutor.execute(new ScriptExecutionResult(), scriptContent, scriptVariables, cacheKey);
   }
 
   /**
@@ -70,6 +70,22 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    */
   long totalDuration = 0;
 
+  /**
+   * Total duration of all time sheets of this task including all descendant tasks in seconds. Maintained by the task
+   * tree on every modification of time sheets and on moving tasks.
+   */
+  volatile long subtreeDuration = 0;
+
+  /**
+   * Number of the last started refresh of the total duration (see {@link TaskTree#refreshTotalDuration(Integer)}).
+   */
+  long durationRefreshVersion = 0;
+
+  /**
+   * Number of the refresh the current total duration was read by. Results of older refreshes are stale.
+   */
+  long durationVersion = 0;
+
   /**
    * Sum of all ordered person days excluding descendant nodes. Ordered person days are defined by the sum of all
    * assigned order position's person days. Used and set by task tree.
@@ -88,6 +104,11 @@ public class TaskNode implements IdObject<Integer>, Serializable {
 
   boolean bookableForTimesheets;
 
+  /**
+   * True, if this task or any descendant task has assigned order positions. Used and set by task tree.
+   */
+  boolean orderPositionsInSubtree;
+
   /**
    * For every group with access to this node the permissions will be stored here.
    */
@@ -468,17 +489,7 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    * @return
    */
   public long getDuration(final TaskTree taskTree, final boolean recursive) {
-    if (totalDuration < 0) {
-      taskTree.readTotalDuration(this.getId());
-    }
-    if (!recursive || children == null) {
-      return totalDuration;
-    }
-    long duration = totalDuration;
-    for (final TaskNode child : children) {
-      duration += child.getDuration(taskTree, true);
-    }
-    return duration;
+    return recursive ? subtreeDuration : totalDuration;
   }
 
   @Override
@@ -0,0 +1,230 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.task;
+
+import org.projectforge.framework.access.AccessType;
+import org.projectforge.framework.access.GroupTaskAccessDO;
+import org.projectforge.framework.access.OperationType;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The effective task permissions of all groups: for every group and every combination of {@link AccessType} and
+ * {@link OperationType} a bit set over the task ordinals holds the permission, inherited permissions included. So a
+ * permission check doesn't need to walk the task hierarchy (see {@link TaskNode#hasPermission(Integer, AccessType,
+ * OperationType)}).<br/>
+ * The matrix is built by the {@link TaskTree} and updated by the task tree after changing group task access' or the
+ * task hierarchy. Modifications replace the bit sets of a group, so readers always see a consistent state of each group.
+ */
+public class TaskPermissionMatrix
+{
+  private static final int NUMBER_OF_OPERATION_TYPES = OperationType.values().length;
+
+  private static final int NUMBER_OF_PERMISSIONS = AccessType.values().length * NUMBER_OF_OPERATION_TYPES;
+
+  /**
+   * Ordinals (bit index) of the tasks by task id.
+   */
+  private final Map<Integer, Integer> ordinals = new ConcurrentHashMap<>();
+
+  private final Map<Integer, BitSet[]> groupPermissions = new ConcurrentHashMap<>();
+
+  private int nextOrdinal = 0;
+
+  /**
+   * @param root     The root node of the task tree.
+   * @param groupIds The ids of all groups with any group task access.
+   */
+  TaskPermissionMatrix(final TaskNode root, final Collection<Integer> groupIds)
+  {
+    addOrdinals(root);
+    for (final Integer groupId : groupIds) {
+      final BitSet[] permissions = createPermissions(null);
+      updatePermissions(permissions, root, groupId, null, new IdentityHashMap<>());
+      groupPermissions.put(groupId, permissions);
+    }
+  }
+
+  /**
+   * @param node     The task to check.
+   * @param groupIds The groups of the user.
+   * @return true, if any of the given groups has the given permission for the given task.
+   */
+  public boolean hasPermission(final TaskNode node, final Collection<Integer> groupIds, final AccessType accessType,
+      final OperationType operationType)
+  {
+    final Integer ordinal = ordinals.get(node.getTaskId());
+    if (ordinal == null) {
+      // Task isn't part of the tree (shouldn't occur), so check the permission by walking the hierarchy.
+      for (final Integer groupId : groupIds) {
+        if (node.hasPermission(groupId, accessType, operationType)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    final int index = getIndex(accessType, operationType);
+    for (final Integer groupId : groupIds) {
+      final BitSet[] permissions = groupPermissions.get(groupId);
+      if (permissions != null && permissions[index].get(ordinal)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Must be called after adding a new task (leaf) to the tree.
+   */
+  synchronized void addTask(final TaskNode node)
+  {
+    if (ordinals.containsKey(node.getTaskId())) {
+      updateSubtree(node);
+      return;
+    }
+    final int ordinal = nextOrdinal++;
+    for (final Map.Entry<Integer, BitSet[]> entry : groupPermissions.entrySet()) {
+      final Integer groupId = entry.getKey();
+      final BitSet[] permissions = createPermissions(entry.getValue());
+      final GroupTaskAccessDO access = node.getGroupTaskAccess(groupId);
+      setPermissions(permissions, ordinal, access != null ? access : getInheritedAccess(node.getParent(), groupId),
+          new IdentityHashMap<>());
+      entry.setValue(permissions);
+    }
+    // Publish the ordinal not until the permissions are set:
+    ordinals.put(node.getTaskId(), ordinal);
+  }
+
+  /**
+   * Recalculates the permissions of all groups of the given task and its descendants, e. g. after moving the task.
+   */
+  synchronized void updateSubtree(final TaskNode node)
+  {
+    for (final Integer groupId : groupPermissions.keySet()) {
+      updateSubtree(node, groupId);
+    }
+  }
+
+  /**
+   * Recalculates the permissions of the given group of the given task and its descendants, e. g. after changing a group
+   * task access of the given task.
+   */
+  synchronized void updateSubtree(final TaskNode node, final Integer groupId)
+  {
+    final BitSet[] permissions = createPermissions(groupPermissions.get(groupId));
+    updatePermissions(permissions, node, groupId, getInheritedAccess(node.getParent(), groupId),
+        new IdentityHashMap<>());
+    groupPermissions.put(groupId, permissions);
+  }
+
+  private void addOrdinals(final TaskNode node)
+  {
+    ordinals.put(node.getTaskId(), nextOrdinal++);
+    for (final TaskNode child : node.getChildren()) {
+      addOrdinals(child);
+    }
+  }
+
+  /**
+   * @param inheritedAccess The recursive group task access of the nearest ancestor defining one for this group.
+   */
+  private void updatePermissions(final BitSet[] permissions, final TaskNode node, final Integer groupId,
+      final GroupTaskAccessDO inheritedAccess, final Map<GroupTaskAccessDO, boolean[]> permissionCache)
+  {
+    final Integer ordinal = ordinals.get(node.getTaskId());
+    if (ordinal == null) {
+      // Shouldn't occur, all nodes of the tree are registered.
+      return;
+    }
+    final GroupTaskAccessDO access = node.getGroupTaskAccess(groupId);
+    setPermissions(permissions, ordinal, access != null ? access : inheritedAccess, permissionCache);
+    final GroupTaskAccessDO childAccess;
+    if (access == null) {
+      childAccess = inheritedAccess;
+    } else {
+      childAccess = access.isRecursive() ? access : null;
+    }
+    for (final TaskNode child : node.getChildren()) {
+      updatePermissions(permissions, child, groupId, childAccess, permissionCache);
+    }
+  }
+
+  private void setPermissions(final BitSet[] permissions, final int ordinal, final GroupTaskAccessDO access,
+      final Map<GroupTaskAccessDO, boolean[]> permissionCache)
+  {
+    if (access == null) {
+      for (final BitSet bitSet : permissions) {
+        bitSet.clear(ordinal);
+      }
+      return;
+    }
+    boolean[] values = permissionCache.get(access);
+    if (values == null) {
+      values = new boolean[NUMBER_OF_PERMISSIONS];
+      for (final AccessType accessType : AccessType.values()) {
+        for (final OperationType operationType : OperationType.values()) {
+          values[getIndex(accessType, operationType)] = access.hasPermission(accessType, operationType);
+        }
+      }
+      permissionCache.put(access, values);
+    }
+    for (int i = 0; i < NUMBER_OF_PERMISSIONS; i++) {
+      permissions[i].set(ordinal, values[i]);
+    }
+  }
+
+  /**
+   * Same rules as {@link TaskNode#hasPermission(Integer, AccessType, OperationType)}: an ancestor's access is
+   * inherited if it is recursive and no nearer ancestor defines an access for the group.
+   */
+  private GroupTaskAccessDO getInheritedAccess(final TaskNode parent, final Integer groupId)
+  {
+    for (TaskNode node = parent; node != null; node = node.getParent()) {
+      final GroupTaskAccessDO access = node.getGroupTaskAccess(groupId);
+      if (access != null) {
+        return access.isRecursive() ? access : null;
+      }
+    }
+    return null;
+  }
+
+  private BitSet[] createPermissions(final BitSet[] origin)
+  {
+    final BitSet[] permissions = new BitSet[NUMBER_OF_PERMISSIONS];
+    for (int i = 0; i < NUMBER_OF_PERMISSIONS; i++) {
+      permissions[i] = origin != null ? (BitSet) origin[i].clone() : new BitSet();
+    }
+    return permissions;
+  }
+
+  private static int getIndex(final AccessType accessType, final OperationType operationType)
+  {
+    return accessType.ordinal() * NUMBER_OF_OPERATION_TYPES + operationType.ordinal();
+  }
+}
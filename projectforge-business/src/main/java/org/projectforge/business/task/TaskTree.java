@@ -38,11 +38,11 @@ import org.projectforge.business.fibu.ProjektDO;
 import org.projectforge.business.fibu.ProjektDao;
 import org.projectforge.business.fibu.kost.Kost2DO;
 import org.projectforge.business.fibu.kost.KostCache;
-import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.business.timesheet.TimesheetDao;
+import org.projectforge.common.task.TaskStatus;
+import org.projectforge.common.task.TimesheetBookingStatus;
 import org.projectforge.framework.access.AccessDao;
 import org.projectforge.framework.access.GroupTaskAccessDO;
-import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.cache.AbstractCache;
 import org.projectforge.framework.i18n.InternalErrorException;
 import org.projectforge.framework.persistence.user.entities.TenantDO;
@@ -110,6 +110,14 @@ public class TaskTree extends AbstractCache implements Serializable
 
   private boolean orderPositionReferencesDirty = true;
 
+  /**
+   * If true, the status bookableForTimesheets of all task nodes will be recomputed on the next usage of the task tree
+   * (after modifications of order positions), see {@link #checkRefresh()}.
+   */
+  private volatile boolean bookableForTimesheetsDirty = true;
+
+  private volatile TaskPermissionMatrix permissionMatrix;
+
   public TaskNode getRootTaskNode()
   {
     checkRefresh();
@@ -150,11 +158,13 @@ public class TaskTree extends AbstractCache implements Serializable
       node.setParent(root);
     }
     taskMap.put(node.getId(), node);
-    final TimesheetDO timesheet = new TimesheetDO();
-    timesheet.setTask(task);
-    final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
-    node.bookableForTimesheets = bookable;
-    return addTaskNode(node, parent);
+    addTaskNode(node, parent);
+    if (permissionMatrix != null) {
+      permissionMatrix.addTask(node);
+    }
+    // The parent isn't a leaf anymore, so the bookable status of the ancestors may change:
+    updateBookableForTimesheets(node, null);
+    return node;
   }
 
   /**
@@ -364,18 +374,49 @@ public class TaskTree extends AbstractCache implements Serializable
   }
 
   /**
-   * Should be called after modification of a time sheet assigned to the given task id.
+   * Should be called after modification of a time sheet assigned to the given task id. Only the time sheets of the given
+   * task are read and the difference to the previous duration is added to the task and to all ancestor tasks, so the
+   * durations of all nodes are up to date without re-reading all time sheets.<br/>
+   * The duration is read outside the lock. Every refresh gets a version before reading, so the result of a refresh is
+   * ignored, if a later started refresh was already applied (its result contains all modifications of the earlier one).
    *
    * @param taskId
    */
-  public void resetTotalDuration(final Integer taskId)
+  public void refreshTotalDuration(final Integer taskId)
   {
     final TaskNode node = getTaskNodeById(taskId);
     if (node == null) {
       log.error("Task id '" + taskId + "' not found.");
       return;
     }
-    node.totalDuration = -1;
+    final long version;
+    synchronized (this) {
+      version = ++node.durationRefreshVersion;
+    }
+    final long duration = taskDao.readTotalDuration(taskId);
+    synchronized (this) {
+      if (version <= node.durationVersion) {
+        // Result of a later started refresh was already applied.
+        return;
+      }
+      node.durationVersion = version;
+      final long delta = duration - node.totalDuration;
+      node.totalDuration = duration;
+      addSubtreeDuration(node, delta);
+    }
+  }
+
+  /**
+   * Adds the given duration to the subtree duration of the given node and all its ancestors.
+   */
+  private void addSubtreeDuration(final TaskNode node, final long delta)
+  {
+    if (delta == 0) {
+      return;
+    }
+    for (TaskNode current = node; current != null; current = current.getParent()) {
+      current.subtreeDuration += delta;
+    }
   }
 
   /**
@@ -393,17 +434,29 @@ public class TaskTree extends AbstractCache implements Serializable
       return addTaskNode(task);
     }
     node.setTask(task);
+    TaskNode oldParent = null;
     if (task.getParentTaskId() != null && !task.getParentTaskId().equals(node.getParent().getId())) {
       if (log.isDebugEnabled()) {
         log.debug("Task hierarchy was changed for task: " + task);
       }
-      final TaskNode oldParent = node.getParent();
+      oldParent = node.getParent();
       Validate.notNull(oldParent);
-      oldParent.removeChild(node);
       final TaskNode newParent = getTaskNodeById(task.getParentTaskId());
-      node.setParent(newParent);
-      newParent.addChild(node);
+      synchronized (this) {
+        oldParent.removeChild(node);
+        node.setParent(newParent);
+        // Move the durations of the sub tree from the old to the new ancestors:
+        addSubtreeDuration(oldParent, -node.subtreeDuration);
+        newParent.addChild(node);
+        addSubtreeDuration(newParent, node.subtreeDuration);
+      }
+      // The inherited permissions of the moved sub tree may change:
+      if (permissionMatrix != null) {
+        permissionMatrix.updateSubtree(node);
+      }
     }
+    // Status and booking status are inherited by the descendants, order positions of the sub tree affect the ancestors:
+    updateBookableForTimesheets(node, oldParent);
     updateTimeOfLastModification();
     return node;
   }
@@ -420,6 +473,9 @@ public class TaskTree extends AbstractCache implements Serializable
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
     node.setGroupTaskAccess(groupTaskAccess);
+    if (permissionMatrix != null) {
+      permissionMatrix.updateSubtree(node, groupTaskAccess.getGroupId());
+    }
   }
 
   /**
@@ -434,6 +490,18 @@ public class TaskTree extends AbstractCache implements Serializable
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
     node.removeGroupTaskAccess(groupTaskAccess.getGroupId());
+    if (permissionMatrix != null) {
+      permissionMatrix.updateSubtree(node, groupTaskAccess.getGroupId());
+    }
+  }
+
+  /**
+   * @return The effective permissions of all groups for all tasks.
+   */
+  public TaskPermissionMatrix getPermissionMatrix()
+  {
+    checkRefresh();
+    return permissionMatrix;
   }
 
   public long getTimeOfLastModification()
@@ -469,9 +537,13 @@ public class TaskTree extends AbstractCache implements Serializable
     return result;
   }
 
+  /**
+   * All modifications of tasks, group task accesses, projects and time sheets are applied as deltas to the tree (by
+   * the daos), so the full refresh is only a safety net and done once a day.
+   */
   public TaskTree()
   {
-    super(AbstractCache.TICKS_PER_HOUR);
+    super(AbstractCache.TICKS_PER_DAY);
   }
 
   public void setTaskDao(final TaskDao taskDao)
@@ -573,6 +645,8 @@ public class TaskTree extends AbstractCache implements Serializable
   {
     synchronized (this) {
       this.orderPositionReferencesDirty = true;
+      // Order positions of descendant tasks have an impact on the bookable status (recomputed on next usage):
+      this.bookableForTimesheetsDirty = true;
     }
   }
 
@@ -803,20 +877,26 @@ public class TaskTree extends AbstractCache implements Serializable
         }
       }
     }
+    if (root != null) {
+      sumSubtreeDurations(root);
+    }
   }
 
   /**
-   * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
+   * Sums up the durations of all nodes of the given sub tree bottom-up (used after reading all durations).
+   *
+   * @return The duration of the given sub tree.
    */
-  public void readTotalDuration(final Integer taskId)
+  private long sumSubtreeDurations(final TaskNode node)
   {
-    final long duration = taskDao.readTotalDuration(taskId);
-    final TaskNode node = getTaskNodeById(taskId);
-    if (node == null) {
-      log.warn("Task not found: " + taskId);
-    } else {
-      node.totalDuration = duration;
+    long duration = node.totalDuration;
+    if (node.children != null) {
+      for (final TaskNode child : node.children) {
+        duration += sumSubtreeDurations(child);
+      }
     }
+    node.subtreeDuration = duration;
+    return duration;
   }
 
   /**
@@ -828,6 +908,24 @@ public class TaskTree extends AbstractCache implements Serializable
     this.setExpired();
   }
 
+  /**
+   * Recomputes the status bookableForTimesheets of all task nodes, if marked as dirty (after modifications of order
+   * positions). So the order position references are read only once after several modifications of orders.
+   */
+  @Override
+  protected void checkRefresh()
+  {
+    super.checkRefresh();
+    if (bookableForTimesheetsDirty) {
+      synchronized (this) {
+        // A running refresh (of this thread) computes the bookable status at its end:
+        if (bookableForTimesheetsDirty && !isRefreshInProgress()) {
+          updateBookableForTimesheets();
+        }
+      }
+    }
+  }
+
   /**
    * All tasks from database will be read and cached into this TaskTree. Also all explicit group task access' will be
    * read from database and will be cached in this tree (implicit access' will be created too).<br/>
@@ -918,13 +1016,16 @@ public class TaskTree extends AbstractCache implements Serializable
 
     // Now read all explicit group task access' from the database:
     final List<GroupTaskAccessDO> accessList = accessDao.internalLoadAll();
+    final Set<Integer> accessGroupIds = new HashSet<>();
     for (final GroupTaskAccessDO access : accessList) {
       node = taskMap.get(access.getTaskId());
       node.setGroupTaskAccess(access);
+      accessGroupIds.add(access.getGroupId());
       if (log.isDebugEnabled()) {
         log.debug(access.toString());
       }
     }
+    this.permissionMatrix = new TaskPermissionMatrix(this.root, accessGroupIds);
     // Now read all projects with their references to tasks:
     final List<ProjektDO> projects = projektDao.internalLoadAll();
     if (projects != null) {
@@ -944,18 +1045,173 @@ public class TaskTree extends AbstractCache implements Serializable
       log.debug(this.toString());
     }
     readTotalDurations();
-    refreshOrderPositionReferences();
-    // Now update the status: bookable for time sheets:
-    final TimesheetDO timesheet = new TimesheetDO();
-    for (final TaskDO task : taskList) {
-      node = taskMap.get(task.getId());
-      timesheet.setTask(task);
-      final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
-      node.bookableForTimesheets = bookable;
+    synchronized (this) {
+      this.orderPositionReferencesDirty = true;
     }
+    // Now update the status: bookable for time sheets:
+    updateBookableForTimesheets();
     log.info("Initializing task tree done.");
   }
 
+  /**
+   * Computes the status bookableForTimesheets of all task nodes in one pass over the tree instead of checking every
+   * task by {@link TimesheetDao#checkTaskBookable}, which walks the ancestors and descendants for each task. The rules are
+   * the same:
+   * <ol>
+   * <li>Is the task or any of the ancestor tasks closed, deleted or has the booking status TREE_CLOSED?</li>
+   * <li>Has the task the (inherited) booking status NO_BOOKING?</li>
+   * <li>Is the task not a leaf node and has this task or ancestor task the booking status ONLY_LEAFS?</li>
+   * <li>Is the task not a leaf node and does any of the descendant task nodes has an assigned order position?</li>
+   * </ol>
+   */
+  void updateBookableForTimesheets()
+  {
+    synchronized (this) {
+      bookableForTimesheetsDirty = false;
+      if (root == null) {
+        return;
+      }
+      final Map<Integer, Set<AuftragsPositionVO>> orderPositions = getOrderPositionEntries();
+      updateOrderPositionsInSubtree(root, orderPositions, true);
+      updateBookableForTimesheets(root, false, TimesheetBookingStatus.INHERIT, false);
+    }
+  }
+
+  /**
+   * Recomputes the status bookableForTimesheets only of the task nodes affected by inserting or modifying the given
+   * node: the sub tree of the node (inherited status and booking status) and its ancestors (leaf status and order
+   * positions of the sub tree). If the node was moved, the ancestors of the old parent are updated as well.
+   *
+   * @param node The inserted or modified node.
+   * @param oldParent The former parent of a moved node, otherwise null.
+   */
+  private void updateBookableForTimesheets(final TaskNode node, final TaskNode oldParent)
+  {
+    synchronized (this) {
+      if (bookableForTimesheetsDirty || root == null) {
+        // The whole tree will be recomputed anyway on next usage.
+        return;
+      }
+      final Map<Integer, Set<AuftragsPositionVO>> orderPositions = getOrderPositionEntries();
+      updateOrderPositionsInSubtree(node, orderPositions, true);
+      if (oldParent != null) {
+        updateBookableForTimesheetsOfPath(oldParent, orderPositions, false);
+      }
+      updateBookableForTimesheetsOfPath(node, orderPositions, true);
+    }
+  }
+
+  /**
+   * Updates the order position flags and the status bookableForTimesheets of the given node and all its ancestors.
+   *
+   * @param withDescendants If true, the status of all descendants of the given node is updated as well (the order
+   *                        position flags of the descendants must be up to date).
+   */
+  private void updateBookableForTimesheetsOfPath(final TaskNode node,
+      final Map<Integer, Set<AuftragsPositionVO>> orderPositions, final boolean withDescendants)
+  {
+    final LinkedList<TaskNode> path = new LinkedList<>();
+    for (TaskNode current = node; current != null; current = current.getParent()) {
+      // Bottom-up, the flags of the children are already up to date:
+      updateOrderPositionsInSubtree(current, orderPositions, false);
+      path.addFirst(current);
+    }
+    boolean closed = false;
+    TimesheetBookingStatus bookingStatus = TimesheetBookingStatus.INHERIT;
+    boolean onlyLeafs = false;
+    for (final TaskNode current : path) {
+      if (current == node && withDescendants) {
+        updateBookableForTimesheets(current, closed, bookingStatus, onlyLeafs);
+        break;
+      }
+      current.bookableForTimesheets = isBookableForTimesheets(current, closed, bookingStatus, onlyLeafs);
+      closed = isClosed(current, closed);
+      bookingStatus = getBookingStatus(current, bookingStatus);
+      onlyLeafs = isOnlyLeafs(current, onlyLeafs);
+    }
+  }
+
+  /**
+   * Sets the flag orderPositionsInSubtree of the given node: true, if the given node or any descendant node has
+   * assigned order positions.
+   *
+   * @param recursive If true, the flags of all descendants are updated first, otherwise the flags of the children are
+   *                  used as they are.
+   */
+  private void updateOrderPositionsInSubtree(final TaskNode node,
+      final Map<Integer, Set<AuftragsPositionVO>> orderPositions, final boolean recursive)
+  {
+    boolean found = orderPositions != null && CollectionUtils.isNotEmpty(orderPositions.get(node.getId()));
+    if (node.hasChildren()) {
+      for (final TaskNode child : node.getChildren()) {
+        if (recursive) {
+          updateOrderPositionsInSubtree(child, orderPositions, true);
+        }
+        if (child.orderPositionsInSubtree) {
+          found = true;
+        }
+      }
+    }
+    node.orderPositionsInSubtree = found;
+  }
+
+  private void updateBookableForTimesheets(final TaskNode node, final boolean ancestorClosed,
+      final TimesheetBookingStatus inheritedBookingStatus, final boolean ancestorOnlyLeafs)
+  {
+    node.bookableForTimesheets = isBookableForTimesheets(node, ancestorClosed, inheritedBookingStatus,
+        ancestorOnlyLeafs);
+    if (node.hasChildren()) {
+      final boolean closed = isClosed(node, ancestorClosed);
+      final TimesheetBookingStatus bookingStatus = getBookingStatus(node, inheritedBookingStatus);
+      final boolean onlyLeafs = isOnlyLeafs(node, ancestorOnlyLeafs);
+      for (final TaskNode child : node.getChildren()) {
+        updateBookableForTimesheets(child, closed, bookingStatus, onlyLeafs);
+      }
+    }
+  }
+
+  private static boolean isBookableForTimesheets(final TaskNode node, final boolean ancestorClosed,
+      final TimesheetBookingStatus inheritedBookingStatus, final boolean ancestorOnlyLeafs)
+  {
+    if (isClosed(node, ancestorClosed)
+        || getBookingStatus(node, inheritedBookingStatus) == TimesheetBookingStatus.NO_BOOKING) {
+      return false;
+    }
+    if (!node.hasChildren()) {
+      return true;
+    }
+    if (isOnlyLeafs(node, ancestorOnlyLeafs)) {
+      return false;
+    }
+    for (final TaskNode child : node.getChildren()) {
+      if (child.orderPositionsInSubtree) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isClosed(final TaskNode node, final boolean ancestorClosed)
+  {
+    final TaskDO task = node.getTask();
+    return ancestorClosed
+        || task.isDeleted()
+        || (task.getStatus() != null && !task.getStatus().isIn(TaskStatus.O, TaskStatus.N))
+        || task.getTimesheetBookingStatus() == TimesheetBookingStatus.TREE_CLOSED;
+  }
+
+  private static TimesheetBookingStatus getBookingStatus(final TaskNode node,
+      final TimesheetBookingStatus inheritedBookingStatus)
+  {
+    final TimesheetBookingStatus status = node.getTask().getTimesheetBookingStatus();
+    return status == null || status == TimesheetBookingStatus.INHERIT ? inheritedBookingStatus : status;
+  }
+
+  private static boolean isOnlyLeafs(final TaskNode node, final boolean ancestorOnlyLeafs)
+  {
+    return ancestorOnlyLeafs || node.getTask().getTimesheetBookingStatus() == TimesheetBookingStatus.ONLY_LEAFS;
+  }
+
   private void updateTimeOfLastModification()
   {
     this.timeOfLastModification = new Date().getTime();
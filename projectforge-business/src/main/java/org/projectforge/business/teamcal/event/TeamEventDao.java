@@ -34,15 +34,20 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.projectforge.business.calendar.event.model.ICalendarEvent;
 import org.projectforge.business.calendar.event.model.SeriesModificationMode;
 import org.projectforge.business.multitenancy.TenantService;
+import org.projectforge.business.sync.SyncCollectionType;
+import org.projectforge.business.sync.SyncJournalService;
 import org.projectforge.business.teamcal.TeamCalConfig;
 import org.projectforge.business.teamcal.admin.TeamCalCache;
 import org.projectforge.business.teamcal.admin.TeamCalDao;
 import org.projectforge.business.teamcal.admin.model.TeamCalDO;
+import org.projectforge.business.teamcal.event.ical.ICalFeedCache;
 import org.projectforge.business.teamcal.event.model.TeamEventAttendeeDO;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
 import org.projectforge.business.teamcal.externalsubscription.TeamEventExternalSubscriptionCache;
 import org.projectforge.business.user.UserRightId;
+import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.calendar.ICal4JUtils;
+import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.*;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
@@ -106,9 +111,63 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
   @Autowired
   private TenantService tenantService;
 
+  private final TeamEventRecurrenceCache recurrenceCache = new TeamEventRecurrenceCache(this);
+
+  /**
+   * Not autowired, because the journal and the feed cache are listeners of this dao (circular dependency).
+   */
+  private SyncJournalService syncJournalService;
+
+  private ICalFeedCache iCalFeedCache;
+
   public TeamEventDao() {
     super(TeamEventDO.class);
     userRightId = UserRightId.PLUGIN_CALENDAR_EVENT;
+    supportAfterUpdate = true; // The former calendar of moved events is needed, see afterUpdate.
+  }
+
+  /**
+   * Removes the cached occurrences of the given event (if any).
+   */
+  @Override
+  protected void afterSaveOrModify(final TeamEventDO obj) {
+    recurrenceCache.remove(obj);
+  }
+
+  /**
+   * If the event was moved to another calendar, the removal of the event from the former calendar is journaled (for
+   * changing the sync token of the former calendar) and the iCal feeds of the former calendar are invalidated. The
+   * listeners are only notified about the update of the event.
+   */
+  @Override
+  protected void afterUpdate(final TeamEventDO obj, final TeamEventDO dbObj) {
+    super.afterUpdate(obj, dbObj);
+    if (dbObj != null && dbObj.getCalendarId() != null && !dbObj.getCalendarId().equals(obj.getCalendarId())) {
+      getSyncJournalService().journal(SyncCollectionType.CALENDAR, dbObj.getCalendarId(), dbObj.getId(), dbObj.getUid(),
+              OperationType.DELETE);
+      getICalFeedCache().invalidateCalendar(dbObj.getCalendarId());
+    }
+  }
+
+  private SyncJournalService getSyncJournalService() {
+    if (syncJournalService == null) {
+      syncJournalService = ApplicationContextProvider.getApplicationContext().getBean(SyncJournalService.class);
+    }
+    return syncJournalService;
+  }
+
+  private ICalFeedCache getICalFeedCache() {
+    if (iCalFeedCache == null) {
+      iCalFeedCache = ApplicationContextProvider.getApplicationContext().getBean(ICalFeedCache.class);
+    }
+    return iCalFeedCache;
+  }
+
+  /**
+   * @return The cache of occurrences of recurrence events used by {@link #getEventList(TeamEventFilter, boolean)}.
+   */
+  public TeamEventRecurrenceCache getRecurrenceCache() {
+    return recurrenceCache;
   }
 
   @Override
@@ -417,7 +476,7 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
           result.add(eventDO);
           continue;
         }
-        final Collection<ICalendarEvent> events = this.rollOutRecurrenceEvents(teamEventFilter.getStartDate(), teamEventFilter.getEndDate(), eventDO, timeZone);
+        final Collection<ICalendarEvent> events = this.getRecurrenceEvents(teamEventFilter.getStartDate(), teamEventFilter.getEndDate(), eventDO, timeZone);
         if (events == null) {
           continue;
         }
@@ -692,8 +751,78 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
     this.teamCalDao = teamCalDao;
   }
 
+  /**
+   * Same as {@link #rollOutRecurrenceEvents(Date, Date, TeamEventDO, java.util.TimeZone)}, but the occurrences are
+   * taken from the {@link TeamEventRecurrenceCache} if possible (time period inside the cached horizon).
+   */
+  public Collection<ICalendarEvent> getRecurrenceEvents(final java.util.Date startDate, final java.util.Date endDate,
+                                                        final TeamEventDO event, final java.util.TimeZone timeZone) {
+    if (!event.hasRecurrence()) {
+      return null;
+    }
+    final Collection<ICalendarEvent> col = recurrenceCache.getRecurrenceEvents(startDate, endDate, event, timeZone);
+    if (col != null) {
+      return col;
+    }
+    return rollOutRecurrenceEvents(startDate, endDate, event, timeZone);
+  }
+
   public Collection<ICalendarEvent> rollOutRecurrenceEvents(final java.util.Date startDate, final java.util.Date endDate,
                                                             final TeamEventDO event, final java.util.TimeZone timeZone) {
+    final long[] dates = calculateRecurrenceDates(startDate, endDate, event, timeZone);
+    if (dates == null) {
+      return null;
+    }
+    final String eventStartDateString = formatRecurrenceDate(event.getStartDate(), event.getAllDay(), timeZone);
+    final Collection<ICalendarEvent> col = new ArrayList<>();
+    for (final long date : dates) {
+      final boolean master = eventStartDateString.equals(formatRecurrenceDate(new Date(date), event.getAllDay(), timeZone));
+      col.add(createRecurrenceEvent(event, date, master, timeZone));
+    }
+    if (log.isDebugEnabled()) {
+      for (final ICalendarEvent ev : col) {
+        log.debug("startDate="
+                + DateHelper.formatIsoTimestamp(ev.getStartDate(), timeZone)
+                + "; "
+                + DateHelper.formatAsUTC(ev.getStartDate())
+                + ", endDate="
+                + DateHelper.formatIsoTimestamp(ev.getStartDate(), timeZone)
+                + "; "
+                + DateHelper.formatAsUTC(ev.getEndDate()));
+      }
+    }
+    return col;
+  }
+
+  /**
+   * @param master If true, the event itself is returned (the occurrence is the master event).
+   * @return The master event or a {@link TeamRecurrenceEvent} starting at the given date.
+   */
+  ICalendarEvent createRecurrenceEvent(final TeamEventDO event, final long date, final boolean master, final java.util.TimeZone timeZone) {
+    if (master) {
+      // Put event itself to the list.
+      return event;
+    }
+    // Now we need this event as date with the user's time-zone.
+    final PFDateTime dateTime = PFDateTime.from(date, timeZone.toZoneId(), null, PFDateTime.NumberFormat.EPOCH_MILLIS);
+    return new TeamRecurrenceEvent(event, dateTime);
+  }
+
+  /**
+   * All day events are compared by day in the given time zone, other events by their UTC time stamps.
+   */
+  static String formatRecurrenceDate(final Date date, final boolean allDay, final java.util.TimeZone timeZone) {
+    return allDay ? DateHelper.formatIsoDate(date, timeZone) : DateHelper.formatIsoTimestamp(date, DateHelper.UTC);
+  }
+
+  /**
+   * Calculates the start dates (epoch millis, ascending) of all occurrences of the given recurrence event inside the
+   * given time period. Ex-dates of the event are removed.
+   *
+   * @return The occurrences or null, if the given event has no recurrence.
+   */
+  long[] calculateRecurrenceDates(final java.util.Date startDate, final java.util.Date endDate,
+                                  final TeamEventDO event, final java.util.TimeZone timeZone) {
     if (!event.hasRecurrence()) {
       return null;
     }
@@ -704,9 +833,6 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
       return null;
     }
     final java.util.TimeZone timeZone4Calc = timeZone;
-    final String eventStartDateString = event.getAllDay()
-            ? DateHelper.formatIsoDate(event.getStartDate(), timeZone) : DateHelper
-            .formatIsoTimestamp(event.getStartDate(), DateHelper.UTC);
     java.util.Date eventStartDate = event.getStartDate();
     if (log.isDebugEnabled()) {
       log.debug("---------- startDate=" + DateHelper.formatIsoTimestamp(eventStartDate, timeZone) + ", timeZone="
@@ -734,63 +860,44 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
     final DateList dateList = recur.getDates(seedDate, ical4jStartDate, ical4jEndDate, Value.DATE_TIME);
 
     // remove ex range values
-    final Collection<ICalendarEvent> col = new ArrayList<>();
-    if (dateList != null) {
-      OuterLoop:
-      for (final Object obj : dateList) {
-        final net.fortuna.ical4j.model.DateTime dateTime = (net.fortuna.ical4j.model.DateTime) obj;
-        final String isoDateString = event.getAllDay() ? DateHelper.formatIsoDate(dateTime, timeZone)
-                : DateHelper.formatIsoTimestamp(dateTime, DateHelper.UTC);
-        if (exDates != null && exDates.size() > 0) {
-          for (Date exDate : exDates) {
-            if (!event.getAllDay()) {
-              Date recurDateJavaUtil = new Date(dateTime.getTime());
-              if (recurDateJavaUtil.equals(exDate)) {
-                if (log.isDebugEnabled()) {
-                  log.debug("= ex-dates equals: " + isoDateString + " == " + exDate);
-                }
-                // this date is part of ex dates, so don't use it.
-                continue OuterLoop;
-              }
-            } else {
-              // Allday event.
-              final String isoExDateString = DateHelper.formatIsoDate(exDate, DateHelper.UTC);
-              if (isoDateString.equals(isoExDateString)) {
-                if (log.isDebugEnabled()) {
-                  log.debug(String.format("= ex-dates equals: %s == %s", isoDateString, isoExDateString));
-                }
-                // this date is part of ex dates, so don't use it.
-                continue OuterLoop;
+    if (dateList == null) {
+      return new long[0];
+    }
+    final long[] dates = new long[dateList.size()];
+    int count = 0;
+    OuterLoop:
+    for (final Object obj : dateList) {
+      final net.fortuna.ical4j.model.DateTime dateTime = (net.fortuna.ical4j.model.DateTime) obj;
+      final String isoDateString = formatRecurrenceDate(dateTime, event.getAllDay(), timeZone);
+      if (exDates != null && exDates.size() > 0) {
+        for (Date exDate : exDates) {
+          if (!event.getAllDay()) {
+            Date recurDateJavaUtil = new Date(dateTime.getTime());
+            if (recurDateJavaUtil.equals(exDate)) {
+              if (log.isDebugEnabled()) {
+                log.debug("= ex-dates equals: " + isoDateString + " == " + exDate);
               }
+              // this date is part of ex dates, so don't use it.
+              continue OuterLoop;
             }
-            if (log.isDebugEnabled()) {
-              log.debug("ex-dates not equals: " + isoDateString + " != " + exDate);
+          } else {
+            // Allday event.
+            final String isoExDateString = DateHelper.formatIsoDate(exDate, DateHelper.UTC);
+            if (isoDateString.equals(isoExDateString)) {
+              if (log.isDebugEnabled()) {
+                log.debug(String.format("= ex-dates equals: %s == %s", isoDateString, isoExDateString));
+              }
+              // this date is part of ex dates, so don't use it.
+              continue OuterLoop;
             }
           }
+          if (log.isDebugEnabled()) {
+            log.debug("ex-dates not equals: " + isoDateString + " != " + exDate);
+          }
         }
-        if (isoDateString.equals(eventStartDateString)) {
-          // Put event itself to the list.
-          col.add(event);
-        } else {
-          // Now we need this event as date with the user's time-zone.
-          final PFDateTime date = PFDateTime.from(dateTime.getTime(), timeZone.toZoneId(), null, PFDateTime.NumberFormat.EPOCH_MILLIS);
-          final TeamRecurrenceEvent recurEvent = new TeamRecurrenceEvent(event, date);
-          col.add(recurEvent);
-        }
-      }
-    }
-    if (log.isDebugEnabled()) {
-      for (final ICalendarEvent ev : col) {
-        log.debug("startDate="
-                + DateHelper.formatIsoTimestamp(ev.getStartDate(), timeZone)
-                + "; "
-                + DateHelper.formatAsUTC(ev.getStartDate())
-                + ", endDate="
-                + DateHelper.formatIsoTimestamp(ev.getStartDate(), timeZone)
-                + "; "
-                + DateHelper.formatAsUTC(ev.getEndDate()));
       }
+      dates[count++] = dateTime.getTime();
     }
-    return col;
+    return count == dates.length ? dates : Arrays.copyOf(dates, count);
   }
 }
@@ -0,0 +1,245 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.teamcal.event;
+
+import org.projectforge.business.calendar.event.model.ICalendarEvent;
+import org.projectforge.business.teamcal.event.model.TeamEventDO;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.time.PFDateTime;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the occurrences of recurrence events (master events) over a sliding horizon (two years back and forward). Range
+ * queries (week or month views, calendar feeds) are answered by a binary search over the sorted start dates of the
+ * occurrences, so the recurrence rules doesn't have to be expanded by ical4j on every request.
+ * <br/>
+ * An entry is only used if the recurrence relevant fields of the given master event (start date, recurrence rule,
+ * ex-dates etc.) are unchanged, so also events of external subscriptions (without update notifications) are handled.
+ * Modified events are removed by {@link TeamEventDao}. The horizon is moved and all entries are cleared once a day.
+ */
+public class TeamEventRecurrenceCache extends AbstractCache {
+  private static final long serialVersionUID = -4036829637591018372L;
+
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(TeamEventRecurrenceCache.class);
+
+  /**
+   * Size of the horizon in years (back and forward).
+   */
+  static final int HORIZON_YEARS = 2;
+
+  /**
+   * Master events with more occurrences inside the horizon (e. g. hourly events) aren't cached, the occurrences are
+   * calculated for each requested time period.
+   */
+  static final int MAX_OCCURRENCES = 10000;
+
+  private final transient TeamEventDao teamEventDao;
+
+  private transient Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+  private transient volatile Date horizonStart, horizonEnd;
+
+  TeamEventRecurrenceCache(final TeamEventDao teamEventDao) {
+    super(TICKS_PER_DAY);
+    this.teamEventDao = teamEventDao;
+  }
+
+  /**
+   * @return The occurrences of the given master event with start dates inside the given time period or null, if the
+   * time period isn't inside the horizon or the given event isn't cacheable (not yet saved or too many occurrences).
+   * In this case the caller has to roll out the recurrence events by itself.
+   */
+  public Collection<ICalendarEvent> getRecurrenceEvents(final Date startDate, final Date endDate, final TeamEventDO event,
+                                                        final TimeZone timeZone) {
+    if (startDate == null || endDate == null || event.getId() == null || !event.hasRecurrence()) {
+      return null;
+    }
+    checkRefresh();
+    final Key key = new Key(event, timeZone);
+    Entry entry = entries.get(key);
+    if (entry == null || !entry.matches(event)) {
+      final Date start = horizonStart, end = horizonEnd;
+      if (start == null || end == null || startDate.before(start) || endDate.after(end)) {
+        return null;
+      }
+      entry = createEntry(event, timeZone, start, end);
+      entries.put(key, entry);
+    }
+    if (entry.dates == null || startDate.before(entry.horizonStart) || endDate.after(entry.horizonEnd)) {
+      return null;
+    }
+    final int fromIndex = lowerBound(entry.dates, startDate.getTime());
+    final int toIndex = lowerBound(entry.dates, endDate.getTime() + 1); // End date is inclusive.
+    final List<ICalendarEvent> result = new ArrayList<>(Math.max(toIndex - fromIndex, 0));
+    for (int i = fromIndex; i < toIndex; i++) {
+      result.add(teamEventDao.createRecurrenceEvent(event, entry.dates[i], i == entry.masterIndex, timeZone));
+    }
+    return result;
+  }
+
+  /**
+   * Removes all entries of the given event (for all time zones).
+   */
+  public void remove(final TeamEventDO event) {
+    if (event == null || event.getId() == null) {
+      return;
+    }
+    final Integer calendarId = event.getCalendarId();
+    entries.keySet().removeIf(key -> key.eventId.equals(event.getId()) && Objects.equals(key.calendarId, calendarId));
+  }
+
+  /**
+   * @return The number of cached master events.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private Entry createEntry(final TeamEventDO event, final TimeZone timeZone, final Date start, final Date end) {
+    final long[] dates = teamEventDao.calculateRecurrenceDates(start, end, event, timeZone);
+    if (dates != null && dates.length > MAX_OCCURRENCES) {
+      log.info("Recurrence event #" + event.getId() + " has too many occurrences (" + dates.length
+              + ") inside the horizon, occurrences aren't cached.");
+      return new Entry(event, start, end, null, -1);
+    }
+    int masterIndex = -1;
+    if (dates != null) {
+      final String eventStartDateString = TeamEventDao.formatRecurrenceDate(event.getStartDate(), event.getAllDay(), timeZone);
+      for (int i = 0; i < dates.length; i++) {
+        if (eventStartDateString.equals(TeamEventDao.formatRecurrenceDate(new Date(dates[i]), event.getAllDay(), timeZone))) {
+          masterIndex = i;
+          break;
+        }
+      }
+    }
+    return new Entry(event, start, end, dates == null ? new long[0] : dates, masterIndex);
+  }
+
+  /**
+   * @return The index of the first element of the given ascending array not lower than the given value.
+   */
+  static int lowerBound(final long[] array, final long value) {
+    int low = 0, high = array.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (array[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Moves the horizon and clears all entries.
+   */
+  @Override
+  protected void refresh() {
+    log.info("Clearing cache of recurrence events (" + entries.size() + " entries).");
+    final PFDateTime today = PFDateTime.now().getBeginOfDay();
+    this.horizonStart = today.minusYears(HORIZON_YEARS).getUtilDate();
+    this.horizonEnd = today.plusYears(HORIZON_YEARS).getUtilDate();
+    entries = new ConcurrentHashMap<>();
+  }
+
+  private static class Key {
+    private final Integer calendarId;
+
+    private final Integer eventId;
+
+    private final String timeZoneId;
+
+    private Key(final TeamEventDO event, final TimeZone timeZone) {
+      this.calendarId = event.getCalendarId();
+      this.eventId = event.getId();
+      this.timeZoneId = timeZone.getID();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return Objects.equals(calendarId, other.calendarId) && eventId.equals(other.eventId) && timeZoneId.equals(other.timeZoneId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(calendarId, eventId, timeZoneId);
+    }
+  }
+
+  /**
+   * The occurrences of one master event inside the horizon.
+   */
+  private static class Entry {
+    private final long startDate;
+
+    private final boolean allDay;
+
+    private final String recurrenceRule, recurrenceExDate;
+
+    private final Date horizonStart, horizonEnd;
+
+    /**
+     * Start dates (epoch millis) of the occurrences in ascending order or null, if not cacheable.
+     */
+    private final long[] dates;
+
+    /**
+     * Index of the master event itself in {@link #dates} or -1.
+     */
+    private final int masterIndex;
+
+    private Entry(final TeamEventDO event, final Date horizonStart, final Date horizonEnd, final long[] dates,
+                  final int masterIndex) {
+      this.startDate = event.getStartDate().getTime();
+      this.allDay = event.getAllDay();
+      this.recurrenceRule = event.getRecurrenceRule();
+      this.recurrenceExDate = event.getRecurrenceExDate();
+      this.horizonStart = horizonStart;
+      this.horizonEnd = horizonEnd;
+      this.dates = dates;
+      this.masterIndex = masterIndex;
+    }
+
+    /**
+     * @return true, if all fields of the given event used for calculating the occurrences are unchanged.
+     */
+    private boolean matches(final TeamEventDO event) {
+      return startDate == event.getStartDate().getTime()
+              && allDay == event.getAllDay()
+              && Objects.equals(recurrenceRule, event.getRecurrenceRule())
+              && Objects.equals(recurrenceExDate, event.getRecurrenceExDate());
+    }
+  }
+}
@@ -24,19 +24,20 @@
 package org.projectforge.business.teamcal.event.ical;
 
 import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.data.FoldingWriter;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.*;
+import net.fortuna.ical4j.util.Strings;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.PFDateTime;
 import org.projectforge.framework.time.PFDateTimeUtils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.projectforge.business.teamcal.event.ical.ICalConverterStore.*;
@@ -82,6 +83,8 @@ public class ICalGenerator {
   private Locale locale;
   private TimeZone timeZone;
   private Method method;
+  private Writer streamWriter;
+  private int numberOfStreamedEvents;
 
   private ICalGenerator() {
     this.exportsVEvent = new ArrayList<>();
@@ -150,7 +153,37 @@ public class ICalGenerator {
     }
   }
 
+  /**
+   * Writes the head of the calendar (properties, time zone and all events already added) to the given stream. All events
+   * added afterwards are written directly to the stream instead of collecting them in the calendar, so huge calendars
+   * are exported without holding all events in memory. The calendar isn't validated as a whole in streaming mode.
+   * {@link #finishStreaming()} must be called after adding all events.
+   *
+   * @param stream The stream isn't closed by this generator.
+   */
+  public ICalGenerator startStreaming(final OutputStream stream) throws IOException {
+    this.streamWriter = new FoldingWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), FoldingWriter.REDUCED_FOLD_LENGTH);
+    this.numberOfStreamedEvents = this.calendar.getComponents(Component.VEVENT).size();
+    streamWriter.write(Calendar.BEGIN + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
+    streamWriter.write(this.calendar.getProperties().toString());
+    streamWriter.write(this.calendar.getComponents().toString());
+    return this;
+  }
+
+  /**
+   * Writes the end of the calendar and flushes the stream given by {@link #startStreaming(OutputStream)}.
+   */
+  public ICalGenerator finishStreaming() throws IOException {
+    streamWriter.write(Calendar.END + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
+    streamWriter.flush();
+    streamWriter = null;
+    return this;
+  }
+
   public boolean isEmpty() {
+    if (streamWriter != null) {
+      return numberOfStreamedEvents == 0;
+    }
     return this.calendar.getComponents(Component.VEVENT).isEmpty();
   }
 
@@ -158,20 +191,29 @@ public class ICalGenerator {
     final VEvent vEvent = this.convertVEvent(event);
 
     if (vEvent != null) {
-      this.calendar.getComponents().add(vEvent);
+      this.addEvent(vEvent);
     }
 
     return this;
   }
 
   public ICalGenerator addEvent(final VEvent vEvent) {
-    this.calendar.getComponents().add(vEvent);
+    if (streamWriter != null) {
+      try {
+        streamWriter.write(vEvent.toString());
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      ++numberOfStreamedEvents;
+    } else {
+      this.calendar.getComponents().add(vEvent);
+    }
 
     return this;
   }
 
   public ICalGenerator addEvent(final Date startDate, final Date endDate, final boolean allDay, final String summary, final String uid) {
-    this.calendar.getComponents().add(this.convertVEvent(startDate, endDate, allDay, summary, uid));
+    this.addEvent(this.convertVEvent(startDate, endDate, allDay, summary, uid));
 
     return this;
   }
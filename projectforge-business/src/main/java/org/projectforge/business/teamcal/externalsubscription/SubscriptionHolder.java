@@ -27,13 +27,15 @@ import org.projectforge.business.teamcal.event.TeamEventDao;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 /**
  * Own abstraction of a RangeMap. You can add TeamEvents and access them through their start and end date.
+ * <p>
+ * After adding all events, {@link #sort()} builds an immutable index of the events: the events sorted by start date,
+ * the maximum end date of all preceding events (for finding the first matching event by binary search also if long
+ * multi-day events exist) and a map of all events by uid. The index is built once per subscription update, the read
+ * methods don't need any synchronization.
  *
  * @author Johannes Unterstein (j.unterstein@micromata.de)
  */
@@ -43,71 +45,50 @@ public class SubscriptionHolder implements Serializable {
   // one day in milliseconds
   private static final int ONE_DAY = 86400000; // 60*60*24*1000
 
-  // private static final long MIN_DATE_1800 = lendar
+  // the following comparator compares by startDate
+  private static final Comparator<TeamEventDO> START_DATE_COMPARATOR = (o1, o2) -> Long.compare(getStartTime(o1), getStartTime(o2));
 
   private final List<TeamEventDO> eventList;
 
-  private boolean sorted;
+  private volatile EventIndex index;
 
   public SubscriptionHolder() {
     eventList = new ArrayList<>();
-    sorted = false;
   }
 
-  public void clear() {
+  public synchronized void clear() {
     eventList.clear();
-    sorted = false;
+    index = null;
   }
 
-  public void add(final TeamEventDO value) {
+  public synchronized void add(final TeamEventDO value) {
     eventList.add(value);
-    sorted = false;
+    index = null;
   }
 
+  /**
+   * Builds the index of all added events. Should be called after adding all events, otherwise the index will be built
+   * on first access.
+   */
   public void sort() {
-    // the following comparator compares by startDate
-    final Comparator<TeamEventDO> comparator = new Comparator<TeamEventDO>() {
-      @Override
-      public int compare(final TeamEventDO o1, final TeamEventDO o2) {
-        if ((o1 == null || o1.getStartDate() == null) && (o2 == null || o2.getStartDate() == null)) {
-          return 0;
-        }
-        if (o1 == null || o1.getStartDate() == null) {
-          return -1;
-        }
-        if (o2 == null || o2.getStartDate() == null) {
-          return 1;
-        }
-        // at this point, no NPE could occur
-        return o1.getStartDate().compareTo(o2.getStartDate());
-      }
-    };
-    eventList.sort(comparator);
-    sorted = true;
+    buildIndex();
   }
 
   public TeamEventDO getEvent(final String uid) {
-    for (final TeamEventDO teamEventDO : eventList) {
-      if (teamEventDO.getUid() != null && Objects.equals(uid, teamEventDO.getUid()))
-        return teamEventDO;
+    if (uid == null) {
+      return null;
     }
-    return null;
+    return getIndex().byUid.get(uid);
   }
 
   public List<TeamEventDO> getResultList(final Long startTime, final Long endTime, final boolean minimalAccess) {
-    // sorting should by synchronized
-    synchronized (this) {
-      if (!sorted) {
-        sort();
-      }
-    }
+    final EventIndex index = getIndex();
     final List<TeamEventDO> result = new ArrayList<>();
-    for (final TeamEventDO teamEventDo : eventList) {
-      // all our events are sorted, if we find a event which starts
-      // after the end date, we can break this iteration
-      if (teamEventDo.getStartDate().getTime() > endTime) {
-        break;
-      }
+    // all our events are sorted, so we can start with the first event which ends after the (extended) start time and
+    // break the iteration on the first event which starts after the end date
+    final int to = index.lastIndexStartingBefore(endTime);
+    for (int i = index.firstIndexEndingAfter(startTime - ONE_DAY); i <= to; i++) {
+      final TeamEventDO teamEventDo = index.events[i];
       if (matches(teamEventDo, startTime, endTime)) {
         if (minimalAccess) {
           result.add(teamEventDo.createMinimalCopy());
@@ -121,7 +102,21 @@ public class SubscriptionHolder implements Serializable {
   }
 
   public int size() {
-    return eventList.size();
+    return getIndex().events.length;
+  }
+
+  private EventIndex getIndex() {
+    final EventIndex current = index;
+    if (current != null) {
+      return current;
+    }
+    return buildIndex();
+  }
+
+  private synchronized EventIndex buildIndex() {
+    eventList.sort(START_DATE_COMPARATOR);
+    index = new EventIndex(eventList);
+    return index;
   }
 
   private boolean matches(final TeamEventDO teamEventDo, Long startTime, Long endTime) {
@@ -137,10 +132,8 @@ public class SubscriptionHolder implements Serializable {
     // // get events whose duration overlap with chosen duration.
     // (Restrictions.and(Restrictions.le("startDate", startDate), Restrictions.ge("endDate", endDate)))));
 
-    final Long eventStartTime = teamEventDo.getStartDate() != null ? teamEventDo.getStartDate().getTime()
-            : TeamEventDao.MIN_DATE_1800;
-    final Long eventEndTime = teamEventDo.getEndDate() != null ? teamEventDo.getEndDate().getTime()
-            : TeamEventDao.MAX_DATE_3000;
+    final long eventStartTime = getStartTime(teamEventDo);
+    final long eventEndTime = getEndTime(teamEventDo);
     if (between(eventStartTime, startTime, endTime) || between(eventEndTime, startTime, endTime)) {
       return true;
     }
@@ -150,7 +143,88 @@ public class SubscriptionHolder implements Serializable {
     return false;
   }
 
-  private boolean between(final Long searchTime, final Long startTime, final Long endTime) {
+  private boolean between(final long searchTime, final long startTime, final long endTime) {
     return searchTime >= startTime && searchTime <= endTime;
   }
+
+  private static long getStartTime(final TeamEventDO teamEventDo) {
+    return teamEventDo != null && teamEventDo.getStartDate() != null ? teamEventDo.getStartDate().getTime()
+            : TeamEventDao.MIN_DATE_1800;
+  }
+
+  private static long getEndTime(final TeamEventDO teamEventDo) {
+    return teamEventDo != null && teamEventDo.getEndDate() != null ? teamEventDo.getEndDate().getTime()
+            : TeamEventDao.MAX_DATE_3000;
+  }
+
+  /**
+   * Immutable index of the events sorted by start date.
+   */
+  private static class EventIndex implements Serializable {
+    private static final long serialVersionUID = -2920536128496322471L;
+
+    private final TeamEventDO[] events;
+
+    private final long[] startTimes;
+
+    /**
+     * The maximum end time of all events from index 0 up to index i (ascending).
+     */
+    private final long[] maxEndTimes;
+
+    private final Map<String, TeamEventDO> byUid;
+
+    private EventIndex(final List<TeamEventDO> sortedEvents) {
+      final int size = sortedEvents.size();
+      events = sortedEvents.toArray(new TeamEventDO[size]);
+      startTimes = new long[size];
+      maxEndTimes = new long[size];
+      byUid = new HashMap<>();
+      long maxEndTime = Long.MIN_VALUE;
+      for (int i = 0; i < size; i++) {
+        final TeamEventDO event = events[i];
+        startTimes[i] = getStartTime(event);
+        maxEndTime = Math.max(maxEndTime, getEndTime(event));
+        maxEndTimes[i] = maxEndTime;
+        if (event.getUid() != null) {
+          byUid.putIfAbsent(event.getUid(), event);
+        }
+      }
+    }
+
+    /**
+     * @return The index of the first event, which ends at or after the given time (or is followed by such an event).
+     * All events before can't match.
+     */
+    private int firstIndexEndingAfter(final long time) {
+      int low = 0;
+      int high = maxEndTimes.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (maxEndTimes[mid] < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return The index of the last event starting at or before the given time, -1 if no such event exists.
+     */
+    private int lastIndexStartingBefore(final long time) {
+      int low = 0;
+      int high = startTimes.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (startTimes[mid] <= time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+  }
 }
@@ -40,6 +40,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Johannes Unterstein (j.unterstein@micromata.de)
@@ -51,10 +52,22 @@ public class TeamEventExternalSubscriptionCache {
 
   private static final long MAX_WAIT_MS_AFTER_FAILED_UPDATE = 1000 * 60 * 60 * 24; // 24 h
 
-  private final Map<Integer, TeamEventSubscription> subscriptions = new HashMap<>();
+  private final Map<Integer, TeamEventSubscription> subscriptions = new ConcurrentHashMap<>();
 
   private static final Long SUBSCRIPTION_UPDATE_TIME = 5L * 60 * 1000; // 5 min
 
+  /**
+   * Maximum number of calendars updated in parallel. The number of parallel connections per host is limited by
+   * {@link TeamEventSubscription#MAX_CONNECTIONS_PER_HOST}.
+   */
+  static final int MAX_PARALLEL_UPDATES = 10;
+
+  private final ExecutorService updateExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_UPDATES, runnable -> {
+    final Thread thread = new Thread(runnable, "ExternalCalendarSubscriptionUpdate");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private transient TeamCalRight teamCalRight;
 
   private boolean initialized;
@@ -88,14 +101,30 @@ public class TeamEventExternalSubscriptionCache {
 
   public void updateCache() {
     log.info("Start updating TeamEventExternalSubscriptionCache.");
+    final long begin = System.currentTimeMillis();
     final QueryFilter filter = new QueryFilter();
     filter.add(QueryFilter.eq("externalSubscription", true));
     // internalGetList is valid at this point, because we are calling this method in an asyn thread
     final List<TeamCalDO> subscribedCalendars = teamCalDao.internalGetList(filter);
 
+    // Update all calendars in parallel and wait for finishing all updates:
+    final List<Future<?>> futures = new ArrayList<>();
     for (final TeamCalDO calendar : subscribedCalendars) {
-      updateCache(calendar);
+      futures.add(updateExecutor.submit(() -> updateCache(calendar)));
+    }
+    for (final Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (final InterruptedException ex) {
+        log.warn("Updating of TeamEventExternalSubscriptionCache interrupted.");
+        Thread.currentThread().interrupt();
+        return;
+      } catch (final ExecutionException ex) {
+        log.error("Error while updating subscribed calendar: " + ex.getMessage(), ex);
+      }
     }
+    log.info("Updating of " + subscribedCalendars.size() + " subscribed calendars finished in "
+            + (System.currentTimeMillis() - begin) + " ms.");
 
     final List<Integer> idsToRemove = new ArrayList<>();
     for (final Integer calendarId : subscriptions.keySet()) {
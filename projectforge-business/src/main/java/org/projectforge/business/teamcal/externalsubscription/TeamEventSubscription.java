@@ -23,9 +23,12 @@
 
 package org.projectforge.business.teamcal.externalsubscription;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.projectforge.business.teamcal.admin.TeamCalDao;
@@ -38,6 +41,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Date;
@@ -73,6 +77,26 @@ public class TeamEventSubscription implements Serializable
 
   private static final Long TIME_IN_THE_PAST = 60L * 24 * 60 * 60 * 1000; // 60 days in millis in the past to subscribe
 
+  /**
+   * Maximum number of parallel connections to one host (calendars are updated in parallel).
+   */
+  static final int MAX_CONNECTIONS_PER_HOST = 2;
+
+  private static final int CONNECTION_TIMEOUT = 30 * 1000;
+
+  private static final int SO_TIMEOUT = 60 * 1000;
+
+  private static final HttpClient httpClient = createHttpClient();
+
+  /**
+   * ETag and Last-Modified of the last response, used for conditional requests.
+   */
+  private String eTag, lastModified;
+
+  private long lastRefreshDuration, lastBytesTransferred, lastParseDuration;
+
+  private int numberOfNotModifiedResponses = 0;
+
   public TeamEventSubscription()
   {
   }
@@ -104,11 +128,26 @@ public class TeamEventSubscription implements Serializable
   /**
    * We update the cache softly, therefore we create a new instance and replace the old instance in the cached map then
    * creation and update is therefore the same two lines of code, but semantically different things.
+   * <p>
+   * Conditional requests (ETag and Last-Modified of the previous response) are used, so unmodified calendars aren't
+   * downloaded and parsed again. Modified calendars are only parsed, if their hash differs from the currently parsed
+   * calendar.
    */
-  public void update(final TeamCalDao teamCalDao, final TeamCalDO teamCalDO)
+  public synchronized void update(final TeamCalDao teamCalDao, final TeamCalDO teamCalDO)
+  {
+    final long begin = System.currentTimeMillis();
+    lastBytesTransferred = 0;
+    lastParseDuration = 0;
+    try {
+      updateSubscription(teamCalDao, teamCalDO);
+    } finally {
+      lastRefreshDuration = System.currentTimeMillis() - begin;
+    }
+  }
+
+  private void updateSubscription(final TeamCalDao teamCalDao, final TeamCalDO teamCalDO)
   {
     this.teamCalId = teamCalDO.getId();
-    currentInitializedHash = null;
     lastUpdated = null;
     this.initialized = true;
     String url = teamCalDO.getExternalSubscriptionUrl();
@@ -121,13 +160,30 @@ public class TeamEventSubscription implements Serializable
     final String displayUrl = teamCalDO.getExternalSubscriptionUrlAnonymized();
     log.info("Getting subscribed calendar #" + teamCalDO.getId() + " from: " + displayUrl);
     byte[] bytes = null;
+    GetMethod method = null;
     try {
 
       // Create a method instance.
-      final GetMethod method = new GetMethod(url);
-      final HttpClient client = new HttpClient();
-      final int statusCode = client.executeMethod(method);
-
+      method = new GetMethod(url);
+      if (currentInitializedHash != null) {
+        // Conditional request: the server doesn't send the calendar again, if it wasn't modified.
+        if (eTag != null) {
+          method.setRequestHeader("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+          method.setRequestHeader("If-Modified-Since", lastModified);
+        }
+      }
+      final int statusCode = httpClient.executeMethod(method);
+
+      if (statusCode == HttpStatus.SC_NOT_MODIFIED && currentInitializedHash != null) {
+        log.info("No modification of subscribed calendar #" + teamCalDO.getId() + " found from: " + displayUrl
+            + " (not modified, OK, nothing to be done).");
+        numberOfNotModifiedResponses++;
+        lastUpdated = System.currentTimeMillis();
+        clear();
+        return;
+      }
       if (statusCode != HttpStatus.SC_OK) {
         error("Unable to gather subscription calendar #"
             + teamCalDO.getId()
@@ -140,11 +196,15 @@ public class TeamEventSubscription implements Serializable
 
       final MessageDigest md = MessageDigest.getInstance("MD5");
 
-      // Read the response body.
-      final InputStream stream = method.getResponseBodyAsStream();
-      bytes = IOUtils.toByteArray(stream);
+      // Read the response body and calculate the hash while reading.
+      try (final InputStream stream = new DigestInputStream(method.getResponseBodyAsStream(), md)) {
+        bytes = IOUtils.toByteArray(stream);
+      }
+      lastBytesTransferred = bytes.length;
+      eTag = getResponseHeader(method, "ETag");
+      lastModified = getResponseHeader(method, "Last-Modified");
 
-      final String md5 = calcHexHash(md.digest(bytes));
+      final String md5 = calcHexHash(md.digest());
       if (!StringUtils.equals(md5, teamCalDO.getExternalSubscriptionHash())) {
         teamCalDO.setExternalSubscriptionHash(md5);
         teamCalDO.setExternalSubscriptionCalendarBinary(bytes);
@@ -160,6 +220,10 @@ public class TeamEventSubscription implements Serializable
           + displayUrl
           + "': "
           + e.getMessage());
+    } finally {
+      if (method != null) {
+        method.releaseConnection();
+      }
     }
     if (bytes == null) {
       error("Unable to use database subscription calendar #" + teamCalDO.getId() + " information, quit from url '"
@@ -172,6 +236,7 @@ public class TeamEventSubscription implements Serializable
       // nothing to do here if the hashes are equal
       log.info("No modification of subscribed calendar #" + teamCalDO.getId() + " found from: " + displayUrl
           + " (OK, nothing to be done).");
+      lastUpdated = System.currentTimeMillis();
       clear();
       return;
     }
@@ -179,6 +244,7 @@ public class TeamEventSubscription implements Serializable
     final SubscriptionHolder newSubscription = new SubscriptionHolder();
     final ArrayList<TeamEventDO> newRecurrenceEvents = new ArrayList<>();
     try {
+      final long parseBegin = System.currentTimeMillis();
       final Date timeInPast = new Date(System.currentTimeMillis() - TIME_IN_THE_PAST);
       Integer startId = -1;
       ICalParser parser = ICalParser.parseAllFields();
@@ -202,13 +268,17 @@ public class TeamEventSubscription implements Serializable
         startId--;
       }
 
+      // Build the index of the events once (not on first read access):
+      newSubscription.sort();
+      lastParseDuration = System.currentTimeMillis() - parseBegin;
       // OK, update the subscription:
       recurrenceEvents = newRecurrenceEvents;
       subscription = newSubscription;
       lastUpdated = System.currentTimeMillis();
       currentInitializedHash = teamCalDO.getExternalSubscriptionHash();
       clear();
-      log.info("Subscribed calendar #" + teamCalDO.getId() + " successfully received from: " + displayUrl);
+      log.info("Subscribed calendar #" + teamCalDO.getId() + " successfully received from: " + displayUrl
+          + " (" + lastBytesTransferred + " bytes, parsed in " + lastParseDuration + " ms).");
     } catch (final Exception e) {
       error("Unable to instantiate team event list for calendar #"
           + teamCalDO.getId()
@@ -219,6 +289,12 @@ public class TeamEventSubscription implements Serializable
     }
   }
 
+  private String getResponseHeader(final GetMethod method, final String name)
+  {
+    final Header header = method.getResponseHeader(name);
+    return header != null ? header.getValue() : null;
+  }
+
   private void clear()
   {
     this.lastErrorMessage = null;
@@ -304,6 +380,49 @@ public class TeamEventSubscription implements Serializable
     return result;
   }
 
+  /**
+   * @return Duration of the last update (download and parsing) in ms.
+   */
+  public long getLastRefreshDuration()
+  {
+    return lastRefreshDuration;
+  }
+
+  /**
+   * @return Number of bytes of the last downloaded calendar, 0 if the calendar wasn't modified since the last update.
+   */
+  public long getLastBytesTransferred()
+  {
+    return lastBytesTransferred;
+  }
+
+  /**
+   * @return Duration of the last parsing of the calendar in ms, 0 if the calendar wasn't parsed (not modified).
+   */
+  public long getLastParseDuration()
+  {
+    return lastParseDuration;
+  }
+
+  /**
+   * @return Number of updates without download, because the calendar wasn't modified (conditional requests).
+   */
+  public int getNumberOfNotModifiedResponses()
+  {
+    return numberOfNotModifiedResponses;
+  }
+
+  private static HttpClient createHttpClient()
+  {
+    final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+    final HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+    params.setMaxTotalConnections(TeamEventExternalSubscriptionCache.MAX_PARALLEL_UPDATES);
+    params.setConnectionTimeout(CONNECTION_TIMEOUT);
+    params.setSoTimeout(SO_TIMEOUT);
+    return new HttpClient(connectionManager);
+  }
+
   public Integer getTeamCalId()
   {
     return teamCalId;
@@ -33,6 +33,7 @@ import org.projectforge.business.fibu.kost.Kost2Dao;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskNode;
 import org.projectforge.business.task.TaskTree;
+import org.projectforge.business.teamcal.event.ical.ICalFeedCache;
 import org.projectforge.business.tasktree.TaskTreeHelper;
 import org.projectforge.business.user.ProjectForgeGroup;
 import org.projectforge.business.user.UserDao;
@@ -41,13 +42,16 @@ import org.projectforge.common.task.TimesheetBookingStatus;
 import org.projectforge.framework.access.AccessException;
 import org.projectforge.framework.access.AccessType;
 import org.projectforge.framework.access.OperationType;
+import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.configuration.Configuration;
 import org.projectforge.framework.i18n.MessageParam;
 import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
+import org.projectforge.framework.persistence.api.BatchWriteStatistics;
 import org.projectforge.framework.persistence.api.QueryFilter;
 import org.projectforge.framework.persistence.api.SortProperty;
+import org.projectforge.framework.persistence.api.impl.CustomResultFilter;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.persistence.utils.SQLHelper;
@@ -81,13 +85,26 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
   private static final String[] ADDITIONAL_SEARCH_FIELDS = new String[]{"user.id", "user.username", "user.firstname",
           "user.lastname", "kost2.nummer", "kost2.description", "kost2.projekt.name"};
   private static final Logger log = LoggerFactory.getLogger(TimesheetDao.class);
+
+  /**
+   * Number of time sheets fetched at once by {@link #iterate(TimesheetFilter)}.
+   */
+  private static final int ITERATE_PAGE_SIZE = 1000;
   @Autowired
   private UserDao userDao;
   @Autowired
   private Kost2Dao kost2Dao;
+  @Autowired
+  private TimesheetOverlapCache timesheetOverlapCache;
+
+  /**
+   * Not autowired, because the feed cache is a listener of this dao (circular dependency).
+   */
+  private ICalFeedCache iCalFeedCache;
 
   public TimesheetDao() {
     super(TimesheetDO.class);
+    this.supportAfterUpdate = true;
   }
 
   public boolean showTimesheetsOfOtherUsers() {
@@ -241,7 +258,7 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
       final List<TimesheetDO> list = result;
       result = new ArrayList<>();
       for (final TimesheetDO entry : list) {
-        if (entry.getKost2() != null && entry.getKost2().getKost2Art() != null && entry.getKost2().getKost2Art().getFakturiert()) {
+        if (isBillable(entry)) {
           result.add(entry);
         }
       }
@@ -250,12 +267,65 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
   }
 
   /**
-   * Rechecks the time sheet overlaps.
+   * Iterates over the time sheets filtered by the given filter page by page (e. g. for streaming exports), so not all
+   * time sheets are loaded at once. The number of time sheets isn't limited by max rows.
+   */
+  public Iterator<TimesheetDO> iterate(final TimesheetFilter filter) {
+    if (filter.getStopTime() != null) {
+      PFDateTime dateTime = PFDateTime.from(filter.getStopTime()).getEndOfDay();
+      filter.setStopTime(dateTime.getUtilDate());
+    }
+    final QueryFilter queryFilter = buildQueryFilter(filter);
+    List<CustomResultFilter<TimesheetDO>> customResultFilters = null;
+    if (filter.isOnlyBillable()) {
+      customResultFilters = Collections.singletonList((list, entry) -> isBillable(entry));
+    }
+    return iterate(queryFilter, customResultFilters, ITERATE_PAGE_SIZE);
+  }
+
+  private boolean isBillable(final TimesheetDO entry) {
+    return entry.getKost2() != null && entry.getKost2().getKost2Art() != null && entry.getKost2().getKost2Art().getFakturiert();
+  }
+
+  /**
+   * Updates the durations of the task and its ancestors in the task tree and the time periods used for time sheet
+   * collision detection.
    */
   @Override
   protected void afterSaveOrModify(final TimesheetDO obj) {
     super.afterSaveOrModify(obj);
-    TaskTreeHelper.getTaskTree(obj).resetTotalDuration(obj.getTaskId());
+    TaskTreeHelper.getTaskTree(obj).refreshTotalDuration(obj.getTaskId());
+    timesheetOverlapCache.updateTimesheet(obj);
+  }
+
+  /**
+   * If the time sheet was moved to another task, the durations of the previous task (and its ancestors) are updated
+   * too. If the time sheet was moved to another user, it's removed from the time periods of the previous user and the
+   * calendar feeds of the previous user are invalidated.
+   */
+  @Override
+  protected void afterUpdate(final TimesheetDO obj, final TimesheetDO dbObj) {
+    super.afterUpdate(obj, dbObj);
+    if (dbObj != null && dbObj.getTaskId() != null && !dbObj.getTaskId().equals(obj.getTaskId())) {
+      TaskTreeHelper.getTaskTree(obj).refreshTotalDuration(dbObj.getTaskId());
+    }
+    if (dbObj != null && dbObj.getUserId() != null && !dbObj.getUserId().equals(obj.getUserId())) {
+      timesheetOverlapCache.removeTimesheet(dbObj.getUserId(), obj.getId());
+      getICalFeedCache().invalidateTimesheetUser(dbObj.getUserId());
+    }
+  }
+
+  private ICalFeedCache getICalFeedCache() {
+    if (iCalFeedCache == null) {
+      iCalFeedCache = ApplicationContextProvider.getApplicationContext().getBean(ICalFeedCache.class);
+    }
+    return iCalFeedCache;
+  }
+
+  @Override
+  protected void afterDelete(final TimesheetDO obj) {
+    super.afterDelete(obj);
+    timesheetOverlapCache.removeTimesheet(obj.getUserId(), obj.getId());
   }
 
   /**
@@ -312,13 +382,6 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
     }
   }
 
-  @Override
-  protected void onChange(final TimesheetDO obj, final TimesheetDO dbObj) {
-    if (obj.getTaskId().compareTo(dbObj.getTaskId()) != 0) {
-      TaskTreeHelper.getTaskTree(obj).resetTotalDuration(dbObj.getTaskId());
-    }
-  }
-
   @Override
   protected void prepareHibernateSearch(final TimesheetDO obj, final OperationType operationType) {
     final PFUserDO user = obj.getUser();
@@ -345,41 +408,58 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
 
   /**
    * Checks if the time sheet overlaps with another time sheet of the same user. Should be checked on every insert or
-   * update (also undelete). For time collision detection deleted time sheets are ignored.
+   * update (also undelete). For time collision detection deleted time sheets are ignored. The time periods of the
+   * user's time sheets are held by the {@link TimesheetOverlapCache}, so no data base query is needed.
    *
    * @return The existing time sheet with the time period collision.
    */
   public boolean hasTimeOverlap(final TimesheetDO timesheet, final boolean throwException) {
-    long begin = System.currentTimeMillis();
     Validate.notNull(timesheet);
     Validate.notNull(timesheet.getUser());
-    final QueryFilter queryFilter = new QueryFilter();
-    queryFilter.add(QueryFilter.eq("user", timesheet.getUser()));
-    queryFilter.add(QueryFilter.eq("deleted", false));
-    queryFilter.add(QueryFilter.lt("startTime", timesheet.getStopTime()));
-    queryFilter.add(QueryFilter.gt("stopTime", timesheet.getStartTime()));
-    if (timesheet.getId() != null) {
-      // Update time sheet, do not compare with itself.
-      queryFilter.add(QueryFilter.ne("id", timesheet.getId()));
-    }
-    final List<TimesheetDO> list = getList(queryFilter);
-    if (list != null && list.size() > 0) {
-      final TimesheetDO ts = list.get(0);
-      if (throwException) {
-        log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + ts);
-        final String startTime = DateHelper.formatIsoTimestamp(ts.getStartTime());
-        final String stopTime = DateHelper.formatIsoTimestamp(ts.getStopTime());
-        throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(ts.getId()),
-                new MessageParam(startTime),
-                new MessageParam(stopTime));
-      }
-      long end = System.currentTimeMillis();
-      log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
-      return true;
+    final TimesheetOverlapCache.TimePeriod overlap = timesheetOverlapCache.getOverlap(timesheet.getUserId(),
+            timesheet.getId(), timesheet.getStartTime(), timesheet.getStopTime());
+    if (overlap == null) {
+      return false;
     }
-    long end = System.currentTimeMillis();
-    log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
-    return false;
+    if (throwException) {
+      log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet #" + overlap.getId());
+      final String startTime = DateHelper.formatIsoTimestamp(new Date(overlap.getStartTime()));
+      final String stopTime = DateHelper.formatIsoTimestamp(new Date(overlap.getStopTime()));
+      throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(overlap.getId()),
+              new MessageParam(startTime),
+              new MessageParam(stopTime));
+    }
+    return true;
+  }
+
+  /**
+   * Checks the given time sheets (e. g. of an import or mass update) against the existing time sheets and against each
+   * other in one pass.
+   *
+   * @return All given time sheets with time period collisions, an empty list if no collisions were found.
+   * @see #hasTimeOverlap(TimesheetDO, boolean)
+   */
+  public List<TimesheetDO> getTimeOverlaps(final Collection<TimesheetDO> timesheets) {
+    return timesheetOverlapCache.getOverlaps(timesheets);
+  }
+
+  /**
+   * The given time sheets are checked against the existing time sheets and against each other first: the access checks
+   * of the single time sheets don't know the other time sheets of the batch.
+   *
+   * @see #getTimeOverlaps(Collection)
+   */
+  @Override
+  public BatchWriteStatistics saveOrUpdateInBatch(final Collection<TimesheetDO> col) throws AccessException {
+    final List<TimesheetDO> overlaps = getTimeOverlaps(col);
+    if (!overlaps.isEmpty()) {
+      final TimesheetDO overlap = overlaps.get(0);
+      log.info("Time sheet collision detected of " + overlaps.size() + " time sheets of batch, e. g. " + overlap);
+      throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(overlap.getId()),
+              new MessageParam(DateHelper.formatIsoTimestamp(overlap.getStartTime())),
+              new MessageParam(DateHelper.formatIsoTimestamp(overlap.getStopTime())));
+    }
+    return super.saveOrUpdateInBatch(col);
   }
 
   /**
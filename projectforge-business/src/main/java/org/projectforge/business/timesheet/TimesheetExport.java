@@ -47,6 +47,7 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -105,8 +106,16 @@ public class TimesheetExport {
    * Exports the filtered list as table with almost all fields.
    */
   public byte[] export(final List<TimesheetDO> list) {
+    return export(list.iterator());
+  }
+
+  /**
+   * Exports the time sheets as table with almost all fields. The time sheets are written to a streaming workbook one by
+   * one, so the iterator may load them lazily.
+   */
+  public byte[] export(final Iterator<TimesheetDO> it) {
     log.info("Exporting timesheet list.");
-    final ExportWorkbook xls = new ExportWorkbook();
+    final ExportWorkbook xls = ExportWorkbook.createStreamingWorkbook();
     final ContentProvider contentProvider = new MyContentProvider(xls);
     // create a default Date format and currency column
     xls.setContentProvider(contentProvider);
@@ -150,7 +159,8 @@ public class TimesheetExport {
     final PropertyMapping mapping = new PropertyMapping();
     final TaskTree taskTree = TaskTreeHelper.getTaskTree();
     final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
-    for (final TimesheetDO timesheet : list) {
+    while (it.hasNext()) {
+      final TimesheetDO timesheet = it.next();
       final TaskNode node = taskTree.getTaskNodeById(timesheet.getTaskId());
       final PFUserDO user = userGroupCache.getUser(timesheet.getUserId());
       mapping.add(Col.USER, user.getFullname());
@@ -0,0 +1,305 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.timesheet;
+
+import org.projectforge.framework.cache.AbstractCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the time periods of all non-deleted time sheets per user for detecting time sheet collisions (overlaps) without
+ * querying the data base. The time periods of a user are loaded on first use and are kept up to date by the
+ * {@link TimesheetDao} after every insert, update, (un)delete. The whole cache expires once a day.
+ */
+@Component
+public class TimesheetOverlapCache extends AbstractCache {
+  private static final Logger log = LoggerFactory.getLogger(TimesheetOverlapCache.class);
+
+  @Autowired
+  private EntityManager em;
+
+  /**
+   * The key is the user id.
+   */
+  private final Map<Integer, UserTimePeriods> userMap = new ConcurrentHashMap<>();
+
+  /**
+   * Modification counter per user (key is the user id). Time periods loaded while time sheets of the user were modified
+   * aren't installed, because the modifications may be missed by the loaded time periods.
+   */
+  private final Map<Integer, AtomicLong> modificationCounters = new ConcurrentHashMap<>();
+
+  public TimesheetOverlapCache() {
+    super(TICKS_PER_DAY);
+  }
+
+  /**
+   * @param userId      The owner of the time sheet.
+   * @param timesheetId The id of the time sheet to check (for updates) or null (for inserts). The time sheet itself is
+   *                    ignored.
+   * @return The first found time period of another non-deleted time sheet of the given user overlapping the given time
+   * period or null, if no collision exists.
+   */
+  public TimePeriod getOverlap(final Integer userId, final Integer timesheetId, final Date startTime, final Date stopTime) {
+    if (userId == null || startTime == null || stopTime == null) {
+      return null;
+    }
+    return getUserTimePeriods(userId).getOverlap(timesheetId, startTime.getTime(), stopTime.getTime(), null);
+  }
+
+  /**
+   * Checks all given time sheets against the stored time sheets and against each other in one pass per user (time
+   * sheets are sorted by start time). Stored versions of the given time sheets (updates) are ignored.
+   *
+   * @return All given time sheets with time period collisions, an empty list if no collisions were found.
+   */
+  public List<TimesheetDO> getOverlaps(final Collection<TimesheetDO> timesheets) {
+    final List<TimesheetDO> result = new ArrayList<>();
+    final Map<Integer, List<TimesheetDO>> byUser = new HashMap<>();
+    for (final TimesheetDO timesheet : timesheets) {
+      if (timesheet.isDeleted() || timesheet.getUserId() == null || timesheet.getStartTime() == null || timesheet.getStopTime() == null) {
+        continue;
+      }
+      byUser.computeIfAbsent(timesheet.getUserId(), key -> new ArrayList<>()).add(timesheet);
+    }
+    for (final Map.Entry<Integer, List<TimesheetDO>> entry : byUser.entrySet()) {
+      final List<TimesheetDO> list = entry.getValue();
+      list.sort(Comparator.comparing(TimesheetDO::getStartTime));
+      final Set<Integer> ids = new HashSet<>();
+      for (final TimesheetDO timesheet : list) {
+        if (timesheet.getId() != null) {
+          ids.add(timesheet.getId());
+        }
+      }
+      final UserTimePeriods timePeriods = getUserTimePeriods(entry.getKey());
+      long maxStopTime = Long.MIN_VALUE;
+      TimesheetDO maxStopTimesheet = null;
+      for (final TimesheetDO timesheet : list) {
+        final long startTime = timesheet.getStartTime().getTime();
+        final long stopTime = timesheet.getStopTime().getTime();
+        boolean overlap = timePeriods.getOverlap(timesheet.getId(), startTime, stopTime, ids) != null;
+        if (maxStopTime > startTime) {
+          // Collision with a previous time sheet of the given list:
+          overlap = true;
+          if (!result.contains(maxStopTimesheet)) {
+            result.add(maxStopTimesheet);
+          }
+        }
+        if (overlap) {
+          result.add(timesheet);
+        }
+        if (stopTime > maxStopTime) {
+          maxStopTime = stopTime;
+          maxStopTimesheet = timesheet;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Should be called after inserting, updating, deleting or undeleting the given time sheet.
+   */
+  public void updateTimesheet(final TimesheetDO timesheet) {
+    if (timesheet.getUserId() == null || timesheet.getId() == null) {
+      return;
+    }
+    incrementModificationCounter(timesheet.getUserId());
+    // Only present user entries are updated, all other will be read (up to date) from the data base on demand.
+    final UserTimePeriods timePeriods = userMap.get(timesheet.getUserId());
+    if (timePeriods == null) {
+      return;
+    }
+    if (timesheet.isDeleted()) {
+      timePeriods.remove(timesheet.getId());
+    } else {
+      timePeriods.put(new TimePeriod(timesheet.getId(), timesheet.getStartTime().getTime(), timesheet.getStopTime().getTime()));
+    }
+  }
+
+  /**
+   * Should be called after deleting a time sheet or after moving a time sheet to another user.
+   *
+   * @param userId The (previous) owner of the time sheet.
+   */
+  public void removeTimesheet(final Integer userId, final Integer timesheetId) {
+    if (userId == null) {
+      return;
+    }
+    incrementModificationCounter(userId);
+    final UserTimePeriods timePeriods = userMap.get(userId);
+    if (timePeriods != null) {
+      timePeriods.remove(timesheetId);
+    }
+  }
+
+  /**
+   * The time periods are loaded outside of the map. They're installed only if no time sheet of the user was modified
+   * while loading, otherwise they're used only for the current check and will be re-read on next use.
+   */
+  private UserTimePeriods getUserTimePeriods(final Integer userId) {
+    checkRefresh();
+    final UserTimePeriods timePeriods = userMap.get(userId);
+    if (timePeriods != null) {
+      return timePeriods;
+    }
+    final AtomicLong counter = getModificationCounter(userId);
+    final long modificationCounter = counter.get();
+    final UserTimePeriods loaded = load(userId);
+    if (counter.get() != modificationCounter) {
+      return loaded;
+    }
+    final UserTimePeriods existing = userMap.putIfAbsent(userId, loaded);
+    if (existing != null) {
+      return existing;
+    }
+    if (counter.get() != modificationCounter) {
+      // Modified after the check above, the modification may have missed the installed time periods:
+      userMap.remove(userId, loaded);
+    }
+    return loaded;
+  }
+
+  private AtomicLong getModificationCounter(final Integer userId) {
+    return modificationCounters.computeIfAbsent(userId, key -> new AtomicLong());
+  }
+
+  /**
+   * Must be called before applying a modification to the installed time periods of the user.
+   */
+  private void incrementModificationCounter(final Integer userId) {
+    getModificationCounter(userId).incrementAndGet();
+  }
+
+  private UserTimePeriods load(final Integer userId) {
+    final List<Tuple> list = em.createQuery("select t.id, t.startTime, t.stopTime from TimesheetDO t where t.user.id = :userId and t.deleted = false",
+            Tuple.class)
+            .setParameter("userId", userId)
+            .getResultList();
+    final UserTimePeriods timePeriods = new UserTimePeriods();
+    for (final Tuple tuple : list) {
+      timePeriods.put(new TimePeriod((Integer) tuple.get(0), ((Date) tuple.get(1)).getTime(), ((Date) tuple.get(2)).getTime()));
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Time periods of " + list.size() + " time sheets of user #" + userId + " loaded.");
+    }
+    return timePeriods;
+  }
+
+  /**
+   * Clears all time periods, they will be re-read on demand.
+   */
+  @Override
+  protected void refresh() {
+    log.info("Clearing timesheet overlap cache.");
+    userMap.clear();
+  }
+
+  /**
+   * Time period of a time sheet (epoch millis).
+   */
+  public static class TimePeriod {
+    private final Integer id;
+
+    private final long startTime;
+
+    private final long stopTime;
+
+    TimePeriod(final Integer id, final long startTime, final long stopTime) {
+      this.id = id;
+      this.startTime = startTime;
+      this.stopTime = stopTime;
+    }
+
+    /**
+     * @return The id of the time sheet.
+     */
+    public Integer getId() {
+      return id;
+    }
+
+    public long getStartTime() {
+      return startTime;
+    }
+
+    public long getStopTime() {
+      return stopTime;
+    }
+  }
+
+  /**
+   * The time periods of one user sorted by start time. Time periods are searched only within the maximum duration of
+   * the user's time sheets before the stop time of the given period, so only a few entries are checked.
+   */
+  private static class UserTimePeriods {
+    private final TreeMap<Long, List<TimePeriod>> byStartTime = new TreeMap<>();
+
+    private final Map<Integer, TimePeriod> byId = new HashMap<>();
+
+    private long maxDuration = 0;
+
+    synchronized TimePeriod getOverlap(final Integer id, final long startTime, final long stopTime, final Set<Integer> ignoreIds) {
+      for (final List<TimePeriod> periods : byStartTime.subMap(startTime - maxDuration, true, stopTime, false).values()) {
+        for (final TimePeriod period : periods) {
+          if (period.stopTime > startTime
+                  && !period.id.equals(id)
+                  && (ignoreIds == null || !ignoreIds.contains(period.id))) {
+            return period;
+          }
+        }
+      }
+      return null;
+    }
+
+    synchronized void put(final TimePeriod period) {
+      remove(period.id);
+      byId.put(period.id, period);
+      byStartTime.computeIfAbsent(period.startTime, key -> new ArrayList<>(1)).add(period);
+      maxDuration = Math.max(maxDuration, period.stopTime - period.startTime);
+    }
+
+    synchronized void remove(final Integer id) {
+      final TimePeriod period = byId.remove(id);
+      if (period == null) {
+        return;
+      }
+      final List<TimePeriod> periods = byStartTime.get(period.startTime);
+      if (periods != null) {
+        periods.remove(period);
+        if (periods.isEmpty()) {
+          byStartTime.remove(period.startTime);
+        }
+      }
+    }
+  }
+}
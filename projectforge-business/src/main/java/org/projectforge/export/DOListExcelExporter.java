@@ -42,12 +42,22 @@ public class DOListExcelExporter extends MyExcelExporter
    * @param filename
    */
   public DOListExcelExporter(final String filenameIdentifier)
+  {
+    this(filenameIdentifier, false);
+  }
+
+  /**
+   * @param filenameIdentifier
+   * @param streaming If true, a streaming workbook (xlsx) is used for large exports.
+   * @see MyExcelExporter#MyExcelExporter(String, boolean)
+   */
+  public DOListExcelExporter(final String filenameIdentifier, final boolean streaming)
   {
     super("ProjectForge-"
         + (filenameIdentifier != null ? filenameIdentifier : "export")
         + "_"
         + DateHelper.getDateAsFilenameSuffix(new Date())
-        + ".xls");
+        + (streaming ? ".xlsx" : ".xls"), streaming);
   }
 
   /**
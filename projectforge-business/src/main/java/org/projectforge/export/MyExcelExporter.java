@@ -44,6 +44,16 @@ public class MyExcelExporter extends ExcelExporter
     super(filename);
   }
 
+  /**
+   * @param filename
+   * @param streaming
+   * @see ExcelExporter#ExcelExporter(String, boolean)
+   */
+  public MyExcelExporter(final String filename, final boolean streaming)
+  {
+    super(filename, streaming);
+  }
+
   public ExportSheet addSheet(final String sheetTitle)
   {
     final ContentProvider contentProvider = new MyXlsContentProvider(getWorkbook())
@@ -103,10 +103,8 @@ public class AccessCheckerImpl implements AccessChecker, Serializable {
       }
       return false;
     }
-    for (final Integer groupId : groupIds) {
-      if (node.hasPermission(groupId, accessType, operationType)) {
-        return true;
-      }
+    if (getTaskTree().getPermissionMatrix().hasPermission(node, groupIds, accessType, operationType)) {
+      return true;
     }
     if (throwException) {
       throw new AccessException(taskId, accessType, operationType);
@@ -59,11 +59,11 @@ public abstract class AbstractCache implements Serializable
 
   protected long expireTime = 60 * TICKS_PER_MINUTE;
 
-  private transient long timeOfLastRefresh = -1;
+  private transient volatile long timeOfLastRefresh = -1;
 
-  private transient boolean isExpired = true;
+  private transient volatile boolean isExpired = true;
 
-  private transient boolean refreshInProgress = false;
+  private transient volatile boolean refreshInProgress = false;
 
   protected AbstractCache()
   {
@@ -110,9 +110,19 @@ public abstract class AbstractCache implements Serializable
   }
 
   /**
-   * Checks the expire time and calls refresh, if cache is expired.
+   * Checks the expire time and calls refresh, if cache is expired. Readers of a non-expired cache don't synchronize.
+   * For caches without blocking refreshs, see {@link AbstractSnapshotCache}.
    */
-  protected synchronized void checkRefresh()
+  protected void checkRefresh()
+  {
+    if (!this.isExpired && System.currentTimeMillis() - this.timeOfLastRefresh <= this.expireTime) {
+      // Fast path (most calls): no need to get the monitor.
+      return;
+    }
+    synchronizedCheckRefresh();
+  }
+
+  private synchronized void synchronizedCheckRefresh()
   {
     if (refreshInProgress) {
       // Do nothing because refreshing is already in progress.
@@ -0,0 +1,291 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base class for caches holding an immutable snapshot of their data. In contrast to {@link AbstractCache} readers never
+ * block and never see half-built data: after expiry the current (stale) snapshot is served while a new snapshot is built
+ * in the background and published by one atomic swap (stale-while-revalidate). Only the very first access (no snapshot
+ * available yet) has to wait for the initial build.
+ * <br/>
+ * Derived classes should hold all their data in the snapshot object S and must not modify a published snapshot.
+ *
+ * @param <S> The type of the immutable snapshot.
+ */
+public abstract class AbstractSnapshotCache<S>
+{
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AbstractSnapshotCache.class);
+
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+
+  /**
+   * Shared by all snapshot caches. At maximum one reload per cache is running at the same time.
+   */
+  private static final ExecutorService reloadExecutor = Executors.newCachedThreadPool(runnable -> {
+    final Thread thread = new Thread(runnable, "SnapshotCacheReload-" + threadCounter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Statistics of a cache (hits, misses, refresh durations).
+   */
+  public static class Statistics
+  {
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder refreshCounter = new LongAdder();
+
+    private final LongAdder refreshFailures = new LongAdder();
+
+    private final LongAdder totalRefreshDuration = new LongAdder();
+
+    private volatile long lastRefreshDuration = -1;
+
+    /**
+     * @return Number of reads served by an up-to-date snapshot.
+     */
+    public long getHits()
+    {
+      return hits.sum();
+    }
+
+    /**
+     * @return Number of reads served by an expired snapshot (while reloading).
+     */
+    public long getStaleHits()
+    {
+      return staleHits.sum();
+    }
+
+    /**
+     * @return Number of reads which had to wait for the initial build of the snapshot.
+     */
+    public long getMisses()
+    {
+      return misses.sum();
+    }
+
+    public long getRefreshCounter()
+    {
+      return refreshCounter.sum();
+    }
+
+    public long getRefreshFailures()
+    {
+      return refreshFailures.sum();
+    }
+
+    /**
+     * @return Duration of the last refresh in milliseconds or -1 if not yet refreshed.
+     */
+    public long getLastRefreshDuration()
+    {
+      return lastRefreshDuration;
+    }
+
+    /**
+     * @return Average duration of the refreshs in milliseconds or -1 if not yet refreshed.
+     */
+    public long getAverageRefreshDuration()
+    {
+      final long counter = refreshCounter.sum();
+      return counter > 0 ? totalRefreshDuration.sum() / counter : -1;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "hits=" + getHits() + ", staleHits=" + getStaleHits() + ", misses=" + getMisses()
+          + ", refreshs=" + getRefreshCounter() + ", failures=" + getRefreshFailures()
+          + ", lastRefresh=" + getLastRefreshDuration() + "ms, avgRefresh=" + getAverageRefreshDuration() + "ms";
+    }
+  }
+
+  protected long expireTime = 60 * AbstractCache.TICKS_PER_MINUTE;
+
+  private final AtomicReference<S> snapshot = new AtomicReference<>();
+
+  private final AtomicBoolean reloadInProgress = new AtomicBoolean();
+
+  private final Statistics statistics = new Statistics();
+
+  private volatile long timeOfLastRefresh = -1;
+
+  private volatile boolean isExpired = true;
+
+  protected AbstractSnapshotCache()
+  {
+  }
+
+  /**
+   * @param expireTime in milliseconds.
+   */
+  protected AbstractSnapshotCache(final long expireTime)
+  {
+    this.expireTime = expireTime;
+  }
+
+  public void setExpireTimeInMinutes(final long expireTime)
+  {
+    this.expireTime = expireTime * AbstractCache.TICKS_PER_MINUTE;
+  }
+
+  /**
+   * The cache will be reloaded in the background on next use. Until the new snapshot is available, the current one
+   * is served.
+   */
+  public void setExpired()
+  {
+    this.isExpired = true;
+  }
+
+  /**
+   * Builds a new snapshot synchronously in the caller's thread and publishes it.
+   */
+  public void forceReload()
+  {
+    reload();
+  }
+
+  /**
+   * @return true if currently a reload of the snapshot is running, otherwise false.
+   */
+  public boolean isRefreshInProgress()
+  {
+    return reloadInProgress.get();
+  }
+
+  public Statistics getStatistics()
+  {
+    return statistics;
+  }
+
+  /**
+   * Gets the current snapshot. If the snapshot is expired, the reload is started in the background and the current
+   * (stale) snapshot is returned. Only if no snapshot exists yet, the caller waits for the initial build.
+   */
+  protected S getSnapshot()
+  {
+    final S current = snapshot.get();
+    if (current == null) {
+      statistics.misses.increment();
+      synchronized (this) {
+        // Only the first callers are waiting for the initial build:
+        if (snapshot.get() == null) {
+          reload();
+        }
+      }
+      return snapshot.get();
+    }
+    if (this.isExpired || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
+      statistics.staleHits.increment();
+      if (reloadInProgress.compareAndSet(false, true)) {
+        try {
+          reloadExecutor.execute(() -> {
+            try {
+              doReload();
+            } finally {
+              reloadInProgress.set(false);
+            }
+          });
+        } catch (final RuntimeException ex) {
+          reloadInProgress.set(false);
+          log.error("Can't start background reload of " + getClass().getSimpleName() + ": " + ex.getMessage(), ex);
+        }
+      }
+      return current;
+    }
+    statistics.hits.increment();
+    return current;
+  }
+
+  /**
+   * Publishes a snapshot derived from the current one (e. g. after an incremental update of the cached data) without
+   * a full rebuild.
+   */
+  protected void updateSnapshot(final S newSnapshot)
+  {
+    if (newSnapshot != null) {
+      snapshot.set(newSnapshot);
+    }
+  }
+
+  private void reload()
+  {
+    // Other readers are served by the current snapshot while reloading:
+    reloadInProgress.set(true);
+    try {
+      doReload();
+    } finally {
+      reloadInProgress.set(false);
+    }
+  }
+
+  private void doReload()
+  {
+    final long begin = System.currentTimeMillis();
+    // Mark as refreshed before building, so modifications while building will expire the new snapshot again:
+    this.isExpired = false;
+    this.timeOfLastRefresh = begin;
+    try {
+      final S newSnapshot = buildSnapshot();
+      if (newSnapshot != null) {
+        snapshot.set(newSnapshot);
+      }
+    } catch (final Throwable ex) {
+      statistics.refreshFailures.increment();
+      log.error("Error while building snapshot of " + getClass().getSimpleName() + ": " + ex.getMessage(), ex);
+      return;
+    }
+    final long duration = System.currentTimeMillis() - begin;
+    statistics.refreshCounter.increment();
+    statistics.totalRefreshDuration.add(duration);
+    statistics.lastRefreshDuration = duration;
+    if (log.isDebugEnabled()) {
+      log.debug("Snapshot of " + getClass().getSimpleName() + " built in " + duration + "ms: " + statistics);
+    }
+  }
+
+  /**
+   * Please implement this method building a new immutable snapshot of the cached data. This method is called in a
+   * background thread (or in the caller's thread for the initial build and for {@link #forceReload()}), so don't rely on
+   * thread locals such as the logged-in user.
+   *
+   * @return The new snapshot. If null is returned, the current snapshot remains.
+   */
+  protected abstract S buildSnapshot();
+}
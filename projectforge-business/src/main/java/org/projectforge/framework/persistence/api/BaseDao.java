@@ -42,10 +42,14 @@ import org.projectforge.framework.access.AccessException;
 import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter;
+import org.projectforge.framework.persistence.api.impl.DBPageIterator;
 import org.projectforge.framework.persistence.api.impl.DBQuery;
+import org.projectforge.framework.persistence.api.impl.DBResultPage;
 import org.projectforge.framework.persistence.api.impl.HibernateSearchMeta;
 import org.projectforge.framework.persistence.database.DatabaseDao;
+import org.projectforge.framework.persistence.history.DisplayHistoryCache;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
+import org.projectforge.framework.persistence.history.HistoryValueResolver;
 import org.projectforge.framework.persistence.history.HibernateSearchDependentObjectsReindexer;
 import org.projectforge.framework.persistence.history.HistoryBaseDaoAdapter;
 import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
@@ -93,6 +97,8 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
 
   private final List<BaseDOChangedListener<O>> objectChangedListeners = new LinkedList<>();
 
+  private final DisplayHistoryCache displayHistoryCache = new DisplayHistoryCache();
+
   protected Class<O> clazz;
 
   private String identifier;
@@ -319,6 +325,29 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return dbQuery.getList(this, filter, null, false, filter.getIgnoreTenant());
   }
 
+  /**
+   * Gets one page of the list filtered by the given filter (keyset pagination). Use this for iterating over huge
+   * result lists (e. g. for exports) without loading all entries at once.
+   *
+   * @param pageSize The maximum size of the page.
+   * @param cursor   The cursor of the previous page ({@link DBResultPage#getCursor()}) or null for the first page.
+   * @see DBQuery#getPage(BaseDao, QueryFilter, List, int, String, boolean, boolean)
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public DBResultPage<O> getPage(final QueryFilter filter, List<CustomResultFilter<O>> customResultFilters, final int pageSize, final String cursor) throws AccessException {
+    return dbQuery.getPage(this, filter, customResultFilters, pageSize, cursor, true, filter.getIgnoreTenant());
+  }
+
+  /**
+   * Iterates over all entries filtered by the given filter page by page (see {@link #getPage(QueryFilter, List, int, String)}),
+   * so only one page is held in memory at once. The number of entries isn't limited by {@link QueryFilter#getMaxRows()}.
+   *
+   * @param pageSize The number of entries fetched at once.
+   */
+  public Iterator<O> iterate(final QueryFilter filter, final List<CustomResultFilter<O>> customResultFilters, final int pageSize) {
+    return new DBPageIterator<>(this, filter, customResultFilters, pageSize);
+  }
+
   /**
    * idSet.contains(entry.getId()) at default.
    */
@@ -339,6 +368,16 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return idSet.contains(entry.getId().longValue());
   }
 
+  /**
+   * Binary search of entry.getId() in the given sorted array of ids.
+   */
+  public boolean containsLong(final long[] sortedIds, final O entry) {
+    if (sortedIds == null) {
+      return false;
+    }
+    return Arrays.binarySearch(sortedIds, entry.getId().longValue()) >= 0;
+  }
+
   protected List<O> selectUnique(final List<O> list) {
     @SuppressWarnings("unchecked") final List<O> result = (List<O>) CollectionUtils.select(list, PredicateUtils.uniquePredicate());
     return result;
@@ -436,33 +475,55 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return internalGetDisplayHistoryEntries(obj);
   }
 
+  /**
+   * The converted entries are cached for the current version of the object's history.
+   */
   protected List<DisplayHistoryEntry> internalGetDisplayHistoryEntries(final BaseDO<?> obj) {
     accessChecker.checkRestrictedUser();
     final HistoryEntry[] entries = internalGetHistoryEntries(obj);
     if (entries == null) {
       return null;
     }
-    return convertAll(entries, em);
+    List<DisplayHistoryEntry> list = displayHistoryCache.get(obj, entries);
+    if (list != null) {
+      return list;
+    }
+    list = convertAll(entries, em);
+    displayHistoryCache.put(obj, entries, list);
+    return list;
   }
 
+  /**
+   * All objects referenced by the given entries are loaded at once (one query per entity type).
+   */
   @SuppressWarnings("rawtypes")
   private List<DisplayHistoryEntry> convertAll(final HistoryEntry[] entries, final EntityManager em) {
+    final HistoryValueResolver resolver = new HistoryValueResolver(em);
+    for (final HistoryEntry entry : entries) {
+      resolver.register(entry);
+    }
     final List<DisplayHistoryEntry> list = new ArrayList<>();
     for (final HistoryEntry entry : entries) {
-      final List<DisplayHistoryEntry> l = convert(entry, em);
+      final List<DisplayHistoryEntry> l = convert(entry, resolver);
       list.addAll(l);
     }
     return list;
   }
 
   public List<DisplayHistoryEntry> convert(final HistoryEntry<?> entry, final EntityManager em) {
+    final HistoryValueResolver resolver = new HistoryValueResolver(em);
+    resolver.register(entry);
+    return convert(entry, resolver);
+  }
+
+  private List<DisplayHistoryEntry> convert(final HistoryEntry<?> entry, final HistoryValueResolver resolver) {
     if (entry.getDiffEntries().isEmpty()) {
       final DisplayHistoryEntry se = new DisplayHistoryEntry(getUserGroupCache(), entry);
       return Collections.singletonList(se);
     }
     List<DisplayHistoryEntry> result = new ArrayList<>();
     for (DiffEntry prop : entry.getDiffEntries()) {
-      DisplayHistoryEntry se = new DisplayHistoryEntry(getUserGroupCache(), entry, prop, em);
+      DisplayHistoryEntry se = new DisplayHistoryEntry(getUserGroupCache(), entry, prop, resolver);
       result.add(se);
     }
 
@@ -640,6 +701,7 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
   }
 
   protected void callObjectChangedListeners(final O obj, final OperationType operationType) {
+    displayHistoryCache.remove(obj);
     for (final BaseDOChangedListener<O> objectChangedListener : objectChangedListeners) {
       objectChangedListener.afterSaveOrModifify(obj, operationType);
     }
@@ -702,6 +764,31 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     BaseDaoSupport.internalSaveOrUpdate(this, col, blockSize);
   }
 
+  /**
+   * Batch write: saves (id is null) or updates all entries in one transaction using JDBC batching. The side effects
+   * (afterSave, afterUpdate, object changed listeners, re-indexing of dependent objects) are called after commit.
+   *
+   * @param col Entries to save or update.
+   * @return The statistics (number of written objects and throughput).
+   * @throws AccessException if the logged-in user has no insert or update access for any entry.
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public BatchWriteStatistics saveOrUpdateInBatch(final Collection<O> col) throws AccessException {
+    return BaseDaoSupport.internalSaveOrUpdateInBatch(this, col, true);
+  }
+
+  /**
+   * Batch write without check access.
+   *
+   * @param col Entries to save or update without check access.
+   * @return The statistics (number of written objects and throughput).
+   * @see #saveOrUpdateInBatch(Collection)
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public BatchWriteStatistics internalSaveOrUpdateInBatch(final Collection<O> col) {
+    return BaseDaoSupport.internalSaveOrUpdateInBatch(this, col, false);
+  }
+
   /**
    * @return true, if modifications were done, false if no modification detected.
    * @see #internalUpdate(ExtendedBaseDO, boolean)
@@ -914,7 +1001,7 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     }
   }
 
-  private void checkLoggedInUserInsertAccess(final O obj) throws AccessException {
+  void checkLoggedInUserInsertAccess(final O obj) throws AccessException {
     checkInsertAccess(ThreadLocalUserContext.getUser(), obj);
   }
 
@@ -1268,6 +1355,14 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     hibernateSearchDependentObjectsReindexer.reindexDependents(obj);
   }
 
+  /**
+   * Re-index all dependent objects of the given objects in one pass.
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void reindexDependentObjects(final Collection<O> col) {
+    hibernateSearchDependentObjectsReindexer.reindexDependents(col);
+  }
+
   @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public void massUpdate(final List<O> list, final O master) {
     if (list == null || list.size() == 0) {
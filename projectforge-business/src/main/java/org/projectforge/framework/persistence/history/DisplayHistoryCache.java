@@ -0,0 +1,148 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import de.micromata.genome.db.jpa.history.api.HistoryEntry;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.persistence.api.BaseDO;
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+
+import java.util.*;
+
+/**
+ * Caches the formatted history entries ({@link DisplayHistoryEntry}) of objects, so the referenced objects of long
+ * histories aren't resolved again on every view. An entry is only valid for the version of the history it was built
+ * from (number of history entries and time stamp of the newest one) and is removed on modification of the object.
+ * The formatting depends on the user's time zone and locale, so these are part of the key.
+ * <br/>
+ * The cache is cleared every hour, because display names of referenced objects (e. g. task titles) may change.
+ */
+public class DisplayHistoryCache extends AbstractCache {
+  private static final long serialVersionUID = 6190383521620446270L;
+
+  /**
+   * Maximum number of cached objects (least recently used entries are removed).
+   */
+  static final int MAX_SIZE = 200;
+
+  private transient Map<String, Entry> entries = createMap();
+
+  public DisplayHistoryCache() {
+    super(TICKS_PER_HOUR);
+  }
+
+  /**
+   * @param historyEntries The current history entries of the object (for validation).
+   * @return Copies of the cached display entries (the caller may modify them) or null, if not cached or not valid.
+   */
+  public List<DisplayHistoryEntry> get(final BaseDO<?> obj, final HistoryEntry<?>[] historyEntries) {
+    checkRefresh();
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.get(getKey(obj));
+    }
+    if (entry == null || !entry.version.equals(getVersion(historyEntries))) {
+      return null;
+    }
+    final List<DisplayHistoryEntry> result = new ArrayList<>(entry.displayEntries.size());
+    for (final DisplayHistoryEntry displayEntry : entry.displayEntries) {
+      result.add(new DisplayHistoryEntry(displayEntry));
+    }
+    return result;
+  }
+
+  /**
+   * Stores copies of the given display entries.
+   */
+  public void put(final BaseDO<?> obj, final HistoryEntry<?>[] historyEntries, final List<DisplayHistoryEntry> displayEntries) {
+    checkRefresh();
+    final List<DisplayHistoryEntry> copy = new ArrayList<>(displayEntries.size());
+    for (final DisplayHistoryEntry displayEntry : displayEntries) {
+      copy.add(new DisplayHistoryEntry(displayEntry));
+    }
+    final Entry entry = new Entry(getVersion(historyEntries), copy);
+    synchronized (this) {
+      entries.put(getKey(obj), entry);
+    }
+  }
+
+  /**
+   * Removes the entries of the given object (for all users).
+   */
+  public void remove(final BaseDO<?> obj) {
+    if (obj == null || obj.getId() == null) {
+      return;
+    }
+    final String prefix = getClassName(obj) + "#" + obj.getId() + "#";
+    synchronized (this) {
+      entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+  }
+
+  private String getKey(final BaseDO<?> obj) {
+    return getClassName(obj) + "#" + obj.getId() + "#" + ThreadLocalUserContext.getTimeZone().getID()
+            + "#" + ThreadLocalUserContext.getLocale();
+  }
+
+  private String getClassName(final BaseDO<?> obj) {
+    return HibernateProxyHelper.getClassWithoutInitializingProxy(obj).getName();
+  }
+
+  private String getVersion(final HistoryEntry<?>[] historyEntries) {
+    if (historyEntries.length == 0) {
+      return "0";
+    }
+    // History entries are sorted by modification date (newest first).
+    return historyEntries.length + ":" + historyEntries[0].getModifiedAt().getTime();
+  }
+
+  @Override
+  protected synchronized void refresh() {
+    entries = createMap();
+  }
+
+  private static Map<String, Entry> createMap() {
+    return new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+        return size() > MAX_SIZE;
+      }
+    };
+  }
+
+  private static class Entry {
+    private final String version;
+
+    private final List<DisplayHistoryEntry> displayEntries;
+
+    private Entry(final String version, final List<DisplayHistoryEntry> displayEntries) {
+      this.version = version;
+      this.displayEntries = displayEntries;
+    }
+  }
+}
@@ -27,17 +27,14 @@ import de.micromata.genome.db.jpa.history.api.DiffEntry;
 import de.micromata.genome.db.jpa.history.api.HistProp;
 import de.micromata.genome.db.jpa.history.api.HistoryEntry;
 import de.micromata.genome.db.jpa.history.entities.EntityOpType;
-import de.micromata.genome.jpa.metainf.EntityMetadata;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Transformer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
-import org.jfree.util.Log;
 import org.projectforge.business.address.AddressbookDO;
 import org.projectforge.business.fibu.EmployeeDO;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.framework.DisplayNameCapable;
-import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.framework.utils.NumberHelper;
@@ -96,8 +93,30 @@ public class DisplayHistoryEntry implements Serializable {
     return userGroupCache.getUser(id);
   }
 
+  /**
+   * Copy constructor (used for returning cached entries).
+   */
+  public DisplayHistoryEntry(final DisplayHistoryEntry src) {
+    this.user = src.user;
+    this.entryType = src.entryType;
+    this.propertyName = src.propertyName;
+    this.propertyType = src.propertyType;
+    this.oldValue = src.oldValue;
+    this.newValue = src.newValue;
+    this.timestamp = src.timestamp;
+  }
+
   public DisplayHistoryEntry(final UserGroupCache userGroupCache, final HistoryEntry entry, final DiffEntry prop,
                              final EntityManager em) {
+    this(userGroupCache, entry, prop, new HistoryValueResolver(em));
+  }
+
+  /**
+   * @param resolver For resolving referenced data base objects. Use the same resolver for all entries of an object
+   *                 for loading all referenced objects at once.
+   */
+  public DisplayHistoryEntry(final UserGroupCache userGroupCache, final HistoryEntry entry, final DiffEntry prop,
+                             final HistoryValueResolver resolver) {
     this(userGroupCache, entry);
     if (prop.getNewProp() != null) {
       this.propertyType = prop.getNewProp().getType();
@@ -111,7 +130,7 @@ public class DisplayHistoryEntry implements Serializable {
     Object newObjectValue = null;
 
     try {
-      oldObjectValue = getObjectValue(userGroupCache, em, prop.getOldProp());
+      oldObjectValue = getObjectValue(userGroupCache, resolver, prop.getOldProp());
     } catch (final Exception ex) {
       oldObjectValue = "???";
       log.warn("Error while try to parse old object value '"
@@ -123,7 +142,7 @@ public class DisplayHistoryEntry implements Serializable {
     }
 
     try {
-      newObjectValue = getObjectValue(userGroupCache, em, prop.getNewProp());
+      newObjectValue = getObjectValue(userGroupCache, resolver, prop.getNewProp());
     } catch (final Exception ex) {
       newObjectValue = "???";
       log.warn("Error while try to parse new object value '"
@@ -152,7 +171,7 @@ public class DisplayHistoryEntry implements Serializable {
     return String.valueOf(toShortNameOfList(value));
   }
 
-  protected Object getObjectValue(UserGroupCache userGroupCache, EntityManager em, HistProp prop) {
+  protected Object getObjectValue(UserGroupCache userGroupCache, HistoryValueResolver resolver, HistProp prop) {
     if (prop == null) {
       return null;
     }
@@ -171,7 +190,7 @@ public class DisplayHistoryEntry implements Serializable {
     }
     if (EmployeeDO.class.getName().equals(type) || AddressbookDO.class.getName().equals(type)) {
       StringBuffer sb = new StringBuffer();
-      getDBObjects(em, prop).forEach(dbObject -> {
+      resolver.getDBObjects(prop).forEach(dbObject -> {
         if (dbObject instanceof EmployeeDO) {
           EmployeeDO employee = (EmployeeDO) dbObject;
           sb.append(employee.getUser().getFullname() + ";");
@@ -185,32 +204,7 @@ public class DisplayHistoryEntry implements Serializable {
       return sb.toString();
     }
 
-    return getDBObjects(em, prop);
-  }
-
-  private List<Object> getDBObjects(EntityManager em, HistProp prop) {
-    List<Object> ret = new ArrayList<>();
-    EntityMetadata emd = PfEmgrFactory.get().getMetadataRepository().findEntityMetadata(prop.getType());
-    if (emd == null) {
-      ret.add(prop.getValue());
-      return ret;
-    }
-    String[] sa = StringUtils.split(prop.getValue(), ", ");
-    if (sa == null || sa.length == 0) {
-      return Collections.emptyList();
-    }
-    for (String pks : sa) {
-      try {
-        int pk = Integer.parseInt(pks);
-        Object ent = em.find(emd.getJavaType(), pk);
-        if (ent != null) {
-          ret.add(ent);
-        }
-      } catch (NumberFormatException ex) {
-        Log.warn("Cannot parse pk: " + prop);
-      }
-    }
-    return ret;
+    return resolver.getDBObjects(prop);
   }
 
   private String formatDate(final Object objectValue) {
@@ -42,6 +42,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Hotfix: Hibernate-search does not update index of dependent objects.
@@ -56,6 +58,15 @@ public class HibernateSearchDependentObjectsReindexer {
   @Autowired
   private PfEmgrFactory emgrFactory;
 
+  /**
+   * Re-indexing is done in the background by one worker thread instead of a new thread per modified object.
+   */
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "HibernateSearchDependentObjectsReindexer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   /**
    * Key is the embedded class (annotated with @IndexEmbedded), value the set of all dependent objects.
    */
@@ -114,24 +125,42 @@ public class HibernateSearchDependentObjectsReindexer {
   }
 
   public void reindexDependents(final BaseDO<?> obj) {
-    new Thread() {
-      @Override
-      public void run() {
+    reindexDependents(Collections.singletonList(obj));
+  }
+
+  /**
+   * Re-indexes the dependents of all given objects in one transaction, dependents shared by several objects are
+   * re-indexed only once. The re-indexing is done asynchronously by one worker thread (in order of the calls).
+   *
+   * @param objs The modified objects.
+   */
+  public void reindexDependents(final Collection<? extends BaseDO<?>> objs) {
+    if (CollectionUtils.isEmpty(objs)) {
+      return;
+    }
+    final List<BaseDO<?>> list = new ArrayList<>(objs);
+    executor.submit(() -> {
+      try {
         emgrFactory.runInTrans(emgr -> {
                   final EntityManager em = emgr.getEntityManager();
                   final Set<String> alreadyReindexed = new HashSet<>();
-                  final List<Entry> entryList = map.get(obj.getClass());
-                  reindexDependents(em, obj, entryList, alreadyReindexed);
+                  for (final BaseDO<?> obj : list) {
+                    final List<Entry> entryList = map.get(obj.getClass());
+                    reindexDependents(em, obj, entryList, alreadyReindexed);
+                  }
                   final int size = alreadyReindexed.size();
                   if (size >= 10) {
+                    final BaseDO<?> obj = list.get(0);
                     log.info("Re-indexing of " + size + " objects done after updating " + obj.getClass().getName() + ":"
-                            + obj.getId());
+                            + obj.getId() + (list.size() > 1 ? " (and " + (list.size() - 1) + " more)" : ""));
                   }
                   return null;
                 }
         );
+      } catch (final Exception ex) {
+        log.error("Error while re-indexing dependent objects: " + ex.getMessage(), ex);
       }
-    }.start();
+    });
   }
 
   private void reindexDependents(final EntityManager em, final BaseDO<?> obj,
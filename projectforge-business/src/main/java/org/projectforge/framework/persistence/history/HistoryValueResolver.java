@@ -0,0 +1,192 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import de.micromata.genome.db.jpa.history.api.DiffEntry;
+import de.micromata.genome.db.jpa.history.api.HistProp;
+import de.micromata.genome.db.jpa.history.api.HistoryEntry;
+import de.micromata.genome.jpa.metainf.EntityMetadata;
+import org.apache.commons.lang3.StringUtils;
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import java.util.*;
+
+/**
+ * Resolves the data base objects referenced by history entries (e. g. tasks, kost2 or employees). The ids of all given
+ * history entries are collected first ({@link #register(HistoryEntry)}) and loaded with one query per entity type
+ * instead of loading each object by its own.
+ */
+public class HistoryValueResolver {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HistoryValueResolver.class);
+
+  /**
+   * Maximum number of ids per query (in-clause).
+   */
+  static final int MAX_IDS_PER_QUERY = 1000;
+
+  private final EntityManager em;
+
+  private final Map<Class<?>, Set<Integer>> pendingIds = new HashMap<>();
+
+  /**
+   * Loaded objects by entity type and id. Ids of objects not found are stored with value null.
+   */
+  private final Map<Class<?>, Map<Integer, Object>> loadedObjects = new HashMap<>();
+
+  private int queryCounter;
+
+  public HistoryValueResolver(final EntityManager em) {
+    this.em = em;
+  }
+
+  /**
+   * Registers all ids of objects referenced by the diff entries of the given history entry. They will be loaded on the
+   * first call of {@link #getDBObjects(HistProp)}.
+   */
+  public void register(final HistoryEntry<?> entry) {
+    for (final DiffEntry diffEntry : entry.getDiffEntries()) {
+      register(diffEntry.getOldProp());
+      register(diffEntry.getNewProp());
+    }
+  }
+
+  private void register(final HistProp prop) {
+    final Class<?> type = getEntityType(prop);
+    if (type == null || PFUserDO.class.equals(type)) {
+      // Users are resolved by the UserGroupCache.
+      return;
+    }
+    final String[] pks = StringUtils.split(prop.getValue(), ", ");
+    if (pks == null || pks.length == 0) {
+      return;
+    }
+    final Map<Integer, Object> loaded = loadedObjects.get(type);
+    final Set<Integer> ids = pendingIds.computeIfAbsent(type, key -> new HashSet<>());
+    for (final String pk : pks) {
+      final Integer id = parseId(pk, prop);
+      if (id != null && (loaded == null || !loaded.containsKey(id))) {
+        ids.add(id);
+      }
+    }
+  }
+
+  /**
+   * @return The objects referenced by the given property (comma separated ids) or the value itself, if the property
+   * isn't of any entity type.
+   */
+  public List<Object> getDBObjects(final HistProp prop) {
+    final Class<?> type = getEntityType(prop);
+    if (type == null) {
+      final List<Object> ret = new ArrayList<>();
+      ret.add(prop.getValue());
+      return ret;
+    }
+    final String[] pks = StringUtils.split(prop.getValue(), ", ");
+    if (pks == null || pks.length == 0) {
+      return Collections.emptyList();
+    }
+    register(prop); // Ids not registered before.
+    loadPending(type);
+    final Map<Integer, Object> loaded = loadedObjects.get(type);
+    final List<Object> ret = new ArrayList<>();
+    for (final String pk : pks) {
+      final Integer id = parseId(pk, prop);
+      final Object obj = id != null && loaded != null ? loaded.get(id) : null;
+      if (obj != null) {
+        ret.add(obj);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return The number of executed queries (for testing).
+   */
+  int getQueryCounter() {
+    return queryCounter;
+  }
+
+  private void loadPending(final Class<?> type) {
+    final Set<Integer> ids = pendingIds.remove(type);
+    if (ids == null || ids.isEmpty()) {
+      return;
+    }
+    final Map<Integer, Object> loaded = loadedObjects.computeIfAbsent(type, key -> new HashMap<>());
+    final EntityType<?> entityType = em.getMetamodel().entity(type);
+    if (!Integer.class.equals(entityType.getIdType().getJavaType())) {
+      // Shouldn't occur, all entities referenced by history entries have integer ids.
+      for (final Integer id : ids) {
+        ++queryCounter;
+        loaded.put(id, em.find(type, id));
+      }
+      return;
+    }
+    final String idAttribute = entityType.getId(entityType.getIdType().getJavaType()).getName();
+    final PersistenceUnitUtil persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+    final List<Integer> idList = new ArrayList<>(ids);
+    for (int fromIndex = 0; fromIndex < idList.size(); fromIndex += MAX_IDS_PER_QUERY) {
+      final List<Integer> chunk = idList.subList(fromIndex, Math.min(fromIndex + MAX_IDS_PER_QUERY, idList.size()));
+      for (final Integer id : chunk) {
+        loaded.put(id, null); // Marks the id as not found (overwritten below if found).
+      }
+      for (final Object obj : query(type, idAttribute, chunk)) {
+        loaded.put((Integer) persistenceUnitUtil.getIdentifier(obj), obj);
+      }
+    }
+  }
+
+  private <T> List<T> query(final Class<T> type, final String idAttribute, final Collection<Integer> ids) {
+    ++queryCounter;
+    final CriteriaBuilder cb = em.getCriteriaBuilder();
+    final CriteriaQuery<T> cq = cb.createQuery(type);
+    final Root<T> root = cq.from(type);
+    cq.select(root).where(root.get(idAttribute).in(ids));
+    return em.createQuery(cq).getResultList();
+  }
+
+  private Class<?> getEntityType(final HistProp prop) {
+    if (prop == null || StringUtils.isBlank(prop.getValue()) || prop.getType() == null) {
+      return null;
+    }
+    final EntityMetadata emd = PfEmgrFactory.get().getMetadataRepository().findEntityMetadata(prop.getType());
+    return emd != null ? emd.getJavaType() : null;
+  }
+
+  private Integer parseId(final String pk, final HistProp prop) {
+    try {
+      return Integer.parseInt(pk);
+    } catch (final NumberFormatException ex) {
+      log.warn("Cannot parse pk: " + prop);
+      return null;
+    }
+  }
+}
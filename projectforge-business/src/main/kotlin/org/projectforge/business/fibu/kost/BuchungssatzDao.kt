@@ -42,10 +42,18 @@ import org.projectforge.framework.persistence.api.impl.DBPredicate
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.projectforge.framework.persistence.utils.SQLHelper.ensureUniqueResult
 import org.projectforge.framework.time.PFDateTime.Companion.now
+import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Repository
 
 @Repository
 open class BuchungssatzDao : BaseDao<BuchungssatzDO>(BuchungssatzDO::class.java) {
+    @Autowired
+    private lateinit var ledgerCubeCache: LedgerCubeCache
+
+    init {
+        supportAfterUpdate = true // The month of a moved record has to be marked as dirty, see afterUpdate.
+    }
+
     override fun getAdditionalSearchFields(): Array<String> {
         return ADDITIONAL_SEARCH_FIELDS
     }
@@ -211,6 +219,23 @@ open class BuchungssatzDao : BaseDao<BuchungssatzDO>(BuchungssatzDO::class.java)
         return accessChecker.isUserMemberOfGroup(user, throwException, ProjectForgeGroup.FINANCE_GROUP)
     }
 
+    /**
+     * Marks the month of the record as dirty, so it will be aggregated again by the [LedgerCubeCache].
+     */
+    override fun afterSaveOrModify(obj: BuchungssatzDO) {
+        ledgerCubeCache.setDirty(obj)
+    }
+
+    /**
+     * Marks also the former month of the record as dirty (if the record was moved to another month).
+     */
+    override fun afterUpdate(obj: BuchungssatzDO, dbObj: BuchungssatzDO?) {
+        super.afterUpdate(obj, dbObj)
+        if (dbObj != null) {
+            ledgerCubeCache.setDirty(dbObj)
+        }
+    }
+
     open override fun newInstance(): BuchungssatzDO {
         return BuchungssatzDO()
     }
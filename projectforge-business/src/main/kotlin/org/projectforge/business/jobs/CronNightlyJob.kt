@@ -25,6 +25,7 @@ package org.projectforge.business.jobs
 
 import mu.KotlinLogging
 import org.projectforge.business.meb.MebJobExecutor
+import org.projectforge.business.sync.SyncJournalService
 import org.projectforge.framework.persistence.history.HibernateSearchReindexer
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.scheduling.annotation.Scheduled
@@ -46,6 +47,9 @@ class CronNightlyJob {
     @Autowired
     private var mebJobExecutor: MebJobExecutor? = null
 
+    @Autowired
+    private lateinit var syncJournalService: SyncJournalService
+
     //@Scheduled(cron = "0 30 2 * * *")
     @Scheduled(cron = "\${projectforge.cron.nightly}")
     fun execute() {
@@ -63,6 +67,11 @@ class CronNightlyJob {
                 log.error("While executing MEB job: " + ex.message, ex)
             }
         }
+        try {
+            syncJournalService.prune()
+        } catch (ex: Throwable) {
+            log.error("While pruning sync journal: " + ex.message, ex)
+        }
 
         log.info("Nightly job job finished.")
     }
@@ -0,0 +1,86 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.scripting
+
+import java.security.MessageDigest
+
+/**
+ * LRU cache of compiled scripts (Groovy script classes or compiled Kotlin scripts). The entries are validated by the
+ * hash of the script content, so modified scripts are compiled again on next use. Compiled scripts must be usable by
+ * multiple threads (each run has to use its own bindings).
+ *
+ * @param maxSize Maximum number of cached scripts, the least recently used entries are removed.
+ */
+class CompiledScriptCache<T>(private val maxSize: Int = 100) {
+    private class Entry<T>(val contentHash: String, val compiled: T)
+
+    private val map = object : LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry<T>>?): Boolean {
+            return size > maxSize
+        }
+    }
+
+    /**
+     * Gets the compiled script from the cache or compiles it (outside any lock, so compiling scripts don't block each
+     * other).
+     * @param key Key of the script (e. g. id of [ScriptDO]). If null, the hash of the content is used as key and
+     * no statistics are recorded.
+     * @param content The script content (the effective script including any auto imports).
+     * @param compile Compiles the script, null results (compile errors) aren't cached.
+     */
+    fun getOrCompile(key: String?, content: String, compile: () -> T?): T? {
+        val contentHash = hash(content)
+        val effectiveKey = key ?: contentHash
+        synchronized(map) {
+            val entry = map[effectiveKey]
+            if (entry != null && entry.contentHash == contentHash) {
+                return entry.compiled
+            }
+        }
+        val begin = System.currentTimeMillis()
+        val compiled = compile() ?: return null
+        key?.let { ScriptStatistics.get(it).recordCompile(System.currentTimeMillis() - begin) }
+        synchronized(map) {
+            map[effectiveKey] = Entry(contentHash, compiled)
+        }
+        return compiled
+    }
+
+    fun remove(key: String) {
+        synchronized(map) {
+            map.remove(key)
+        }
+    }
+
+    val size: Int
+        get() = synchronized(map) { map.size }
+
+    companion object {
+        fun hash(content: String): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(content.toByteArray(Charsets.UTF_8))
+            return digest.joinToString("") { String.format("%02x", it) }
+        }
+    }
+}
@@ -24,6 +24,9 @@
 package org.projectforge.business.scripting
 
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentLinkedQueue
+import javax.script.Compilable
+import javax.script.CompiledScript
 import javax.script.ScriptEngineManager
 
 object KotlinScriptExecutor {
@@ -52,22 +55,23 @@ object KotlinScriptExecutor {
             "import org.projectforge.common.*")
 
     /**
+     * Compiled scripts (key is the given cache key or the hash of the script).
+     */
+    private val compiledScripts = CompiledScriptCache<CompiledScriptInstances>(MAX_CACHED_SCRIPTS)
+
+    /**
+     * The script is compiled only once and cached (as long as the script isn't modified). Each run uses its own bindings.
+     * A compiled script and its engine aren't thread safe, so each run borrows a compiled instance of the script
+     * exclusively: concurrent runs of the same script use different instances (compiled on demand).
      * @param script Common imports will be prepended.
      * @param variables Variables to bind. Variables are usable via binding["key"] or directly, if #autobind# is part of script.
+     * @param cacheKey Key of the compiled script in the cache (e. g. id of the ScriptDO). If null, the hash of the
+     * script is used.
      * @see GroovyExecutor.executeTemplate
      */
     @JvmStatic
     @JvmOverloads
-    fun execute(script: String, variables: Map<String, Any>, file: ByteArray? = null, filename: String? = null): ScriptExecutionResult {
-        val engine = MyKotlinScriptEngineFactory().scriptEngine
-        val bindings = engine.createBindings()
-        variables.forEach {
-            bindings[it.key] = it.value
-        }
-        if (file != null) {
-            bindings["file"] = file
-            bindings["filename"] = filename
-        }
+    fun execute(script: String, variables: Map<String, Any>, file: ByteArray? = null, filename: String? = null, cacheKey: String? = null): ScriptExecutionResult {
         val sb = StringBuilder()
         sb.appendln(autoImports.joinToString("\n"))
         sb.append(script)
@@ -75,7 +79,27 @@ object KotlinScriptExecutor {
         try {
             val result = ScriptExecutionResult()
             result.script = effectiveScript
-            result.result = engine.eval(effectiveScript, bindings)
+            val instances = compiledScripts.getOrCompile(cacheKey, effectiveScript) {
+                compile(effectiveScript)?.let { CompiledScriptInstances(effectiveScript, cacheKey, it) }
+            }
+            val compiledScript = instances?.borrow()
+            val engine = compiledScript?.engine ?: MyKotlinScriptEngineFactory().scriptEngine
+            val bindings = engine.createBindings()
+            variables.forEach {
+                bindings[it.key] = it.value
+            }
+            if (file != null) {
+                bindings["file"] = file
+                bindings["filename"] = filename
+            }
+            result.result = if (compiledScript != null) {
+                val value = compiledScript.eval(bindings)
+                instances?.release(compiledScript) // Only instances of successful runs are reused.
+                value
+            } else {
+                // Engine without compile support:
+                engine.eval(effectiveScript, bindings)
+            }
             return result
         } catch (ex: Exception) {
             log.info("Exception on Kotlin script execution: ${ex.message}", ex)
@@ -83,6 +107,49 @@ object KotlinScriptExecutor {
         }
     }
 
+    /**
+     * @return The compiled script with its own engine or null, if the engine doesn't support compiling.
+     */
+    private fun compile(script: String): CompiledScript? {
+        val engine = MyKotlinScriptEngineFactory().scriptEngine
+        return if (engine is Compilable) {
+            engine.compile(script)
+        } else {
+            null
+        }
+    }
+
+    /**
+     * The idle compiled instances of one script. An instance is used by only one run at a time.
+     */
+    private class CompiledScriptInstances(val script: String, val cacheKey: String?, first: CompiledScript) {
+        private val idleInstances = ConcurrentLinkedQueue<CompiledScript>(listOf(first))
+
+        /**
+         * @return An idle instance or a newly compiled one, if all instances are in use.
+         */
+        fun borrow(): CompiledScript? {
+            idleInstances.poll()?.let { return it }
+            val begin = System.currentTimeMillis()
+            val compiledScript = compile(script)
+            cacheKey?.let { ScriptStatistics.get(it).recordCompile(System.currentTimeMillis() - begin) }
+            return compiledScript
+        }
+
+        fun release(compiledScript: CompiledScript) {
+            if (idleInstances.size < MAX_IDLE_INSTANCES) {
+                idleInstances.add(compiledScript)
+            }
+        }
+    }
+
+    private const val MAX_CACHED_SCRIPTS = 100
+
+    /**
+     * Maximum number of idle compiled instances kept per script (see [ScriptExecutorPool.maxParallelRuns]).
+     */
+    private const val MAX_IDLE_INSTANCES = 4
+
     private val log = LoggerFactory.getLogger(KotlinScriptExecutor::class.java)
 }
 
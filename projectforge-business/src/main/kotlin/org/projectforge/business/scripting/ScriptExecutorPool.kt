@@ -0,0 +1,203 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.scripting
+
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.slf4j.LoggerFactory
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Service
+import java.lang.management.ManagementFactory
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
+
+/**
+ * Runs scripts on a bounded pool of threads with the user context of the calling thread. Each run is limited by wall
+ * clock and CPU time: a watchdog cancels (interrupts) runs exceeding one of the limits. Groovy scripts are compiled
+ * with interrupt checks (see [GroovyExecutor]), so loops of aborted scripts are stopped. Kotlin scripts can't be
+ * interrupted: the thread of an aborted Kotlin script stays busy until the script ends, so it's still counted as
+ * running and further Kotlin runs are rejected instead of queued while no thread is free. Run time, CPU time and
+ * allocated bytes are recorded in the [ScriptStatistics] of the script.
+ */
+@Service
+open class ScriptExecutorPool {
+    @Value("\${projectforge.scripting.maxParallelRuns:4}")
+    open var maxParallelRuns: Int = 4
+
+    /**
+     * Maximum number of runs waiting for a free thread. Further runs are rejected.
+     */
+    @Value("\${projectforge.scripting.maxQueuedRuns:20}")
+    open var maxQueuedRuns: Int = 20
+
+    @Value("\${projectforge.scripting.maxRunTimeSeconds:1800}")
+    open var maxRunTimeSeconds: Long = 1800
+
+    @Value("\${projectforge.scripting.maxCpuTimeSeconds:600}")
+    open var maxCpuTimeSeconds: Long = 600
+
+    private lateinit var executor: ThreadPoolExecutor
+
+    private lateinit var watchdog: ScheduledExecutorService
+
+    private val runningScripts = ConcurrentHashMap<Future<*>, RunningScript>()
+
+    private val threadMXBean = ManagementFactory.getThreadMXBean()
+
+    private class RunningScript(val scriptKey: String, val interruptible: Boolean, val threadId: Long, val startCpuNanos: Long) {
+        val startMillis = System.currentTimeMillis()
+        @Volatile
+        var abortReason: String? = null
+    }
+
+    @PostConstruct
+    open fun initialize() {
+        val counter = AtomicInteger()
+        executor = ThreadPoolExecutor(maxParallelRuns, maxParallelRuns, 60, TimeUnit.SECONDS, LinkedBlockingQueue(maxQueuedRuns)) { runnable ->
+            val thread = Thread(runnable, "ScriptExecutor-${counter.incrementAndGet()}")
+            thread.isDaemon = true
+            thread
+        }
+        watchdog = Executors.newSingleThreadScheduledExecutor { runnable ->
+            val thread = Thread(runnable, "ScriptExecutorWatchdog")
+            thread.isDaemon = true
+            thread
+        }
+        watchdog.scheduleWithFixedDelay({ checkLimits() }, 1, 1, TimeUnit.SECONDS)
+    }
+
+    /**
+     * Runs the script in the pool and waits for the result.
+     * @param scriptKey Key of the script for the statistics (e. g. id of [ScriptDO]).
+     * @param interruptible False for scripts ignoring interrupts (Kotlin): such runs aren't queued, they're rejected
+     * if no thread is free.
+     * @param run Compiles (if not cached) and runs the script.
+     * @return The result of the script. If the script was aborted or couldn't be started, the result contains the
+     * exception.
+     */
+    @JvmOverloads
+    open fun execute(scriptKey: String, interruptible: Boolean = true, run: () -> ScriptExecutionResult): ScriptExecutionResult {
+        val statistics = ScriptStatistics.get(scriptKey)
+        val userContext = ThreadLocalUserContext.getUserContext()
+        val runningScript = AtomicReference<RunningScript>()
+        lateinit var task: FutureTask<ScriptExecutionResult>
+        task = FutureTask(Callable {
+            ThreadLocalUserContext.setUserContext(userContext)
+            val threadId = Thread.currentThread().id
+            val running = RunningScript(scriptKey, interruptible, threadId, threadMXBean.currentThreadCpuTime)
+            runningScript.set(running)
+            val startAllocatedBytes = getAllocatedBytes(threadId)
+            runningScripts[task] = running
+            try {
+                run()
+            } finally {
+                runningScripts.remove(task)
+                val cpuMillis = (threadMXBean.currentThreadCpuTime - running.startCpuNanos) / 1_000_000
+                val allocatedBytes = maxOf(getAllocatedBytes(threadId) - startAllocatedBytes, 0L)
+                statistics.recordRun(System.currentTimeMillis() - running.startMillis, cpuMillis, allocatedBytes)
+                ThreadLocalUserContext.clear()
+                if (log.isDebugEnabled) {
+                    log.debug("Statistics of script '$scriptKey': $statistics")
+                }
+            }
+        })
+        try {
+            // Aborted but not yet ended scripts are still in runningScripts and keep their threads:
+            val abortedRuns = runningScripts.values.count { it.abortReason != null }
+            if (abortedRuns >= maxParallelRuns) {
+                throw RejectedExecutionException("All threads are blocked by aborted scripts.")
+            }
+            if (!interruptible && executor.activeCount + executor.queue.size >= maxParallelRuns) {
+                throw RejectedExecutionException("No free thread for script ignoring interrupts.")
+            }
+            executor.execute(task)
+        } catch (ex: RejectedExecutionException) {
+            log.warn("Script '$scriptKey' rejected, too many scripts running (max $maxParallelRuns) or queued (max $maxQueuedRuns).")
+            statistics.failures.incrementAndGet()
+            return ScriptExecutionResult(ex)
+        }
+        return try {
+            task.get()
+        } catch (ex: CancellationException) {
+            val running = runningScript.get()
+            val reason = if (running?.interruptible == false) {
+                "Script '$scriptKey' aborted: ${running.abortReason ?: "cancelled"} (the script can't be interrupted, its thread stays busy until the script ends)."
+            } else {
+                "Script '$scriptKey' aborted: ${running?.abortReason ?: "cancelled"}."
+            }
+            statistics.aborted.incrementAndGet()
+            ScriptExecutionResult(TimeoutException(reason))
+        } catch (ex: ExecutionException) {
+            statistics.failures.incrementAndGet()
+            log.info("Exception while running script '$scriptKey': ${ex.cause?.message}", ex.cause)
+            ScriptExecutionResult(ex.cause as? Exception ?: ex)
+        } catch (ex: InterruptedException) {
+            task.cancel(true)
+            Thread.currentThread().interrupt()
+            ScriptExecutionResult(ex)
+        }
+    }
+
+    private fun checkLimits() {
+        val now = System.currentTimeMillis()
+        runningScripts.forEach { (future, running) ->
+            val cpuSeconds = (threadMXBean.getThreadCpuTime(running.threadId) - running.startCpuNanos) / 1_000_000_000
+            val reason = when {
+                now - running.startMillis > maxRunTimeSeconds * 1000 -> "wall clock limit of ${maxRunTimeSeconds}s exceeded"
+                cpuSeconds > maxCpuTimeSeconds -> "CPU time limit of ${maxCpuTimeSeconds}s exceeded"
+                else -> null
+            }
+            if (reason != null && running.abortReason == null) {
+                running.abortReason = reason
+                if (running.interruptible) {
+                    log.warn("Aborting script '${running.scriptKey}': $reason.")
+                } else {
+                    log.warn("Aborting script '${running.scriptKey}': $reason. The script can't be interrupted, its thread stays busy until the script ends.")
+                }
+                future.cancel(true)
+            }
+        }
+    }
+
+    private fun getAllocatedBytes(threadId: Long): Long {
+        val bean = threadMXBean
+        if (bean is com.sun.management.ThreadMXBean && bean.isThreadAllocatedMemorySupported && bean.isThreadAllocatedMemoryEnabled) {
+            return bean.getThreadAllocatedBytes(threadId)
+        }
+        return 0L
+    }
+
+    @PreDestroy
+    open fun shutdown() {
+        watchdog.shutdownNow()
+        executor.shutdownNow()
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ScriptExecutorPool::class.java)
+    }
+}
@@ -0,0 +1,85 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.scripting
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Statistics of a script (compile and run times, CPU time and allocated memory of the runs).
+ */
+class ScriptStatistics {
+    val compileCounter = AtomicLong()
+    val totalCompileMillis = AtomicLong()
+    val runCounter = AtomicLong()
+    val failures = AtomicLong()
+    /**
+     * Runs aborted because of exceeding the wall clock or CPU time limit.
+     */
+    val aborted = AtomicLong()
+    val totalRunMillis = AtomicLong()
+    val maxRunMillis = AtomicLong()
+    val totalCpuMillis = AtomicLong()
+    /**
+     * Bytes allocated by the runs (if supported by the JVM, otherwise 0).
+     */
+    val totalAllocatedBytes = AtomicLong()
+
+    val averageRunMillis: Long
+        get() = runCounter.get().let { if (it > 0) totalRunMillis.get() / it else 0 }
+
+    internal fun recordCompile(millis: Long) {
+        compileCounter.incrementAndGet()
+        totalCompileMillis.addAndGet(millis)
+    }
+
+    internal fun recordRun(millis: Long, cpuMillis: Long, allocatedBytes: Long) {
+        runCounter.incrementAndGet()
+        totalRunMillis.addAndGet(millis)
+        maxRunMillis.accumulateAndGet(millis) { a, b -> maxOf(a, b) }
+        totalCpuMillis.addAndGet(cpuMillis)
+        totalAllocatedBytes.addAndGet(allocatedBytes)
+    }
+
+    override fun toString(): String {
+        return "compiled=${compileCounter.get()} (${totalCompileMillis.get()}ms), runs=${runCounter.get()}, avg=${averageRunMillis}ms, max=${maxRunMillis.get()}ms, cpu=${totalCpuMillis.get()}ms, allocated=${totalAllocatedBytes.get() / 1024}KB, failures=${failures.get()}, aborted=${aborted.get()}"
+    }
+
+    companion object {
+        private val statisticsMap = ConcurrentHashMap<String, ScriptStatistics>()
+
+        @JvmStatic
+        fun get(scriptKey: String): ScriptStatistics {
+            return statisticsMap.computeIfAbsent(scriptKey) { ScriptStatistics() }
+        }
+
+        /**
+         * Statistics of all scripts (by script key).
+         */
+        @JvmStatic
+        val all: Map<String, ScriptStatistics>
+            get() = statisticsMap
+    }
+}
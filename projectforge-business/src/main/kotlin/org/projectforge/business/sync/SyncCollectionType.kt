@@ -0,0 +1,40 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.sync
+
+/**
+ * Types of collections synchronized by CalDAV/CardDAV clients.
+ */
+enum class SyncCollectionType {
+    /**
+     * Calendar, the collection id is the calendar id.
+     */
+    CALENDAR,
+    /**
+     * Address book of a user (favorites), the collection id is the id of the owner. Modifications of addresses are
+     * journaled without collection id (relevant for all address books).
+     */
+    ADDRESS_BOOK
+}
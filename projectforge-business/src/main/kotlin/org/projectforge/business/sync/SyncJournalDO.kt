@@ -0,0 +1,88 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.sync
+
+import org.projectforge.framework.access.OperationType
+import java.util.*
+import javax.persistence.*
+
+/**
+ * One entry of the change journal of synchronized collections (calendars and address books of CalDAV/CardDAV clients).
+ * The id of the newest entry of a collection is used as sync token (and CTag): clients only need to fetch the objects
+ * changed since the token of their last synchronization.
+ */
+@Entity
+@Table(name = "T_SYNC_JOURNAL",
+        indexes = [Index(name = "idx_t_sync_journal_collection", columnList = "collection_type, collection_id"),
+            Index(name = "idx_t_sync_journal_change_date", columnList = "change_date")])
+@NamedQueries(
+        NamedQuery(name = SyncJournalDO.SELECT_CHANGES,
+                query = "from SyncJournalDO where collectionType=:collectionType and (collectionId=:collectionId or collectionId is null) and id>:syncToken order by id"),
+        NamedQuery(name = SyncJournalDO.SELECT_MAX_ID,
+                query = "select max(id) from SyncJournalDO where collectionType=:collectionType and (collectionId=:collectionId or collectionId is null)"),
+        NamedQuery(name = SyncJournalDO.SELECT_MIN_ID,
+                query = "select min(id) from SyncJournalDO"),
+        NamedQuery(name = SyncJournalDO.DELETE_OLD_ENTRIES,
+                query = "delete from SyncJournalDO where changeDate<:changeDate and id<:maxId"))
+open class SyncJournalDO {
+    @get:Id
+    @get:GeneratedValue
+    @get:Column(name = "pk")
+    open var id: Int? = null
+
+    @get:Enumerated(EnumType.STRING)
+    @get:Column(name = "collection_type", length = 20, nullable = false)
+    open var collectionType: SyncCollectionType? = null
+
+    /**
+     * The id of the collection (e. g. calendar id or user id of a personal address book) or null, if the change affects
+     * all collections of this type (e. g. modified address of all address books).
+     */
+    @get:Column(name = "collection_id")
+    open var collectionId: Int? = null
+
+    @get:Column(name = "object_id", nullable = false)
+    open var objectId: Int? = null
+
+    /**
+     * Uid of the changed object, needed by clients for identifying deleted objects.
+     */
+    @get:Column(name = "object_uid", length = 255)
+    open var objectUid: String? = null
+
+    @get:Enumerated(EnumType.STRING)
+    @get:Column(length = 20, nullable = false)
+    open var operation: OperationType? = null
+
+    @get:Column(name = "change_date", nullable = false)
+    open var changeDate: Date? = null
+
+    companion object {
+        internal const val SELECT_CHANGES = "SyncJournalDO_SelectChanges"
+        internal const val SELECT_MAX_ID = "SyncJournalDO_SelectMaxId"
+        internal const val SELECT_MIN_ID = "SyncJournalDO_SelectMinId"
+        internal const val DELETE_OLD_ENTRIES = "SyncJournalDO_DeleteOldEntries"
+    }
+}
@@ -0,0 +1,171 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.sync
+
+import mu.KotlinLogging
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressDao
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.framework.time.PFDateTime
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.util.*
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Journals all changes of calendar events and addresses (fed by [BaseDOChangedListener]), so CalDAV/CardDAV clients
+ * may detect unmodified collections by their sync token (CTag) and fetch only the objects changed since their last
+ * sync token. Entries older than [RETENTION_DAYS] are pruned nightly, clients with older sync tokens have to do a full
+ * synchronization.
+ */
+@Service
+open class SyncJournalService {
+    @Autowired
+    private lateinit var emgrFactory: PfEmgrFactory
+
+    @Autowired
+    private lateinit var addressDao: AddressDao
+
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    class SyncChanges(
+            /**
+             * The new sync token of the collection.
+             */
+            val syncToken: Int,
+            /**
+             * The last change of every changed object since the given sync token (ordered by sync token).
+             */
+            val changes: List<SyncJournalDO>)
+
+    @PostConstruct
+    fun postConstruct() {
+        teamEventDao.register(object : BaseDOChangedListener<TeamEventDO> {
+            override fun afterSaveOrModifify(changedObject: TeamEventDO, operationType: OperationType) {
+                journal(SyncCollectionType.CALENDAR, changedObject.calendarId, changedObject.id, changedObject.uid, operationType)
+            }
+        })
+        addressDao.register(object : BaseDOChangedListener<AddressDO> {
+            override fun afterSaveOrModifify(changedObject: AddressDO, operationType: OperationType) {
+                // Address is relevant for all address books (favorites of all users).
+                journal(SyncCollectionType.ADDRESS_BOOK, null, changedObject.id, changedObject.uid, operationType)
+            }
+        })
+    }
+
+    /**
+     * Adds an entry to the journal.
+     * @param collectionId The id of the collection or null, if all collections of the given type are affected.
+     */
+    open fun journal(collectionType: SyncCollectionType, collectionId: Int?, objectId: Int?, objectUid: String?, operation: OperationType) {
+        objectId ?: return
+        val entry = SyncJournalDO()
+        entry.collectionType = collectionType
+        entry.collectionId = collectionId
+        entry.objectId = objectId
+        entry.objectUid = objectUid
+        entry.operation = operation
+        entry.changeDate = Date()
+        try {
+            emgrFactory.runInTrans { emgr ->
+                emgr.entityManager.persist(entry)
+            }
+        } catch (ex: Exception) {
+            log.error("Can't write sync journal entry for $collectionType #$collectionId (object #$objectId): ${ex.message}", ex)
+        }
+    }
+
+    /**
+     * @return The current sync token of the given collection (the id of the newest journal entry of this collection) or
+     * 0, if no changes were journaled.
+     */
+    open fun getSyncToken(collectionType: SyncCollectionType, collectionId: Int): Int {
+        return emgrFactory.runRoTrans { emgr ->
+            emgr.entityManager.createNamedQuery(SyncJournalDO.SELECT_MAX_ID, Integer::class.java)
+                    .setParameter("collectionType", collectionType)
+                    .setParameter("collectionId", collectionId)
+                    .singleResult?.toInt() ?: 0
+        }
+    }
+
+    /**
+     * @param syncToken The sync token of the client's last synchronization.
+     * @return The changes since the given sync token or null, if the sync token is unknown (journal entries are already
+     * pruned), so a full synchronization is needed.
+     */
+    open fun getChanges(collectionType: SyncCollectionType, collectionId: Int, syncToken: Int): SyncChanges? {
+        return emgrFactory.runRoTrans { emgr ->
+            val em = emgr.entityManager
+            val minId = em.createNamedQuery(SyncJournalDO.SELECT_MIN_ID, Integer::class.java).singleResult?.toInt()
+            if (minId != null && syncToken < minId) {
+                // Journal entries since the given sync token are pruned.
+                return@runRoTrans null
+            }
+            val entries = em.createNamedQuery(SyncJournalDO.SELECT_CHANGES, SyncJournalDO::class.java)
+                    .setParameter("collectionType", collectionType)
+                    .setParameter("collectionId", collectionId)
+                    .setParameter("syncToken", syncToken)
+                    .resultList
+            // Only the last change of every object is of interest:
+            val lastChanges = LinkedHashMap<Int, SyncJournalDO>()
+            entries.forEach {
+                lastChanges.remove(it.objectId)
+                lastChanges[it.objectId!!] = it
+            }
+            SyncChanges(entries.lastOrNull()?.id ?: syncToken, lastChanges.values.toList())
+        }
+    }
+
+    /**
+     * Deletes all entries older than [RETENTION_DAYS]. The newest entry is always kept for detecting outdated sync
+     * tokens.
+     * @return The number of deleted entries.
+     */
+    open fun prune(): Int {
+        val changeDate = PFDateTime.now().minusDays(RETENTION_DAYS).utilDate
+        val deleted = emgrFactory.runInTrans { emgr ->
+            val em = emgr.entityManager
+            val maxId = em.createQuery("select max(id) from SyncJournalDO", Integer::class.java).singleResult?.toInt()
+                    ?: return@runInTrans 0
+            em.createNamedQuery(SyncJournalDO.DELETE_OLD_ENTRIES)
+                    .setParameter("changeDate", changeDate)
+                    .setParameter("maxId", maxId)
+                    .executeUpdate()
+        }
+        log.info("$deleted sync journal entries older than $RETENTION_DAYS days deleted.")
+        return deleted
+    }
+
+    companion object {
+        const val RETENTION_DAYS = 90L
+    }
+}
@@ -0,0 +1,189 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.teamcal.event.ical
+
+import mu.KotlinLogging
+import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.timesheet.TimesheetDao
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Component
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Caches rendered ics feeds of calendar subscriptions, because clients (such as Outlook or Google) poll them very
+ * often. Entries are invalidated after modifications of the events of the included calendars or of the time sheets of
+ * the included time sheet user. All other content (vacation, holidays etc.) is refreshed hourly by expiring the whole
+ * cache.
+ */
+@Component
+open class ICalFeedCache : AbstractCache(TICKS_PER_HOUR) {
+    class Entry(
+            val key: String,
+            val eTag: String,
+            /**
+             * The calendars included in the feed.
+             */
+            val calendarIds: Set<Int>,
+            /**
+             * The time sheet user of the feed, if time sheets are included.
+             */
+            val timesheetUserId: Int?,
+            val content: ByteArray)
+
+    @Autowired
+    private lateinit var teamCalDao: TeamCalDao
+
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    @Autowired
+    private lateinit var timesheetDao: TimesheetDao
+
+    private val entries = mutableMapOf<String, Entry>()
+
+    /**
+     * Incremented on every invalidation, so feeds rendered during modifications aren't cached.
+     */
+    private val modificationCounter = AtomicLong()
+
+    @PostConstruct
+    fun postConstruct() {
+        teamEventDao.register(object : BaseDOChangedListener<TeamEventDO> {
+            override fun afterSaveOrModifify(changedObject: TeamEventDO, operationType: OperationType) {
+                invalidateCalendar(changedObject.calendarId ?: return)
+            }
+        })
+        teamCalDao.register(object : BaseDOChangedListener<TeamCalDO> {
+            override fun afterSaveOrModifify(changedObject: TeamCalDO, operationType: OperationType) {
+                invalidateCalendar(changedObject.id ?: return)
+            }
+        })
+        timesheetDao.register(object : BaseDOChangedListener<TimesheetDO> {
+            override fun afterSaveOrModifify(changedObject: TimesheetDO, operationType: OperationType) {
+                invalidateTimesheetUser(changedObject.userId ?: return)
+            }
+        })
+    }
+
+    /**
+     * @param params The decrypted parameters of the feed.
+     * @return The key for the given user and parameters. The user's locale and time zone are part of the key.
+     */
+    fun createKey(userId: Int, locale: Locale, timeZone: TimeZone, params: Map<String, String>): String {
+        return "$userId:$locale:${timeZone.id}:${params.toSortedMap().entries.joinToString("&")}"
+    }
+
+    /**
+     * @return The ETag of the rendered feed: the hash of its content, so unmodified feeds keep their ETag (also after
+     * invalidation and on other nodes).
+     */
+    fun createETag(content: ByteArray): String {
+        val digest = MessageDigest.getInstance("SHA-256").digest(content)
+        return "\"${digest.joinToString("") { String.format("%02x", it) }}\""
+    }
+
+    val currentModificationCounter: Long
+        get() = modificationCounter.get()
+
+    fun get(key: String): Entry? {
+        checkRefresh()
+        synchronized(entries) {
+            return entries[key]
+        }
+    }
+
+    /**
+     * Stores the rendered feed, if no modifications were done since rendering was started and the feed doesn't exceed
+     * [MAX_CONTENT_SIZE].
+     * @param modificationCounterOnStart [currentModificationCounter] before rendering.
+     */
+    fun put(entry: Entry, modificationCounterOnStart: Long) {
+        if (entry.content.size > MAX_CONTENT_SIZE) {
+            log.debug { "Calendar feed not cached, too large: ${entry.content.size} bytes." }
+            return
+        }
+        synchronized(entries) {
+            if (modificationCounter.get() != modificationCounterOnStart) {
+                log.debug { "Calendar feed not cached, modified while rendering." }
+                return
+            }
+            if (entries.size >= MAX_ENTRIES) {
+                // Shouldn't occur (subscriptions of thousands of users), but avoid unlimited growth until next expiry:
+                entries.clear()
+            }
+            entries[entry.key] = entry
+        }
+    }
+
+    /**
+     * Invalidates all feeds containing the given calendar (e. g. the former calendar of moved events).
+     */
+    fun invalidateCalendar(calendarId: Int) {
+        invalidate { it.calendarIds.contains(calendarId) }
+    }
+
+    /**
+     * Invalidates all feeds containing the time sheets of the given user (e. g. the previous user of moved time sheets).
+     */
+    fun invalidateTimesheetUser(userId: Int) {
+        invalidate { it.timesheetUserId == userId }
+    }
+
+    private fun invalidate(predicate: (Entry) -> Boolean) {
+        synchronized(entries) {
+            modificationCounter.incrementAndGet()
+            entries.values.removeIf(predicate)
+        }
+    }
+
+    override fun refresh() {
+        log.info("Clearing cache of ics feeds.")
+        synchronized(entries) {
+            modificationCounter.incrementAndGet()
+            entries.clear()
+        }
+    }
+
+    companion object {
+        /**
+         * Feeds larger than this size (in bytes) aren't cached.
+         */
+        const val MAX_CONTENT_SIZE = 10 * 1024 * 1024
+
+        private const val MAX_ENTRIES = 10000
+    }
+}
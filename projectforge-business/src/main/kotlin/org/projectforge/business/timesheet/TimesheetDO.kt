@@ -78,6 +78,7 @@ open class TimesheetDO : DefaultBaseDO(), Comparable<TimesheetDO> {
 
     @PropertyInfo(i18nKey = "timesheet.startTime")
     @Field(analyze = Analyze.NO)
+    @SortableField
     @DateBridge(resolution = Resolution.MINUTE, encoding = EncodingType.STRING)
     @get:Column(name = "start_time", nullable = false)
     open var startTime: Date? = null
@@ -42,10 +42,15 @@ import org.projectforge.framework.persistence.user.entities.UserRightDO
 import org.slf4j.LoggerFactory
 import org.springframework.context.ApplicationContext
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * The group user relations will be cached with this class.
  *
+ * All data is held in an immutable [Snapshot], which is built on refresh and swapped in atomically, so readers never see
+ * half-built data. Users, groups and their memberships are indexed: users by id, username and full name, memberships as
+ * bitsets per group (the bit index is the ordinal of the user).
+ *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 // Open for mocking in test cases.
@@ -55,30 +60,10 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
      */
     val tenant: TenantDO?
     /**
-     * The key is the user id and the value is a list of assigned groups.
-     */
-    private var userGroupIdMap: Map<Int, MutableSet<Int>>? = null
-    /**
-     * The key is the group id.
-     */
-    private var groupMap: Map<Int, GroupDO>? = null
-    /**
-     * List of all rights (value) defined for the user ids (key).
+     * Null only before first refresh and in maintenance mode (if t_user isn't readable).
      */
-    private var rightMap: Map<Int, List<UserRightDO>>? = null
-    private var userMap: MutableMap<Int, PFUserDO?>? = null
-    /**
-     * Key is user id, value is employee id.
-     */
-    private var employeeMap: MutableMap<Int?, Int>? = null
-    private var adminUsers: MutableSet<Int>? = null
-    private var financeUsers: Set<Int>? = null
-    private var controllingUsers: Set<Int>? = null
-    private var projectManagers: Set<Int>? = null
-    private var projectAssistants: Set<Int>? = null
-    private var marketingUsers: Set<Int>? = null
-    private var orgaUsers: Set<Int>? = null
-    private var hrUsers: Set<Int>? = null
+    @Volatile
+    private var snapshot: Snapshot? = null
     private val tenantChecker: TenantChecker
     private val tenantService: TenantService
     private val userRights: UserRightService
@@ -86,21 +71,18 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     private val employeeDao: EmployeeDao
 
     fun getGroup(group: ProjectForgeGroup): GroupDO? {
-        checkRefresh()
-        return groupMap?.values?.find { group.matches(it.name) }
+        return getSnapshot()?.groupMap?.values?.find { group.matches(it.name) }
     }
 
     fun getGroup(groupId: Int?): GroupDO? {
-        checkRefresh()
-        return groupMap!![groupId]
+        return getSnapshot()!!.groupMap[groupId]
     }
 
     fun getUser(userId: Int?): PFUserDO? {
         if (userId == null) {
             return null
         }
-        // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()?.let { it[userId] } // Only null in maintenance mode (if t_user isn't readable).
+        val user = getSnapshot()?.let { it.userMap[userId] } // Only null in maintenance mode (if t_user isn't readable).
         user?.clearSecretFields()
         return user
     }
@@ -109,8 +91,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (username.isBlank()) {
             return null
         }
-        // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()?.values?.find { username == it?.username }
+        val user = getSnapshot()?.usernameIndex?.get(username)
         user?.clearSecretFields()
         return user
     }
@@ -119,8 +100,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (fullname.isBlank()) {
             return null
         }
-        // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()?.values?.find { fullname == it?.getFullname() }
+        val user = getSnapshot()?.fullnameIndex?.get(fullname)
         user?.clearSecretFields()
         return user
     }
@@ -129,29 +109,27 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
      * @return all users (also deleted users).
      */
     val allUsers: Collection<PFUserDO?>
-        get() =// checkRefresh(); Done by getUserMap().
-            getUserMap()!!.values// checkRefresh(); Done by getGMap().
+        get() = getSnapshot()!!.userMap.values
 
     /**
      * @return all groups (also deleted groups).
      */
     val allGroups: Collection<GroupDO>
-        get() =// checkRefresh(); Done by getGMap().
-            getGroupMap()!!.values
+        get() = getSnapshot()!!.groupMap.values
 
     /**
      * Only for internal use.
      */
     fun internalGetNumberOfUsers(): Int {
-        return if (userMap == null) {
+        return if (snapshot == null) {
             0
-        } else { // checkRefresh(); Done by getUserMap().
-            getUserMap()!!.size
+        } else {
+            getSnapshot()!!.userMap.size
         }
     }
 
-    fun getUsername(userId: Int): String? { // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()!![userId] ?: return userId.toString()
+    fun getUsername(userId: Int): String? {
+        val user = getSnapshot()!!.userMap[userId] ?: return userId.toString()
         return user.username
     }
 
@@ -172,54 +150,48 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (groupId == null) {
             return false
         }
-        checkRefresh()
-        val groupSet: Set<Int>? = getUserGroupIdMap()!![userId]
-        return groupSet != null && groupSet.contains(groupId)
+        return getSnapshot()?.isMemberOf(userId, groupId) ?: false
     }
 
     fun isUserMemberOfAtLeastOneGroup(userId: Int?, vararg groupIds: Int?): Boolean {
         if (groupIds.isEmpty()) {
             return false
         }
-        checkRefresh()
-        val groupSet = getUserGroupIdMap()?.let { it[userId] } ?: return false
-        return groupIds.any { groupSet.contains(it) }
+        val current = getSnapshot() ?: return false
+        val ordinal = current.getOrdinal(userId)
+        if (ordinal < 0) {
+            return false
+        }
+        return groupIds.any { it != null && current.isMemberOf(ordinal, it) }
     }
 
     val isUserMemberOfAdminGroup: Boolean
         get() = isUserMemberOfAdminGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfAdminGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // adminUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return adminUsers != null && adminUsers!!.contains(userId)
+        // snapshot should only be null in maintenance mode (e. g. if user table isn't readable).
+        return isUserMemberOf(userId, ProjectForgeGroup.ADMIN_GROUP)
     }
 
     val isUserMemberOfFinanceGroup: Boolean
         get() = isUserMemberOfFinanceGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfFinanceGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // financeUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return financeUsers != null && financeUsers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.FINANCE_GROUP)
     }
 
     val isUserMemberOfProjectManagers: Boolean
         get() = isUserMemberOfProjectManagers(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfProjectManagers(userId: Int?): Boolean {
-        checkRefresh()
-        // projectManagers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return projectManagers != null && projectManagers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.PROJECT_MANAGER)
     }
 
     val isUserMemberOfProjectAssistant: Boolean
         get() = isUserMemberOfProjectAssistant(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfProjectAssistant(userId: Int?): Boolean {
-        checkRefresh()
-        // projectAssistants should only be null in maintenance mode (e. g. if user table isn't readable).
-        return projectAssistants != null && projectAssistants!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.PROJECT_ASSISTANT)
     }
 
     fun isUserProjectManagerOrAssistantForProject(projekt: ProjektDO?): Boolean {
@@ -236,31 +208,25 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         get() = isUserMemberOfControllingGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfControllingGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // controllingUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return controllingUsers != null && controllingUsers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.CONTROLLING_GROUP)
     }
 
     val isUserMemberOfMarketingGroup: Boolean
         get() = isUserMemberOfMarketingGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfMarketingGroup(userId: Int?): Boolean {
-        checkRefresh()
-        return marketingUsers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.MARKETING_GROUP)
     }
 
     val isUserMemberOfOrgaGroup: Boolean
         get() = isUserMemberOfOrgaGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfOrgaGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // orgaUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return orgaUsers != null && orgaUsers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.ORGA_TEAM)
     }
 
     fun isUserMemberOfHRGroup(userId: Int?): Boolean {
-        checkRefresh()
-        return hrUsers != null && hrUsers!!.contains(userId)
+        return isUserMemberOf(userId, ProjectForgeGroup.HR_GROUP)
     }
 
     /**
@@ -271,26 +237,18 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
             return false
         }
         require(groups.isNotEmpty())
-        for (group in groups) {
-            val result = when (group) {
-                ProjectForgeGroup.ADMIN_GROUP -> isUserMemberOfAdminGroup(user.id)
-                ProjectForgeGroup.FINANCE_GROUP -> isUserMemberOfFinanceGroup(user.id)
-                ProjectForgeGroup.PROJECT_MANAGER -> isUserMemberOfProjectManagers(user.id)
-                ProjectForgeGroup.PROJECT_ASSISTANT -> isUserMemberOfProjectAssistant(user.id)
-                ProjectForgeGroup.CONTROLLING_GROUP -> isUserMemberOfControllingGroup(user.id)
-                ProjectForgeGroup.MARKETING_GROUP -> isUserMemberOfMarketingGroup(user.id)
-                ProjectForgeGroup.ORGA_TEAM -> isUserMemberOfOrgaGroup(user.id)
-                ProjectForgeGroup.HR_GROUP -> isUserMemberOfHRGroup(user.id)
-            }
-            if (result) {
-                return true
-            }
-        }
-        return false
+        val current = getSnapshot() ?: return false
+        val ordinal = current.getOrdinal(user.id)
+        return groups.any { current.isMemberOf(ordinal, it) }
+    }
+
+    private fun isUserMemberOf(userId: Int?, group: ProjectForgeGroup): Boolean {
+        val current = getSnapshot() ?: return false
+        return current.isMemberOf(current.getOrdinal(userId), group)
     }
 
     fun getUserRights(userId: Int?): List<UserRightDO>? {
-        return userRightMap!![userId]
+        return getSnapshot()!!.rightMap[userId]
     }
 
     fun getUserRight(userId: Int?, rightId: UserRightId): UserRightDO? {
@@ -298,43 +256,33 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         return rights.find { it.rightIdString == rightId.id }
     }
 
-    private val userRightMap: Map<Int, List<UserRightDO>>?
-        get() {
-            checkRefresh()
-            return rightMap
-        }
-
     /**
      * Returns a collection of group id's to which the user is assigned to.
      *
      * @return collection if found, otherwise null.
      */
     fun getUserGroups(user: PFUserDO): Collection<Int>? {
-        checkRefresh()
-        return getUserGroupIdMap()!![user.id]
+        return getSnapshot()!!.userGroupIdMap[user.id]
     }
 
-    private fun getGroupMap(): Map<Int, GroupDO>? {
-        checkRefresh()
-        return groupMap
-    }
-
-    fun getUserGroupIdMap(): Map<Int, MutableSet<Int>>? {
-        checkRefresh()
-        return userGroupIdMap
+    /**
+     * @return Unmodifiable map, the key is the user id and the value is the set of assigned groups.
+     */
+    fun getUserGroupIdMap(): Map<Int, Set<Int>>? {
+        return getSnapshot()?.userGroupIdMap
     }
 
     fun getEmployeeId(userId: Int?): Int? {
         userId ?: return null
-        checkRefresh()
-        var employeeId = employeeMap!![userId]
+        val employeeMap = getSnapshot()!!.employeeMap
+        var employeeId = employeeMap[userId]
         if (employeeId == null) {
             employeeId = employeeDao.getEmployeeIdByByUserId(userId, tenant?.tenantId)
             if (employeeId == null) {
-                employeeMap!![userId] = Int.MIN_VALUE
+                employeeMap[userId] = Int.MIN_VALUE
                 return null
             }
-            employeeMap!![userId] = employeeId
+            employeeMap[userId] = employeeId
         } else if (employeeId == Int.MIN_VALUE) {
             return null
         }
@@ -344,14 +292,18 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     /**
      * Should be called after user modifications.
      */
+    @Synchronized
     fun updateUser(user: PFUserDO) {
         user.clearSecretFields()
-        getUserMap()!![user.id] = user
+        val current = getSnapshot()!!
+        val uMap = HashMap(current.userMap)
+        uMap[user.id] = user
+        snapshot = current.withUser(user.id).copy(userMap = uMap)
     }
 
-    private fun getUserMap(): MutableMap<Int, PFUserDO?>? {
+    private fun getSnapshot(): Snapshot? {
         checkRefresh()
-        return userMap
+        return snapshot
     }
 
     /**
@@ -364,8 +316,8 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
             tenantLog = " for tenant " + tenantService.getLogName(tenant)
         }
         log.info("Initializing UserGroupCache $tenantLog...")
-        // This method must not be synchronized because it works with a new copy of maps.
-        val uMap: MutableMap<Int, PFUserDO?> = HashMap()
+        // This method must not be synchronized because it works with a new snapshot.
+        val uMap: MutableMap<Int, PFUserDO> = HashMap()
         // Could not autowire UserDao because of cyclic reference with AccessChecker.
         log.info("Loading all users ...")
         val users = Login.getInstance().allUsers
@@ -378,25 +330,22 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 }
             }
             val copiedUser = createCopyWithoutSecretFields(user)
-            uMap[user.id] = copiedUser
+            uMap[user.id] = copiedUser!!
         }
         if (users.size != uMap.size) {
             log.warn("********** Load ${users.size} from the backend, but added only ${uMap.size} users to cache!")
             log.info("For debugging UserCache fuck-up: " + ToStringUtil.toJsonString(users))
             return
         }
+        // Dense ordinals of the users (index of the sorted user ids) used by the membership bitsets:
+        val userIds = uMap.keys.toIntArray()
+        userIds.sort()
         log.info("Loading all groups ...")
         val groups = Login.getInstance().allGroups
         val gMap: MutableMap<Int, GroupDO> = HashMap()
         val ugIdMap: MutableMap<Int, MutableSet<Int>> = HashMap()
-        val nAdminUsers: MutableSet<Int> = HashSet()
-        val nFinanceUser: MutableSet<Int> = HashSet()
-        val nControllingUsers: MutableSet<Int> = HashSet()
-        val nProjectManagers: MutableSet<Int> = HashSet()
-        val nProjectAssistants: MutableSet<Int> = HashSet()
-        val nMarketingUsers: MutableSet<Int> = HashSet()
-        val nOrgaUsers: MutableSet<Int> = HashSet()
-        val nhrUsers: MutableSet<Int> = HashSet()
+        val groupMembers: MutableMap<Int, LongArray> = HashMap()
+        val systemGroupMembers = Array(ProjectForgeGroup.values().size) { createBitset(userIds.size) }
         for (group in groups) {
             if (tenant != null) {
                 if (!tenantChecker.isPartOfTenant(tenant.id, group)) { // Ignore groups not assigned to current tenant.
@@ -405,57 +354,38 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 }
             }
             gMap[group.id] = group
+            val members = createBitset(userIds.size)
+            groupMembers[group.id] = members
+            val systemGroup = ProjectForgeGroup.values().find { it.matches(group.name) }
             group.assignedUsers?.forEach { user ->
-                val groupIdSet = ensureAndGetUserGroupIdMap(ugIdMap, user.id)
-                groupIdSet.add(group.id)
-                when {
-                    ProjectForgeGroup.ADMIN_GROUP.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as administrator.")
-                        nAdminUsers.add(user.id)
-                    }
-                    ProjectForgeGroup.FINANCE_GROUP.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' for finance.")
-                        nFinanceUser.add(user.id)
-                    }
-                    ProjectForgeGroup.CONTROLLING_GROUP.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' for controlling.")
-                        nControllingUsers.add(user.id)
-                    }
-                    ProjectForgeGroup.PROJECT_MANAGER.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as project manager.")
-                        nProjectManagers.add(user.id)
-                    }
-                    ProjectForgeGroup.PROJECT_ASSISTANT.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as project assistant.")
-                        nProjectAssistants.add(user.id)
-                    }
-                    ProjectForgeGroup.MARKETING_GROUP.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as marketing user.")
-                        nMarketingUsers.add(user.id)
-                    }
-                    ProjectForgeGroup.ORGA_TEAM.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as orga user.")
-                        nOrgaUsers.add(user.id)
-                    }
-                    ProjectForgeGroup.HR_GROUP.matches(group.name) -> {
-                        log.debug("Adding user '" + user.username + "' as hr user.")
-                        nhrUsers.add(user.id)
+                ugIdMap.getOrPut(user.id) { HashSet() }.add(group.id)
+                val ordinal = Arrays.binarySearch(userIds, user.id)
+                if (ordinal < 0) {
+                    log.warn("User #${user.id} of group '${group.name}' not found in user table, ignoring membership.")
+                    return@forEach
+                }
+                setBit(members, ordinal)
+                if (systemGroup != null) {
+                    if (log.isDebugEnabled) {
+                        log.debug("Adding user '${user.username}' to system group '${systemGroup.key}'.")
                     }
+                    setBit(systemGroupMembers[systemGroup.ordinal], ordinal)
                 }
             }
         }
-        userMap = uMap
-        groupMap = gMap
-        employeeMap = HashMap()
-        adminUsers = nAdminUsers
-        financeUsers = nFinanceUser
-        controllingUsers = nControllingUsers
-        projectManagers = nProjectManagers
-        projectAssistants = nProjectAssistants
-        marketingUsers = nMarketingUsers
-        orgaUsers = nOrgaUsers
-        hrUsers = nhrUsers
-        userGroupIdMap = ugIdMap
+        val groupIds = groupMembers.keys.toIntArray()
+        groupIds.sort()
+        // Publish the users and groups first: the rights (see below) are checked with the new group memberships.
+        var newSnapshot = Snapshot(
+                userMap = Collections.unmodifiableMap(uMap),
+                userIds = userIds,
+                groupMap = Collections.unmodifiableMap(gMap),
+                groupIds = groupIds,
+                groupMembers = Array(groupIds.size) { groupMembers[groupIds[it]]!! },
+                systemGroupMembers = systemGroupMembers,
+                userGroupIdMap = Collections.unmodifiableMap(ugIdMap.mapValues { Collections.unmodifiableSet(it.value) }),
+                rightMap = snapshot?.rightMap ?: emptyMap())
+        snapshot = newSnapshot
         val rMap: MutableMap<Int, List<UserRightDO>> = HashMap()
         val rights: List<UserRightDO>
         rights = try {
@@ -485,7 +415,8 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 list!!.add(right)
             }
         }
-        rightMap = rMap
+        newSnapshot = newSnapshot.copy(rightMap = Collections.unmodifiableMap(rMap))
+        snapshot = newSnapshot
         log.info("Initializing of UserGroupCache done$tenantLog. Found ${uMap.size} entries.")
         Login.getInstance().afterUserGroupCacheRefresh(users, groups)
         val end = System.currentTimeMillis()
@@ -495,8 +426,102 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     @Synchronized
     fun internalSetAdminUser(adminUser: PFUserDO) {
         check(UserFilter.isUpdateRequiredFirst()) { "Can't set admin user internally! This method is only available if system is under maintenance (update required first is true)!" }
-        checkRefresh()
-        adminUsers!!.add(adminUser.id)
+        val current = getSnapshot()!!.withUser(adminUser.id)
+        val systemGroupMembers = current.systemGroupMembers.copyOf()
+        val adminUsers = systemGroupMembers[ProjectForgeGroup.ADMIN_GROUP.ordinal].copyOf()
+        setBit(adminUsers, current.getOrdinal(adminUser.id))
+        systemGroupMembers[ProjectForgeGroup.ADMIN_GROUP.ordinal] = adminUsers
+        snapshot = current.copy(systemGroupMembers = systemGroupMembers)
+    }
+
+    /**
+     * Immutable snapshot of all users, groups, memberships and rights. Modifications are done by copying (copy on write).
+     * @param userIds The sorted ids of all users. The index of a user id is the ordinal of the user used by the
+     * membership bitsets.
+     * @param groupIds The sorted ids of all groups.
+     * @param groupMembers The membership bitsets of the groups (same order as groupIds).
+     * @param systemGroupMembers The membership bitsets of the [ProjectForgeGroup]s (index is the ordinal of the enum).
+     */
+    private class Snapshot(val userMap: Map<Int, PFUserDO>,
+                           val userIds: IntArray,
+                           val groupMap: Map<Int, GroupDO>,
+                           val groupIds: IntArray,
+                           val groupMembers: Array<LongArray>,
+                           val systemGroupMembers: Array<LongArray>,
+                           val userGroupIdMap: Map<Int, Set<Int>>,
+                           val rightMap: Map<Int, List<UserRightDO>>,
+                           /**
+                            * Key is user id, value is employee id (or Int.MIN_VALUE, if the user isn't an employee).
+                            * Filled on demand.
+                            */
+                           val employeeMap: ConcurrentHashMap<Int, Int> = ConcurrentHashMap()) {
+        val usernameIndex: Map<String, PFUserDO>
+        val fullnameIndex: Map<String, PFUserDO>
+
+        init {
+            val usernames = HashMap<String, PFUserDO>()
+            val fullnames = HashMap<String, PFUserDO>()
+            userMap.values.forEach { user ->
+                user.username?.let { usernames.putIfAbsent(it, user) }
+                fullnames.putIfAbsent(user.getFullname(), user)
+            }
+            usernameIndex = usernames
+            fullnameIndex = fullnames
+        }
+
+        /**
+         * @return The ordinal of the user or a negative value, if the user isn't known.
+         */
+        fun getOrdinal(userId: Int?): Int {
+            userId ?: return -1
+            return Arrays.binarySearch(userIds, userId)
+        }
+
+        fun isMemberOf(userId: Int?, groupId: Int): Boolean {
+            return isMemberOf(getOrdinal(userId), groupId)
+        }
+
+        fun isMemberOf(ordinal: Int, groupId: Int): Boolean {
+            val index = Arrays.binarySearch(groupIds, groupId)
+            return index >= 0 && isBitSet(groupMembers[index], ordinal)
+        }
+
+        fun isMemberOf(ordinal: Int, group: ProjectForgeGroup): Boolean {
+            return isBitSet(systemGroupMembers[group.ordinal], ordinal)
+        }
+
+        fun copy(userMap: Map<Int, PFUserDO> = this.userMap,
+                 systemGroupMembers: Array<LongArray> = this.systemGroupMembers,
+                 rightMap: Map<Int, List<UserRightDO>> = this.rightMap): Snapshot {
+            return Snapshot(userMap, userIds, groupMap, groupIds, groupMembers, systemGroupMembers, userGroupIdMap, rightMap, employeeMap)
+        }
+
+        /**
+         * @return this, if the user is already known, otherwise a copy with an ordinal for the new user (the bitsets are
+         * remapped).
+         */
+        fun withUser(userId: Int): Snapshot {
+            val insertionPoint = getOrdinal(userId)
+            if (insertionPoint >= 0) {
+                return this
+            }
+            val pos = -insertionPoint - 1
+            val newUserIds = IntArray(userIds.size + 1)
+            System.arraycopy(userIds, 0, newUserIds, 0, pos)
+            newUserIds[pos] = userId
+            System.arraycopy(userIds, pos, newUserIds, pos + 1, userIds.size - pos)
+            val remap = { bits: LongArray ->
+                val newBits = createBitset(newUserIds.size)
+                for (ordinal in userIds.indices) {
+                    if (isBitSet(bits, ordinal)) {
+                        setBit(newBits, if (ordinal < pos) ordinal else ordinal + 1)
+                    }
+                }
+                newBits
+            }
+            return Snapshot(userMap, newUserIds, groupMap, groupIds, Array(groupMembers.size) { remap(groupMembers[it]) },
+                    Array(systemGroupMembers.size) { remap(systemGroupMembers[it]) }, userGroupIdMap, rightMap, employeeMap)
+        }
     }
 
     companion object {
@@ -506,13 +531,17 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
 
         private const val serialVersionUID = -6501106088529363341L
         private val log = LoggerFactory.getLogger(UserGroupCache::class.java)
-        private fun ensureAndGetUserGroupIdMap(ugIdMap: MutableMap<Int, MutableSet<Int>>, userId: Int): MutableSet<Int> {
-            var set = ugIdMap[userId]
-            if (set == null) {
-                set = HashSet()
-                ugIdMap[userId] = set
-            }
-            return set
+
+        private fun createBitset(size: Int): LongArray {
+            return LongArray((size + 63) ushr 6)
+        }
+
+        private fun setBit(bits: LongArray, ordinal: Int) {
+            bits[ordinal ushr 6] = bits[ordinal ushr 6] or (1L shl ordinal)
+        }
+
+        private fun isBitSet(bits: LongArray, ordinal: Int): Boolean {
+            return ordinal >= 0 && (ordinal ushr 6) < bits.size && bits[ordinal ushr 6] and (1L shl ordinal) != 0L
         }
     }
 
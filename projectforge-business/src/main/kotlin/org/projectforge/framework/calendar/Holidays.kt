@@ -34,19 +34,24 @@ import org.slf4j.LoggerFactory
 import java.math.BigDecimal
 import java.time.DayOfWeek
 import java.time.LocalDate
+import java.time.Year
 import java.time.ZonedDateTime
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 class Holidays private constructor() {
     /**
-     * Contains all holidays of a year. Key is the year. Value is a map of all holidays in the year with the day of the year as key.
+     * Contains the immutable tables of all years (holidays and working days). Key is the year.
      */
-    private val holidaysByYear: MutableMap<Int, Map<Int, Holiday?>?> = HashMap()
-    private val reconfiguredHolidays: MutableMap<HolidayDefinition, ConfigureHoliday?> = HashMap()
+    private val yearTables = ConcurrentHashMap<Int, YearTable>()
+    @Volatile
+    private var reconfiguredHolidays: Map<HolidayDefinition, ConfigureHoliday?> = emptyMap()
+    @Volatile
     private var xmlConfiguration: ConfigXml? = null
+
     private fun computeHolidays(year: Int): Map<Int, Holiday?> {
         log.info("Compute holidays for year: $year")
         val holidays: MutableMap<Int, Holiday?> = HashMap()
@@ -149,24 +154,55 @@ class Holidays private constructor() {
     }
 
     @Synchronized
-    private fun getHolidays(year: Int): Map<Int, Holiday?>? {
-        if (xmlConfiguration == null) {
-            xmlConfiguration = ConfigXml.getInstance()
-            xmlConfiguration!!.let { xmlConfiguration ->
-                for (holiday in xmlConfiguration.holidays) {
-                    if (holiday.id != null) {
-                        reconfiguredHolidays[holiday.id] = holiday
-                    }
-                }
-                holidaysByYear.clear()
+    private fun initialize() {
+        if (xmlConfiguration != null) {
+            return
+        }
+        val config = ConfigXml.getInstance()
+        val map = HashMap<HolidayDefinition, ConfigureHoliday?>()
+        for (holiday in config.holidays) {
+            if (holiday.id != null) {
+                map[holiday.id] = holiday
             }
         }
-        var holidays = holidaysByYear[year]
-        if (holidays == null) {
-            holidays = computeHolidays(year)
-            holidaysByYear[year] = holidays
+        reconfiguredHolidays = map
+        yearTables.clear()
+        xmlConfiguration = config
+    }
+
+    private fun getYearTable(year: Int): YearTable {
+        if (xmlConfiguration == null) {
+            initialize()
         }
-        return holidays
+        return yearTables.computeIfAbsent(year) { YearTable(it, computeHolidays(it)) }
+    }
+
+    private fun getHolidays(year: Int): Map<Int, Holiday?>? {
+        return getYearTable(year).holidays
+    }
+
+    /**
+     * Determines the number of working days in the given period (both days inclusive) by the prefix sums of the
+     * working days of the years. Please note: there might be also half working days (e. g. on Xmas or New Years Eve),
+     * so a BigDecimal is returned.
+     */
+    fun getNumberOfWorkingDays(from: LocalDate, to: LocalDate): BigDecimal {
+        if (to.isBefore(from)) {
+            return BigDecimal.ZERO
+        }
+        var fullWorkingDays = 0
+        var fractions = BigDecimal.ZERO
+        for (year in from.year..to.year) {
+            val table = getYearTable(year)
+            val fromDayOfYear = if (year == from.year) from.dayOfYear else 1
+            val toDayOfYear = if (year == to.year) to.dayOfYear else table.numberOfDays
+            fullWorkingDays += table.fullWorkingDays[toDayOfYear] - table.fullWorkingDays[fromDayOfYear - 1]
+            val fraction = table.workFractions[toDayOfYear].subtract(table.workFractions[fromDayOfYear - 1])
+            if (fraction.signum() != 0) {
+                fractions = fractions.add(fraction)
+            }
+        }
+        return fractions.add(BigDecimal(fullWorkingDays))
     }
 
     fun isHoliday(date: IPFDate<*>): Boolean {
@@ -213,6 +249,46 @@ class Holidays private constructor() {
         return if (StringUtils.isNotBlank(day.label)) day.label else day.i18nKey
     }
 
+    /**
+     * Immutable table of a year: the holidays and the prefix sums of the working days. Index of the prefix sums is the
+     * day of year, index 0 is the (empty) sum before the first day of the year.
+     */
+    private class YearTable(year: Int, holidays: Map<Int, Holiday?>) {
+        val holidays: Map<Int, Holiday?> = Collections.unmodifiableMap(HashMap(holidays))
+        val numberOfDays = Year.of(year).length()
+        /**
+         * Prefix sums of the full working days.
+         */
+        val fullWorkingDays = IntArray(numberOfDays + 1)
+        /**
+         * Prefix sums of the fractions of working days with a work fraction (e. g. 0.5 for half working days).
+         */
+        val workFractions = Array<BigDecimal>(numberOfDays + 1) { BigDecimal.ZERO }
+
+        init {
+            var date = LocalDate.ofYearDay(year, 1)
+            for (dayOfYear in 1..numberOfDays) {
+                var fullDay = 0
+                var fraction: BigDecimal? = null
+                if (!WEEKEND_DAYS.contains(date.dayOfWeek)) {
+                    val holiday = holidays[dayOfYear]
+                    if (holiday == null) {
+                        fullDay = 1
+                    } else if (holiday.isWorkingDay) {
+                        if (holiday.workFraction != null) {
+                            fraction = holiday.workFraction
+                        } else {
+                            fullDay = 1
+                        }
+                    }
+                }
+                fullWorkingDays[dayOfYear] = fullWorkingDays[dayOfYear - 1] + fullDay
+                workFractions[dayOfYear] = if (fraction != null) workFractions[dayOfYear - 1].add(fraction) else workFractions[dayOfYear - 1]
+                date = date.plusDays(1)
+            }
+        }
+    }
+
     companion object {
         private val log = LoggerFactory.getLogger(Holidays::class.java)
         @JvmStatic
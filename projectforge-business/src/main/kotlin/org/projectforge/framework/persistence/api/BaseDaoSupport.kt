@@ -24,6 +24,7 @@
 package org.projectforge.framework.persistence.api
 
 import org.apache.commons.lang3.Validate
+import org.hibernate.search.jpa.Search
 import org.projectforge.framework.access.OperationType
 import org.projectforge.framework.i18n.InternalErrorException
 import org.projectforge.framework.persistence.history.HistoryBaseDaoAdapter
@@ -31,6 +32,7 @@ import org.projectforge.framework.persistence.jpa.PfEmgr
 import org.projectforge.framework.persistence.jpa.impl.BaseDaoJpaAdapter
 import org.slf4j.LoggerFactory
 import java.util.*
+import javax.persistence.EntityManager
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -53,7 +55,10 @@ object BaseDaoSupport {
         return obj.id
     }
 
-    private fun <O : ExtendedBaseDO<Int>> internalSave(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O) {
+    /**
+     * @param flush If false, the caller is responsible for flushing (used by batch writes).
+     */
+    private fun <O : ExtendedBaseDO<Int>> internalSave(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, flush: Boolean = true) {
         BaseDaoJpaAdapter.prepareInsert(emgr, obj)
         val em = emgr.entityManager
         em.persist(obj)
@@ -62,8 +67,10 @@ object BaseDaoSupport {
         }
         baseDao.prepareHibernateSearch(obj, OperationType.INSERT)
         em.merge(obj)
-        em.flush()
-        baseDao.flushSearchSession(em)
+        if (flush) {
+            em.flush()
+            baseDao.flushSearchSession(em)
+        }
         HistoryBaseDaoAdapter.inserted(emgr, obj)
     }
 
@@ -104,7 +111,11 @@ object BaseDaoSupport {
         }
     }
 
-    private fun <O : ExtendedBaseDO<Int>> internalUpdate(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, checkAccess: Boolean, res: ResultObject<O>) {
+    /**
+     * @param flush If false, the caller is responsible for flushing (used by batch writes).
+     */
+    private fun <O : ExtendedBaseDO<Int>> internalUpdate(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, checkAccess: Boolean, res: ResultObject<O>,
+                                                         flush: Boolean = true) {
         val em = emgr.entityManager
         val dbObj = em.find(baseDao.clazz, obj.id)
         if (checkAccess) {
@@ -127,17 +138,28 @@ object BaseDaoSupport {
                 //   log.info("No modifications detected (no update needed): " + dbObj.toString());
                 baseDao.prepareHibernateSearch(obj, OperationType.UPDATE)
                 em.merge(dbObj)
-                em.flush()
+                if (flush) {
+                    em.flush()
+                }
                 if (baseDao.logDatabaseActions) {
                     log.info(baseDao.clazz.getSimpleName() + " updated: " + dbObj.toString())
                 }
-                baseDao.flushSearchSession(em)
+                if (flush) {
+                    baseDao.flushSearchSession(em)
+                }
             }
             result
         }
     }
 
     private fun <O : ExtendedBaseDO<Int>> postInternalUpdate(baseDao: BaseDao<O>, obj: O, res: ResultObject<O>) {
+        callAfterUpdate(baseDao, obj, res)
+        if (res.wantsReindexAllDependentObjects) {
+            baseDao.reindexDependentObjects(obj)
+        }
+    }
+
+    private fun <O : ExtendedBaseDO<Int>> callAfterUpdate(baseDao: BaseDao<O>, obj: O, res: ResultObject<O>) {
         baseDao.afterSaveOrModify(obj)
         if (baseDao.supportAfterUpdate) {
             baseDao.afterUpdate(obj, res.dbObjBackup, res.modStatus != ModificationStatus.NONE)
@@ -146,9 +168,6 @@ object BaseDaoSupport {
             baseDao.afterUpdate(obj, null, res.modStatus != ModificationStatus.NONE)
             baseDao.afterUpdate(obj, null)
         }
-        if (res.wantsReindexAllDependentObjects) {
-            baseDao.reindexDependentObjects(obj)
-        }
     }
 
 
@@ -254,4 +273,87 @@ object BaseDaoSupport {
         }
         internalSaveOrUpdate(baseDao, list)
     }
+
+    /**
+     * Batch write: all objects are saved or updated in one transaction. The entity manager is flushed and cleared only
+     * every [BATCH_SIZE] objects, so the inserts and updates of the objects and their history entries are sent as
+     * JDBC batches (see hibernate.jdbc.batch_size in persistence.xml) and the search index is written block-wise.
+     *
+     * The side effects (afterSaveOrModify, afterSave/afterUpdate, object changed listeners) are called after the commit
+     * in one pass and the dependent objects of all updated objects are re-indexed together.
+     * @param col Entries to save (id is null) or update.
+     * @param checkAccess If true, the insert and update access of the logged-in user is checked for every object.
+     * @return The statistics of this batch.
+     */
+    @JvmStatic
+    fun <O : ExtendedBaseDO<Int>> internalSaveOrUpdateInBatch(baseDao: BaseDao<O>, col: Collection<O>, checkAccess: Boolean): BatchWriteStatistics {
+        val stats = BatchWriteStatistics(baseDao.clazz.simpleName)
+        if (col.isEmpty()) {
+            return stats.finish()
+        }
+        if (checkAccess) {
+            baseDao.accessChecker.checkRestrictedOrDemoUser()
+        }
+        val inserted = mutableListOf<O>()
+        val updated = mutableListOf<Pair<O, ResultObject<O>>>()
+        for (obj in col) {
+            if (obj.id != null) {
+                preInternalUpdate(baseDao, obj, false) // Access is checked by internalUpdate.
+                updated.add(Pair(obj, ResultObject()))
+            } else {
+                if (checkAccess) {
+                    baseDao.beforeSaveOrModify(obj)
+                    baseDao.checkPartOfCurrentTenant(obj, OperationType.INSERT)
+                    baseDao.checkLoggedInUserInsertAccess(obj)
+                }
+                preInternalSave(baseDao, obj)
+                inserted.add(obj)
+            }
+        }
+        baseDao.emgrFactory.runInTrans { emgr ->
+            val em = emgr.entityManager
+            var counter = 0
+            for (obj in inserted) {
+                internalSave(emgr, baseDao, obj, false)
+                if (++counter % BATCH_SIZE == 0) {
+                    flushAndClear(em)
+                }
+            }
+            for ((obj, res) in updated) {
+                internalUpdate(emgr, baseDao, obj, checkAccess, res, false)
+                if (++counter % BATCH_SIZE == 0) {
+                    flushAndClear(em)
+                }
+            }
+            em.flush()
+            baseDao.flushSearchSession(em)
+        }
+        stats.written(inserted.size, updated.count { it.second.modStatus != ModificationStatus.NONE }, updated.count { it.second.modStatus == ModificationStatus.NONE })
+        // Deferred side effects after commit:
+        inserted.forEach { postInternalSave(baseDao, it) }
+        updated.forEach { callAfterUpdate(baseDao, it.first, it.second) }
+        val reindex = updated.filter { it.second.wantsReindexAllDependentObjects }.map { it.first }
+        if (reindex.isNotEmpty()) {
+            baseDao.reindexDependentObjects(reindex)
+        }
+        stats.finish()
+        log.info(stats.toString())
+        return stats
+    }
+
+    /**
+     * Sends the pending JDBC batches, writes the pending index changes and detaches all objects (frees memory of large
+     * batches).
+     */
+    private fun flushAndClear(em: EntityManager) {
+        em.flush()
+        Search.getFullTextEntityManager(em).flushToIndexes()
+        em.clear()
+    }
+
+    /**
+     * Number of objects written before the entity manager is flushed and cleared. Should be a multiple of
+     * hibernate.jdbc.batch_size.
+     */
+    const val BATCH_SIZE = 500
 }
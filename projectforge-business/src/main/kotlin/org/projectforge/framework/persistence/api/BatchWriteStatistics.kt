@@ -0,0 +1,80 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api
+
+/**
+ * Statistics of a batch write ([BaseDao.saveOrUpdateInBatch]).
+ */
+class BatchWriteStatistics(val entity: String) {
+    private val begin = System.currentTimeMillis()
+
+    var inserted = 0
+        private set
+
+    var updated = 0
+        private set
+
+    /**
+     * Number of objects to update without any modification.
+     */
+    var unmodified = 0
+        private set
+
+    /**
+     * Duration of the transaction (inserts and updates including history and index).
+     */
+    var writeMillis = 0L
+        private set
+
+    /**
+     * Total duration including the deferred side effects after commit.
+     */
+    var totalMillis = 0L
+        private set
+
+    val total: Int
+        get() = inserted + updated + unmodified
+
+    /**
+     * Number of written objects per second (by total duration).
+     */
+    val objectsPerSecond: Long
+        get() = if (totalMillis > 0) total * 1000L / totalMillis else total.toLong()
+
+    internal fun written(inserted: Int, updated: Int, unmodified: Int) {
+        this.inserted = inserted
+        this.updated = updated
+        this.unmodified = unmodified
+        writeMillis = System.currentTimeMillis() - begin
+    }
+
+    internal fun finish(): BatchWriteStatistics {
+        totalMillis = System.currentTimeMillis() - begin
+        return this
+    }
+
+    override fun toString(): String {
+        return "Batch write of $entity: inserted=$inserted, updated=$updated, unmodified=$unmodified, write=${writeMillis}ms, total=${totalMillis}ms, $objectsPerSecond objects/s."
+    }
+}
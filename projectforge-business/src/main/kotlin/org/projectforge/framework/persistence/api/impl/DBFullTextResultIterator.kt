@@ -23,10 +23,15 @@
 
 package org.projectforge.framework.persistence.api.impl
 
-import org.apache.commons.lang3.builder.CompareToBuilder
 import org.apache.lucene.analysis.standard.ClassicAnalyzer
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser
 import org.apache.lucene.queryparser.classic.QueryParser
+import org.apache.lucene.search.Sort
+import org.apache.lucene.search.SortField
+import org.hibernate.ScrollMode
+import org.hibernate.ScrollableResults
+import org.hibernate.Session
+import org.hibernate.search.Search
 import org.hibernate.search.jpa.FullTextEntityManager
 import org.projectforge.common.BeanHelper
 import org.projectforge.framework.persistence.api.BaseDao
@@ -35,10 +40,21 @@ import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.api.SortProperty
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.slf4j.LoggerFactory
+import java.text.CollationKey
 import java.text.Collator
 
-private const val MAX_RESULTS = 100
+/**
+ * Number of entities loaded at once while scrolling through the hits.
+ */
+private const val FETCH_SIZE = 100
 
+/**
+ * The Lucene query is built (or parsed) only once. The hits are scrolled (the Lucene hits are collected once and the
+ * entities are loaded block-wise in hit order), so deep result sets don't re-run the query for every block.
+ *
+ * If all sort properties are sortable by the index ([org.hibernate.search.annotations.SortableField]), the hits are
+ * sorted by Lucene and [sort] returns the list as it is. Otherwise the list is sorted in memory after loading.
+ */
 internal class DBFullTextResultIterator<O : ExtendedBaseDO<Int>>(
         val baseDao: BaseDao<O>,
         private val fullTextEntityManager: FullTextEntityManager,
@@ -49,11 +65,13 @@ internal class DBFullTextResultIterator<O : ExtendedBaseDO<Int>>(
         val multiFieldQuery: List<String>? = null)     // MultiField query
     : DBResultIterator<O> {
     private val log = LoggerFactory.getLogger(DBFullTextResultIterator::class.java)
-    private var result: List<O>
-    private var resultIndex = -1
-    private var firstIndex = 0
     private val searchClassInfo = HibernateSearchMeta.getClassInfo(baseDao)
     private val searchFields: Array<String>
+    private var scrollableResults: ScrollableResults? = null
+    /**
+     * The sort of the index, if all sort properties are sortable by the index, otherwise null.
+     */
+    private val indexSort: Sort?
 
     init {
         if (log.isDebugEnabled && !multiFieldQuery.isNullOrEmpty()) {
@@ -63,7 +81,15 @@ internal class DBFullTextResultIterator<O : ExtendedBaseDO<Int>>(
         val fullTextSearchFields = filter.fullTextSearchFields
         searchFields = if (fullTextSearchFields.isNullOrEmpty()) searchClassInfo.stringFieldNames else fullTextSearchFields
         log.debug("Using search fields: ${searchFields.joinToString(", ")}")
-        result = nextResultBlock()
+        indexSort = createIndexSort()
+        val query = fullTextQuery ?: parseMultiFieldQuery()
+        if (query != null) {
+            val session = fullTextEntityManager.unwrap(Session::class.java)
+            val hquery = Search.getFullTextSession(session).createFullTextQuery(query, baseDao.doClass)
+            indexSort?.let { hquery.setSort(it) }
+            hquery.setFetchSize(FETCH_SIZE)
+            scrollableResults = hquery.scroll(ScrollMode.FORWARD_ONLY)
+        }
     }
 
     override fun next(): O? {
@@ -85,90 +111,118 @@ internal class DBFullTextResultIterator<O : ExtendedBaseDO<Int>>(
         }
     }
 
+    override val sortedByQuery: Boolean
+        get() = sortProperties.isNullOrEmpty() || indexSort != null
+
     override fun sort(list: List<O>): List<O> {
+        if (sortProperties.isNullOrEmpty() || indexSort != null || list.size < 2) {
+            return list // Nothing to sort or already sorted by the index.
+        }
         val collator = Collator.getInstance(ThreadLocalUserContext.getLocale())
-        val errorProperties = mutableListOf<String>()
-        return list.sortedWith(object : Comparator<O> {
-            override fun compare(o1: O, o2: O): Int {
-                if (sortProperties.isNullOrEmpty()) {
-                    return 0
-                }
-                val ctb = CompareToBuilder()
-                for (sortProperty in sortProperties) {
-                    try {
-                        val val1 = BeanHelper.getNestedProperty(o1, sortProperty.property)
-                        val val2 = BeanHelper.getNestedProperty(o2, sortProperty.property)
-                        if (val1 is String) {
-                            // Strings should be compared by using locale dependent collator (especially for german Umlaute)
-                            if (sortProperty.ascending) {
-                                ctb.append(val1, val2, collator)
-                            } else {
-                                ctb.append(val2, val1, collator)
-                            }
-                        } else if (val1 is Comparable<*>) {
-                            if (sortProperty.ascending) {
-                                ctb.append(val1, val2)
-                            } else {
-                                ctb.append(val2, val1)
-                            }
-                        } else {
-                            if (sortProperty.ascending) {
-                                ctb.append(val1?.toString(), val2?.toString())
-                            } else {
-                                ctb.append(val2?.toString(), val1?.toString())
-                            }
-                        }
-                    } catch (ex: Exception) {
-                        if (!errorProperties.contains(ex.message)) {
-                            errorProperties.add("${ex.message}")
-                            log.warn("Ignore sort property (OK): ${ex.message}")
-                        }
+        val errorProperties = mutableSetOf<String>()
+        // Accessors are resolved once per sort and the sort keys once per entry, not per comparison:
+        val accessors = sortProperties.map { if (it.property.contains('[')) null else DBPropertyAccessor.of(it.property) }
+        val keys = list.map { obj ->
+            Array(sortProperties.size) { index ->
+                try {
+                    val accessor = accessors[index]
+                    val value = if (accessor != null) accessor.getValue(obj) else BeanHelper.getNestedProperty(obj, sortProperties[index].property)
+                    when (value) {
+                        // Strings should be compared by using locale dependent collator (especially for german Umlaute)
+                        is String -> collator.getCollationKey(value)
+                        is Comparable<*> -> value
+                        null -> null
+                        else -> collator.getCollationKey(value.toString())
+                    }
+                } catch (ex: Exception) {
+                    if (errorProperties.add("${ex.message}")) {
+                        log.warn("Ignore sort property (OK): ${ex.message}")
                     }
+                    null
+                }
+            }
+        }
+        val indices = list.indices.sortedWith(Comparator { i1, i2 ->
+            val keys1 = keys[i1]
+            val keys2 = keys[i2]
+            for ((index, sortProperty) in sortProperties.withIndex()) {
+                val result = compareKeys(keys1[index], keys2[index])
+                if (result != 0) {
+                    return@Comparator if (sortProperty.ascending) result else -result
                 }
-                return ctb.toComparison()
             }
+            0
         })
+        return indices.map { list[it] }
+    }
+
+    override fun close() {
+        scrollableResults?.close()
+        scrollableResults = null
     }
 
     private fun internalNext(): O? {
-        if (result.isEmpty()) {
+        val results = scrollableResults ?: return null
+        if (!results.next()) {
+            close()
             return null
         }
-        if (++resultIndex >= result.size) {
-            if (result.size < MAX_RESULTS)
-                return null
-            result = nextResultBlock()
-            if (result.isEmpty()) {
-                return null
-            }
-            resultIndex = 0
+        @Suppress("UNCHECKED_CAST")
+        return results.get(0) as O // Managed object.
+    }
+
+    /**
+     * Parses the multi field query only once for the whole result.
+     */
+    private fun parseMultiFieldQuery(): org.apache.lucene.search.Query? {
+        val queryString = multiFieldQuery?.joinToString(" ") ?: ""
+        val parser = MultiFieldQueryParser(searchFields, ClassicAnalyzer())
+        parser.defaultOperator = QueryParser.Operator.AND
+        parser.allowLeadingWildcard = true
+        try {
+            return parser.parse(queryString)
+        } catch (ex: org.apache.lucene.queryparser.classic.ParseException) {
+            val errorMsg = ("Lucene error message: '${ex.message}'  (for ${baseDao.doClass.getSimpleName()}: '$queryString').")
+            // TODO feedback
+            log.error(errorMsg)
         }
-        return result[resultIndex]
+        return null
     }
 
-    private fun nextResultBlock(): List<O> {
-        val fullTextQuery = if (fullTextQuery != null) {
-            fullTextEntityManager.createFullTextQuery(fullTextQuery, baseDao.doClass)
-        } else {
-            val queryString = multiFieldQuery?.joinToString(" ") ?: ""
-            val parser = MultiFieldQueryParser(searchFields, ClassicAnalyzer())
-            parser.defaultOperator = QueryParser.Operator.AND
-            parser.allowLeadingWildcard = true
-            var query: org.apache.lucene.search.Query? = null
-            try {
-                query = parser.parse(queryString)
-            } catch (ex: org.apache.lucene.queryparser.classic.ParseException) {
-                val errorMsg = ("Lucene error message: '${ex.message}'  (for ${baseDao.doClass.getSimpleName()}: '$queryString').")
-                // TODO feedback
-                log.error(errorMsg)
-            }
-            fullTextEntityManager.createFullTextQuery(query, baseDao.doClass)
+    /**
+     * @return The Lucene sort, if all sort properties are sortable by the index, otherwise null.
+     */
+    private fun createIndexSort(): Sort? {
+        if (sortProperties.isNullOrEmpty()) {
+            return null
+        }
+        val sortFields = mutableListOf<SortField>()
+        for (sortProperty in sortProperties) {
+            sortFields.add(searchClassInfo.getSortField(sortProperty.property, sortProperty.ascending) ?: return null)
         }
-        fullTextQuery.firstResult = firstIndex
-        fullTextQuery.maxResults = MAX_RESULTS
+        log.debug("Sorting by index: ${sortFields.joinToString(", ")}")
+        return Sort(*sortFields.toTypedArray())
+    }
 
-        firstIndex += MAX_RESULTS
+    private fun compareKeys(key1: Any?, key2: Any?): Int {
+        if (key1 === key2) return 0
+        if (key1 == null) return -1 // null values first (as CompareToBuilder does).
+        if (key2 == null) return 1
+        if (key1 is CollationKey && key2 is CollationKey) {
+            return key1.compareTo(key2)
+        }
+        if (key1 is CollationKey || key2 is CollationKey) {
+            return asString(key1).compareTo(asString(key2))
+        }
         @Suppress("UNCHECKED_CAST")
-        return fullTextQuery.resultList as List<O> // return a list of managed objects
+        return try {
+            (key1 as Comparable<Any>).compareTo(key2)
+        } catch (ex: ClassCastException) {
+            key1.toString().compareTo(key2.toString())
+        }
+    }
+
+    private fun asString(key: Any): String {
+        return if (key is CollationKey) key.sourceString else key.toString()
     }
 }
@@ -31,10 +31,14 @@ import java.util.*
 import javax.persistence.EntityManager
 import javax.persistence.criteria.Predicate
 
+/**
+ * Searches the ids of entities by their history entries. The ids are returned as sorted arrays of primitive longs
+ * (much smaller than sets of boxed ids for large results), use [java.util.Arrays.binarySearch] for lookups.
+ */
 internal object DBHistoryQuery {
     private const val MAX_RESULT_SIZE = 100000 // Limit result list to 100000
 
-    fun searchHistoryEntryByCriteria(entityManager: EntityManager, clazz: Class<*>, searchParams: DBHistorySearchParams): Set<Long> {
+    fun searchHistoryEntryByCriteria(entityManager: EntityManager, clazz: Class<*>, searchParams: DBHistorySearchParams): LongArray {
         val cb = entityManager.criteriaBuilder
         val cr = cb.createQuery(Long::class.java)
         val root = cr.from(PfHistoryMasterDO::class.java)
@@ -60,12 +64,12 @@ internal object DBHistoryQuery {
         query.maxResults = MAX_RESULT_SIZE
         val result = query.resultList
         if (result.isNullOrEmpty()) {
-            return emptySet()
+            return LongArray(0)
         }
-        return result.toSet()
+        return toSortedArray(result.size) { result[it] }
     }
 
-    fun searchHistoryEntryByFullTextQuery(entityManager: EntityManager, clazz: Class<*>, searchParams: DBHistorySearchParams): Set<Long> {
+    fun searchHistoryEntryByFullTextQuery(entityManager: EntityManager, clazz: Class<*>, searchParams: DBHistorySearchParams): LongArray {
         val fullTextEntityManager = org.hibernate.search.jpa.Search.getFullTextEntityManager(entityManager)
         val queryBuilder = fullTextEntityManager.searchFactory.buildQueryBuilder().forEntity(PfHistoryMasterDO::class.java).get()
         var boolJunction: BooleanJunction<*> = queryBuilder.bool()
@@ -108,11 +112,24 @@ internal object DBHistoryQuery {
         val result = fullTextQuery.getResultList()// as List<Long> // return a list of managed objects
 
         if (result.isNullOrEmpty()) {
-            return emptySet()
+            return LongArray(0)
         }
-        return result.map {
-            (it as Array<*>)[0] as Long
-        }.toSet()
+        return toSortedArray(result.size) { (result[it] as Array<*>)[0] as Long }
+    }
+
+    /**
+     * @return Sorted array of distinct ids.
+     */
+    private fun toSortedArray(size: Int, getter: (index: Int) -> Long): LongArray {
+        val array = LongArray(size, getter)
+        array.sort()
+        var count = 0
+        array.forEachIndexed { index, id ->
+            if (index == 0 || id != array[count - 1]) {
+                array[count++] = id
+            }
+        }
+        return if (count == size) array else array.copyOf(count)
     }
 
     private val log = LoggerFactory.getLogger(DBHistoryQuery::class.java)
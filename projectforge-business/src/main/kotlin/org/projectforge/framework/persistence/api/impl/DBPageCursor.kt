@@ -0,0 +1,158 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api.impl
+
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.util.*
+
+/**
+ * Position of the next page served by [DBQuery.getPage], given to the client as an opaque string ([encode]):
+ * * Keyset pagination: the id and the sort values of the last entry of the previous page, so the seek predicate is
+ *   built without loading this entry again (it may also be deleted in the meantime).
+ * * Keyset pagination with sort values not supported by the cursor: only the id, all entries up to this entry are
+ *   skipped.
+ * * Full text search: the number of entries of all previous pages (offset).
+ */
+internal class DBPageCursor private constructor(
+        val type: Type,
+        /**
+         * The id of the last entry of the previous page (keyset pagination only).
+         */
+        val id: Int? = null,
+        /**
+         * The values of the sort properties of the last entry of the previous page (keyset pagination only).
+         */
+        val sortValues: List<Any?>? = null,
+        /**
+         * The number of entries of the previous pages (full text search only).
+         */
+        val offset: Int = 0) {
+
+    enum class Type(val code: String) { KEYSET("K"), SKIP("S"), OFFSET("F") }
+
+    fun encode(): String {
+        val tokens = mutableListOf(type.code)
+        when (type) {
+            Type.KEYSET -> {
+                tokens.add("$id")
+                sortValues!!.forEach { tokens.add(encodeValue(it)) }
+            }
+            Type.SKIP -> tokens.add("$id")
+            Type.OFFSET -> tokens.add("$offset")
+        }
+        return base64Encoder.encodeToString(tokens.joinToString(SEPARATOR).toByteArray(Charsets.UTF_8))
+    }
+
+    companion object {
+        private const val SEPARATOR = ";"
+
+        private val base64Encoder = Base64.getUrlEncoder().withoutPadding()
+
+        private val base64Decoder = Base64.getUrlDecoder()
+
+        fun keyset(id: Int, sortValues: List<Any?>): DBPageCursor {
+            return DBPageCursor(Type.KEYSET, id = id, sortValues = sortValues)
+        }
+
+        fun skip(id: Int): DBPageCursor {
+            return DBPageCursor(Type.SKIP, id = id)
+        }
+
+        fun offset(offset: Int): DBPageCursor {
+            return DBPageCursor(Type.OFFSET, offset = offset)
+        }
+
+        /**
+         * @return true, if the given sort value may be part of a keyset cursor.
+         */
+        fun isSupported(value: Any?): Boolean {
+            return value == null || value is String || value is Int || value is Long || value is Short
+                    || value is Boolean || value is BigDecimal || value is Date || value is LocalDate || value is Enum<*>
+        }
+
+        /**
+         * @throws IllegalArgumentException if the given string isn't a valid cursor.
+         */
+        fun decode(cursor: String): DBPageCursor {
+            try {
+                val tokens = String(base64Decoder.decode(cursor), Charsets.UTF_8).split(SEPARATOR)
+                val type = Type.values().find { it.code == tokens[0] } ?: throw IllegalArgumentException("Unknown type.")
+                return when (type) {
+                    Type.KEYSET -> keyset(tokens[1].toInt(), tokens.drop(2).map { decodeValue(it) })
+                    Type.SKIP -> skip(tokens[1].toInt())
+                    Type.OFFSET -> {
+                        val offset = tokens[1].toInt()
+                        require(offset >= 0) { "Negative offset." }
+                        offset(offset)
+                    }
+                }
+            } catch (ex: Exception) {
+                throw IllegalArgumentException("Invalid page cursor '$cursor': ${ex.message}", ex)
+            }
+        }
+
+        private fun encodeValue(value: Any?): String {
+            return when (value) {
+                null -> "n"
+                is String -> "s:${base64Encoder.encodeToString(value.toByteArray(Charsets.UTF_8))}"
+                is Int -> "i:$value"
+                is Long -> "l:$value"
+                is Short -> "h:$value"
+                is Boolean -> "b:$value"
+                is BigDecimal -> "d:$value"
+                // Subclasses of java.util.Date first, the criteria query needs the type of the attribute:
+                is java.sql.Timestamp -> "t:${value.time}:${value.nanos}"
+                is java.sql.Date -> "q:${value.time}"
+                is Date -> "D:${value.time}"
+                is LocalDate -> "L:$value"
+                is Enum<*> -> "e:${value.declaringClass.name}:${value.name}"
+                else -> throw IllegalArgumentException("Unsupported sort value of type ${value::class.java.name}.")
+            }
+        }
+
+        private fun decodeValue(token: String): Any? {
+            val parts = token.split(':')
+            return when (parts[0]) {
+                "n" -> null
+                "s" -> String(base64Decoder.decode(parts[1]), Charsets.UTF_8)
+                "i" -> parts[1].toInt()
+                "l" -> parts[1].toLong()
+                "h" -> parts[1].toShort()
+                "b" -> parts[1].toBoolean()
+                "d" -> BigDecimal(parts[1])
+                "t" -> java.sql.Timestamp(parts[1].toLong()).also { it.nanos = parts[2].toInt() }
+                "q" -> java.sql.Date(parts[1].toLong())
+                "D" -> Date(parts[1].toLong())
+                "L" -> LocalDate.parse(parts[1])
+                "e" -> {
+                    val enumClass = Class.forName(parts[1], false, DBPageCursor::class.java.classLoader)
+                    require(enumClass.isEnum) { "${parts[1]} isn't an enum." }
+                    enumClass.enumConstants.first { (it as Enum<*>).name == parts[2] }
+                }
+                else -> throw IllegalArgumentException("Unknown value type '${parts[0]}'.")
+            }
+        }
+    }
+}
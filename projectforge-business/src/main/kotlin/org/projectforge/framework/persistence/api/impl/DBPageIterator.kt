@@ -0,0 +1,64 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api.impl
+
+import org.projectforge.framework.persistence.api.BaseDao
+import org.projectforge.framework.persistence.api.ExtendedBaseDO
+import org.projectforge.framework.persistence.api.QueryFilter
+
+/**
+ * Iterates over all entries filtered by the given filter page by page ([BaseDao.getPage]), so only one page is held
+ * in memory at once (e. g. for streaming huge exports). The next page is fetched when the entries of the current page
+ * are consumed.
+ */
+class DBPageIterator<O : ExtendedBaseDO<Int>>(
+        private val baseDao: BaseDao<O>,
+        private val filter: QueryFilter,
+        private val customResultFilters: List<CustomResultFilter<O>>?,
+        private val pageSize: Int)
+    : Iterator<O> {
+    private var page: DBResultPage<O>? = null
+
+    private var pageIterator: Iterator<O> = emptyList<O>().iterator()
+
+    override fun hasNext(): Boolean {
+        while (!pageIterator.hasNext()) {
+            val current = page
+            if (current != null && (!current.hasMore || current.cursor == null)) {
+                return false
+            }
+            val next = baseDao.getPage(filter, customResultFilters, pageSize, current?.cursor)
+            page = next
+            pageIterator = next.list.iterator()
+        }
+        return true
+    }
+
+    override fun next(): O {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        return pageIterator.next()
+    }
+}
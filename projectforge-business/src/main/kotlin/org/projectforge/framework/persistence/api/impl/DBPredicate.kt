@@ -23,7 +23,6 @@
 
 package org.projectforge.framework.persistence.api.impl
 
-import org.projectforge.common.BeanHelper
 import org.projectforge.framework.ToStringUtil
 import org.projectforge.framework.persistence.jpa.impl.HibernateSearchFilterUtils
 import org.slf4j.LoggerFactory
@@ -511,17 +510,18 @@ abstract class DBPredicate(
      * @return True if specified property of object by field name matches (or any of the properties if multiple values are found for a property).
      */
     internal fun fieldValueMatch(obj: Any, field: String, match: (value: Any?) -> Boolean): Boolean {
-        if (!field.contains('.')) {
-            return match(getProperty(obj, field))
+        val accessor = DBPropertyAccessor.of(field) // Path and getters are cached.
+        if (!accessor.nested) {
+            return match(DBPropertyAccessor.getProperty(obj, field))
         }
-        return fieldValueMatch(obj, field.split('.'), 0, match)
+        return fieldValueMatch(obj, accessor.path, 0, match)
     }
 
     /**
      * For recursive processing of nested properties...
      */
-    private fun fieldValueMatch(obj: Any?, path: List<String>, idx: Int, match: (value: Any?) -> Boolean): Boolean {
-        val nestedObj = getProperty(obj, path[idx])
+    private fun fieldValueMatch(obj: Any?, path: Array<String>, idx: Int, match: (value: Any?) -> Boolean): Boolean {
+        val nestedObj = DBPropertyAccessor.getProperty(obj, path[idx])
         if (nestedObj == null) {
             return match(nestedObj)
         }
@@ -562,13 +562,7 @@ abstract class DBPredicate(
         return Objects.equals(val1, val2)
     }
 
-    private fun getProperty(obj: Any?, field: String): Any? {
-        if (obj == null)
-            return null
-        return BeanHelper.getProperty(obj, field)
-    }
-
-    private fun hasNext(path: List<String>, idx: Int): Boolean {
+    private fun hasNext(path: Array<String>, idx: Int): Boolean {
         return path.size > idx + 1
     }
 }
@@ -0,0 +1,104 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.api.impl
+
+import org.projectforge.common.BeanHelper
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Compiled accessor for (nested) properties of result entries, used by [DBPredicate]s for matching and by full text
+ * result iterators for sorting. The property path is split only once per field name and the getters are determined
+ * only once per class and property, so iterating over huge result sets doesn't scan the declared methods of the
+ * beans for every row (as [BeanHelper.getProperty] does).
+ */
+internal class DBPropertyAccessor private constructor(
+        /**
+         * The field name, nested properties are separated by '.'.
+         */
+        val field: String) {
+    /**
+     * The path of the nested property, split by '.'.
+     */
+    val path: Array<String> = field.split('.').toTypedArray()
+
+    val nested: Boolean
+        get() = path.size > 1
+
+    /**
+     * Gets the (nested) property value of the given bean. Iterables and arrays aren't flattened, so null is returned
+     * if any object of the path is null.
+     */
+    fun getValue(obj: Any?): Any? {
+        var value = obj
+        for (property in path) {
+            value = getProperty(value, property) ?: return null
+        }
+        return value
+    }
+
+    companion object {
+        private val accessorCache = ConcurrentHashMap<String, DBPropertyAccessor>()
+
+        private val getterCache = ConcurrentHashMap<Class<*>, ConcurrentHashMap<String, Method>>()
+
+        /**
+         * @return The cached accessor for the given field (nested properties are supported).
+         */
+        fun of(field: String): DBPropertyAccessor {
+            return accessorCache.computeIfAbsent(field) { DBPropertyAccessor(it) }
+        }
+
+        /**
+         * Gets the value of a (not nested) property by using the cached getter of the bean's class.
+         * @return The property value or null, if the given object is null.
+         * @throws RuntimeException if no getter for the given property was found.
+         */
+        fun getProperty(obj: Any?, property: String): Any? {
+            obj ?: return null
+            val getter = getGetter(obj.javaClass, property)
+            try {
+                return getter.invoke(obj)
+            } catch (ex: IllegalArgumentException) {
+                throw RuntimeException("For property '$property'.", ex)
+            } catch (ex: IllegalAccessException) {
+                throw RuntimeException("For property '$property'.", ex)
+            } catch (ex: InvocationTargetException) {
+                throw RuntimeException("For property '$property'.", ex)
+            }
+        }
+
+        private fun getGetter(clazz: Class<*>, property: String): Method {
+            val getters = getterCache.computeIfAbsent(clazz) { ConcurrentHashMap() }
+            return getters[property] ?: getters.computeIfAbsent(property) {
+                val getter = BeanHelper.determineGetter(clazz, property)
+                        ?: throw RuntimeException("Getter for property '$clazz.$property' not found.")
+                getter.isAccessible = true // Skip access checks on each invocation.
+                getter
+            }
+        }
+    }
+}
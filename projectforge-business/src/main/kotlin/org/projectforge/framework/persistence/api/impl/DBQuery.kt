@@ -89,7 +89,11 @@ open class DBQuery {
                 val dbResultIterator: DBResultIterator<O>
                 dbResultIterator = queryBuilder.result()
                 val historSearchParams = DBHistorySearchParams(filter.modifiedByUserId, filter.modifiedFrom, filter.modifiedTo, filter.searchHistory)
-                var list = createList(baseDao, em, dbResultIterator, customResultFilters, queryBuilder.resultPredicates, dbFilter, historSearchParams, checkAccess)
+                var list = try {
+                    createList(baseDao, em, dbResultIterator, customResultFilters, historSearchParams, checkAccess, dbFilter.maxRows)
+                } finally {
+                    dbResultIterator.close() // Not all results are read, if maxRows is reached.
+                }
                 list = dbResultIterator.sort(list)
 
                 val end = System.currentTimeMillis()
@@ -106,20 +110,111 @@ open class DBQuery {
         }
     }
 
+    /**
+     * Gets one page of the list filtered by the given filter. Keyset (seek) pagination is used for criteria queries:
+     * the data base sorts by the sort properties (and id) and only returns entries ordered after the last entry of the
+     * previous page, so only one page is loaded at once (and access checks and custom result filters are applied
+     * only on the entries of this page). The sort values of the last entry are part of the cursor, so the last entry
+     * isn't loaded again.
+     *
+     * Full text queries are paged by offset. If the hits are sorted by the index, only the entries up to the end of the
+     * page are fetched. Otherwise the whole result list (not limited by [QueryFilter.maxRows]) has to be sorted in
+     * memory and the page is cut from it.
+     * @param pageSize The maximum number of entries of the page.
+     * @param cursor The cursor of the previous page ([DBResultPage.cursor]) or null for the first page.
+     * @throws IllegalArgumentException if the given cursor isn't valid for this query.
+     */
+    @JvmOverloads
+    open fun <O : ExtendedBaseDO<Int>> getPage(baseDao: BaseDao<O>,
+                                               filter: QueryFilter,
+                                               customResultFilters: List<CustomResultFilter<O>>?,
+                                               pageSize: Int,
+                                               cursor: String? = null,
+                                               checkAccess: Boolean = true,
+                                               ignoreTenant: Boolean = false)
+            : DBResultPage<O> {
+        if (checkAccess) {
+            baseDao.checkLoggedInUserSelectAccess()
+        }
+        if (checkAccess && accessChecker.isRestrictedUser) {
+            return DBResultPage(listOf(), null, false)
+        }
+        if (filter.sortProperties.isNullOrEmpty()) {
+            baseDao.defaultSortProperties?.forEach {
+                filter.addOrder(it)
+            }
+        }
+        val pageCursor = cursor?.let { DBPageCursor.decode(it) }
+
+        try {
+            val dbFilter = filter.createDBFilter()
+            return emgrFactory.runRoTrans { emgr ->
+                val em = emgr.entityManager
+                val queryBuilder = DBQueryBuilder(baseDao, em, tenantService, filter, dbFilter,
+                        ignoreTenant = ignoreTenant,
+                        keysetPaging = true)
+                val historSearchParams = DBHistorySearchParams(filter.modifiedByUserId, filter.modifiedFrom, filter.modifiedTo, filter.searchHistory)
+                if (!queryBuilder.keysetPagingSupported) {
+                    // Full text search: paging by offset. maxRows isn't applied, otherwise paging would stop after
+                    // maxRows entries.
+                    require(pageCursor == null || pageCursor.type == DBPageCursor.Type.OFFSET) {
+                        "Page cursor doesn't fit the full text query (${baseDao.doClass.simpleName})."
+                    }
+                    val offset = pageCursor?.offset ?: 0
+                    val dbResultIterator: DBResultIterator<O> = queryBuilder.result()
+                    val list = try {
+                        // One entry more than the page for detecting further entries:
+                        val maxRows = if (dbResultIterator.sortedByQuery && offset < Int.MAX_VALUE - pageSize) offset + pageSize + 1 else Int.MAX_VALUE
+                        dbResultIterator.sort(createList(baseDao, em, dbResultIterator, customResultFilters, historSearchParams, checkAccess, maxRows))
+                    } finally {
+                        dbResultIterator.close()
+                    }
+                    if (offset >= list.size) {
+                        return@runRoTrans DBResultPage<O>(listOf(), null, false)
+                    }
+                    val toIndex = minOf(offset + pageSize, list.size)
+                    return@runRoTrans DBResultPage(list.subList(offset, toIndex), DBPageCursor.offset(toIndex).encode(), toIndex < list.size)
+                }
+                var skipUntilId: Int? = null
+                if (pageCursor != null && !queryBuilder.addKeysetPredicate(pageCursor)) {
+                    skipUntilId = pageCursor.id
+                }
+                val dbResultIterator: DBResultIterator<O> = queryBuilder.result(fetchSize = pageSize)
+                val list = try {
+                    createList(baseDao, em, dbResultIterator, customResultFilters, historSearchParams, checkAccess, pageSize, skipUntilId)
+                } finally {
+                    dbResultIterator.close()
+                }
+                DBResultPage(list, list.lastOrNull()?.let { queryBuilder.createPageCursor(it).encode() }, list.size >= pageSize)
+            }
+        } catch (ex: Exception) {
+            // Don't return an empty page here, the caller would interpret it as end of data.
+            log.error("Error while querying page: ${ex.message}. Magicfilter: ${filter}.")
+            throw ex
+        }
+    }
+
     private fun <O : ExtendedBaseDO<Int>> createList(baseDao: BaseDao<O>,
                                                      em: EntityManager,
                                                      dbResultIterator: DBResultIterator<O>,
                                                      customResultFilters: List<CustomResultFilter<O>>?,
-                                                     resultPredicates: List<DBPredicate>,
-                                                     filter: DBFilter,
                                                      historSearchParams: DBHistorySearchParams,
-                                                     checkAccess: Boolean)
+                                                     checkAccess: Boolean,
+                                                     maxRows: Int,
+                                                     skipUntilId: Int? = null)
             : List<O> {
         val superAdmin = TenantChecker.isSuperAdmin<ExtendedBaseDO<Int>>(ThreadLocalUserContext.getUser())
         val loggedInUser = ThreadLocalUserContext.getUser()
 
         val list = mutableListOf<O>()
         var next: O? = dbResultIterator.next() ?: return list
+        if (skipUntilId != null) {
+            // No keyset pagination available: skip all entries up to the last entry of the previous page.
+            while (next != null && next.id != skipUntilId) {
+                next = dbResultIterator.next()
+            }
+            next = dbResultIterator.next() ?: return list
+        }
         val ensureUniqueSet = mutableSetOf<Int>()
         var resultCounter = 0
         if (historSearchParams.modifiedByUserId != null
@@ -140,11 +235,11 @@ open class DBQuery {
                     ensureUniqueSet.add(next.id) // Mark current object as already proceeded (ensure uniqueness)
                     if ((!checkAccess || baseDao.hasSelectAccess(next, loggedInUser, superAdmin))
                             && baseDao.containsLong(idSet, next)
-                            && match(list, customResultFilters, resultPredicates, next)) {
+                            && match(list, customResultFilters, next)) {
                         // Current result object fits the modified query:
                         baseDao.afterLoad(next)
                         list.add(next)
-                        if (++resultCounter >= filter.maxRows) {
+                        if (++resultCounter >= maxRows) {
                             break
                         }
                     }
@@ -157,10 +252,10 @@ open class DBQuery {
                 if (!ensureUniqueSet.contains(next.id)) {
                     // Current result object wasn't yet proceeded.
                     ensureUniqueSet.add(next.id) // Mark current object as already proceeded (ensure uniqueness)
-                    if (!checkAccess || baseDao.hasSelectAccess(next, loggedInUser, superAdmin) && match(list, customResultFilters, resultPredicates, next)) {
+                    if (!checkAccess || baseDao.hasSelectAccess(next, loggedInUser, superAdmin) && match(list, customResultFilters, next)) {
                         baseDao.afterLoad(next)
                         list.add(next)
-                        if (++resultCounter >= filter.maxRows) {
+                        if (++resultCounter >= maxRows) {
                             break
                         }
                     }
@@ -172,10 +267,11 @@ open class DBQuery {
     }
 
     /**
-     * If predicates are definied (not used for data base query), they're checked with the given result object.
-     * @return true, if no predicates are given or if all predicate matches, otherwise false.
+     * If custom result filters are defined, they're checked with the given result object. Result predicates (not used
+     * for data base query) are already checked by the [DBResultIterator].
+     * @return true, if no custom result filters are given or if all filters match, otherwise false.
      */
-    private fun <O : ExtendedBaseDO<Int>> match(list: MutableList<O>, customResultFilters: List<CustomResultFilter<O>>?, predicates: List<DBPredicate>, next: O): Boolean {
+    private fun <O : ExtendedBaseDO<Int>> match(list: MutableList<O>, customResultFilters: List<CustomResultFilter<O>>?, next: O): Boolean {
         if (!customResultFilters.isNullOrEmpty()) {
             for (filter in customResultFilters) {
                 if (!filter.match(list, next)) {
@@ -183,13 +279,6 @@ open class DBQuery {
                 }
             }
         }
-        if (predicates.isNullOrEmpty())
-            return true
-        for (predicate in predicates) {
-            if (!predicate.match(next)) {
-                return false
-            }
-        }
         return true
     }
 }
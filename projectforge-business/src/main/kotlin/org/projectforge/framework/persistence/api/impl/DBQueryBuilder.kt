@@ -39,7 +39,11 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
         tenantService: TenantService,
         private val queryFilter: QueryFilter,
         dbFilter: DBFilter,
-        ignoreTenant: Boolean = false) {
+        ignoreTenant: Boolean = false,
+        /**
+         * If true, the criteria query is ordered for keyset (seek) pagination (see [addKeysetPredicate]).
+         */
+        private val keysetPaging: Boolean = false) {
 
     enum class Mode {
         /**
@@ -83,9 +87,20 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
      */
     val resultPredicates = mutableListOf<DBPredicate>()
 
+    /**
+     * The sort properties used by the query (max. 3).
+     */
+    private val sortProperties = mutableListOf<SortProperty>()
+
     private val criteriaSearchAvailable: Boolean
         get() = mode == Mode.CRITERIA
 
+    /**
+     * Keyset pagination is only supported by criteria queries, because full text results are sorted after querying.
+     */
+    val keysetPagingSupported: Boolean
+        get() = keysetPaging && criteriaSearchAvailable
+
     private val fullTextSearch: Boolean
         get() = mode == Mode.FULLTEXT || mode == Mode.MULTI_FIELD_FULLTEXT_QUERY
 
@@ -120,6 +135,10 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
             if (--maxOrder <= 0)
                 break // Add only 3 orders.
         }
+        if (keysetPagingSupported) {
+            // Id as last order for getting an unique order of all entries:
+            dbQueryBuilderByCriteria.addOrder(SortProperty.asc("id"))
+        }
         // TODO setCacheRegion(baseDao, criteria)
 
     }
@@ -141,21 +160,92 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
         }
     }
 
-    fun result(): DBResultIterator<O> {
+    /**
+     * @param fetchSize If given, criteria queries fetch the rows in blocks of this size from the data base.
+     */
+    fun result(fetchSize: Int? = null): DBResultIterator<O> {
         if (fullTextSearch) {
             return dbQueryBuilderByFullText.createResultIterator(resultPredicates)
         }
-        return dbQueryBuilderByCriteria.createResultIterator(resultPredicates)
+        return dbQueryBuilderByCriteria.createResultIterator(resultPredicates, fetchSize)
     }
 
     /**
      * Sorting for criteria query is done by the data base, for full text search by Kotlin after getting the result list.
      */
     fun addOrder(sortProperty: SortProperty) {
+        sortProperties.add(sortProperty)
         if (fullTextSearch) {
             dbQueryBuilderByFullText.addOrder(sortProperty)
+        } else if (keysetPaging) {
+            dbQueryBuilderByCriteria.addKeysetOrder(sortProperty)
         } else {
             dbQueryBuilderByCriteria.addOrder(sortProperty)
         }
     }
+
+    /**
+     * Creates the cursor of the next page after the given entry (keyset pagination). The sort values of the entry are
+     * part of the cursor, if supported by [DBPageCursor], otherwise the entries up to the given entry have to be
+     * skipped while fetching the next page.
+     * @param last The last entry of the current page.
+     */
+    internal fun createPageCursor(last: O): DBPageCursor {
+        val sortValues = mutableListOf<Any?>()
+        for (sortProperty in sortProperties) {
+            val property = sortProperty.property
+            val value = try {
+                DBPropertyAccessor.of(property).getValue(last)
+            } catch (ex: Exception) {
+                log.info("Keyset pagination not supported for sort property '$property' (${ex.message}), skipping entries instead.")
+                return DBPageCursor.skip(last.id)
+            }
+            if (!DBPageCursor.isSupported(value)) {
+                log.info("Keyset pagination not supported for sort property '$property' of type ${value!!::class.java.simpleName}, skipping entries instead.")
+                return DBPageCursor.skip(last.id)
+            }
+            sortValues.add(value)
+        }
+        return DBPageCursor.keyset(last.id, sortValues)
+    }
+
+    /**
+     * Restricts the query to all entries ordered after the last entry of the previous page (seek predicate of keyset
+     * pagination): (s1 > v1) or (s1 = v1 and s2 > v2) or ... or (s1 = v1 and ... and id > lastId).
+     * Null values are handled as lowest values (see [DBQueryBuilderByCriteria.addKeysetOrder]).
+     * @param cursor The cursor of the previous page, holding the sort values and the id of its last entry.
+     * @return false, if keyset pagination isn't supported for this query or the cursor doesn't contain sort values.
+     * The caller has to skip all entries up to [DBPageCursor.id] by itself.
+     * @throws IllegalArgumentException if the cursor doesn't fit the sort properties of this query.
+     */
+    internal fun addKeysetPredicate(cursor: DBPageCursor): Boolean {
+        if (!keysetPagingSupported || cursor.type == DBPageCursor.Type.SKIP) {
+            return false
+        }
+        val sortValues = cursor.sortValues
+        require(cursor.type == DBPageCursor.Type.KEYSET && sortValues != null && sortValues.size == sortProperties.size) {
+            "Page cursor doesn't fit the sort properties of the query (${baseDao.doClass.simpleName})."
+        }
+        val seekPredicate = DBPredicate.Or()
+        val equalPredicates = mutableListOf<DBPredicate>()
+        for ((index, sortProperty) in sortProperties.withIndex()) {
+            val property = sortProperty.property
+            @Suppress("UNCHECKED_CAST")
+            val comparable = sortValues[index] as Comparable<Any>?
+            val afterPredicate = if (sortProperty.ascending) {
+                if (comparable == null) DBPredicate.IsNotNull(property) else DBPredicate.Greater<Comparable<Any>>(property, comparable)
+            } else {
+                if (comparable == null) null // Nothing ordered after null values (lowest values).
+                else DBPredicate.Or(DBPredicate.Less<Comparable<Any>>(property, comparable), DBPredicate.IsNull(property))
+            }
+            if (afterPredicate != null) {
+                seekPredicate.add(DBPredicate.And(*equalPredicates.toTypedArray(), afterPredicate))
+            }
+            equalPredicates.add(if (comparable == null) DBPredicate.IsNull(property) else DBPredicate.Equal(property, comparable))
+        }
+        seekPredicate.add(DBPredicate.And(*equalPredicates.toTypedArray(), DBPredicate.Greater("id", cursor.id!!)))
+        if (log.isDebugEnabled) log.debug("Adding keyset predicate (${baseDao.doClass.simpleName}) after #${cursor.id}.")
+        dbQueryBuilderByCriteria.add(seekPredicate)
+        return true
+    }
 }
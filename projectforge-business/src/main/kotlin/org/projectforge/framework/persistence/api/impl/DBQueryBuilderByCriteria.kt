@@ -59,8 +59,11 @@ internal class DBQueryBuilderByCriteria<O : ExtendedBaseDO<Int>>(
         predicates.add(matcher.asPredicate(ctx))
     }
 
-    fun createResultIterator(resultPredicates: List<DBPredicate>): DBResultIterator<O> {
-        return DBCriteriaResultIterator(entityManager, ctx.cr.select(ctx.root).where(*predicates.toTypedArray()).orderBy(*order.toTypedArray()), resultPredicates)
+    /**
+     * @param fetchSize If given, the rows are fetched in blocks of this size from the data base (useful for pages).
+     */
+    fun createResultIterator(resultPredicates: List<DBPredicate>, fetchSize: Int? = null): DBResultIterator<O> {
+        return DBCriteriaResultIterator(entityManager, ctx.cr.select(ctx.root).where(*predicates.toTypedArray()).orderBy(*order.toTypedArray()), resultPredicates, fetchSize)
     }
 
     fun addOrder(sortProperty: SortProperty) {
@@ -79,6 +82,28 @@ internal class DBQueryBuilderByCriteria<O : ExtendedBaseDO<Int>>(
         }
     }
 
+    /**
+     * Order for keyset (seek) pagination: null values are ordered first for ascending and last for descending orders
+     * independent of the data base, so the seek predicates built by [DBQueryBuilder.addKeysetPredicate] are consistent
+     * with the order.
+     */
+    fun addKeysetOrder(sortProperty: SortProperty) {
+        try {
+            val field = ctx.getField<Any>(sortProperty.property)
+            val nullsFirst = ctx.cb.selectCase<Int>().`when`(ctx.cb.isNull(field), 0).otherwise(1)
+            if (log.isDebugEnabled) log.debug("Adding criteria keyset orderBy (${ctx.entityName}): order by ${sortProperty.property}${if (sortProperty.ascending) "" else " desc"} (nulls as lowest values).")
+            if (sortProperty.ascending) {
+                order.add(ctx.cb.asc(nullsFirst))
+                order.add(ctx.cb.asc(field))
+            } else {
+                order.add(ctx.cb.desc(nullsFirst))
+                order.add(ctx.cb.desc(field))
+            }
+        } catch (ex: Exception) {
+            log.error("Can't add keyset order for property '${ctx.entityName}.${sortProperty.property}: ${ex.message}")
+        }
+    }
+
     private fun initJoinSets() {
         queryFilter.joinList.forEach {
             ctx.addJoin(it)
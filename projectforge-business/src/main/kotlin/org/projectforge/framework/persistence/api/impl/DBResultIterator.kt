@@ -36,6 +36,19 @@ import javax.persistence.criteria.CriteriaQuery
 interface DBResultIterator<O : ExtendedBaseDO<Int>> {
     fun next(): O?
     fun sort(list: List<O>): List<O>
+
+    /**
+     * True, if the entries are returned in the order of the sort properties, so [sort] doesn't need the whole result
+     * list (e. g. only the first n entries may be fetched).
+     */
+    val sortedByQuery: Boolean
+        get() = true
+
+    /**
+     * Releases the underlying resources (scrollable results holding a data base cursor or index reader). Must be
+     * called, also if not all results were read.
+     */
+    fun close()
 }
 
 /**
@@ -53,31 +66,56 @@ internal class DBEmptyResultIterator<O : ExtendedBaseDO<Int>>
     override fun sort(list: List<O>): List<O> {
         return list
     }
+
+    override fun close() {
+    }
 }
 
 internal class DBCriteriaResultIterator<O : ExtendedBaseDO<Int>>(
         entityManager: EntityManager,
         criteria: CriteriaQuery<O>,
-        val resultPredicates: List<DBPredicate>)
+        val resultPredicates: List<DBPredicate>,
+        fetchSize: Int? = null)
     : DBResultIterator<O> {
     private val scrollableResults: ScrollableResults
 
     init {
         val query = entityManager.createQuery(criteria)
         val hquery = query.unwrap(org.hibernate.query.Query::class.java)
+        fetchSize?.let { hquery.setFetchSize(it) }
         scrollableResults = hquery.scroll(ScrollMode.FORWARD_ONLY)
     }
 
     override fun next(): O? {
-        if (!scrollableResults.next()) {
-            return null
+        while (scrollableResults.next()) {
+            @Suppress("UNCHECKED_CAST")
+            val next = scrollableResults.get(0) as O
+            if (match(next)) {
+                return next
+            }
         }
-        @Suppress("UNCHECKED_CAST")
-        return scrollableResults.get(0) as O
+        return null
     }
 
     override fun sort(list: List<O>): List<O> {
         return list
     }
+
+    override fun close() {
+        scrollableResults.close()
+    }
+
+    /**
+     * Result predicates not supported by the criteria query are checked here (for criteria queries all predicates
+     * are normally part of the criteria query, so this list is usually empty).
+     */
+    private fun match(obj: O): Boolean {
+        for (predicate in resultPredicates) {
+            if (!predicate.match(obj)) {
+                return false
+            }
+        }
+        return true
+    }
 }
 
@@ -0,0 +1,39 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.api.impl
+
+/**
+ * One page of a result list served by [DBQuery.getPage]. For fetching the next page, [cursor] should be given.
+ */
+class DBResultPage<O>(
+        val list: List<O>,
+        /**
+         * The opaque cursor for fetching the next page or null, if this page is empty.
+         */
+        val cursor: String?,
+        /**
+         * True, if more entries may be available (the page is full). The next page may be empty, though.
+         */
+        val hasMore: Boolean)
@@ -29,6 +29,7 @@ import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.SerializerProvider
 import com.fasterxml.jackson.databind.annotation.JsonSerialize
 import com.fasterxml.jackson.databind.ser.std.StdSerializer
+import org.apache.lucene.search.SortField
 import org.hibernate.search.annotations.*
 import org.projectforge.common.BeanHelper
 import org.projectforge.common.ClassUtils
@@ -134,6 +135,15 @@ class HibernateSearchClassInfo(baseDao: BaseDao<*>) {
         return classBridges.find { it.name == name }
     }
 
+    /**
+     * @return The Lucene sort field, if the given property is sortable by the index, otherwise null (sort in memory).
+     */
+    fun getSortField(property: String, ascending: Boolean): SortField? {
+        val info = get(property) ?: return null
+        val type = info.getSortFieldType() ?: return null
+        return SortField(info.luceneField, type, !ascending)
+    }
+
     internal fun get(field: String): HibernateSearchFieldInfo? {
         return fieldInfos.find { it.javaProp == field || it.luceneField == field }
     }
@@ -174,6 +184,9 @@ class HibernateSearchClassInfo(baseDao: BaseDao<*>) {
             }
         }
 
+        if (accessible.isAnnotationPresent(SortableField::class.java) || accessible.isAnnotationPresent(SortableFields::class.java)) {
+            info.sortable = true
+        }
         if (!isNew || !isSearchField) {
             return false
         }
@@ -25,6 +25,7 @@ package org.projectforge.framework.persistence.api.impl
 
 import com.fasterxml.jackson.annotation.JsonIgnore
 import org.hibernate.search.annotations.*
+import org.apache.lucene.search.SortField
 import org.hibernate.search.bridge.builtin.NumberBridge
 import kotlin.reflect.full.isSubclassOf
 
@@ -48,6 +49,16 @@ class HibernateSearchFieldInfo(val javaProp: String, val type: Class<*>) {
         internal set
     var luceneField: String = javaProp
         internal set
+    /**
+     * True, if the field is annotated with [SortableField] (doc values are written to the index).
+     */
+    var sortable: Boolean = false
+        internal set
+    /**
+     * True, if any [Field] annotation of this property isn't analyzed (the index contains the whole value as one term).
+     */
+    var notAnalyzed: Boolean = false
+        internal set
 
     fun getDateBridgeEncodingType(): EncodingType? {
         return dateBridgeAnn?.encoding
@@ -61,8 +72,31 @@ class HibernateSearchFieldInfo(val javaProp: String, val type: Class<*>) {
             annotations = mutableListOf()
         }
         annotations!!.add(annotation)
-        if (annotation is Field && annotation.name.isNotBlank()) {
-            luceneField = annotation.name
+        if (annotation is Field) {
+            if (annotation.name.isNotBlank()) {
+                luceneField = annotation.name
+            }
+            if (annotation.analyze == Analyze.NO) {
+                notAnalyzed = true
+            }
+        }
+    }
+
+    /**
+     * The type of the Lucene sort field or null, if the index can't be used for sorting this field. Only sortable,
+     * not analyzed fields are supported, because analyzed fields are split into several terms.
+     */
+    fun getSortFieldType(): SortField.Type? {
+        if (!sortable || !notAnalyzed || fieldBridgeAnn != null) {
+            return null
+        }
+        return when {
+            String::class.java.isAssignableFrom(type) -> SortField.Type.STRING
+            java.util.Date::class.java.isAssignableFrom(type) ->
+                if (getDateBridgeEncodingType() == EncodingType.NUMERIC) SortField.Type.LONG else SortField.Type.STRING
+            Integer::class.java.isAssignableFrom(type) || Int::class.java.isAssignableFrom(type) -> SortField.Type.INT
+            java.lang.Long::class.java.isAssignableFrom(type) || Long::class.java.isAssignableFrom(type) -> SortField.Type.LONG
+            else -> null
         }
     }
 
@@ -26,7 +26,6 @@ package org.projectforge.framework.time
 import org.apache.commons.lang3.Validate
 import org.projectforge.common.DateFormatType
 import org.projectforge.framework.calendar.Holidays
-import org.projectforge.framework.i18n.UserException
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import java.math.BigDecimal
 import java.time.DayOfWeek
@@ -173,45 +172,23 @@ class PFDayUtils {
         /**
          * Determines the number of working days in the given period. Please note: there might be also half working days
          * (e. g. on Xmas or New Years Eve), so a BigDecimal is returned.
+         * @see Holidays.getNumberOfWorkingDays
          */
         @JvmStatic
         fun getNumberOfWorkingDays(from: LocalDate, to: LocalDate): BigDecimal {
-            return getNumberOfWorkingDays(PFDay.from(from), PFDay.from(to))
+            return Holidays.instance.getNumberOfWorkingDays(from, to)
         }
 
         /**
          * Determines the number of working days in the given period. Please note: there might be also half working days
          * (e. g. on Xmas or New Years Eve), so a BigDecimal is returned.
+         * @see Holidays.getNumberOfWorkingDays
          */
         @JvmStatic
         fun <T : IPFDate<T>> getNumberOfWorkingDays(from: T, to: T): BigDecimal {
             Validate.notNull(from)
             Validate.notNull(to)
-            val holidays = Holidays.instance
-            if (to.isBefore(from)) {
-                return BigDecimal.ZERO
-            }
-            var numberOfWorkingDays = BigDecimal.ZERO
-            var numberOfFullWorkingDays = 0
-            var dayCounter = 1
-            var day = from
-            do {
-                if (dayCounter++ > 740) { // Endless loop protection, time period greater 2 years.
-                    throw UserException(
-                            "getNumberOfWorkingDays does not support calculation of working days for a time period greater than two years!")
-                }
-                if (holidays.isWorkingDay(day)) {
-                    val workFraction = holidays.getWorkFraction(day)
-                    if (workFraction != null) {
-                        numberOfWorkingDays = numberOfWorkingDays.add(workFraction)
-                    } else {
-                        numberOfFullWorkingDays++
-                    }
-                }
-                day = day.plusDays(1)
-            } while (!day.isAfter(to))
-            numberOfWorkingDays = numberOfWorkingDays.add(BigDecimal(numberOfFullWorkingDays))
-            return numberOfWorkingDays
+            return Holidays.instance.getNumberOfWorkingDays(from.localDate, to.localDate)
         }
 
         @JvmStatic
@@ -0,0 +1,20 @@
+-- Change journal of calendars and address books for synchronization of CalDAV/CardDAV clients (sync tokens).
+
+CREATE TABLE T_SYNC_JOURNAL (
+  pk                                     INTEGER                      NOT NULL,
+  collection_type                        CHARACTER VARYING(20)        NOT NULL,
+  collection_id                          INTEGER,
+  object_id                              INTEGER                      NOT NULL,
+  object_uid                             CHARACTER VARYING(255),
+  operation                              CHARACTER VARYING(20)        NOT NULL,
+  change_date                            TIMESTAMP WITHOUT TIME ZONE  NOT NULL
+);
+
+ALTER TABLE T_SYNC_JOURNAL
+  ADD CONSTRAINT t_sync_journal_pkey PRIMARY KEY (pk);
+
+CREATE INDEX idx_t_sync_journal_collection
+  ON T_SYNC_JOURNAL (collection_type, collection_id);
+
+CREATE INDEX idx_t_sync_journal_change_date
+  ON T_SYNC_JOURNAL (change_date);
@@ -27,6 +27,10 @@ import org.junit.jupiter.api.Test;
 import org.projectforge.business.multitenancy.TenantRegistryMap;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskDao;
+import org.projectforge.business.task.TaskNode;
+import org.projectforge.business.task.TaskPermissionMatrix;
+import org.projectforge.business.task.TaskTree;
+import org.projectforge.business.tasktree.TaskTreeHelper;
 import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.business.timesheet.TimesheetDao;
 import org.projectforge.business.user.UserGroupCache;
@@ -34,6 +38,7 @@ import org.projectforge.framework.access.AccessDao;
 import org.projectforge.framework.access.AccessEntryDO;
 import org.projectforge.framework.access.AccessType;
 import org.projectforge.framework.access.GroupTaskAccessDO;
+import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.test.AbstractTestBase;
 import org.slf4j.Logger;
@@ -41,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -148,6 +154,110 @@ public class AccessTestFork extends AbstractTestBase
     // }
   }
 
+  /**
+   * The effective permissions of the permission matrix must be the same as the permissions calculated by walking the
+   * task hierarchy, also after changing group task access' and moving tasks.
+   */
+  @Test
+  public void checkPermissionMatrix()
+  {
+    logon(AbstractTestBase.TEST_ADMIN_USER);
+    initTestDB.addTask("checkPermissionMatrix", "root");
+    initTestDB.addTask("cPM.1", "checkPermissionMatrix");
+    initTestDB.addTask("cPM.1.1", "cPM.1");
+    initTestDB.addTask("cPM.1.1.1", "cPM.1.1");
+    initTestDB.addTask("cPM.2", "checkPermissionMatrix");
+    final Integer group1Id = getGroup("group1").getId();
+    final Integer group3Id = getGroup("group3").getId();
+    assertPermissionMatrix(group1Id, group3Id);
+
+    // Recursive access in cPM.1 for group1:
+    GroupTaskAccessDO groupTaskAccess = new GroupTaskAccessDO();
+    accessDao.setTask(groupTaskAccess, getTask("cPM.1").getId());
+    groupTaskAccess.setGroup(getGroup("group1"));
+    groupTaskAccess.ensureAndGetAccessEntry(AccessType.TASKS).setAccess(true, false, true, false);
+    final Serializable id1 = accessDao.save(groupTaskAccess);
+    assertTrue(hasPermission(group1Id, "cPM.1.1.1", AccessType.TASKS, OperationType.UPDATE));
+    assertFalse(hasPermission(group1Id, "cPM.1.1.1", AccessType.TASKS, OperationType.INSERT));
+    assertFalse(hasPermission(group3Id, "cPM.1.1.1", AccessType.TASKS, OperationType.UPDATE));
+    assertPermissionMatrix(group1Id, group3Id);
+
+    // Non-recursive access in cPM.1.1 for group3:
+    groupTaskAccess = new GroupTaskAccessDO();
+    accessDao.setTask(groupTaskAccess, getTask("cPM.1.1").getId());
+    groupTaskAccess.setGroup(getGroup("group3"));
+    groupTaskAccess.setRecursive(false);
+    groupTaskAccess.ensureAndGetAccessEntry(AccessType.TIMESHEETS).setAccess(true, true, true, true);
+    accessDao.save(groupTaskAccess);
+    assertTrue(hasPermission(group3Id, "cPM.1.1", AccessType.TIMESHEETS, OperationType.SELECT));
+    assertFalse(hasPermission(group3Id, "cPM.1.1.1", AccessType.TIMESHEETS, OperationType.SELECT));
+    assertPermissionMatrix(group1Id, group3Id);
+
+    // New task inherits the access of its ancestors:
+    initTestDB.addTask("cPM.1.2", "cPM.1");
+    assertTrue(hasPermission(group1Id, "cPM.1.2", AccessType.TASKS, OperationType.SELECT));
+    assertPermissionMatrix(group1Id, group3Id);
+
+    // Moved task loses the access of its old ancestors:
+    final TaskDO task = getTask("cPM.1.1");
+    task.setParentTask(getTask("cPM.2"));
+    taskDao.internalUpdate(task);
+    assertFalse(hasPermission(group1Id, "cPM.1.1.1", AccessType.TASKS, OperationType.SELECT));
+    assertPermissionMatrix(group1Id, group3Id);
+
+    // Modified and deleted access:
+    groupTaskAccess = accessDao.getById(id1);
+    groupTaskAccess.ensureAndGetAccessEntry(AccessType.TASKS).setAccessInsert(true);
+    accessDao.update(groupTaskAccess);
+    assertTrue(hasPermission(group1Id, "cPM.1.2", AccessType.TASKS, OperationType.INSERT));
+    assertPermissionMatrix(group1Id, group3Id);
+    accessDao.markAsDeleted(groupTaskAccess);
+    assertFalse(hasPermission(group1Id, "cPM.1.2", AccessType.TASKS, OperationType.SELECT));
+    assertPermissionMatrix(group1Id, group3Id);
+  }
+
+  private boolean hasPermission(final Integer groupId, final String taskName, final AccessType accessType,
+      final OperationType operationType)
+  {
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+    return taskTree.getPermissionMatrix().hasPermission(taskTree.getTaskNodeById(getTask(taskName).getId()),
+        Collections.singletonList(groupId), accessType, operationType);
+  }
+
+  private void assertPermissionMatrix(final Integer... groupIds)
+  {
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+    final TaskPermissionMatrix matrix = taskTree.getPermissionMatrix();
+    for (final TaskNode node : taskTree.getPathToRoot(getTask("checkPermissionMatrix").getId())) {
+      assertPermissionMatrix(matrix, node, groupIds);
+    }
+    assertPermissionMatrixOfSubtree(matrix, taskTree.getTaskNodeById(getTask("checkPermissionMatrix").getId()), groupIds);
+  }
+
+  private void assertPermissionMatrixOfSubtree(final TaskPermissionMatrix matrix, final TaskNode node,
+      final Integer... groupIds)
+  {
+    assertPermissionMatrix(matrix, node, groupIds);
+    for (final TaskNode child : node.getChildren()) {
+      assertPermissionMatrixOfSubtree(matrix, child, groupIds);
+    }
+  }
+
+  private void assertPermissionMatrix(final TaskPermissionMatrix matrix, final TaskNode node,
+      final Integer... groupIds)
+  {
+    for (final Integer groupId : groupIds) {
+      for (final AccessType accessType : AccessType.values()) {
+        for (final OperationType operationType : OperationType.values()) {
+          assertEquals(node.hasPermission(groupId, accessType, operationType),
+              matrix.hasPermission(node, Collections.singletonList(groupId), accessType, operationType),
+              "Permission " + accessType + "." + operationType + " of group #" + groupId + " for task #"
+                  + node.getTaskId());
+        }
+      }
+    }
+  }
+
   private void checkAccessEntry(final AccessEntryDO entry, final boolean accessSelect, final boolean accessInsert,
       final boolean accessUpdate, final boolean accessDelete)
   {
@@ -23,9 +23,19 @@
 
 package org.projectforge.business.excel;
 
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ExportWorkbookTest
 {
@@ -34,4 +44,75 @@ public class ExportWorkbookTest
   {
     SimpleExample.main();
   }
+
+  @Test
+  public void streamingExport() throws IOException
+  {
+    final int numberOfRows = 70000; // More than supported by xls.
+    final ExportWorkbook workbook = ExportWorkbook.createStreamingWorkbook(50);
+    assertTrue(workbook.isStreaming());
+    final ExportSheet sheet = workbook.addSheet("Streaming");
+    sheet.setColumns(new ExportColumn[] { new ExportColumn("id", "id", 10), new ExportColumn("text", "text", 20) });
+    sheet.addRows(new Iterator<Map<String, Object>>()
+    {
+      private int counter = 0;
+
+      @Override
+      public boolean hasNext()
+      {
+        return counter < numberOfRows;
+      }
+
+      @Override
+      public Map<String, Object> next()
+      {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final Map<String, Object> map = new HashMap<>();
+        map.put("id", ++counter);
+        map.put("text", "Row " + counter);
+        return map;
+      }
+    });
+    assertEquals(numberOfRows + 1, sheet.getRowCounter());
+    assertEquals(50, sheet.getRows().size(), "Only the rows of the row access window are held in memory.");
+    assertThrows(IllegalStateException.class, () -> sheet.getRow(0));
+    assertEquals(numberOfRows, sheet.getRow(numberOfRows).getRowNum());
+    sheet.setAutoFilter();
+
+    final byte[] bytes = workbook.getAsByteArray();
+    try (final XSSFWorkbook result = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+      final Sheet poiSheet = result.getSheetAt(0);
+      assertEquals(numberOfRows, poiSheet.getLastRowNum());
+      final Row headRow = poiSheet.getRow(0);
+      assertEquals("text", headRow.getCell(1).getStringCellValue());
+      assertTrue(result.getFontAt(headRow.getCell(0).getCellStyle().getFontIndexAsInt()).getBold(),
+          "Flushed rows are styled.");
+      assertEquals(12345, (int) poiSheet.getRow(12345).getCell(0).getNumericCellValue());
+      assertEquals("Row " + numberOfRows, poiSheet.getRow(numberOfRows).getCell(1).getStringCellValue());
+      assertTrue(result.getNumCellStyles() < 20, "Cell styles are re-used.");
+    }
+  }
+
+  @Test
+  public void copyRowOfStreamingSheet() throws IOException
+  {
+    final ExportWorkbook workbook = ExportWorkbook.createStreamingWorkbook(10);
+    final ExportSheet sheet = workbook.addSheet("Copy");
+    sheet.addRow().setValues("head");
+    final ExportRow template = sheet.addRow("template", 42);
+    final ExportRow row = sheet.copyRow(template);
+    assertEquals(1, row.getRowNum(), "The row at the position of the copied row expected.");
+    row.setValues("filled", 1);
+    assertEquals(3, sheet.getRowCounter());
+    assertThrows(IllegalStateException.class, () -> sheet.copyRow(sheet.getRow(0)), "Only the last row may be copied.");
+
+    try (final XSSFWorkbook result = new XSSFWorkbook(new ByteArrayInputStream(workbook.getAsByteArray()))) {
+      final Sheet poiSheet = result.getSheetAt(0);
+      assertEquals("filled", poiSheet.getRow(1).getCell(0).getStringCellValue());
+      assertEquals("template", poiSheet.getRow(2).getCell(0).getStringCellValue());
+      assertEquals(42, (int) poiSheet.getRow(2).getCell(1).getNumericCellValue());
+    }
+  }
 }
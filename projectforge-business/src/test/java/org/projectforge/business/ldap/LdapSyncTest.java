@@ -0,0 +1,119 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.ldap;
+
+import org.junit.jupiter.api.Test;
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LdapSyncTest
+{
+  @Test
+  void userIndexTest()
+  {
+    final LdapUserIndex index = new LdapUserIndex();
+    index.add(createLdapUser("kai", PFUserDOConverter.ID_PREFIX + "1"));
+    index.add(createLdapUser("berta", PFUserDOConverter.ID_PREFIX + "2"));
+    index.add(createLdapUser("kai.renamed", PFUserDOConverter.ID_PREFIX + "3"));
+    index.add(createLdapUser("berta", PFUserDOConverter.ID_PREFIX + "4"));
+    assertEquals(4, index.size());
+    assertNull(index.get("unknown", PFUserDOConverter.ID_PREFIX + "42"));
+    assertEquals(PFUserDOConverter.ID_PREFIX + "1", index.get("kai", PFUserDOConverter.ID_PREFIX + "42").getEmployeeNumber());
+    assertEquals("kai.renamed", index.get("unknown", PFUserDOConverter.ID_PREFIX + "3").getUid());
+    // Both match, the entry read first wins:
+    assertEquals("berta", index.get("berta", PFUserDOConverter.ID_PREFIX + "3").getUid());
+    assertEquals("kai", index.get("kai.renamed", PFUserDOConverter.ID_PREFIX + "1").getUid());
+    // The first entry with the uid wins:
+    assertEquals(PFUserDOConverter.ID_PREFIX + "2", index.get("berta", PFUserDOConverter.ID_PREFIX + "42").getEmployeeNumber());
+  }
+
+  @Test
+  void fingerprintsTest()
+  {
+    final PFUserDO kai = createUser(1, "kai");
+    final PFUserDO berta = createUser(2, "berta");
+    final GroupDO group = new GroupDO();
+    group.setId(10);
+    group.setName("developers");
+    group.setAssignedUsers(new HashSet<>(Arrays.asList(kai, berta)));
+    final List<PFUserDO> users = Arrays.asList(kai, berta);
+    final List<GroupDO> groups = Collections.singletonList(group);
+
+    final LdapSyncFingerprints fingerprints = new LdapSyncFingerprints(users, groups);
+    assertTrue(fingerprints.isUnchanged(users, groups));
+    assertTrue(fingerprints.isUnchanged(kai));
+
+    berta.setLastname("Changed");
+    assertFalse(fingerprints.isUnchanged(berta));
+    assertTrue(fingerprints.isUnchanged(group), "Lastname isn't part of the member entries.");
+    assertFalse(fingerprints.isUnchanged(users, groups));
+    berta.setLastname("Lastname");
+    assertTrue(fingerprints.isUnchanged(users, groups));
+
+    kai.setDeactivated(true);
+    assertFalse(fingerprints.isUnchanged(kai));
+    assertFalse(fingerprints.isUnchanged(group), "Deactivated users aren't members.");
+    kai.setDeactivated(false);
+
+    group.setAssignedUsers(new HashSet<>(Collections.singletonList(kai)));
+    assertTrue(fingerprints.isUnchanged(kai));
+    assertFalse(fingerprints.isUnchanged(group));
+    group.setAssignedUsers(new HashSet<>(Arrays.asList(berta, kai)));
+    assertTrue(fingerprints.isUnchanged(group));
+
+    final PFUserDO newUser = createUser(3, "new");
+    assertFalse(fingerprints.isUnchanged(newUser));
+    assertFalse(fingerprints.isUnchanged(Arrays.asList(kai, berta, newUser), groups));
+
+    // Separators within values don't lead to equal fingerprints:
+    final PFUserDO user1 = createUser(4, "a|1:b");
+    user1.setFirstname(null);
+    final PFUserDO user2 = createUser(4, "a");
+    user2.setFirstname("b");
+    assertNotEquals(LdapSyncFingerprints.of(user1), LdapSyncFingerprints.of(user2));
+  }
+
+  private static LdapUser createLdapUser(final String uid, final String employeeNumber)
+  {
+    final LdapUser ldapUser = new LdapUser();
+    ldapUser.setUid(uid);
+    ldapUser.setEmployeeNumber(employeeNumber);
+    return ldapUser;
+  }
+
+  private static PFUserDO createUser(final int id, final String username)
+  {
+    final PFUserDO user = new PFUserDO();
+    user.setId(id);
+    user.setUsername(username);
+    user.setFirstname("Firstname");
+    user.setLastname("Lastname");
+    return user;
+  }
+}
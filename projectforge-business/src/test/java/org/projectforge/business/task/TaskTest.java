@@ -508,6 +508,22 @@ public class TaskTest extends AbstractTestBase {
     assertEquals(4 * 3600, getDuration(taskTree, subTask1.getId()));
     assertEquals(0, getTotalDuration(taskTree, subTask2.getId()));
     assertEquals(0, getDuration(taskTree, subTask2.getId()));
+    // Durations are updated incrementally on moving and deleting time sheets:
+    ts.setTask(subTask2);
+    timesheetDao.update(ts);
+    assertEquals(12 * 3600, getTotalDuration(taskTree, task.getId()));
+    assertEquals(0, getTotalDuration(taskTree, subTask1.getId()));
+    assertEquals(4 * 3600, getTotalDuration(taskTree, subTask2.getId()));
+    timesheetDao.markAsDeleted(ts);
+    assertEquals(8 * 3600, getTotalDuration(taskTree, task.getId()));
+    assertEquals(0, getTotalDuration(taskTree, subTask2.getId()));
+    timesheetDao.undelete(ts);
+    assertEquals(12 * 3600, getTotalDuration(taskTree, task.getId()));
+    // Moving tasks moves the durations of the sub tree to the new ancestors:
+    subTask2.setParentTask(initTestDB.getTask("root"));
+    taskDao.update(subTask2);
+    assertEquals(8 * 3600, getTotalDuration(taskTree, task.getId()));
+    assertEquals(4 * 3600, getTotalDuration(taskTree, subTask2.getId()));
   }
 
   private long getTotalDuration(final TaskTree taskTree, final Integer taskId) {
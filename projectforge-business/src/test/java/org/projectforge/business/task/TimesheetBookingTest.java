@@ -27,6 +27,7 @@ import org.junit.jupiter.api.Test;
 import org.projectforge.business.fibu.AuftragDO;
 import org.projectforge.business.fibu.AuftragDao;
 import org.projectforge.business.fibu.AuftragsPositionDO;
+import org.projectforge.business.tasktree.TaskTreeHelper;
 import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.business.timesheet.TimesheetDao;
 import org.projectforge.common.task.TaskStatus;
@@ -198,6 +199,64 @@ public class TimesheetBookingTest extends AbstractTestBase {
     save(sheet, "timesheet.error.taskNotBookable.taskDeleted");
   }
 
+  @Test
+  public void testBookableStatusOfTaskTree() {
+    assertBookable("TBT-1", true);
+    assertBookable("TBT-1.1", false); // Closed.
+    assertBookable("TBT-1.2.1", false); // Parent deleted.
+    assertBookable("TBT-2.1", false); // Tree closed.
+    assertBookable("TBT-3", false); // Only leafs.
+    assertBookable("TBT-3.1", false);
+    assertBookable("TBT-3.1.1", true);
+    assertBookable("TBT-3.2", true);
+    assertBookable("TBT-4", false); // No booking.
+    assertBookable("TBT-4.1", false); // Inherited.
+    assertBookable("TBT-4.1.1", true); // Opened.
+  }
+
+  @Test
+  public void testBookableStatusOfMovedTask() {
+    logon(getUser(AbstractTestBase.TEST_FINANCE_USER));
+    initTestDB.addTask("TBT-6", "TimesheetBookingTest");
+    initTestDB.addTask("TBT-6.1", "TBT-6");
+    initTestDB.addTask("TBT-6.1.1", "TBT-6.1");
+    initTestDB.addTask("TBT-7", "TimesheetBookingTest");
+    initTestDB.addTask("TBT-7.1", "TBT-7");
+    final AuftragsPositionDO pos = new AuftragsPositionDO();
+    pos.setTask(getTask("TBT-6.1.1"));
+    pos.setTitel("Pos 1");
+    final AuftragDO auftrag = new AuftragDO().addPosition(pos);
+    auftrag.setNummer(auftragDao.getNextNumber(auftrag));
+    auftragDao.save(auftrag);
+    assertBookable("TBT-6", false); // Order position in sub tree.
+    assertBookable("TBT-6.1", false);
+    assertBookable("TBT-6.1.1", true);
+    assertBookable("TBT-7", true);
+
+    // Moving the sub tree with the order position: only the old and the new ancestors are affected.
+    final TaskDO task = taskDao.getById(getTask("TBT-6.1").getId());
+    taskDao.setParentTask(task, getTask("TBT-7.1").getId());
+    taskDao.update(task);
+    assertBookable("TBT-6", true); // Leaf now.
+    assertBookable("TBT-7", false);
+    assertBookable("TBT-7.1", false);
+    assertBookable("TBT-6.1", false);
+    assertBookable("TBT-6.1.1", true);
+
+    // Closing the new parent closes the whole sub tree:
+    final TaskDO parent = taskDao.getById(getTask("TBT-7.1").getId());
+    parent.setStatus(TaskStatus.C);
+    taskDao.update(parent);
+    assertBookable("TBT-7.1", false);
+    assertBookable("TBT-6.1.1", false);
+    assertBookable("TBT-7", false);
+  }
+
+  private void assertBookable(final String taskName, final boolean expected) {
+    final TaskNode node = TaskTreeHelper.getTaskTree().getTaskNodeById(getTask(taskName).getId());
+    assertEquals(expected, node.isBookableForTimesheets(), "Bookable status of task '" + taskName + "'.");
+  }
+
   private TimesheetDO createNewSheet() {
     TimesheetDO sheet = new TimesheetDO();
     sheet.setUser(getUser(AbstractTestBase.TEST_USER));
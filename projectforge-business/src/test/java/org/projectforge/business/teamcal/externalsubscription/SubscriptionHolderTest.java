@@ -0,0 +1,83 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.teamcal.externalsubscription;
+
+import org.junit.jupiter.api.Test;
+import org.projectforge.business.teamcal.event.model.TeamEventDO;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionHolderTest {
+  private static final long HOUR = 3600000L;
+
+  private static final long DAY = 24 * HOUR;
+
+  @Test
+  public void getResultList() {
+    final SubscriptionHolder holder = new SubscriptionHolder();
+    // Long multi-day event first, followed by many short events:
+    holder.add(createEvent("long", 0, 100 * DAY));
+    for (int i = 0; i < 100; i++) {
+      holder.add(createEvent("event-" + i, 10 * DAY + i * DAY, 10 * DAY + i * DAY + HOUR));
+    }
+    holder.add(createEvent("last", 200 * DAY, 201 * DAY));
+    holder.sort();
+    assertEquals(102, holder.size());
+
+    // Time period is extended by one day before and after:
+    List<TeamEventDO> list = holder.getResultList(50 * DAY, 52 * DAY, false);
+    assertEquals(5, list.size()); // long, event-39 ... event-42
+    assertEquals("long", list.get(0).getUid());
+    assertEquals("event-39", list.get(1).getUid());
+    assertEquals("event-42", list.get(4).getUid());
+
+    list = holder.getResultList(150 * DAY, 160 * DAY, false);
+    assertTrue(list.isEmpty());
+
+    list = holder.getResultList(200 * DAY, 210 * DAY, true);
+    assertEquals(1, list.size());
+    assertEquals(200 * DAY, list.get(0).getStartDate().getTime()); // Minimal copy without uid.
+
+    assertEquals("event-42", holder.getEvent("event-42").getUid());
+    assertNull(holder.getEvent("unknown"));
+    assertNull(holder.getEvent(null));
+
+    // Adding events after sorting invalidates the index:
+    holder.add(createEvent("new", 150 * DAY, 150 * DAY + HOUR));
+    assertEquals(1, holder.getResultList(150 * DAY, 160 * DAY, false).size());
+    assertNotNull(holder.getEvent("new"));
+  }
+
+  private TeamEventDO createEvent(final String uid, final long startTime, final long endTime) {
+    final TeamEventDO event = new TeamEventDO();
+    event.setUid(uid);
+    event.setStartDate(new Date(startTime));
+    event.setEndDate(new Date(endTime));
+    return event;
+  }
+}
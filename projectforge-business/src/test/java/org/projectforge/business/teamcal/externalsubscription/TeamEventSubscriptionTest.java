@@ -0,0 +1,104 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.teamcal.externalsubscription;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.projectforge.business.teamcal.admin.TeamCalDao;
+import org.projectforge.business.teamcal.admin.model.TeamCalDO;
+import org.projectforge.test.AbstractTestBase;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TeamEventSubscriptionTest extends AbstractTestBase {
+  private static final String ICS = "BEGIN:VCALENDAR\r\n"
+          + "VERSION:2.0\r\n"
+          + "PRODID:-//ProjectForge//Test//EN\r\n"
+          + "BEGIN:VEVENT\r\n"
+          + "UID:subscription-test-event\r\n"
+          + "DTSTAMP:20200101T000000Z\r\n"
+          + "DTSTART:20990101T100000Z\r\n"
+          + "DTEND:20990101T110000Z\r\n"
+          + "SUMMARY:Test event\r\n"
+          + "END:VEVENT\r\n"
+          + "END:VCALENDAR\r\n";
+
+  private static final String ETAG = "\"v1\"";
+
+  @Test
+  public void conditionalUpdate() throws Exception {
+    logon(AbstractTestBase.ADMIN);
+    final AtomicInteger downloads = new AtomicInteger();
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/calendar.ics", exchange -> {
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      downloads.incrementAndGet();
+      final byte[] body = ICS.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    try {
+      final TeamCalDO calendar = new TeamCalDO();
+      calendar.setId(-42);
+      calendar.setExternalSubscription(true);
+      calendar.setExternalSubscriptionUrl("http://localhost:" + server.getAddress().getPort() + "/calendar.ics");
+      final TeamCalDao teamCalDao = Mockito.mock(TeamCalDao.class);
+
+      final TeamEventSubscription subscription = new TeamEventSubscription();
+      subscription.update(teamCalDao, calendar);
+      assertEquals(1, downloads.get());
+      assertEquals(ICS.length(), subscription.getLastBytesTransferred());
+      assertNotNull(subscription.getEvent("subscription-test-event"));
+      assertNotNull(subscription.getLastUpdated());
+      assertEquals(0, subscription.getNumberOfFailedUpdates());
+      Mockito.verify(teamCalDao).internalUpdate(calendar); // Hash and binary of calendar changed.
+
+      // Second update: not modified, no download and no parsing:
+      subscription.update(teamCalDao, calendar);
+      assertEquals(1, downloads.get());
+      assertEquals(1, subscription.getNumberOfNotModifiedResponses());
+      assertEquals(0, subscription.getLastBytesTransferred());
+      assertEquals(0, subscription.getLastParseDuration());
+      assertNotNull(subscription.getEvent("subscription-test-event"));
+      assertNotNull(subscription.getLastUpdated());
+    } finally {
+      server.stop(0);
+    }
+  }
+}
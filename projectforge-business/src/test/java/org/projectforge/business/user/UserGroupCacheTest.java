@@ -34,7 +34,9 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UserGroupCacheTest extends AbstractTestBase
@@ -75,4 +77,34 @@ public class UserGroupCacheTest extends AbstractTestBase
     assertTrue(
         userGroupCache.isUserMemberOfAtLeastOneGroup(getUser(AbstractTestBase.TEST_ADMIN_USER).getId(), group2.getId(), group1.getId()));
   }
+
+  @Test
+  public void testIndexesAndMemberships()
+  {
+    logon(AbstractTestBase.TEST_ADMIN_USER);
+    final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
+    final PFUserDO user = getUser(AbstractTestBase.TEST_USER);
+    assertEquals(user.getId(), userGroupCache.getUser(AbstractTestBase.TEST_USER).getId());
+    assertEquals(user.getFullname(), userGroupCache.getUserByFullname(user.getFullname()).getFullname());
+    assertNull(userGroupCache.getUser("unknown-testusergroupcache-user"));
+    assertNull(userGroupCache.getUserByFullname("unknown testusergroupcache user"));
+    assertTrue(userGroupCache.isUserMemberOfAdminGroup(getUser(AbstractTestBase.TEST_ADMIN_USER).getId()));
+    assertFalse(userGroupCache.isUserMemberOfAdminGroup(user.getId()));
+    assertFalse(userGroupCache.isUserMemberOfAdminGroup(-1));
+
+    GroupDO group = new GroupDO();
+    group.setName("testusergroupcache3");
+    final Set<PFUserDO> assignedUsers = new HashSet<>();
+    assignedUsers.add(user);
+    group.setAssignedUsers(assignedUsers);
+    final Serializable id = groupDao.save(group);
+    assertTrue(userGroupCache.isUserMemberOfGroup(user.getId(), (Integer) id));
+    assertTrue(userGroupCache.getUserGroupIdMap().get(user.getId()).contains((Integer) id));
+
+    group = groupDao.getById(id);
+    group.getAssignedUsers().clear();
+    groupDao.update(group);
+    assertFalse(userGroupCache.isUserMemberOfGroup(user.getId(), (Integer) id), "Membership should be removed after refresh.");
+    assertFalse(userGroupCache.isUserMemberOfGroup(null, (Integer) id));
+  }
 }
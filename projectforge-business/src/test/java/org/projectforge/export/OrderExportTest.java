@@ -68,6 +68,8 @@ public class OrderExportTest extends AbstractTestBase
 
     auftragDOList.add(e);
     byte[] export = orderExport.export(auftragDOList);
+    Assertions.assertEquals('P', (char) export[0], "Streaming export (xlsx, zip archive) expected.");
+    Assertions.assertEquals('K', (char) export[1], "Streaming export (xlsx, zip archive) expected.");
     boolean hasperformaceBegin = false, hasPerformanceEnd = false, hasStatusBeschreibung = false;
     ExcelImport excelImport = new ExcelImport(new ByteArrayInputStream(export));
     for (Row row : excelImport.getWorkbook().getSheetAt(0)) {
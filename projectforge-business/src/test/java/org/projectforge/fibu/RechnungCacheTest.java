@@ -35,6 +35,7 @@ import java.util.Iterator;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class RechnungCacheTest extends AbstractTestBase {
   @Autowired
@@ -107,12 +108,30 @@ public class RechnungCacheTest extends AbstractTestBase {
     assertEquals( 1, set.size(),"1 invoice positions expected.");
     assertEquals(0, new BigDecimal("200").compareTo(RechnungDao.getNettoSumme(set)));
 
+    final RechnungCache rechnungCache = rechnungDao.getRechnungCache();
+    assertEquals(0, new BigDecimal("500").compareTo(rechnungCache.getInvoicedSumByAuftragsPositionId(auftrag.getPosition((short) 1).getId())));
+    assertEquals(0, new BigDecimal("200").compareTo(rechnungCache.getInvoicedSumByAuftragsPositionId(auftrag.getPosition((short) 2).getId())));
+    auftragDao.calculateInvoicedSum(auftrag);
+    assertEquals(0, new BigDecimal("500").compareTo(auftrag.getPosition((short) 1).getFakturiertSum()));
+    assertEquals(0, new BigDecimal("700").compareTo(auftrag.getFakturiertSum()));
+
     final RechnungDO rechnung = rechnungDao.getById(rechnung2.getId());
     rechnung.getPositionen().get(0).setAuftragsPosition(null);
     rechnungDao.update(rechnung);
     set = rechnungDao.getRechnungCache().getRechnungsPositionVOSetByAuftragId(auftrag.getId());
     assertEquals( 2, set.size(),"2 invoice positions expected.");
     assertEquals(0, new BigDecimal("300").compareTo(RechnungDao.getNettoSumme(set)));
+    // The index is updated incrementally:
+    assertEquals(0, new BigDecimal("100").compareTo(rechnungCache.getInvoicedSumByAuftragsPositionId(auftrag.getPosition((short) 1).getId())));
+    auftragDao.calculateInvoicedSum(auftrag);
+    assertEquals(0, new BigDecimal("300").compareTo(auftrag.getFakturiertSum()));
+
+    rechnungDao.markAsDeleted(rechnungDao.getById(rechnung1.getId()));
+    assertNull(rechnungCache.getRechnungsPositionVOSetByAuftragId(auftrag.getId()));
+    assertNull(rechnungCache.getInvoicedSumByAuftragsPositionId(auftrag.getPosition((short) 1).getId()));
+    auftragDao.calculateInvoicedSum(auftrag);
+    assertNull(auftrag.getPosition((short) 1).getFakturiertSum());
+    assertEquals(0, BigDecimal.ZERO.compareTo(auftrag.getFakturiertSum()));
   }
 
 }
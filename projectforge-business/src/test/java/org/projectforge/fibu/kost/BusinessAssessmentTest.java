@@ -28,12 +28,18 @@ import org.projectforge.business.fibu.KontoDO;
 import org.projectforge.business.fibu.kost.BuchungssatzDO;
 import org.projectforge.business.fibu.kost.BusinessAssessment;
 import org.projectforge.business.fibu.kost.BusinessAssessmentConfig;
+import org.projectforge.business.fibu.kost.BusinessAssessmentRowIndex;
+import org.projectforge.business.fibu.kost.Kost1DO;
+import org.projectforge.business.fibu.kost.Kost2DO;
+import org.projectforge.business.fibu.kost.LedgerCube;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class BusinessAssessmentTest
 {
@@ -67,6 +73,69 @@ public class BusinessAssessmentTest
     assertEquals(new BigDecimal("0.68"), bwa.getRow("relativePerformance").getAmount()); // profit / revenue
   }
 
+  @Test
+  public void testLedgerCube()
+  {
+    final BusinessAssessmentConfig bwaConfig = BusinessAssessmentConfigTest.getBusinessAssessmentConfig();
+    final BusinessAssessmentRowIndex rowIndex = bwaConfig.getRowIndex();
+    assertEquals(bwaConfig.getRows().indexOf(bwaConfig.getRow("umsatzErloese")), rowIndex.getRowIndex(4000));
+    assertEquals(bwaConfig.getRows().indexOf(bwaConfig.getRow("umsatzErloese")), rowIndex.getRowIndex(4799));
+    assertEquals(bwaConfig.getRows().indexOf(bwaConfig.getRow("1260")), rowIndex.getRowIndex(6300));
+    assertEquals(bwaConfig.getRows().indexOf(bwaConfig.getRow("1260")), rowIndex.getRowIndex(6855));
+    assertEquals(-1, rowIndex.getRowIndex(1));
+
+    final LedgerCube.Builder builder = new LedgerCube.Builder();
+    builder.add(createRecord(8.08, 4000, 2019, 12, 1));
+    builder.add(createRecord(16.16, 4123, 2020, 1, 1));
+    builder.add(createRecord(32.32, 4799, 2020, 1, 2));
+    builder.add(createRecord(-1.01, 6740, 2020, 1, 1));
+    builder.add(createRecord(-2.02, 6740, 2020, 1, 1)); // Same cell as previous record.
+    builder.add(createRecord(-1.01, 6300, 2020, 2, 1));
+    builder.add(createRecord(-4.04, 6855, 2020, 3, 2));
+    final LedgerCube cube = builder.build();
+    assertEquals(6, cube.size());
+    assertEquals(4, cube.getCount(2020, 1));
+    assertEquals(-303, cube.getCents(6740, 2020, null, 2020, null, null));
+
+    BusinessAssessment bwa = new BusinessAssessment(bwaConfig);
+    bwa.setAmounts(cube, 2019, 12, 2020, 3, null);
+    assertEquals(new BigDecimal("56.56"), bwa.getRow("umsatzErloese").getAmount());
+    assertEquals(new BigDecimal("-3.03"), bwa.getRow("1220").getAmount());
+    assertEquals(new BigDecimal("-5.05"), bwa.getRow("1260").getAmount());
+
+    bwa = new BusinessAssessment(bwaConfig);
+    bwa.setAmounts(cube, 2020, 1, 2020, 2, (kost1Id, kost2Id) -> kost1Id == 1);
+    assertEquals(new BigDecimal("16.16"), bwa.getRow("umsatzErloese").getAmount());
+    assertEquals(new BigDecimal("-1.01"), bwa.getRow("1260").getAmount());
+
+    bwa = new BusinessAssessment(bwaConfig);
+    bwa.setAmounts(cube, 2020, 2, 2020, 2, null);
+    assertNull(bwa.getRow("umsatzErloese").getAmount(), "No records of this row in february.");
+
+    // Replace february:
+    final LedgerCube february = new LedgerCube.Builder().add(createRecord(100.0, 4000, 2020, 2, 1)).build();
+    final LedgerCube newCube = cube.replacePeriods(Collections.singleton(LedgerCube.getPeriod(2020, 2)), february);
+    assertEquals(0, newCube.getCents(6300, 2020, 2, 2020, 2, null));
+    assertEquals(10000, newCube.getCents(4000, 2020, 2, 2020, 2, null));
+    assertEquals(-404, newCube.getCents(6855, 2020, null, 2020, null, null));
+    assertEquals(-101, cube.getCents(6300, 2020, 2, 2020, 2, null), "Origin cube is unmodified.");
+  }
+
+  private BuchungssatzDO createRecord(final double amount, final int accountNumber, final int year, final int month,
+      final int kostId)
+  {
+    final BuchungssatzDO record = createRecord(amount, accountNumber);
+    record.setYear(year);
+    record.setMonth(month);
+    final Kost1DO kost1 = new Kost1DO();
+    kost1.setId(kostId);
+    record.setKost1(kost1);
+    final Kost2DO kost2 = new Kost2DO();
+    kost2.setId(kostId);
+    record.setKost2(kost2);
+    return record;
+  }
+
   private BuchungssatzDO createRecord(final double amount, final int accountNumber)
   {
     final BuchungssatzDO record = new BuchungssatzDO();
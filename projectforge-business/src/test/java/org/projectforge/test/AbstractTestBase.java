@@ -38,6 +38,7 @@ import org.projectforge.business.login.LoginDefaultHandler;
 import org.projectforge.business.multitenancy.TenantRegistry;
 import org.projectforge.business.multitenancy.TenantRegistryMap;
 import org.projectforge.business.task.TaskDO;
+import org.projectforge.business.timesheet.TimesheetOverlapCache;
 import org.projectforge.business.user.ProjectForgeGroup;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.business.user.service.UserService;
@@ -181,6 +182,9 @@ public abstract class AbstractTestBase {
   @Autowired
   private SystemStatus systemStatus;
 
+  @Autowired
+  private TimesheetOverlapCache timesheetOverlapCache;
+
   @PostConstruct
   private void postConstruct() {
     WicketSupport.register(applicationContext);
@@ -307,6 +311,7 @@ public abstract class AbstractTestBase {
     TenantRegistryMap.getInstance().setAllUserGroupCachesAsExpired();
     getUserGroupCache().setExpired();
     TenantRegistryMap.getInstance().clear();
+    timesheetOverlapCache.setExpired();
     initTestDB.clearUsers();
   }
 
@@ -39,10 +39,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.Serializable;
 import java.time.Month;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class TimesheetTestFork extends AbstractTestBase {
@@ -184,6 +189,32 @@ public class TimesheetTestFork extends AbstractTestBase {
     } catch (final UserException ex) {
       assertEquals("timesheet.error.timeperiodOverlapDetection", ex.getI18nKey());
     }
+
+    // Check of multiple time sheets against existing time sheets and against each other:
+    final TimesheetDO ts4 = new TimesheetDO();
+    ts4.setUser(getUser("timesheet-user"));
+    setTimeperiod(ts4, 22, 8, 0, 22, 12, 0); // 11/22 from 8:00 to 12:00
+    final TimesheetDO ts5 = new TimesheetDO();
+    ts5.setUser(getUser("timesheet-user"));
+    setTimeperiod(ts5, 22, 13, 0, 22, 17, 0); // 11/22 from 13:00 to 17:00
+    assertTrue(timesheetDao.getTimeOverlaps(Arrays.asList(ts4, ts5)).isEmpty());
+    setTimeperiod(ts5, 22, 11, 0, 22, 17, 0); // 11/22 from 11:00 to 17:00, overlap with ts4!
+    assertEquals(2, timesheetDao.getTimeOverlaps(Arrays.asList(ts5, ts4)).size());
+    setTimeperiod(ts5, 21, 17, 0, 21, 19, 0); // 11/21 from 17:00 to 19:00, overlap with ts3!
+    final List<TimesheetDO> overlaps = timesheetDao.getTimeOverlaps(Arrays.asList(ts4, ts5));
+    assertEquals(1, overlaps.size());
+    assertSame(ts5, overlaps.get(0));
+    // Time sheets of a batch colliding with each other (but not with stored time sheets) aren't saved:
+    setTimeperiod(ts4, 23, 8, 0, 23, 12, 0); // 11/23 from 8:00 to 12:00
+    setTimeperiod(ts5, 23, 11, 0, 23, 17, 0); // 11/23 from 11:00 to 17:00, overlap with ts4!
+    try {
+      timesheetDao.saveOrUpdateInBatch(Arrays.asList(ts4, ts5));
+      fail();
+    } catch (final UserException ex) {
+      assertEquals("timesheet.error.timeperiodOverlapDetection", ex.getI18nKey());
+    }
+    assertNull(ts4.getId());
+    assertNull(ts5.getId());
   }
 
   @Test
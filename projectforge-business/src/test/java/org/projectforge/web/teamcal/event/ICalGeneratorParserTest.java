@@ -23,6 +23,7 @@
 
 package org.projectforge.web.teamcal.event;
 
+import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.parameter.CuType;
 import net.fortuna.ical4j.model.parameter.Role;
 import net.fortuna.ical4j.model.property.Method;
@@ -38,7 +39,9 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.test.AbstractTestBase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -59,6 +62,36 @@ public class ICalGeneratorParserTest extends AbstractTestBase
     ThreadLocalUserContext.setUser(getUserGroupCache(), PFUserDO.Companion.createCopyWithoutSecretFields(user));
   }
 
+  @Test
+  public void testICalGeneratorStreaming() throws IOException
+  {
+    final TeamEventDO event = new TeamEventDO();
+    event.setSubject("subject with a very long text, so the line has to be folded by the writer of the ics output");
+    event.setLocation("location");
+    event.setUid("uid string");
+    event.setStartDate(new Date(DateHelper.parseIsoTimestamp("2017-07-31 12:00:00.000", DateHelper.EUROPE_BERLIN).getTime()));
+    event.setEndDate(new Date(DateHelper.parseIsoTimestamp("2017-07-31 13:00:00.000", DateHelper.EUROPE_BERLIN).getTime()));
+    event.setDtStamp(new Date(DateHelper.parseIsoTimestamp("2017-07-30 12:00:00.000", DateHelper.EUROPE_BERLIN).getTime()));
+
+    final ICalGenerator generator = ICalGenerator.exportAllFields();
+    generator.addEvent(event);
+    generator.addEvent(event.getStartDate(), event.getEndDate(), true, "all day", "uid all day");
+
+    final ICalGenerator streamingGenerator = ICalGenerator.exportAllFields();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    streamingGenerator.startStreaming(out);
+    Assertions.assertTrue(streamingGenerator.isEmpty());
+    streamingGenerator.addEvent(event);
+    streamingGenerator.addEvent(event.getStartDate(), event.getEndDate(), true, "all day", "uid all day");
+    Assertions.assertFalse(streamingGenerator.isEmpty());
+    streamingGenerator.finishStreaming();
+    Assertions.assertTrue(streamingGenerator.getCalendar().getComponents(Component.VEVENT).isEmpty(),
+        "Events shouldn't be held in memory while streaming.");
+
+    Assertions.assertEquals(new String(generator.getCalendarAsByteStream().toByteArray(), StandardCharsets.UTF_8),
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
   @Test
   public void testICalGenerator()
   {
@@ -30,6 +30,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.projectforge.business.calendar.event.model.ICalendarEvent;
 import org.projectforge.business.teamcal.event.TeamEventDao;
+import org.projectforge.business.teamcal.event.TeamEventRecurrenceCache;
 import org.projectforge.business.teamcal.event.TeamEventRecurrenceData;
 import org.projectforge.business.teamcal.event.TeamRecurrenceEvent;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
@@ -38,6 +39,7 @@ import org.projectforge.framework.configuration.Configuration;
 import org.projectforge.framework.configuration.ConfigurationParam;
 import org.projectforge.framework.time.DateFormats;
 import org.projectforge.framework.time.DateHelper;
+import org.projectforge.framework.time.PFDateTime;
 import org.projectforge.framework.time.RecurrenceFrequency;
 import org.projectforge.test.AbstractTestBase;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,6 +47,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
@@ -101,6 +104,49 @@ public class TeamEventDaoTest extends AbstractTestBase {
     }
   }
 
+  @Test
+  public void recurrenceCache() {
+    final TimeZone timeZone = DateHelper.EUROPE_BERLIN;
+    final DateFormat df = new SimpleDateFormat(DateFormats.ISO_TIMESTAMP_MINUTES);
+    df.setTimeZone(timeZone);
+    final PFDateTime start = PFDateTime.now().getBeginOfDay().minusYears(1).plus(10, ChronoUnit.HOURS);
+    final TeamEventDO event = createEvent(timeZone, df.format(start.getUtilDate()), df.format(start.plus(1, ChronoUnit.HOURS).getUtilDate()),
+            RecurrenceFrequency.WEEKLY, 1, null, null);
+    event.setId(42);
+    final TeamEventRecurrenceCache cache = teamEventDao.getRecurrenceCache();
+    final Date from = PFDateTime.now().getBeginOfDay().getUtilDate();
+    final Date until = PFDateTime.now().getBeginOfDay().plusDays(31).getUtilDate();
+    assertSameEvents(teamEventDao.rollOutRecurrenceEvents(from, until, event, timeZone),
+            cache.getRecurrenceEvents(from, until, event, timeZone));
+    // Master event itself:
+    final Date masterUntil = start.plusDays(20).getUtilDate();
+    final Collection<ICalendarEvent> masterEvents = cache.getRecurrenceEvents(start.getUtilDate(), masterUntil, event, timeZone);
+    assertSameEvents(teamEventDao.rollOutRecurrenceEvents(start.getUtilDate(), masterUntil, event, timeZone), masterEvents);
+    assertTrue(masterEvents.iterator().next() instanceof TeamEventDO);
+
+    // Modified ex-dates of the event must be considered:
+    final Collection<ICalendarEvent> events = cache.getRecurrenceEvents(from, until, event, timeZone);
+    event.addRecurrenceExDate(events.iterator().next().getStartDate());
+    final Collection<ICalendarEvent> eventsWithExDate = cache.getRecurrenceEvents(from, until, event, timeZone);
+    assertEquals(events.size() - 1, eventsWithExDate.size());
+    assertSameEvents(teamEventDao.rollOutRecurrenceEvents(from, until, event, timeZone), eventsWithExDate);
+
+    // Time periods outside the horizon aren't cached:
+    assertNull(cache.getRecurrenceEvents(PFDateTime.now().minusYears(3).getUtilDate(), from, event, timeZone));
+  }
+
+  private void assertSameEvents(final Collection<ICalendarEvent> expected, final Collection<ICalendarEvent> actual) {
+    assertNotNull(actual);
+    assertEquals(expected.size(), actual.size());
+    final Iterator<ICalendarEvent> it = actual.iterator();
+    for (final ICalendarEvent event : expected) {
+      final ICalendarEvent other = it.next();
+      assertEquals(event.getStartDate(), other.getStartDate());
+      assertEquals(event.getEndDate(), other.getEndDate());
+      assertEquals(event instanceof TeamEventDO, other instanceof TeamEventDO);
+    }
+  }
+
   @Test
   @Disabled
   public void exDates() {
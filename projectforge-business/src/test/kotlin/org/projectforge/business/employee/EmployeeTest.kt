@@ -110,6 +110,31 @@ class EmployeeTest : AbstractTestBase() {
         Assertions.assertEquals(updatedHistoryRemoveEntries.size, historyEntries.size + 2)
     }
 
+    @Test
+    fun testHistoryCache() {
+        val e = employeeList!![0]
+        e.comment = "History test 1"
+        employeeDao.update(e)
+        Thread.sleep(10) // Ensure different modification dates for sorting.
+        e.comment = "History test 2"
+        employeeDao.update(e)
+        val historyEntries = employeeDao.getDisplayHistoryEntries(e)
+        Assertions.assertEquals("History test 2", historyEntries.first { it.propertyName == "comment" }.newValue)
+        // Returned entries are copies of the cached entries:
+        historyEntries.forEach { it.propertyName = "modified" }
+        val cachedEntries = employeeDao.getDisplayHistoryEntries(e)
+        Assertions.assertEquals(historyEntries.size, cachedEntries.size)
+        Assertions.assertTrue(cachedEntries.none { it.propertyName == "modified" })
+
+        // Modification invalidates the cached entries:
+        Thread.sleep(10)
+        e.comment = "History test 3"
+        employeeDao.update(e)
+        val updatedEntries = employeeDao.getDisplayHistoryEntries(e)
+        Assertions.assertEquals(cachedEntries.size + 1, updatedEntries.size)
+        Assertions.assertEquals("History test 3", updatedEntries.first { it.propertyName == "comment" }.newValue)
+    }
+
     @Test
     fun testMarkAsDeleted() {
         //Get initial infos
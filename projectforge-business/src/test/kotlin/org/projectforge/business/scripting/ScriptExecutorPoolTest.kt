@@ -0,0 +1,109 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.scripting
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+class ScriptExecutorPoolTest {
+    @Test
+    fun compiledScriptCacheTest() {
+        val cache = CompiledScriptCache<String>(2)
+        var compileCounter = 0
+        Assertions.assertEquals("a1", cache.getOrCompile("test#1", "a") { "a${++compileCounter}" })
+        Assertions.assertEquals("a1", cache.getOrCompile("test#1", "a") { "a${++compileCounter}" }, "Cached script expected.")
+        Assertions.assertEquals("b2", cache.getOrCompile("test#1", "b") { "b${++compileCounter}" }, "Modified script must be compiled again.")
+        Assertions.assertEquals(2, ScriptStatistics.get("test#1").compileCounter.get())
+        Assertions.assertNull(cache.getOrCompile("test#2", "c") { null }, "Compile errors aren't cached.")
+        cache.getOrCompile(null, "d") { "d" }
+        cache.getOrCompile(null, "e") { "e" }
+        Assertions.assertEquals(2, cache.size, "Least recently used entries expected to be removed.")
+    }
+
+    @Test
+    fun groovyScriptTest() {
+        val groovyExecutor = GroovyExecutor()
+        val script = "return a + b"
+        val result1 = groovyExecutor.execute(ScriptExecutionResult(), script, mapOf("a" to 1, "b" to 2), "test#groovy")
+        val result2 = groovyExecutor.execute(ScriptExecutionResult(), script, mapOf("a" to 3, "b" to 4), "test#groovy")
+        Assertions.assertEquals(3, result1.result)
+        Assertions.assertEquals(7, result2.result, "Cached script class with own binding expected.")
+        Assertions.assertEquals(1, ScriptStatistics.get("test#groovy").compileCounter.get())
+    }
+
+    @Test
+    fun abortTest() {
+        val pool = ScriptExecutorPool()
+        pool.maxParallelRuns = 1
+        pool.maxRunTimeSeconds = 1
+        pool.initialize()
+        try {
+            val groovyExecutor = GroovyExecutor()
+            val result = pool.execute("test#endless") {
+                groovyExecutor.execute(ScriptExecutionResult(), "while (true) { }", null, "test#endless")
+            }
+            Assertions.assertTrue(result.exception is TimeoutException)
+            Assertions.assertEquals(1, ScriptStatistics.get("test#endless").aborted.get())
+            // The thread of the aborted script is free again (Groovy scripts are interruptible):
+            val result2 = pool.execute("test#short") {
+                groovyExecutor.execute(ScriptExecutionResult(), "return 42", null, "test#short")
+            }
+            Assertions.assertEquals(42, result2.result)
+            Assertions.assertEquals(1, ScriptStatistics.get("test#short").runCounter.get())
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun notInterruptibleRunsAreNotQueuedTest() {
+        val pool = ScriptExecutorPool()
+        pool.maxParallelRuns = 1
+        pool.initialize()
+        try {
+            val started = CountDownLatch(1)
+            val finish = CountDownLatch(1)
+            val blockingRun = Thread {
+                pool.execute("test#blocking", false) {
+                    started.countDown()
+                    finish.await()
+                    ScriptExecutionResult()
+                }
+            }
+            blockingRun.start()
+            Assertions.assertTrue(started.await(10, TimeUnit.SECONDS))
+            val result = pool.execute("test#rejected", false) { ScriptExecutionResult() }
+            Assertions.assertTrue(result.exception is RejectedExecutionException, "No free thread, run expected to be rejected.")
+            finish.countDown()
+            blockingRun.join(10_000)
+        } finally {
+            pool.shutdown()
+        }
+    }
+}
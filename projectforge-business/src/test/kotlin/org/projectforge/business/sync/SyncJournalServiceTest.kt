@@ -0,0 +1,121 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.sync
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.time.PFDateTime
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.time.temporal.ChronoUnit
+
+class SyncJournalServiceTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var syncJournalService: SyncJournalService
+
+    @Autowired
+    private lateinit var teamCalDao: TeamCalDao
+
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    @Test
+    fun journalTest() {
+        val calendarId = 4711
+        val token0 = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calendarId)
+        syncJournalService.journal(SyncCollectionType.CALENDAR, calendarId, 1, "uid-1", OperationType.INSERT)
+        syncJournalService.journal(SyncCollectionType.CALENDAR, calendarId, 2, "uid-2", OperationType.INSERT)
+        syncJournalService.journal(SyncCollectionType.CALENDAR, calendarId + 1, 3, "uid-3", OperationType.INSERT) // Other calendar
+        val token1 = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calendarId)
+        Assertions.assertTrue(token1 > token0)
+        syncJournalService.journal(SyncCollectionType.CALENDAR, calendarId, 1, "uid-1", OperationType.UPDATE)
+        syncJournalService.journal(SyncCollectionType.CALENDAR, calendarId, 1, "uid-1", OperationType.DELETE)
+        val token2 = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calendarId)
+        Assertions.assertTrue(token2 > token1)
+
+        var changes = syncJournalService.getChanges(SyncCollectionType.CALENDAR, calendarId, token1)!!
+        Assertions.assertEquals(token2, changes.syncToken)
+        Assertions.assertEquals(1, changes.changes.size, "Only last change of object expected.")
+        Assertions.assertEquals(OperationType.DELETE, changes.changes[0].operation)
+        Assertions.assertEquals("uid-1", changes.changes[0].objectUid)
+
+        changes = syncJournalService.getChanges(SyncCollectionType.CALENDAR, calendarId, token2)!!
+        Assertions.assertEquals(token2, changes.syncToken)
+        Assertions.assertTrue(changes.changes.isEmpty())
+
+        // Changes without collection id are relevant for all collections of the type:
+        val userId = 42
+        val abToken0 = syncJournalService.getSyncToken(SyncCollectionType.ADDRESS_BOOK, userId)
+        syncJournalService.journal(SyncCollectionType.ADDRESS_BOOK, null, 5, "address-5", OperationType.UPDATE)
+        Assertions.assertTrue(syncJournalService.getSyncToken(SyncCollectionType.ADDRESS_BOOK, userId) > abToken0)
+        Assertions.assertEquals(1, syncJournalService.getChanges(SyncCollectionType.ADDRESS_BOOK, userId, abToken0)!!.changes.size)
+
+        // Unknown (pruned) sync token:
+        Assertions.assertNull(syncJournalService.getChanges(SyncCollectionType.CALENDAR, calendarId, -1))
+    }
+
+    @Test
+    fun journalOfMovedEventTest() {
+        logon(TEST_ADMIN_USER)
+        val calendar1 = createCalendar("Sync journal calendar 1")
+        val calendar2 = createCalendar("Sync journal calendar 2")
+        val event = TeamEventDO()
+        event.calendar = calendar1
+        event.subject = "Moved event"
+        event.uid = "sync-journal-moved-event"
+        val start = PFDateTime.now()
+        event.startDate = start.utilDate
+        event.endDate = start.plus(1, ChronoUnit.HOURS).utilDate
+        teamEventDao.internalSave(event)
+        val token1 = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calendar1.id)
+        val token2 = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calendar2.id)
+
+        event.calendar = calendar2
+        teamEventDao.internalUpdate(event)
+        // The event was removed from the former calendar:
+        val changes1 = syncJournalService.getChanges(SyncCollectionType.CALENDAR, calendar1.id, token1)!!
+        Assertions.assertTrue(changes1.syncToken > token1, "Sync token of the former calendar must change.")
+        Assertions.assertEquals(1, changes1.changes.size)
+        Assertions.assertEquals(OperationType.DELETE, changes1.changes[0].operation)
+        Assertions.assertEquals("sync-journal-moved-event", changes1.changes[0].objectUid)
+        val changes2 = syncJournalService.getChanges(SyncCollectionType.CALENDAR, calendar2.id, token2)!!
+        Assertions.assertTrue(changes2.syncToken > token2)
+        Assertions.assertEquals(1, changes2.changes.size)
+        Assertions.assertEquals(OperationType.UPDATE, changes2.changes[0].operation)
+    }
+
+    private fun createCalendar(title: String): TeamCalDO {
+        val calendar = TeamCalDO()
+        calendar.title = title
+        calendar.owner = getUser(TEST_ADMIN_USER)
+        teamCalDao.internalSave(calendar)
+        return calendar
+    }
+}
@@ -0,0 +1,75 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.cache
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AbstractSnapshotCacheTest {
+    class TestCache : AbstractSnapshotCache<List<Int>>() {
+        var counter = 0
+        var latch: CountDownLatch? = null
+        val built = CountDownLatch(2)
+
+        override fun buildSnapshot(): List<Int> {
+            latch?.await(10, TimeUnit.SECONDS)
+            val result = listOf(++counter)
+            built.countDown()
+            return result
+        }
+
+        fun get(): List<Int> {
+            return snapshot
+        }
+    }
+
+    @Test
+    fun staleWhileRevalidateTest() {
+        val cache = TestCache()
+        Assertions.assertEquals(1, cache.get()[0], "Initial build expected.")
+        Assertions.assertEquals(1, cache.statistics.misses)
+        Assertions.assertEquals(1, cache.get()[0])
+        Assertions.assertEquals(1, cache.statistics.hits)
+
+        val latch = CountDownLatch(1)
+        cache.latch = latch
+        cache.setExpired()
+        // Reload is blocked by latch, stale snapshot is served without waiting:
+        Assertions.assertEquals(1, cache.get()[0])
+        Assertions.assertEquals(1, cache.get()[0])
+        Assertions.assertTrue(cache.statistics.staleHits >= 1)
+        latch.countDown()
+        Assertions.assertTrue(cache.built.await(10, TimeUnit.SECONDS))
+        // Wait for the background thread finishing the swap:
+        for (i in 0..100) {
+            if (!cache.isRefreshInProgress) break
+            Thread.sleep(10)
+        }
+        Assertions.assertEquals(2, cache.get()[0], "New snapshot expected after background reload.")
+        Assertions.assertEquals(2, cache.statistics.refreshCounter)
+    }
+}
@@ -0,0 +1,110 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.fail
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.framework.access.AccessException
+import org.projectforge.framework.access.OperationType
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class BatchWriteTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var kontoDao: KontoDao
+
+    @Test
+    fun saveOrUpdateInBatchTest() {
+        logon(TEST_USER)
+        try {
+            kontoDao.saveOrUpdateInBatch(listOf(createKonto(98765000, "No access")))
+            fail("Access exception expected.")
+        } catch (ex: AccessException) {
+            // OK
+        }
+        // Deferred side effects: the object changed listeners are called after the batch write for every object.
+        val insertedIds = mutableSetOf<Int>()
+        val updatedIds = mutableSetOf<Int>()
+        kontoDao.register(object : BaseDOChangedListener<KontoDO> {
+            override fun afterSaveOrModifify(changedObject: KontoDO, operationType: OperationType) {
+                if ((changedObject.nummer ?: 0) !in 98765000..98799999) {
+                    return // Not an object of this test.
+                }
+                Assertions.assertNotNull(changedObject.id)
+                when (operationType) {
+                    OperationType.INSERT -> insertedIds.add(changedObject.id)
+                    OperationType.UPDATE -> updatedIds.add(changedObject.id)
+                    else -> fail("Unexpected operation type: $operationType")
+                }
+            }
+        })
+        logon(TEST_FINANCE_USER)
+        // More objects than BATCH_SIZE, so the entity manager is flushed and cleared several times:
+        val count = 2 * BaseDaoSupport.BATCH_SIZE + 100
+        val list = (1..count).map { createKonto(98765100 + it, "Batch $it") }
+        var stats = kontoDao.saveOrUpdateInBatch(list)
+        Assertions.assertEquals(count, stats.inserted)
+        Assertions.assertEquals(0, stats.updated)
+        Assertions.assertEquals(count, insertedIds.size)
+        Assertions.assertTrue(updatedIds.isEmpty())
+        list.forEach {
+            Assertions.assertNotNull(it.id)
+            Assertions.assertTrue(insertedIds.contains(it.id))
+        }
+        listOf(list.first(), list[BaseDaoSupport.BATCH_SIZE], list.last()).forEach {
+            Assertions.assertEquals(it.bezeichnung, kontoDao.getById(it.id).bezeichnung)
+        }
+        Assertions.assertTrue(kontoDao.getHistoryEntries(list[0]).isNotEmpty(), "History entry of insert expected.")
+
+        // Updates of objects of the first and the last block of the previous batch, written after more than BATCH_SIZE
+        // inserts (the entity manager was cleared in the meantime):
+        insertedIds.clear()
+        val updates = listOf(list[0], list[1], list[2], list[count - 1])
+        updates[0].bezeichnung = "Batch modified"
+        updates[3].bezeichnung = "Batch last modified"
+        val newList = (1..BaseDaoSupport.BATCH_SIZE + 10).map { createKonto(98775100 + it, "Batch new $it") }
+        stats = kontoDao.saveOrUpdateInBatch(newList + updates)
+        Assertions.assertEquals(newList.size, stats.inserted)
+        Assertions.assertEquals(2, stats.updated)
+        Assertions.assertEquals(2, stats.unmodified)
+        Assertions.assertEquals(newList.size + 4, stats.total)
+        Assertions.assertEquals(newList.map { it.id }.toSet(), insertedIds)
+        Assertions.assertEquals(updates.map { it.id }.toSet(), updatedIds)
+        Assertions.assertEquals("Batch modified", kontoDao.getById(list[0].id).bezeichnung)
+        Assertions.assertEquals("Batch 2", kontoDao.getById(list[1].id).bezeichnung)
+        Assertions.assertEquals("Batch last modified", kontoDao.getById(list[count - 1].id).bezeichnung)
+        Assertions.assertEquals("Batch new 1", kontoDao.getById(newList[0].id).bezeichnung)
+        Assertions.assertEquals(0, kontoDao.saveOrUpdateInBatch(emptyList()).total)
+    }
+
+    private fun createKonto(nummer: Int, bezeichnung: String): KontoDO {
+        val konto = KontoDO()
+        konto.nummer = nummer
+        konto.bezeichnung = bezeichnung
+        return konto
+    }
+}
@@ -76,6 +76,20 @@ class DBPredicateTest {
                 DBPredicate.Like("admins.name", "*unknown*")).match(company))
     }
 
+    @Test
+    fun propertyAccessorTest() {
+        val company = Company("ACME", Person("Amy", Address("Kassel")), listOf(), arrayOf())
+        val accessor = DBPropertyAccessor.of("ceo.address.city")
+        Assertions.assertSame(accessor, DBPropertyAccessor.of("ceo.address.city"), "Accessors should be cached.")
+        Assertions.assertTrue(accessor.nested)
+        Assertions.assertEquals("Kassel", accessor.getValue(company))
+        Assertions.assertNull(accessor.getValue(Company("ACME", Person("Bob"), listOf(), arrayOf())))
+        Assertions.assertFalse(DBPropertyAccessor.of("title").nested)
+        Assertions.assertEquals("ACME", DBPropertyAccessor.getProperty(company, "title"))
+        Assertions.assertNull(DBPropertyAccessor.getProperty(null, "title"))
+        Assertions.assertThrows(RuntimeException::class.java) { DBPropertyAccessor.getProperty(company, "unknown") }
+    }
+
     @Test
     fun likeTest() {
         Assertions.assertEquals("", DBPredicate.Like("name", "").queryString)
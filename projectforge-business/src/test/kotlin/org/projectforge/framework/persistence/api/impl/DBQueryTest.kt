@@ -0,0 +1,170 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api.impl
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.framework.persistence.api.BaseSearchFilter
+import org.projectforge.business.user.UserDao
+import org.projectforge.framework.persistence.api.BaseDao
+import org.projectforge.framework.persistence.api.ExtendedBaseDO
+import org.projectforge.framework.persistence.api.QueryFilter
+import org.projectforge.framework.persistence.api.SortProperty
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class DBQueryTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var kontoDao: KontoDao
+
+    @Autowired
+    private lateinit var userDao: UserDao
+
+    @Test
+    fun keysetPagingWithDuplicateSortKeysTest() {
+        logon(TEST_FINANCE_USER)
+        for (i in 1..7) {
+            kontoDao.save(createKonto(87654200 + i, if (i % 2 == 0) "Pagetest A" else "Pagetest B"))
+        }
+        val createFilter = {
+            QueryFilter().add(QueryFilter.like("bezeichnung", "Pagetest*")).addOrder(SortProperty.asc("bezeichnung"))
+        }
+        val list = getAllPages(kontoDao, createFilter, 2)
+        Assertions.assertEquals(7, list.size)
+        Assertions.assertEquals(7, list.map { it.id }.toSet().size, "Each entry expected only once.")
+        Assertions.assertEquals(listOf("Pagetest A", "Pagetest A", "Pagetest A", "Pagetest B", "Pagetest B", "Pagetest B", "Pagetest B"),
+                list.map { it.bezeichnung })
+    }
+
+    /**
+     * The sort values are part of the cursor, so the last entry of the previous page may be deleted in the meantime.
+     */
+    @Test
+    fun keysetPagingWithDeletedLastEntryTest() {
+        logon(TEST_FINANCE_USER)
+        for (i in 1..5) {
+            kontoDao.save(createKonto(87654500 + i, "Pagedelete $i"))
+        }
+        val createFilter = {
+            val filter = QueryFilter().add(QueryFilter.like("bezeichnung", "Pagedelete*")).addOrder(SortProperty.asc("bezeichnung"))
+            filter.deleted = false
+            filter
+        }
+        val firstPage = kontoDao.getPage(createFilter(), null, 2, null)
+        Assertions.assertEquals(listOf("Pagedelete 1", "Pagedelete 2"), firstPage.list.map { it.bezeichnung })
+        kontoDao.markAsDeleted(kontoDao.getById(firstPage.list.last().id))
+        val secondPage = kontoDao.getPage(createFilter(), null, 2, firstPage.cursor)
+        Assertions.assertEquals(listOf("Pagedelete 3", "Pagedelete 4"), secondPage.list.map { it.bezeichnung })
+    }
+
+    /**
+     * Locale isn't comparable, so the entries up to the last entry of the previous page are skipped instead of using
+     * a keyset predicate. All test users have the same locale.
+     */
+    @Test
+    fun pagingBySkippingEntriesTest() {
+        logon(ADMIN)
+        val ids = (1..5).map { initTestDB.addUser("pagetest-user-$it").id }.toSet()
+        val createFilter = {
+            QueryFilter().add(QueryFilter.like("username", "pagetest-user-*")).addOrder(SortProperty.asc("locale"))
+        }
+        val list = getAllPages(userDao, createFilter, 2)
+        Assertions.assertEquals(5, list.size)
+        Assertions.assertEquals(ids, list.map { it.id }.toSet())
+    }
+
+    @Test
+    fun fullTextPagingTest() {
+        logon(TEST_FINANCE_USER)
+        val ids = (1..12).map { kontoDao.save(createKonto(87654300 + it, "Fulltextpage $it")) }.toSet()
+        val createFilter = {
+            val filter = createFullTextFilter("fulltextpage")
+            filter.maxRows = 5 // Paging isn't limited by maxRows.
+            filter
+        }
+        val list = getAllPages(kontoDao, createFilter, 5)
+        Assertions.assertEquals(12, list.size)
+        Assertions.assertEquals(ids, list.map { it.id }.toSet())
+
+        // Offset behind the result list:
+        val page = kontoDao.getPage(createFilter(), null, 5, DBPageCursor.offset(20).encode())
+        Assertions.assertTrue(page.list.isEmpty())
+        Assertions.assertFalse(page.hasMore)
+        Assertions.assertNull(page.cursor)
+
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            kontoDao.getPage(createFilter(), null, 5, "no-cursor")
+        }
+        // Keyset cursor isn't usable for full text queries:
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            kontoDao.getPage(createFilter(), null, 5, DBPageCursor.skip(ids.first()).encode())
+        }
+    }
+
+    @Test
+    fun fullTextSearchWithMoreHitsThanMaxRowsTest() {
+        logon(TEST_FINANCE_USER)
+        for (i in 1..30) {
+            kontoDao.save(createKonto(87654100 + i, "Scrollhit $i"))
+        }
+        // The scrollable results are left unread after maxRows hits, so they have to be closed by DBQuery:
+        repeat(5) {
+            val filter = createFullTextFilter("scrollhit")
+            filter.maxRows = 10
+            Assertions.assertEquals(10, kontoDao.getList(filter).size)
+        }
+        Assertions.assertEquals(30, kontoDao.getList(createFullTextFilter("scrollhit")).size)
+    }
+
+    private fun <O : ExtendedBaseDO<Int>> getAllPages(baseDao: BaseDao<O>, createFilter: () -> QueryFilter, pageSize: Int): List<O> {
+        val result = mutableListOf<O>()
+        var cursor: String? = null
+        for (i in 0..100) { // Avoid endless loops.
+            val page = baseDao.getPage(createFilter(), null, pageSize, cursor)
+            Assertions.assertTrue(page.list.size <= pageSize)
+            result.addAll(page.list)
+            if (!page.hasMore || page.cursor == null) {
+                return result
+            }
+            cursor = page.cursor
+        }
+        Assertions.fail<Any>("Paging doesn't terminate.")
+        return result
+    }
+
+    private fun createFullTextFilter(searchString: String): QueryFilter {
+        val searchFilter = BaseSearchFilter()
+        searchFilter.searchString = searchString
+        return QueryFilter(searchFilter)
+    }
+
+    private fun createKonto(nummer: Int, bezeichnung: String): KontoDO {
+        val konto = KontoDO()
+        konto.nummer = nummer
+        konto.bezeichnung = bezeichnung
+        return konto
+    }
+}
@@ -23,6 +23,7 @@
 
 package org.projectforge.framework.persistence.api.impl
 
+import org.apache.lucene.search.SortField
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.projectforge.business.address.AddressDao
@@ -30,6 +31,7 @@ import org.projectforge.business.fibu.AuftragDao
 import org.projectforge.business.fibu.RechnungDao
 import org.projectforge.business.fibu.kost.BuchungssatzDao
 import org.projectforge.business.task.TaskDao
+import org.projectforge.business.timesheet.TimesheetDao
 
 class HibernateSearchClassInfoTest {
     @Test
@@ -75,4 +77,16 @@ class HibernateSearchClassInfoTest {
         Assertions.assertTrue(info.containsField("positionen.titel"))
         Assertions.assertTrue(info.containsField("positionen.position"))
     }
+
+    @Test
+    fun sortFieldTest() {
+        val info = HibernateSearchClassInfo(TimesheetDao())
+        val sortField = info.getSortField("startTime", false)
+        Assertions.assertNotNull(sortField)
+        Assertions.assertEquals("startTime", sortField!!.field)
+        Assertions.assertEquals(SortField.Type.STRING, sortField.type)
+        Assertions.assertTrue(sortField.reverse)
+        Assertions.assertNull(info.getSortField("description", true), "Analyzed fields aren't sortable by the index.")
+        Assertions.assertNull(info.getSortField("unknown", true))
+    }
 }
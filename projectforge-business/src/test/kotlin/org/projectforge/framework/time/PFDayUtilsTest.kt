@@ -27,6 +27,7 @@ import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.BeforeAll
 import org.junit.jupiter.api.Test
+import org.projectforge.framework.calendar.Holidays
 import org.projectforge.test.TestSetup
 import java.math.BigDecimal
 import java.time.LocalDate
@@ -42,6 +43,23 @@ class PFDayUtilsTest {
         assertBigDecimal(3.0, PFDayUtils.getNumberOfWorkingDays(LocalDate.of(2019, Month.DECEMBER, 24), LocalDate.of(2019, Month.DECEMBER, 31)))
     }
 
+    @Test
+    fun numberOfWorkingDaysOfLongPeriodsTest() {
+        val from = LocalDate.of(2018, Month.DECEMBER, 20)
+        val to = LocalDate.of(2021, Month.JANUARY, 10) // More than 2 years.
+        // Count day by day:
+        var expected = BigDecimal.ZERO
+        var day = PFDay.from(from)
+        while (!day.localDate.isAfter(to)) {
+            if (PFDayUtils.isWorkingDay(day)) {
+                expected = expected.add(Holidays.instance.getWorkFraction(day) ?: BigDecimal.ONE)
+            }
+            day = day.plusDays(1)
+        }
+        Assertions.assertTrue(expected.compareTo(PFDayUtils.getNumberOfWorkingDays(from, to)) == 0)
+        assertBigDecimal(0.0, PFDayUtils.getNumberOfWorkingDays(to, from))
+    }
+
     @Test
     fun nextWorkingDayTest() {
         checkNextWorkingDay(LocalDate.of(2020, Month.JANUARY, 10), 2020, Month.JANUARY, 10)
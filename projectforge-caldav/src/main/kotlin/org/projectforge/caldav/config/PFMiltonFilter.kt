@@ -28,15 +28,21 @@ import mu.KotlinLogging
 import org.projectforge.business.user.UserAuthenticationsService
 import org.projectforge.business.user.UserTokenType
 import org.projectforge.caldav.service.SslSessionCache
+import org.projectforge.caldav.service.SyncCollectionReportService
 import org.projectforge.rest.utils.RequestLog
 import org.projectforge.web.rest.RestAuthenticationInfo
 import org.projectforge.web.rest.RestAuthenticationUtils
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.web.context.WebApplicationContext
 import org.springframework.web.context.support.WebApplicationContextUtils
+import java.io.BufferedReader
+import java.io.ByteArrayInputStream
 import java.io.IOException
+import java.io.InputStreamReader
 import javax.servlet.*
 import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletRequestWrapper
+import javax.servlet.http.HttpServletResponse
 
 private val log = KotlinLogging.logger {}
 
@@ -55,6 +61,9 @@ class PFMiltonFilter : MiltonFilter() {
     @Autowired
     private lateinit var sslSessionCache: SslSessionCache
 
+    @Autowired
+    private lateinit var syncCollectionReportService: SyncCollectionReportService
+
     @Throws(ServletException::class)
     override fun init(filterConfig: FilterConfig) {
         super.init(filterConfig)
@@ -101,8 +110,51 @@ class PFMiltonFilter : MiltonFilter() {
                     response,
                     UserTokenType.DAV_TOKEN,
                     authenticate = { authInfo -> authenticate(authInfo) },
-                    doFilter = { -> super.doFilter(request, response, chain) }
+                    doFilter = { -> doMiltonFilter(request, response as HttpServletResponse, chain) }
             )
         }
     }
+
+    /**
+     * The sync-collection REPORT isn't supported by Milton, so REPORT requests are checked for it first. Other REPORT
+     * requests are given to Milton with the already read body.
+     */
+    private fun doMiltonFilter(request: HttpServletRequest, response: HttpServletResponse, chain: FilterChain) {
+        if (request.method != "REPORT") {
+            super.doFilter(request, response, chain)
+            return
+        }
+        val body = request.inputStream.readBytes()
+        if (syncCollectionReportService.handle(request, body, response)) {
+            return
+        }
+        super.doFilter(BufferedBodyRequest(request, body), response, chain)
+    }
+
+    private class BufferedBodyRequest(request: HttpServletRequest, private val body: ByteArray) : HttpServletRequestWrapper(request) {
+        override fun getInputStream(): ServletInputStream {
+            val stream = ByteArrayInputStream(body)
+            return object : ServletInputStream() {
+                override fun read(): Int {
+                    return stream.read()
+                }
+
+                override fun isFinished(): Boolean {
+                    return stream.available() == 0
+                }
+
+                override fun isReady(): Boolean {
+                    return true
+                }
+
+                override fun setReadListener(readListener: ReadListener?) {
+                    throw UnsupportedOperationException()
+                }
+            }
+        }
+
+        override fun getReader(): BufferedReader {
+            return BufferedReader(InputStreamReader(inputStream, characterEncoding ?: "UTF-8"))
+        }
+    }
 }
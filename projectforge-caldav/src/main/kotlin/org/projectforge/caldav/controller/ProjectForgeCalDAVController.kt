@@ -71,6 +71,14 @@ open class ProjectForgeCalDAVController : BaseDAVController() {
         return calendarService.getCalendarList(cal.user)
     }
 
+    /**
+     * Clients don't need to fetch the events of a calendar with unmodified CTag.
+     */
+    @CTag
+    fun getCalendarCTag(cal: Calendar): String? {
+        return cal.ctag
+    }
+
     @ChildrenOf
     fun getCalendarEvents(cal: Calendar?): List<Meeting> {
         log.info("getCalendarEvents '${cal?.name}'.")
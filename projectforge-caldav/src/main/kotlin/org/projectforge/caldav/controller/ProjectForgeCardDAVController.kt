@@ -68,7 +68,12 @@ open class ProjectForgeCardDAVController : BaseDAVController() {
     @AddressBooks
     fun getAddressBook(cons: ContactsHome): AddressBook {
         log.info("getAddressBook: '${cons.name}' for user '${cons.user.username}'.")
-        return AddressBook(cons.user)
+        return addressService.getAddressBook(cons.user)
+    }
+
+    @CTag
+    fun getAddressBookCTag(ab: AddressBook): String? {
+        return ab.ctag
     }
 
     @ChildrenOf
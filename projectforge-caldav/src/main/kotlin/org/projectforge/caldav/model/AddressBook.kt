@@ -26,7 +26,7 @@ package org.projectforge.caldav.model
 /**
  * Created by blumenstein on 21.11.16.
  */
-class AddressBook(val user: User) {
+class AddressBook(val user: User, val ctag: String? = null) {
     val name: String
         get() = "default"
 
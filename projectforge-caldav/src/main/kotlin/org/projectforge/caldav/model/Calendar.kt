@@ -26,7 +26,10 @@ package org.projectforge.caldav.model
 import io.milton.annotations.UniqueId
 import org.slf4j.LoggerFactory
 
-class Calendar(val user: User?, val id: Int?, val name: String?) {
+/**
+ * @param ctag Changes on every modification of the calendar's events (used by clients to detect unmodified calendars).
+ */
+class Calendar(val user: User?, val id: Int?, val name: String?, val ctag: String? = null) {
     @UniqueId
     fun getUniqueId(c: Calendar): Int? {
         return c.id
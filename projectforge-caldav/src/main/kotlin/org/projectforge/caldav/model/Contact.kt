@@ -29,9 +29,9 @@ import io.milton.annotations.UniqueId
 import java.util.*
 
 class Contact() {
-    constructor(id: Int?, fullname: String?, modifiedDate: Date?, vcardData: ByteArray?) : this() {
+    constructor(id: Int?, modifiedDate: Date?, vcardData: ByteArray?) : this() {
         this.id = id?.toLong() ?: -1
-        this.name = fullname ?: "untitled"
+        this.name = if (id != null) getName(id) else "untitled"
         this.modifiedDate = modifiedDate
         this.vcardData = vcardData
     }
@@ -53,4 +53,14 @@ class Contact() {
     var modifiedDate: Date? = null
     var vcardData: ByteArray? = null
     var addressBook: AddressBook? = null
+
+    companion object {
+        /**
+         * The name (href) of a contact is derived from the address id (and not from the full name of the address), so
+         * the names of changed and removed addresses are known by the sync journal.
+         */
+        fun getName(addressId: Int): String {
+            return "$addressId.vcf"
+        }
+    }
 }
@@ -70,7 +70,7 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
         if (missedInCache.size > 0) {
             addressDao.internalLoad(missedInCache).forEach {
                 val vcard = vCardService.buildVCardByteArray(it, addressImageDao)
-                val contact = Contact(it.id, it.fullName, it.lastUpdate, vcard)
+                val contact = Contact(it.id, it.lastUpdate, vcard)
                 addCachedContact(it.id, contact)
                 val copy = Contact(contact, addressBook)
                 result.add(copy)
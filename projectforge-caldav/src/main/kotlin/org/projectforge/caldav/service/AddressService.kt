@@ -26,7 +26,10 @@ package org.projectforge.caldav.service
 import org.projectforge.business.address.AddressDao
 import org.projectforge.business.address.PersonalAddressDao
 import org.projectforge.caldav.model.AddressBook
+import org.projectforge.business.sync.SyncCollectionType
+import org.projectforge.business.sync.SyncJournalService
 import org.projectforge.caldav.model.Contact
+import org.projectforge.caldav.model.User
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
@@ -52,6 +55,19 @@ class AddressService {
     @Autowired
     private lateinit var vCardService: VCardService
 
+    @Autowired
+    private lateinit var syncJournalService: SyncJournalService
+
+    /**
+     * The address book of the given user with its CTag: the sync token of all modifications of addresses and of the
+     * user's favorites.
+     */
+    fun getAddressBook(user: User): AddressBook {
+        val userId = user.id?.toInt() ?: return AddressBook(user)
+        val ctag = syncJournalService.getSyncToken(SyncCollectionType.ADDRESS_BOOK, userId)
+        return AddressBook(user, "$ctag")
+    }
+
     fun getContactList(addressBook: AddressBook): List<Contact> {
         val favorites = personalAddressDao.favoriteAddressIdList
         return addressDAVCache.getContacts(addressBook, favorites)
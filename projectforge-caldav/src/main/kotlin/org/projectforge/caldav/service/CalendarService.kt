@@ -24,7 +24,10 @@
 package org.projectforge.caldav.service
 
 import mu.KotlinLogging
+import org.projectforge.business.sync.SyncCollectionType
+import org.projectforge.business.sync.SyncJournalService
 import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
 import org.projectforge.business.teamcal.event.TeamEventDao
 import org.projectforge.business.teamcal.event.TeamEventFilter
 import org.projectforge.business.teamcal.event.TeamEventService
@@ -53,30 +56,68 @@ class CalendarService {
     @Autowired
     private lateinit var teamEventService: TeamEventService
 
+    @Autowired
+    private lateinit var syncJournalService: SyncJournalService
+
     fun getCalendarList(user: User): List<Calendar> {
         if (user.id != ThreadLocalUserContext.getUserId().toLong()) {
             throw AccessException("Logged-in user differs from the user requested.")
         }
         val calendars = teamCalDao.getList(BaseSearchFilter())
         val result = calendars.map { cal ->
-            Calendar(user, cal.id, cal.title ?: "untitled")
+            Calendar(user, cal.id, cal.title ?: "untitled", getCTag(cal))
         }
         return result
     }
 
+    /**
+     * @param name The name of the calendar (title) as used in the CalDAV paths.
+     * @return The id of the logged-in user's calendar with the given name or null, if not found.
+     */
+    fun getCalendarId(name: String): Int? {
+        return teamCalDao.getList(BaseSearchFilter()).find { (it.title ?: "untitled") == name }?.id
+    }
+
     fun getCalendarEvents(cal: Calendar): List<Meeting> {
         val result = mutableListOf<Meeting>()
         cal.id ?: return result
-        val filter = TeamEventFilter().setTeamCals(listOf(cal.id))
-        filter.startDate = now().minusDays(1000.toLong()).utilDate
         val generator = ICalGenerator.exportAllFields()
         generator.editableVEvent(true)
-        teamEventService.getTeamEventDOList(filter).forEach {
+        teamEventService.getTeamEventDOList(createFilter(cal.id)).forEach {
             result.add(convert(generator, cal, it))
         }
         return result
     }
 
+    /**
+     * @return The names of all events of the given calendar, same as the names of [getCalendarEvents], but without
+     * generating the ics data.
+     */
+    fun getCalendarEventNames(calendarId: Int): List<String> {
+        return teamEventService.getTeamEventDOList(createFilter(calendarId)).mapNotNull { event ->
+            event.uid?.let { getMeetingName(it) }
+        }
+    }
+
+    private fun createFilter(calendarId: Int): TeamEventFilter {
+        val filter = TeamEventFilter().setTeamCals(listOf(calendarId))
+        filter.startDate = now().minusDays(1000.toLong()).utilDate
+        return filter
+    }
+
+    /**
+     * The CTag is the sync token of the calendar (id of the last journaled modification). For subscribed calendars
+     * the hash of the subscribed calendar is appended.
+     */
+    private fun getCTag(cal: TeamCalDO): String? {
+        val calId = cal.id ?: return null
+        val syncToken = syncJournalService.getSyncToken(SyncCollectionType.CALENDAR, calId)
+        if (cal.externalSubscription) {
+            return "$syncToken-${cal.externalSubscriptionHash}"
+        }
+        return "$syncToken"
+    }
+
     @Suppress("UNUSED_PARAMETER")
     fun createCalendarEvent(meeting: Meeting): Meeting? {
         log.warn { "Creating of meetings not supported." }
@@ -99,7 +140,7 @@ class CalendarService {
         result.uniqueId = event.uid
         result.createDate = event.created
         result.modifiedDate = event.lastUpdate
-        result.name = event.uid + ".ics"
+        result.name = getMeetingName(event.uid)
         result.icalData = generator.calendarAsByteStream.toByteArray()
         return result
     }
@@ -113,4 +154,10 @@ class CalendarService {
         event.lastUpdate = meeting.modifiedDate
         return event
     }
+
+    companion object {
+        fun getMeetingName(eventUid: String?): String {
+            return "$eventUid.ics"
+        }
+    }
 }
@@ -0,0 +1,246 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.caldav.service
+
+import mu.KotlinLogging
+import org.projectforge.business.address.PersonalAddressDao
+import org.projectforge.business.sync.SyncCollectionType
+import org.projectforge.business.sync.SyncJournalService
+import org.projectforge.caldav.model.Contact
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import org.springframework.web.util.UriUtils
+import org.w3c.dom.Element
+import java.io.ByteArrayInputStream
+import java.nio.charset.StandardCharsets
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import javax.xml.namespace.QName
+import javax.xml.parsers.DocumentBuilderFactory
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Handles the WebDAV sync-collection REPORT (RFC 6578) of calendars and address books, which isn't supported by
+ * Milton: the members changed or removed since the client's sync token are taken from the [SyncJournalService].
+ * The sync token of a collection is its CTag.
+ */
+@Service
+open class SyncCollectionReportService {
+    @Autowired
+    private lateinit var calendarService: CalendarService
+
+    @Autowired
+    private lateinit var personalAddressDao: PersonalAddressDao
+
+    @Autowired
+    private lateinit var syncJournalService: SyncJournalService
+
+    class SyncCollectionRequest(
+            /**
+             * The sync token of the client's last synchronization or an empty string for an initial synchronization.
+             */
+            val syncToken: String,
+            /**
+             * The properties requested for changed members.
+             */
+            val props: List<QName>)
+
+    private class Member(val href: String, val removed: Boolean)
+
+    /**
+     * @param body The body of the REPORT request.
+     * @return true, if the request is a sync-collection REPORT of a calendar or address book of the logged-in user and
+     * the response is written. Otherwise false (the request is left to Milton).
+     */
+    open fun handle(request: HttpServletRequest, body: ByteArray, response: HttpServletResponse): Boolean {
+        val syncRequest = parseRequest(body) ?: return false
+        val segments = request.requestURI.removePrefix(request.contextPath).split('/')
+                .filter { it.isNotEmpty() }
+                .map { UriUtils.decode(it, StandardCharsets.UTF_8) }
+        // /users/{username}/cals/{calendar} or /users/{username}/addressBooks/default
+        if (segments.size != 4 || segments[0] != "users") {
+            return false
+        }
+        val user = ThreadLocalUserContext.getUser() ?: return false
+        if (segments[1] != user.username) {
+            return false
+        }
+        val collectionType: SyncCollectionType
+        val collectionId: Int
+        when (segments[2]) {
+            "cals" -> {
+                collectionType = SyncCollectionType.CALENDAR
+                collectionId = calendarService.getCalendarId(segments[3]) ?: return false
+            }
+            "addressBooks" -> {
+                collectionType = SyncCollectionType.ADDRESS_BOOK
+                collectionId = user.id
+            }
+            else -> return false
+        }
+        val collectionHref = if (request.requestURI.endsWith("/")) request.requestURI else "${request.requestURI}/"
+        val syncToken: Int
+        val members: List<Member>
+        if (syncRequest.syncToken.isEmpty()) {
+            // Initial synchronization: all members. The sync token is read first, so no later changes are missed.
+            syncToken = syncJournalService.getSyncToken(collectionType, collectionId)
+            val names = if (collectionType == SyncCollectionType.CALENDAR) {
+                calendarService.getCalendarEventNames(collectionId)
+            } else {
+                personalAddressDao.favoriteAddressIdList.map { Contact.getName(it) }
+            }
+            members = names.map { Member(collectionHref + UriUtils.encodePathSegment(it, StandardCharsets.UTF_8), false) }
+        } else {
+            val changes = parseSyncToken(syncRequest.syncToken)?.let {
+                syncJournalService.getChanges(collectionType, collectionId, it)
+            }
+            if (changes == null) {
+                log.info("Unknown or outdated sync token '${syncRequest.syncToken}' of $collectionType #$collectionId, client has to do a full synchronization.")
+                writeInvalidSyncToken(response)
+                return true
+            }
+            syncToken = changes.syncToken
+            val favorites = if (collectionType == SyncCollectionType.ADDRESS_BOOK) {
+                personalAddressDao.favoriteAddressIdList.toSet()
+            } else {
+                null
+            }
+            members = changes.changes.mapNotNull { entry ->
+                val name = if (collectionType == SyncCollectionType.CALENDAR) {
+                    entry.objectUid?.let { CalendarService.getMeetingName(it) } ?: return@mapNotNull null
+                } else {
+                    Contact.getName(entry.objectId!!)
+                }
+                val removed = entry.operation == OperationType.DELETE
+                        || (favorites != null && !favorites.contains(entry.objectId)) // Address isn't (anymore) a favorite of the user.
+                Member(collectionHref + UriUtils.encodePathSegment(name, StandardCharsets.UTF_8), removed)
+            }
+        }
+        log.info("Sync-collection REPORT of $collectionType #$collectionId: ${members.size} changed members since sync token '${syncRequest.syncToken}'.")
+        writeMultiStatus(response, members, syncRequest.props, syncToken)
+        return true
+    }
+
+    private fun writeMultiStatus(response: HttpServletResponse, members: List<Member>, props: List<QName>, syncToken: Int) {
+        val sb = StringBuilder()
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+                .append("<d:multistatus xmlns:d=\"DAV:\">\n")
+        members.forEach { member ->
+            sb.append("  <d:response>\n")
+                    .append("    <d:href>").append(escapeXml(member.href)).append("</d:href>\n")
+            if (member.removed) {
+                sb.append("    <d:status>HTTP/1.1 404 Not Found</d:status>\n")
+            } else if (props.isNotEmpty()) {
+                // The properties of changed members aren't delivered, the clients have to fetch the members anyway.
+                sb.append("    <d:propstat>\n      <d:prop>")
+                props.forEachIndexed { index, prop ->
+                    sb.append("<x$index:${prop.localPart} xmlns:x$index=\"${escapeXml(prop.namespaceURI)}\"/>")
+                }
+                sb.append("</d:prop>\n      <d:status>HTTP/1.1 404 Not Found</d:status>\n    </d:propstat>\n")
+            } else {
+                sb.append("    <d:status>HTTP/1.1 200 OK</d:status>\n")
+            }
+            sb.append("  </d:response>\n")
+        }
+        sb.append("  <d:sync-token>").append(SYNC_TOKEN_PREFIX).append(syncToken).append("</d:sync-token>\n")
+                .append("</d:multistatus>\n")
+        write(response, 207, sb.toString())
+    }
+
+    /**
+     * The sync token is unknown or the journal entries since the sync token are already pruned (RFC 6578, 3.2).
+     */
+    private fun writeInvalidSyncToken(response: HttpServletResponse) {
+        write(response, HttpServletResponse.SC_FORBIDDEN,
+                "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<d:error xmlns:d=\"DAV:\"><d:valid-sync-token/></d:error>\n")
+    }
+
+    private fun write(response: HttpServletResponse, status: Int, xml: String) {
+        val bytes = xml.toByteArray(StandardCharsets.UTF_8)
+        response.status = status
+        response.contentType = "application/xml; charset=utf-8"
+        response.setContentLength(bytes.size)
+        response.outputStream.write(bytes)
+        response.outputStream.flush()
+    }
+
+    companion object {
+        const val SYNC_TOKEN_PREFIX = "http://www.projectforge.org/ns/sync/"
+
+        private const val DAV_NAMESPACE = "DAV:"
+
+        /**
+         * @return The sync-collection request or null, if the given body isn't a sync-collection REPORT.
+         */
+        fun parseRequest(body: ByteArray): SyncCollectionRequest? {
+            if (body.isEmpty()) {
+                return null
+            }
+            val root = try {
+                val factory = DocumentBuilderFactory.newInstance()
+                factory.isNamespaceAware = true
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true)
+                factory.newDocumentBuilder().parse(ByteArrayInputStream(body)).documentElement
+            } catch (ex: Exception) {
+                log.warn("Can't parse body of REPORT request: ${ex.message}")
+                return null
+            }
+            if (root.namespaceURI != DAV_NAMESPACE || root.localName != "sync-collection") {
+                return null
+            }
+            val syncToken = getChildElements(root, "sync-token").firstOrNull()?.textContent?.trim() ?: ""
+            val props = getChildElements(root, "prop").flatMap { prop ->
+                val children = prop.childNodes
+                (0 until children.length).map { children.item(it) }
+                        .filterIsInstance<Element>()
+                        .map { QName(it.namespaceURI ?: "", it.localName) }
+            }
+            return SyncCollectionRequest(syncToken, props)
+        }
+
+        /**
+         * @return The journal's sync token of the given sync token URI or null, if the sync token isn't one of ours.
+         */
+        fun parseSyncToken(syncToken: String): Int? {
+            if (!syncToken.startsWith(SYNC_TOKEN_PREFIX)) {
+                return null
+            }
+            return syncToken.removePrefix(SYNC_TOKEN_PREFIX).toIntOrNull()
+        }
+
+        private fun getChildElements(parent: Element, localName: String): List<Element> {
+            val children = parent.childNodes
+            return (0 until children.length).map { children.item(it) }
+                    .filterIsInstance<Element>()
+                    .filter { it.namespaceURI == DAV_NAMESPACE && it.localName == localName }
+        }
+
+        private fun escapeXml(str: String): String {
+            return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;")
+        }
+    }
+}
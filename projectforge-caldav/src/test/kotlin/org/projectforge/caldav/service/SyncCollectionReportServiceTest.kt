@@ -0,0 +1,60 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.caldav.service
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class SyncCollectionReportServiceTest {
+    @Test
+    fun parseRequestTest() {
+        var request = SyncCollectionReportService.parseRequest("""<?xml version="1.0" encoding="utf-8" ?>
+            <d:sync-collection xmlns:d="DAV:" xmlns:c="urn:ietf:params:xml:ns:caldav">
+              <d:sync-token>http://www.projectforge.org/ns/sync/42</d:sync-token>
+              <d:sync-level>1</d:sync-level>
+              <d:prop>
+                <d:getetag/>
+                <c:calendar-data/>
+              </d:prop>
+            </d:sync-collection>""".toByteArray())!!
+        Assertions.assertEquals("http://www.projectforge.org/ns/sync/42", request.syncToken)
+        Assertions.assertEquals(42, SyncCollectionReportService.parseSyncToken(request.syncToken))
+        Assertions.assertEquals(2, request.props.size)
+        Assertions.assertEquals("getetag", request.props[0].localPart)
+        Assertions.assertEquals("urn:ietf:params:xml:ns:caldav", request.props[1].namespaceURI)
+
+        // Initial synchronization:
+        request = SyncCollectionReportService.parseRequest("""<sync-collection xmlns="DAV:"><sync-token/><sync-level>1</sync-level></sync-collection>""".toByteArray())!!
+        Assertions.assertEquals("", request.syncToken)
+        Assertions.assertTrue(request.props.isEmpty())
+
+        // Other reports are left to Milton:
+        Assertions.assertNull(SyncCollectionReportService.parseRequest("""<c:calendar-multiget xmlns:d="DAV:" xmlns:c="urn:ietf:params:xml:ns:caldav"><d:prop><d:getetag/></d:prop></c:calendar-multiget>""".toByteArray()))
+        Assertions.assertNull(SyncCollectionReportService.parseRequest("no xml".toByteArray()))
+        Assertions.assertNull(SyncCollectionReportService.parseRequest(ByteArray(0)))
+
+        Assertions.assertNull(SyncCollectionReportService.parseSyncToken("http://other.org/sync/42"))
+        Assertions.assertNull(SyncCollectionReportService.parseSyncToken("http://www.projectforge.org/ns/sync/abc"))
+    }
+}
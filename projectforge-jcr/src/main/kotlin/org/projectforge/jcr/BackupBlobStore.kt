@@ -0,0 +1,200 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.jcr
+
+import mu.KotlinLogging
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.DigestInputStream
+import java.security.MessageDigest
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Content addressed store of file contents (blobs) used by incremental backups: each content is stored only once
+ * as file named by its SHA-256 checksum (deduplication), so backup archives only contain the meta data and the checksums
+ * of the files.
+ *
+ * The manifest maps the files of the repository (path of the file node) to the size, last update and checksum of their
+ * content. Files with unchanged size and last update aren't read again by following backups.
+ */
+class BackupBlobStore(val directory: File) {
+    class ManifestEntry() {
+        constructor(size: Int?, lastUpdate: Long?, checksum: String) : this() {
+            this.size = size
+            this.lastUpdate = lastUpdate
+            this.checksum = checksum
+        }
+
+        var size: Int? = null
+        var lastUpdate: Long? = null
+        var checksum: String? = null
+    }
+
+    class Manifest {
+        var entries: MutableMap<String, ManifestEntry> = mutableMapOf()
+    }
+
+    private val manifestFile = File(directory, MANIFEST_FILENAME)
+
+    private var manifest: Manifest? = null
+
+    fun contains(checksum: String): Boolean {
+        return getFile(checksum).exists()
+    }
+
+    /**
+     * Stores the given content, if not yet stored.
+     * @return The checksum of the content.
+     */
+    fun store(content: InputStream): String {
+        directory.mkdirs()
+        val tmpFile = File.createTempFile("blob-", ".tmp", directory)
+        try {
+            val checksum = FileOutputStream(tmpFile).use { out ->
+                copyAndDigest(content, out)
+            }
+            val file = getFile(checksum)
+            if (file.exists()) {
+                log.debug { "Blob $checksum already stored." }
+            } else {
+                file.parentFile.mkdirs()
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE)
+            }
+            return checksum
+        } finally {
+            tmpFile.delete()
+        }
+    }
+
+    /**
+     * @return The content of the blob. Please verify the checksum while reading (see [createDigest]).
+     */
+    fun open(checksum: String): InputStream {
+        val file = getFile(checksum)
+        if (!file.exists()) {
+            throw FileNotFoundException("Blob '$checksum' not found in '${directory.absolutePath}'.")
+        }
+        return BufferedInputStream(FileInputStream(file))
+    }
+
+    /**
+     * @return The checksum of the file node, if size and last update are unchanged since the last backup and the blob
+     * is still stored.
+     */
+    fun getChecksum(fileObject: FileObject, fileNodePath: String): String? {
+        val entry = getManifest().entries[fileNodePath] ?: return null
+        if (entry.size != fileObject.size || entry.lastUpdate != fileObject.lastUpdate?.time) {
+            return null
+        }
+        val checksum = entry.checksum ?: return null
+        return if (contains(checksum)) checksum else null
+    }
+
+    fun putChecksum(fileObject: FileObject, fileNodePath: String, checksum: String) {
+        getManifest().entries[fileNodePath] = ManifestEntry(fileObject.size, fileObject.lastUpdate?.time, checksum)
+    }
+
+    /**
+     * Writes the manifest. Only the given file node paths are kept (entries of deleted files are removed).
+     */
+    fun saveManifest(fileNodePaths: Set<String>) {
+        val manifest = getManifest()
+        manifest.entries.keys.retainAll(fileNodePaths)
+        directory.mkdirs()
+        val tmpFile = File(directory, "$MANIFEST_FILENAME.tmp")
+        FileOutputStream(tmpFile).use { out ->
+            val generator = PFJcrUtils.createJsonGenerator(out)
+            PFJcrUtils.writeJson(generator, manifest)
+            generator.close()
+        }
+        Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    /**
+     * Deletes all blobs not contained in the given set of checksums (e. g. blobs of files deleted before the oldest
+     * existing backup).
+     * @return Number of deleted blobs.
+     */
+    fun purge(usedChecksums: Set<String>): Int {
+        var counter = 0
+        directory.listFiles()?.filter { it.isDirectory }?.forEach { dir ->
+            dir.listFiles()?.forEach { file ->
+                if (!usedChecksums.contains(file.name)) {
+                    if (file.delete()) {
+                        ++counter
+                    }
+                }
+            }
+        }
+        log.info { "$counter unused blobs deleted in '${directory.absolutePath}'." }
+        return counter
+    }
+
+    private fun getManifest(): Manifest {
+        manifest?.let { return it }
+        val result = if (manifestFile.exists()) {
+            try {
+                FileInputStream(manifestFile).use {
+                    PFJcrUtils.readJson(PFJcrUtils.createJsonParser(it), Manifest::class.java)
+                }
+            } catch (ex: Exception) {
+                log.error("Can't read manifest '${manifestFile.absolutePath}', all files will be read: ${ex.message}", ex)
+                Manifest()
+            }
+        } else {
+            Manifest()
+        }
+        manifest = result
+        return result
+    }
+
+    private fun getFile(checksum: String): File {
+        return File(directory, "${checksum.substring(0, 2)}${File.separator}$checksum")
+    }
+
+    companion object {
+        const val MANIFEST_FILENAME = "manifest.json"
+
+        fun createDigest(): MessageDigest {
+            return MessageDigest.getInstance("SHA-256")
+        }
+
+        fun toHex(digest: MessageDigest): String {
+            return digest.digest().joinToString("") { String.format("%02x", it) }
+        }
+
+        /**
+         * Copies the input to the output.
+         * @return The SHA-256 checksum of the content.
+         */
+        fun copyAndDigest(input: InputStream, out: OutputStream): String {
+            val digest = createDigest()
+            DigestInputStream(input, digest).copyTo(out)
+            return toHex(digest)
+        }
+    }
+}
@@ -60,6 +60,7 @@ class FileObject() {
         lastUpdateByUser = node.getProperty(RepoService.PROPERTY_LAST_UPDATE_BY_USER)?.string
         fileId = node.name
         size = node.getProperty(RepoService.PROPERTY_FILESIZE)?.long?.toInt()
+        checksum = if (node.hasProperty(RepoService.PROPERTY_CHECKSUM)) node.getProperty(RepoService.PROPERTY_CHECKSUM).string else null
         if (log.isDebugEnabled) {
             log.debug { "Restoring: ${PFJcrUtils.toJson(this)}" }
         }
@@ -119,6 +120,13 @@ class FileObject() {
 
     var lastUpdateByUser: String? = null
 
+    /**
+     * SHA-256 checksum of the content (hex). Files are referencing their content (blob) by this checksum. In backups
+     * (files.json) used for verifying restored content. Null for files stored before content-addressed blobs were
+     * introduced.
+     */
+    var checksum: String? = null
+
     /**
      * The location (as path) of the file in the content repository. The location is relative to main node.
      *
@@ -47,13 +47,18 @@ class JCRBackupJob {
         val backupFile = RepoBackupService.backupFilename
         val backupDirectory = repoBackupService.backupDirectory!!
         val zipFile = File(backupDirectory, backupFile)
+        val blobStore = if (repoBackupService.incrementalBackup) repoBackupService.blobStore else null
         ZipOutputStream(FileOutputStream(zipFile)).use {
-            repoBackupService.backupAsZipArchive(zipFile.name, it)
+            repoBackupService.backupAsZipArchive(zipFile.name, it, blobStore = blobStore)
         }
         log.info("JCR backup job finished after ${(System.currentTimeMillis() - time) / 1000} seconds.")
         BackupFilesPurging.purgeDirectory(
                 backupDirectory,
                 filePrefix = RepoBackupService.backupFilenamePrefix
         )
+        if (blobStore != null) {
+            // Contents of files deleted before the oldest remaining backup aren't needed anymore:
+            repoBackupService.purgeBlobStore()
+        }
     }
 }
@@ -3,11 +3,15 @@ package org.projectforge.jcr
 import com.fasterxml.jackson.annotation.JsonAutoDetect
 import com.fasterxml.jackson.annotation.JsonInclude
 import com.fasterxml.jackson.annotation.PropertyAccessor
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.SerializationFeature
 import com.fasterxml.jackson.databind.module.SimpleModule
 import mu.KotlinLogging
 import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
 import java.math.BigDecimal
 import java.math.RoundingMode
 import java.text.NumberFormat
@@ -37,6 +41,33 @@ object PFJcrUtils {
         return mapper.readValue(json, classOfT)
     }
 
+    /**
+     * Creates a generator for streaming json to the given stream. The stream isn't closed by the generator (e. g. for
+     * writing zip entries).
+     */
+    fun createJsonGenerator(out: OutputStream): JsonGenerator {
+        return mapper.factory.createGenerator(out).configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+    }
+
+    /**
+     * Creates a parser for streaming json from the given stream. The stream isn't closed by the parser (e. g. for
+     * reading zip entries).
+     */
+    fun createJsonParser(input: InputStream): JsonParser {
+        return mapper.factory.createParser(input).configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false)
+    }
+
+    fun writeJson(generator: JsonGenerator, obj: Any) {
+        mapper.writeValue(generator, obj)
+    }
+
+    /**
+     * Reads the current json value (object or array) of the parser.
+     */
+    fun <T> readJson(parser: JsonParser, classOfT: Class<T>): T {
+        return mapper.readValue(parser, classOfT)
+    }
+
     fun convertToDate(isoString: String?): Date? {
         if (isoString.isNullOrBlank()) {
             return null
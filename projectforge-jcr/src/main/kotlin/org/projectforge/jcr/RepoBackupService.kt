@@ -23,13 +23,18 @@
 
 package org.projectforge.jcr
 
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
 import mu.KotlinLogging
 import org.apache.commons.io.FilenameUtils
+import org.apache.commons.io.input.CloseShieldInputStream
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Service
-import java.io.ByteArrayInputStream
 import java.io.File
+import java.io.FileInputStream
+import java.io.InputStream
 import java.nio.charset.StandardCharsets
 import java.time.ZoneOffset
 import java.time.ZonedDateTime
@@ -37,7 +42,6 @@ import java.time.format.DateTimeFormatter
 import java.util.zip.ZipEntry
 import java.util.zip.ZipInputStream
 import java.util.zip.ZipOutputStream
-import javax.jcr.Binary
 import javax.jcr.Node
 
 
@@ -78,16 +82,35 @@ open class RepoBackupService {
     internal lateinit var repoService: RepoService
 
     /**
+     * If true, the nightly backups are incremental (see [blobStore]).
+     */
+    @Value("\${projectforge.jcr.backupIncremental:false}")
+    var incrementalBackup: Boolean = false
+
+    /**
+     * The store of file contents of incremental backups (sub directory of [backupDirectory]).
+     */
+    val blobStore: BackupBlobStore?
+        get() = backupDirectory?.let { BackupBlobStore(File(it, BLOBS_DIRECTORY)) }
+
+    /**
+     * The meta data (nodes and properties) are written as json stream. The contents of the files are streamed into the
+     * archive (full backup) or into the given blob store (incremental backup). For incremental backups only new or
+     * changed contents are read and stored, the archive contains only the meta data and the checksums (files.json)
+     * of the file contents.
+     *
      * @param absPath If not given, [RepoService.mainNodeName] is used.
+     * @param blobStore If given, an incremental backup is created.
      */
-    open fun backupAsZipArchive(archiveName: String, zipOut: ZipOutputStream, absPath: String = "/${repoService.mainNodeName}") {
+    @JvmOverloads
+    open fun backupAsZipArchive(archiveName: String, zipOut: ZipOutputStream, absPath: String = "/${repoService.mainNodeName}", blobStore: BackupBlobStore? = null) {
         val archivNameWithoutExtension = if (archiveName.contains('.')) {
             archiveName.substring(0, archiveName.indexOf('.'))
         } else {
             archiveName
         }
         return runInSession { session ->
-            log.info { "Creating backup of document view and binaries of path '$absPath' as '$archiveName'..." }
+            log.info { "Creating ${if (blobStore != null) "incremental " else ""}backup of document view and binaries of path '$absPath' as '$archiveName'..." }
 
             // Write README.TXT
             zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, "README.TXT"))
@@ -97,22 +120,36 @@ open class RepoBackupService {
             val topNode = repoService.getNode(session, absPath, null)
             // Using repository.json if repository.xml doesn't work.
             zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, "repository.json"))
-            zipOut.write(PFJcrUtils.toJson(NodeInfo(topNode, recursive = true)).toByteArray(StandardCharsets.UTF_8))
-            writeToZip(topNode, archivNameWithoutExtension, zipOut)
+            PFJcrUtils.createJsonGenerator(zipOut).use { generator ->
+                writeNodeInfo(generator, topNode)
+            }
+            val stats = BackupStats(blobStore)
+            writeToZip(topNode, archivNameWithoutExtension, zipOut, stats)
+            blobStore?.saveManifest(stats.fileNodePaths)
+            log.info { "Backup of ${stats.fileNodePaths.size} files done (${stats.newBlobs} new or changed contents, ${PFJcrUtils.formatBytes(stats.bytesRead)} read)." }
         }
     }
 
     /**
+     * The meta data (repository.json) and the file contents are streamed into the repository. The checksums of the
+     * restored contents are verified with the checksums of the backup archive (files.json, if given).
+     *
      * @param absPath If not given, [RepoService.mainNodeName] is used (only used for creation of repository.xml).
+     * @param blobStore The blob store of incremental backups. If not given, [blobStore] is used for restoring
+     * incremental backups.
+     * @throws IllegalStateException if any checksum doesn't match or any content couldn't be restored.
      */
     @JvmOverloads
-    open fun restoreBackupFromZipArchive(zipIn: ZipInputStream, securityConfirmation: String, absPath: String = "/${repoService.mainNodeName}") {
+    open fun restoreBackupFromZipArchive(zipIn: ZipInputStream, securityConfirmation: String, absPath: String = "/${repoService.mainNodeName}", blobStore: BackupBlobStore? = null) {
         if (securityConfirmation != RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED) {
             throw IllegalArgumentException("You must use the correct security confirmation if you know what you're doing. The repo content may be lost after restoring!")
         }
-        return runInSession { session ->
+        val errors = runInSession { session ->
             log.info { "Restoring backup of document view and binaries of path '$absPath'..." }
             var nodesRestored = false
+            // Checksums of restored contents by path of file node:
+            val restoredChecksums = mutableMapOf<String, String>()
+            val errorList = mutableListOf<String>()
             var zipEntry = zipIn.nextEntry
             while (zipEntry != null) {
                 if (zipEntry.isDirectory) {
@@ -123,9 +160,11 @@ open class RepoBackupService {
                 if (!nodesRestored) {
                     if (fileName == "repository.json") {
                         log.info { "Restoring nodes from '${zipEntry.name}'..." }
-                        val json = zipIn.readBytes().toString(StandardCharsets.UTF_8)
-                        val topNode = PFJcrUtils.fromJson(json, NodeInfo::class.java)
-                        restoreNode(session.rootNode, topNode)
+                        PFJcrUtils.createJsonParser(zipIn).use { parser ->
+                            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                                restoreNode(session, session.rootNode, parser, NodeCounter())
+                            }
+                        }
                         session.save()
                         nodesRestored = true
                         zipEntry = zipIn.nextEntry
@@ -133,6 +172,14 @@ open class RepoBackupService {
                     }
                 }
                 val filesPath = getFilesPath(zipEntry.name)
+                if (fileName == "files.json" && !filesPath.isNullOrBlank()) {
+                    val fileList = PFJcrUtils.createJsonParser(zipIn).use { parser ->
+                        PFJcrUtils.readJson(parser, FileObjectList::class.java)
+                    }
+                    verifyOrRestoreFiles(session, filesPath, fileList, restoredChecksums, blobStore ?: this.blobStore, errorList)
+                    zipEntry = zipIn.nextEntry
+                    continue
+                }
                 if (!filesPath.isNullOrBlank() && !IGNORE_FILES.contains(fileName)) {
                     if (log.isDebugEnabled) {
                         log.debug { "Restoring file content (binary) '${zipEntry.name}', $fileName..." }
@@ -154,28 +201,128 @@ open class RepoBackupService {
                     }
                     val fileObject = FileObject(fileNode)
                     log.info { "Restoring file '${zipEntry.name}': $fileObject" }
-                    val content = zipIn.readBytes()
-                    val inputStream = ByteArrayInputStream(content)
-                    val bin: Binary = session.valueFactory.createBinary(inputStream)
-                    fileNode.setProperty(RepoService.PROPERTY_FILECONTENT, session.valueFactory.createValue(bin))
-                    session.save()
+                    restoredChecksums[fileNode.path] = restoreContent(session, fileNode, CloseShieldInputStream(zipIn))
                 }
                 zipEntry = zipIn.nextEntry
             }
             zipIn.closeEntry()
+            // Restored file nodes may already have referenced blobs before, so their counters are recomputed:
+            repoService.rebuildBlobRefCounts(session)
+            errorList
+        }
+        if (errors.isNotEmpty()) {
+            throw IllegalStateException("Restore finished with ${errors.size} errors (see log files): ${errors.joinToString(", ")}")
+        }
+    }
+
+    /**
+     * Verifies the checksums of the restored contents of the given files node. Contents not yet restored (incremental
+     * backups) are restored from the blob store.
+     */
+    private fun verifyOrRestoreFiles(session: SessionWrapper, filesPath: String, fileList: FileObjectList,
+                                     restoredChecksums: Map<String, String>, blobStore: BackupBlobStore?, errors: MutableList<String>) {
+        val filesNode = repoService.getNodeOrNull(session, filesPath) ?: return
+        fileList.files?.forEach { fileObject ->
+            val expectedChecksum = fileObject.checksum ?: return@forEach // Backup without checksums.
+            val fileNode = repoService.findFile(filesNode, fileObject.fileId) ?: return@forEach
+            var checksum = restoredChecksums[fileNode.path]
+            if (checksum == null) {
+                if (blobStore == null || !blobStore.contains(expectedChecksum)) {
+                    log.error { "Content of file '${fileNode.path}' not found in archive or blob store: $fileObject" }
+                    errors.add(fileNode.path)
+                    return@forEach
+                }
+                log.info { "Restoring file '${fileNode.path}' from blob store: $fileObject" }
+                checksum = blobStore.open(expectedChecksum).use { restoreContent(session, fileNode, it) }
+            }
+            if (checksum != expectedChecksum) {
+                log.error { "Checksum of restored file '${fileNode.path}' doesn't match: $checksum (expected: $expectedChecksum): $fileObject" }
+                errors.add(fileNode.path)
+            }
+        }
+    }
+
+    /**
+     * Streams the given content into the blob store of the repository, referenced by the given file node.
+     * @return The checksum of the restored content.
+     */
+    private fun restoreContent(session: SessionWrapper, fileNode: Node, content: InputStream): String {
+        return repoService.storeContent(session, fileNode, content)
+    }
+
+    /**
+     * Writes the node and all descendants (same format as [NodeInfo]).
+     */
+    private fun writeNodeInfo(generator: JsonGenerator, node: Node) {
+        generator.writeStartObject()
+        generator.writeStringField("name", node.name)
+        node.properties?.let {
+            if (it.hasNext()) {
+                generator.writeArrayFieldStart("properties")
+                while (it.hasNext()) {
+                    PFJcrUtils.writeJson(generator, PropertyInfo(it.nextProperty()))
+                }
+                generator.writeEndArray()
+            }
+        }
+        node.nodes?.let {
+            generator.writeArrayFieldStart("children")
+            while (it.hasNext()) {
+                val child = it.nextNode()
+                if (child.name == RepoService.NODENAME_BLOBS) {
+                    continue // Blobs are backed up as contents of the files referencing them.
+                }
+                writeNodeInfo(generator, child)
+            }
+            generator.writeEndArray()
         }
+        generator.writeEndObject()
     }
 
-    private fun restoreNode(parentNode: Node, nodeInfo: NodeInfo) {
-        val node = repoService.ensureNode(parentNode, nodeInfo.name)
-        nodeInfo.properties?.forEach {
-            it.addToNode(node)
+    /**
+     * Restores the node of the current json object (format of [NodeInfo]) and all descendants. The session is saved
+     * periodically for limiting the transient changes.
+     */
+    private fun restoreNode(session: SessionWrapper, parentNode: Node, parser: JsonParser, counter: NodeCounter) {
+        var node: Node? = null
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val fieldName = parser.currentName
+            parser.nextToken()
+            when (fieldName) {
+                "name" -> node = repoService.ensureNode(parentNode, parser.text)
+                "properties" -> {
+                    val currentNode = requireNotNull(node) { "Name of node expected before properties in repository.json." }
+                    PFJcrUtils.readJson(parser, Array<PropertyInfo>::class.java).forEach {
+                        if (parentNode.name == RepoService.NODENAME_FILES && it.name == RepoService.PROPERTY_CHECKSUM) {
+                            return@forEach // Reference to blob is restored with the content (including reference counting).
+                        }
+                        it.addToNode(currentNode)
+                    }
+                }
+                "children" -> {
+                    val currentNode = requireNotNull(node) { "Name of node expected before children in repository.json." }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        restoreNode(session, currentNode, parser, counter)
+                    }
+                }
+                else -> parser.skipChildren()
+            }
         }
-        nodeInfo.children?.forEach {
-            restoreNode(node, it)
+        if (++counter.value % SAVE_INTERVAL == 0) {
+            session.save()
         }
     }
 
+    private class NodeCounter {
+        var value = 0
+    }
+
+    private class BackupStats(val blobStore: BackupBlobStore?) {
+        val fileNodePaths = mutableSetOf<String>()
+        var newBlobs = 0
+        var bytesRead = 0L
+    }
+
     private fun getFilesPath(fileName: String): String? {
         if (!fileName.contains(RepoService.NODENAME_FILES)) {
             return null
@@ -188,22 +335,18 @@ open class RepoBackupService {
         return "$archiveName/${RepoService.NODENAME_FILES}"
     }
 
-    private fun writeToZip(node: Node, archiveName: String, zipOut: ZipOutputStream) {
+    private fun writeToZip(node: Node, archiveName: String, zipOut: ZipOutputStream, stats: BackupStats) {
         val fileList = repoService.getFileInfos(node)
         if (!fileList.isNullOrEmpty()) {
             fileList.forEach {
                 repoService.findFile(node, it.fileId, null)?.let { fileNode ->
-                    val fileObject = FileObject(fileNode)
-                    val content = repoService.getFileContent(fileNode, fileObject)
-                    if (content != null) {
-                        val fileName = PFJcrUtils.createSafeFilename(it)
-                        zipOut.putNextEntry(createZipEntry(archiveName, node.path, fileName))
-                        zipOut.write(content)
-                    }
+                    it.checksum = backupContent(fileNode, it, archiveName, zipOut, stats)
                 }
             }
             zipOut.putNextEntry(createZipEntry(archiveName, node.path, "files.json"))
-            zipOut.write(PFJcrUtils.toJson(FileObjectList(fileList)).toByteArray(StandardCharsets.UTF_8))
+            PFJcrUtils.createJsonGenerator(zipOut).use { generator ->
+                PFJcrUtils.writeJson(generator, FileObjectList(fileList))
+            }
             zipOut.putNextEntry(createZipEntry(archiveName, node.path, "files.txt"))
             val fileListAsString = fileList.joinToString(separator = "\n") { "${PFJcrUtils.createSafeFilename(it)} ${PFJcrUtils.formatBytes(it.size)} ${it.fileName}" }
             zipOut.write(fileListAsString.toByteArray(StandardCharsets.UTF_8))
@@ -213,11 +356,70 @@ open class RepoBackupService {
         zipOut.write(PFJcrUtils.toJson(nodeInfo).toByteArray(StandardCharsets.UTF_8))
         node.nodes?.let {
             while (it.hasNext()) {
-                writeToZip(it.nextNode(), archiveName, zipOut)
+                val child = it.nextNode()
+                if (child.name != RepoService.NODENAME_BLOBS) {
+                    writeToZip(child, archiveName, zipOut, stats)
+                }
             }
         }
     }
 
+    /**
+     * Streams the content of the file node into the zip archive (full backup) or into the blob store (incremental
+     * backup, only if changed).
+     * @return The checksum of the content or null, if the file node has no content.
+     */
+    private fun backupContent(fileNode: Node, fileObject: FileObject, archiveName: String, zipOut: ZipOutputStream, stats: BackupStats): String? {
+        val blobStore = stats.blobStore
+        stats.fileNodePaths.add(fileNode.path)
+        blobStore?.getChecksum(fileObject, fileNode.path)?.let {
+            // Content unchanged since last backup.
+            return it
+        }
+        val binary = repoService.getContentProperty(fileNode)?.binary ?: return null
+        try {
+            stats.bytesRead += binary.size
+            return binary.stream.use { content ->
+                if (blobStore != null) {
+                    val checksum = blobStore.store(content)
+                    blobStore.putChecksum(fileObject, fileNode.path, checksum)
+                    ++stats.newBlobs
+                    checksum
+                } else {
+                    zipOut.putNextEntry(createZipEntry(archiveName, fileNode.parent.path, PFJcrUtils.createSafeFilename(fileObject)))
+                    BackupBlobStore.copyAndDigest(content, zipOut)
+                }
+            }
+        } finally {
+            binary.dispose()
+        }
+    }
+
+    /**
+     * Deletes all blobs of the blob store not referenced by any incremental backup archive in the backup directory.
+     */
+    fun purgeBlobStore() {
+        val backupDir = backupDirectory ?: return
+        val store = blobStore ?: return
+        val usedChecksums = mutableSetOf<String>()
+        backupDir.listFiles()?.filter { it.name.startsWith(backupFilenamePrefix) && it.name.endsWith(".zip") }?.forEach { file ->
+            ZipInputStream(FileInputStream(file)).use { zipIn ->
+                var zipEntry = zipIn.nextEntry
+                while (zipEntry != null) {
+                    if (FilenameUtils.getName(zipEntry.name) == "files.json") {
+                        PFJcrUtils.createJsonParser(zipIn).use { parser ->
+                            PFJcrUtils.readJson(parser, FileObjectList::class.java).files?.forEach {
+                                it.checksum?.let { checksum -> usedChecksums.add(checksum) }
+                            }
+                        }
+                    }
+                    zipEntry = zipIn.nextEntry
+                }
+            }
+        }
+        store.purge(usedChecksums)
+    }
+
     private fun createZipEntry(archiveName: String, vararg path: String?): ZipEntry {
         return ZipEntry("$archiveName/${path.joinToString(separator = "/") { it ?: "" }}")
     }
@@ -245,5 +447,15 @@ open class RepoBackupService {
             }
 
         val backupFilenamePrefix = "projectforge-jcr-backup-"
+
+        /**
+         * Sub directory of the backup directory containing the contents of files of incremental backups.
+         */
+        const val BLOBS_DIRECTORY = "projectforge-jcr-backup-blobs"
+
+        /**
+         * Number of restored nodes after which the session is saved.
+         */
+        private const val SAVE_INTERVAL = 1000
     }
 }
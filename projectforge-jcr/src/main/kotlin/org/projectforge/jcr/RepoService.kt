@@ -36,11 +36,13 @@ import java.io.ByteArrayInputStream
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.security.DigestInputStream
 import java.security.SecureRandom
 import java.util.*
 import javax.annotation.PreDestroy
 import javax.jcr.Binary
 import javax.jcr.Node
+import javax.jcr.Property
 import javax.jcr.Repository
 import javax.jcr.Session
 
@@ -133,19 +135,142 @@ open class RepoService {
             fileObject.createdByUser = user
             fileObject.lastUpdate = fileObject.created
             fileObject.lastUpdateByUser = user
-            var bin: Binary? = null
-            try {
-                bin = session.valueFactory.createBinary(content)
-                fileNode.setProperty(PROPERTY_FILECONTENT, bin)
-                fileObject.size = bin?.size?.toInt()
-            } finally {
-                bin?.dispose()
-            }
             fileObject.copyTo(fileNode)
+            fileObject.checksum = storeContent(session, fileNode, content)
+            fileObject.size = fileNode.getProperty(PROPERTY_FILESIZE).long.toInt()
+        }
+    }
+
+    /**
+     * Streams the content into the content-addressed blob store of the repository (node [NODENAME_BLOBS]) and lets the
+     * file node reference it by its checksum (SHA-256). Identical contents are stored only once, the blob nodes count
+     * their references. A blob previously referenced by the file node is released. The session is saved.
+     * @return The checksum of the content.
+     */
+    internal fun storeContent(session: SessionWrapper, fileNode: Node, content: InputStream): String {
+        val digest = BackupBlobStore.createDigest()
+        // The content is streamed into the repository outside the lock (the binary isn't referenced until saved).
+        val bin = session.valueFactory.createBinary(DigestInputStream(content, digest))
+        try {
+            val checksum = BackupBlobStore.toHex(digest)
+            synchronized(blobLock) {
+                val oldChecksum = getChecksum(fileNode)
+                if (oldChecksum != checksum) {
+                    val blobNode = getNode(session, null, getBlobPath(checksum), true)
+                    if (!blobNode.hasProperty(PROPERTY_FILECONTENT)) {
+                        blobNode.setProperty(PROPERTY_FILECONTENT, bin)
+                        blobNode.setProperty(PROPERTY_FILESIZE, bin.size)
+                    } else {
+                        log.info { "Content of file '${fileNode.path}' already stored, referencing blob '${blobNode.path}'." }
+                    }
+                    blobNode.setProperty(PROPERTY_REF_COUNT, getRefCount(blobNode) + 1)
+                    oldChecksum?.let { releaseBlob(session, it) }
+                    fileNode.setProperty(PROPERTY_CHECKSUM, checksum)
+                }
+                if (fileNode.hasProperty(PROPERTY_FILECONTENT)) {
+                    // Content was stored in the file node itself (before blobs were introduced).
+                    fileNode.getProperty(PROPERTY_FILECONTENT).remove()
+                }
+                fileNode.setProperty(PROPERTY_FILESIZE, bin.size)
+                session.save()
+            }
+            return checksum
+        } finally {
+            bin.dispose()
+        }
+    }
+
+    /**
+     * Decrements the reference counter of the blob and removes the blob, if it isn't referenced anymore.
+     * Must be called inside synchronized(blobLock), the session isn't saved.
+     */
+    private fun releaseBlob(session: SessionWrapper, checksum: String) {
+        val blobNode = getNodeOrNull(session, null, getBlobPath(checksum), false)
+        if (blobNode == null) {
+            log.warn { "Can't release blob '$checksum', blob doesn't exist." }
+            return
+        }
+        val refCount = getRefCount(blobNode) - 1
+        if (refCount <= 0) {
+            log.info { "Removing blob '${blobNode.path}', no more references." }
+            blobNode.remove()
+        } else {
+            blobNode.setProperty(PROPERTY_REF_COUNT, refCount)
+        }
+    }
+
+    /**
+     * Sets the reference counters of all blobs to the number of file nodes referencing them and removes unreferenced
+     * blobs. Used after restoring backups: restored file nodes may already have referenced blobs of the repository
+     * before. The session is saved.
+     */
+    internal fun rebuildBlobRefCounts(session: SessionWrapper) {
+        synchronized(blobLock) {
+            val refCounts = mutableMapOf<String, Long>()
+            countBlobReferences(getNode(session, null, null), refCounts)
+            val blobsNode = getNodeOrNull(session, null, NODENAME_BLOBS, false) ?: return
+            var removed = 0
+            blobsNode.nodes?.let { prefixNodes ->
+                while (prefixNodes.hasNext()) {
+                    val blobNodes = prefixNodes.nextNode().nodes ?: continue
+                    while (blobNodes.hasNext()) {
+                        val blobNode = blobNodes.nextNode()
+                        val refCount = refCounts[blobNode.name] ?: 0L
+                        if (refCount == 0L) {
+                            blobNode.remove()
+                            ++removed
+                        } else if (refCount != getRefCount(blobNode)) {
+                            log.info { "Correcting reference counter of blob '${blobNode.path}': ${getRefCount(blobNode)} -> $refCount." }
+                            blobNode.setProperty(PROPERTY_REF_COUNT, refCount)
+                        }
+                    }
+                }
+            }
+            log.info { "Reference counters of ${refCounts.size} blobs rebuilt, $removed unreferenced blobs removed." }
             session.save()
         }
     }
 
+    private fun countBlobReferences(node: Node, refCounts: MutableMap<String, Long>) {
+        node.nodes?.let {
+            while (it.hasNext()) {
+                val child = it.nextNode()
+                if (child.name == NODENAME_BLOBS) {
+                    continue
+                }
+                if (node.name == NODENAME_FILES) {
+                    getChecksum(child)?.let { checksum -> refCounts[checksum] = (refCounts[checksum] ?: 0L) + 1 }
+                }
+                countBlobReferences(child, refCounts)
+            }
+        }
+    }
+
+    private fun getRefCount(blobNode: Node): Long {
+        return if (blobNode.hasProperty(PROPERTY_REF_COUNT)) blobNode.getProperty(PROPERTY_REF_COUNT).long else 0L
+    }
+
+    private fun getChecksum(fileNode: Node): String? {
+        return if (fileNode.hasProperty(PROPERTY_CHECKSUM)) fileNode.getProperty(PROPERTY_CHECKSUM).string else null
+    }
+
+    /**
+     * @return The content property of the file node: the content of the referenced blob or, for files stored before
+     * blobs were introduced, the content of the file node itself.
+     */
+    internal fun getContentProperty(fileNode: Node): Property? {
+        val checksum = getChecksum(fileNode)
+        if (checksum != null) {
+            val blobPath = getAbsolutePath(getBlobPath(checksum))
+            if (!fileNode.session.nodeExists(blobPath)) {
+                log.error { "Blob '$blobPath' referenced by file '${fileNode.path}' doesn't exist." }
+                return null
+            }
+            return fileNode.session.getNode(blobPath).getProperty(PROPERTY_FILECONTENT)
+        }
+        return if (fileNode.hasProperty(PROPERTY_FILECONTENT)) fileNode.getProperty(PROPERTY_FILECONTENT) else null
+    }
+
     open fun deleteFile(fileObject: FileObject): Boolean {
         return runInSession { session ->
             val node = getNode(session, fileObject.parentNodePath, fileObject.relPath, false)
@@ -161,8 +286,11 @@ open class RepoService {
                 } else {
                     log.info { "Deleting file: $fileObject" }
                     fileObject.copyFrom(fileNode)
-                    fileNode.remove()
-                    session.save()
+                    synchronized(blobLock) {
+                        fileObject.checksum?.let { releaseBlob(session, it) }
+                        fileNode.remove()
+                        session.save()
+                    }
                     true
                 }
             }
@@ -329,7 +457,7 @@ open class RepoService {
         log.info { "Reading file from repository '${node.path}': '${fileObject.fileName}'..." }
         var binary: Binary? = null
         try {
-            binary = node.getProperty(PROPERTY_FILECONTENT)?.binary
+            binary = getContentProperty(node)?.binary
             return binary?.stream
         } finally {
             binary?.dispose()
@@ -361,6 +489,14 @@ open class RepoService {
         return "/$mainNodeName/$path"
     }
 
+    /**
+     * Blobs are distributed over 256 sub nodes (first two hex digits of the checksum).
+     * @return path relative to main node.
+     */
+    private fun getBlobPath(checksum: String): String {
+        return "$NODENAME_BLOBS/${checksum.substring(0, 2)}/$checksum"
+    }
+
     private fun getAbsolutePath(parentNode: Node, relPath: String?): String? {
         val parentPath = parentNode.path
         return getAbsolutePath(parentPath, relPath)
@@ -392,6 +528,11 @@ open class RepoService {
             return sb.toString()
         }
 
+    /**
+     * Serializes the modifications of reference counters of blobs.
+     */
+    private val blobLock = Any()
+
     private fun <T> runInSession(method: (sessionWrapper: SessionWrapper) -> T): T {
         val session = SessionWrapper(this)
         try {
@@ -445,6 +586,10 @@ open class RepoService {
 
     companion object {
         internal const val NODENAME_FILES = "__FILES"
+        /**
+         * Top level node of the content-addressed blobs (contents of all files).
+         */
+        internal const val NODENAME_BLOBS = "__BLOBS"
         internal const val PROPERTY_FILENAME = "fileName"
         internal const val PROPERTY_FILESIZE = "size"
         internal const val PROPERTY_FILECONTENT = "content"
@@ -453,6 +598,8 @@ open class RepoService {
         internal const val PROPERTY_FILEDESC = "fileDescription"
         internal const val PROPERTY_LAST_UPDATE = "lastUpdate"
         internal const val PROPERTY_LAST_UPDATE_BY_USER = "lastUpdateByUser"
+        internal const val PROPERTY_CHECKSUM = "checksum"
+        internal const val PROPERTY_REF_COUNT = "refCount"
         private const val PROPERTY_RANDOM_ID_LENGTH = 20
         private val ALPHA_CHARSET: Array<Char> = ('a'..'z').toList().toTypedArray()
 
@@ -23,6 +23,7 @@
 
 package org.projectforge.jcr
 
+import java.io.File
 import java.io.FileInputStream
 import java.util.zip.ZipInputStream
 
@@ -30,15 +31,17 @@ class RestoreMain {
     companion object {
         @JvmStatic
         fun main(args: Array<String>) {
-            if (args.size != 2) {
+            if (args.size < 2 || args.size > 3) {
                 BackupMain.printHelp()
                 return
             }
             val repositoryLocation = BackupMain.checkRepoDir(args[0]) ?: return
             val backupFile = BackupMain.checkBackupFileReadable(args[1]) ?: return
+            // Blob store of incremental backups (default: sub directory of backup's directory).
+            val blobStore = BackupBlobStore(if (args.size == 3) File(args[2]) else File(backupFile.absoluteFile.parentFile, RepoBackupService.BLOBS_DIRECTORY))
             val repoBackupService = BackupMain.prepare(repositoryLocation)
             ZipInputStream(FileInputStream(backupFile)).use {
-                repoBackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED)
+                repoBackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED, blobStore = blobStore)
             }
             BackupMain.shutdown(repoBackupService)
         }
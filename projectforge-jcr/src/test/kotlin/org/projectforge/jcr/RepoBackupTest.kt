@@ -87,11 +87,100 @@ class RepoBackupTest {
         for (idx in logoFile.indices) {
             Assertions.assertEquals(logoFile[idx], fileObject.content!![idx])
         }
+        val checksum = fileObject.checksum!!
+        Assertions.assertEquals(1L, getRefCount(repo2Service, checksum))
+
+        // Restoring the same backup again mustn't increment the reference counters of the already referenced blobs:
+        ZipInputStream(FileInputStream(zipFile)).use {
+            repo2BackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED)
+        }
+        Assertions.assertEquals(1L, getRefCount(repo2Service, checksum))
 
         repoService.shutdown()
         repo2Service.shutdown()
     }
 
+    private fun getRefCount(repo: RepoService, checksum: String): Long? {
+        val session = SessionWrapper(repo)
+        try {
+            val blobNode = repo.getNodeOrNull(session, null, "${RepoService.NODENAME_BLOBS}/${checksum.substring(0, 2)}/$checksum", false)
+            return blobNode?.getProperty(RepoService.PROPERTY_REF_COUNT)?.long
+        } finally {
+            session.logout()
+        }
+    }
+
+    @Test
+    fun incrementalBackupTest() {
+        val repoService = RepoService()
+        val repoBackupService = RepoBackupService()
+        repoService.init(TestUtils.deleteAndCreateTestFile("testIncrementalBackupRepo"))
+        repoBackupService.repoService = repoService
+        val blobStore = BackupBlobStore(TestUtils.deleteAndCreateTestFile("testIncrementalBackupBlobs"))
+
+        repoService.ensureNode(null, "world/asia")
+        var fileObject = createFileObject("/world/asia", "japan", "pom.xml")
+        repoService.storeFile(fileObject)
+        fileObject = createFileObject("/world/asia", "china", "pom.xml") // Same content (deduplicated).
+        repoService.storeFile(fileObject)
+        fileObject = createFileObject("/world/asia", "japan", "test", "files", "logo.png")
+        repoService.storeFile(fileObject)
+        val logoFile = fileObject.content!!
+
+        val zipFile1 = TestUtils.deleteAndCreateTestFile("incrementalBackup1.zip")
+        ZipOutputStream(FileOutputStream(zipFile1)).use {
+            repoBackupService.backupAsZipArchive(zipFile1.name, it, blobStore = blobStore)
+        }
+        Assertions.assertEquals(2, countBlobs(blobStore), "pom.xml and logo.png expected (pom.xml only once).")
+
+        // Unchanged files aren't stored again:
+        val zipFile2 = TestUtils.deleteAndCreateTestFile("incrementalBackup2.zip")
+        ZipOutputStream(FileOutputStream(zipFile2)).use {
+            repoBackupService.backupAsZipArchive(zipFile2.name, it, blobStore = blobStore)
+        }
+        Assertions.assertEquals(2, countBlobs(blobStore))
+        ZipInputStream(FileInputStream(zipFile2)).use {
+            var zipEntry = it.nextEntry
+            while (zipEntry != null) {
+                Assertions.assertFalse(zipEntry.name.endsWith(".png") || zipEntry.name.endsWith(".xml"), "Contents of files expected in blob store, not in archive: ${zipEntry.name}")
+                zipEntry = it.nextEntry
+            }
+        }
+
+        val repo2Service = RepoService()
+        val repo2BackupService = RepoBackupService()
+        repo2Service.init(TestUtils.deleteAndCreateTestFile("testIncrementalBackupRepo2"))
+        repo2BackupService.repoService = repo2Service
+        ZipInputStream(FileInputStream(zipFile2)).use {
+            repo2BackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED, blobStore = blobStore)
+        }
+        fileObject = FileObject("/world/asia", "japan", fileName = "logo.png")
+        repo2Service.retrieveFile(fileObject)
+        Assertions.assertArrayEquals(logoFile, fileObject.content)
+
+        // Corrupted blob must be detected:
+        blobStore.directory.listFiles()!!.filter { it.isDirectory }.flatMap { it.listFiles()!!.toList() }.forEach {
+            it.appendBytes(byteArrayOf(42))
+        }
+        val repo3Service = RepoService()
+        val repo3BackupService = RepoBackupService()
+        repo3Service.init(TestUtils.deleteAndCreateTestFile("testIncrementalBackupRepo3"))
+        repo3BackupService.repoService = repo3Service
+        ZipInputStream(FileInputStream(zipFile2)).use {
+            Assertions.assertThrows(IllegalStateException::class.java) {
+                repo3BackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED, blobStore = blobStore)
+            }
+        }
+
+        repoService.shutdown()
+        repo2Service.shutdown()
+        repo3Service.shutdown()
+    }
+
+    private fun countBlobs(blobStore: BackupBlobStore): Int {
+        return blobStore.directory.listFiles()!!.filter { it.isDirectory }.sumBy { it.listFiles()!!.size }
+    }
+
     private fun createFileObject(parentNodePath: String, relPath: String, vararg path: String): FileObject {
         val fileObject = FileObject()
         fileObject.fileName = path.last()
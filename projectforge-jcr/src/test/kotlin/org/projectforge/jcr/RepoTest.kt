@@ -99,6 +99,41 @@ class RepoTest {
         repoService.shutdown()
     }
 
+    @Test
+    fun blobTest() {
+        repoService.ensureNode(null, "world/america")
+        val content = File("pom.xml").readBytes()
+        val file1 = FileObject("/world/america", "usa", fileName = "pom.xml")
+        file1.content = content
+        repoService.storeFile(file1)
+        val file2 = FileObject("/world/america", "canada", fileName = "pom2.xml")
+        file2.content = content
+        repoService.storeFile(file2)
+        Assertions.assertNotNull(file1.checksum)
+        Assertions.assertEquals(file1.checksum, file2.checksum, "Same content, same checksum.")
+        Assertions.assertEquals(2L, getRefCount(file1.checksum!!), "Content stored only once, referenced twice.")
+
+        Assertions.assertTrue(repoService.deleteFile(file1))
+        Assertions.assertEquals(1L, getRefCount(file1.checksum!!))
+        val file = FileObject("/world/america", "canada", fileName = "pom2.xml")
+        Assertions.assertTrue(repoService.retrieveFile(file))
+        Assertions.assertArrayEquals(content, file.content)
+        Assertions.assertEquals(file2.checksum, file.checksum)
+
+        Assertions.assertTrue(repoService.deleteFile(file2))
+        Assertions.assertNull(getRefCount(file1.checksum!!), "Blob should be removed after last reference was deleted.")
+    }
+
+    private fun getRefCount(checksum: String): Long? {
+        val session = SessionWrapper(repoService)
+        try {
+            val blobNode = repoService.getNodeOrNull(session, null, "${RepoService.NODENAME_BLOBS}/${checksum.substring(0, 2)}/$checksum", false)
+            return blobNode?.getProperty(RepoService.PROPERTY_REF_COUNT)?.long
+        } finally {
+            session.logout()
+        }
+    }
+
     private fun checkFile(expected: FileObject, id: String?, fileName: String?, repo: RepoService = repoService) {
         val file = FileObject()
         file.fileId = id
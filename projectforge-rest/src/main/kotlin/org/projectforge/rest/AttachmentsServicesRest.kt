@@ -37,14 +37,22 @@ import org.projectforge.rest.dto.PostData
 import org.projectforge.ui.ResponseAction
 import org.projectforge.ui.TargetType
 import org.projectforge.ui.UIAttachmentList
+import org.apache.commons.io.IOUtils
+import org.apache.commons.io.input.CountingInputStream
+import org.projectforge.jcr.FileObject
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.core.io.InputStreamResource
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
+import org.springframework.util.unit.DataSize
 import org.springframework.web.bind.annotation.*
 import org.springframework.web.multipart.MultipartFile
+import java.io.IOException
+import java.io.InputStream
 import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
 
 private val log = KotlinLogging.logger {}
 
@@ -57,6 +65,9 @@ class AttachmentsServicesRest : AbstractDynamicPageRest() {
     @Autowired
     private lateinit var attachmentsService: AttachmentsService
 
+    @Value("\${spring.servlet.multipart.max-file-size}")
+    private lateinit var maxFileSize: DataSize
+
     class AttachmentData(var category: String,
                          var id: Int,
                          var fileId: String,
@@ -131,24 +142,124 @@ class AttachmentsServicesRest : AbstractDynamicPageRest() {
                         .addVariable("data", ResponseData(list)))
     }
 
+    /**
+     * Streams the content of the attachment. Supports conditional requests (If-None-Match with the checksum of the content
+     * as ETag) and single byte ranges (Range, If-Range) for resuming interrupted downloads.
+     */
     @GetMapping("download/{category}/{id}")
     fun download(@PathVariable("category", required = true) category: String,
                  @PathVariable("id", required = true) id: Int,
                  @RequestParam("fileId", required = true) fileId: String,
-                 @RequestParam("listId") listId: String?)
-            : ResponseEntity<InputStreamResource>? {
+                 @RequestParam("listId") listId: String?,
+                 request: HttpServletRequest,
+                 response: HttpServletResponse) {
         log.info { "User tries to download attachment: ${paramsToString(category, id, fileId, listId)}." }
         val pagesRest = getPagesRest(category, listId)
 
         val result = attachmentsService.getAttachmentInputStream(pagesRest.jcrPath!!, id, fileId, pagesRest.attachmentsAccessChecker)
                 ?: throw TechnicalException("File to download not accessible for user or not found: ${paramsToString(category, id, fileId, listId)}.")
 
-        val filename = result.first.fileName ?: "file"
-        val inputStream = result.second
+        val fileObject = result.first
+        result.second.use { inputStream ->
+            val eTag = getETag(fileObject)
+            response.setHeader(HttpHeaders.ETAG, eTag)
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes")
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+                response.status = HttpServletResponse.SC_NOT_MODIFIED
+                return
+            }
+            val size = fileObject.size?.toLong()
+            val range = if (size != null) getRange(request, eTag, size) else null
+            if (range == INVALID_RANGE) {
+                response.status = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */$size")
+                return
+            }
+            val filename = fileObject.fileName ?: "file"
+            response.contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=\"${filename.replace('"', '_')}\"")
+            if (range != null) {
+                val length = range.last - range.first + 1
+                response.status = HttpServletResponse.SC_PARTIAL_CONTENT
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes ${range.first}-${range.last}/$size")
+                response.setContentLengthLong(length)
+                IOUtils.copyLarge(inputStream, response.outputStream, range.first, length)
+            } else {
+                size?.let { response.setContentLengthLong(it) }
+                IOUtils.copyLarge(inputStream, response.outputStream)
+            }
+        }
+    }
+
+    /**
+     * The ETag is the checksum of the content. For files without checksum (stored before content-addressed blobs were
+     * introduced) a weak ETag is built of id, last update and size.
+     */
+    internal fun getETag(fileObject: FileObject): String {
+        fileObject.checksum?.let { return "\"$it\"" }
+        return "W/\"${fileObject.fileId}-${fileObject.lastUpdate?.time}-${fileObject.size}\""
+    }
+
+    /**
+     * Only single byte ranges are supported, multiple ranges are ignored (the whole content is sent). Ranges are also
+     * ignored, if the content was modified in the meantime (If-Range doesn't match).
+     * @return The requested range, null if no (supported) range is requested or [INVALID_RANGE] if the range isn't
+     * satisfiable.
+     */
+    internal fun getRange(request: HttpServletRequest, eTag: String, size: Long): LongRange? {
+        val rangeHeader = request.getHeader(HttpHeaders.RANGE) ?: return null
+        val ifRange = request.getHeader(HttpHeaders.IF_RANGE)
+        if (ifRange != null && ifRange != eTag) {
+            return null
+        }
+        return parseRange(rangeHeader, size)
+    }
+
+    /**
+     * Upload service for large files: the content is streamed (request body, chunked transfer encoding supported) directly
+     * into the repository instead of buffering the file of a multipart request.
+     * @param id Object id where the uploaded file should belong to.
+     * @param filename The name of the file.
+     * @param listId Usable for handling different upload areas for one page.
+     */
+    @PostMapping("upload-stream/{category}/{id}/{listId}")
+    fun uploadAttachmentStream(@PathVariable("category", required = true) category: String,
+                               @PathVariable("id", required = true) id: Int,
+                               @PathVariable("listId") listId: String?,
+                               @RequestParam("filename", required = true) filename: String,
+                               request: HttpServletRequest)
+            : ResponseEntity<ResponseAction>? {
+        val pagesRest = getPagesRest(category, listId)
+        log.info { "User tries to upload attachment (stream): id='$id', listId='$listId', filename='$filename', page='${this::class.java.name}'." }
+        val maxBytes = maxFileSize.toBytes()
+        if (request.contentLengthLong > maxBytes) {
+            log.warn { "Upload of '$filename' refused, size ${request.contentLengthLong} exceeds maximum of $maxBytes bytes." }
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build()
+        }
+        val obj = getDataObject(pagesRest, id) // Check data object availability.
+        attachmentsService.addAttachment(
+                pagesRest.jcrPath!!,
+                fileName = filename,
+                inputStream = MaxSizeInputStream(request.inputStream, maxBytes),
+                baseDao = pagesRest.baseDao,
+                obj = obj,
+                accessChecker = pagesRest.attachmentsAccessChecker)
+        val list = attachmentsService.getAttachments(pagesRest.jcrPath!!, id, pagesRest.attachmentsAccessChecker, listId)
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=\"${filename.replace('"', '_')}\"")
-                .body(InputStreamResource(inputStream))
+                .body(ResponseAction(targetType = TargetType.UPDATE, merge = true)
+                        .addVariable("data", ResponseData(list)))
+    }
+
+    /**
+     * Content length is unknown for chunked requests, so the size is checked while streaming.
+     */
+    private class MaxSizeInputStream(inputStream: InputStream, private val maxBytes: Long) : CountingInputStream(inputStream) {
+        override fun afterRead(n: Int) {
+            super.afterRead(n)
+            if (byteCount > maxBytes) {
+                throw IOException("Maximum file size of $maxBytes bytes exceeded.")
+            }
+        }
     }
 
     internal fun getPagesRest(category: String, listId: String?): AbstractPagesRest<out ExtendedBaseDO<Int>, *, out BaseDao<*>> {
@@ -169,7 +280,60 @@ class AttachmentsServicesRest : AbstractDynamicPageRest() {
 
     }
 
+    private fun matches(ifNoneMatch: String?, eTag: String): Boolean {
+        ifNoneMatch ?: return false
+        return ifNoneMatch.trim() == "*" || ifNoneMatch.split(',').any { it.trim() == eTag }
+    }
+
     private fun paramsToString(category: String, id: Any, fileId: String, listId: String?): String {
         return "category='$category', id='$id', fileId='$fileId', listId='$listId'"
     }
+
+    companion object {
+        internal val INVALID_RANGE = LongRange.EMPTY
+
+        /**
+         * Parses a single byte range (bytes=first-last, bytes=first- or bytes=-suffixLength).
+         * @return The range, null if the header isn't a single valid byte range or [INVALID_RANGE] if the range isn't
+         * satisfiable.
+         */
+        internal fun parseRange(rangeHeader: String, size: Long): LongRange? {
+            val value = rangeHeader.trim()
+            if (!value.startsWith("bytes=") || value.contains(',')) {
+                return null
+            }
+            val pos = value.indexOf('-')
+            if (pos < 0) {
+                return null
+            }
+            val firstString = value.substring(6, pos).trim()
+            val lastString = value.substring(pos + 1).trim()
+            val first: Long
+            val last: Long
+            if (firstString.isEmpty()) {
+                val suffixLength = lastString.toLongOrNull() ?: return null
+                if (suffixLength <= 0) {
+                    return INVALID_RANGE
+                }
+                first = maxOf(size - suffixLength, 0L)
+                last = size - 1
+            } else {
+                first = firstString.toLongOrNull() ?: return null
+                if (lastString.isEmpty()) {
+                    last = size - 1
+                } else {
+                    val lastPos = lastString.toLongOrNull() ?: return null
+                    if (lastPos < first) {
+                        // Syntactically invalid byte range (RFC 7233, 2.1), so the header is ignored.
+                        return null
+                    }
+                    last = minOf(lastPos, size - 1)
+                }
+            }
+            if (first >= size) {
+                return INVALID_RANGE
+            }
+            return first..last
+        }
+    }
 }
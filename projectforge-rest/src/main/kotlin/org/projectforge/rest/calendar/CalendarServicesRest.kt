@@ -56,9 +56,15 @@ import javax.ws.rs.BadRequestException
 class CalendarServicesRest {
     enum class ACCESS { OWNER, FULL, READ, MINIMAL, NONE }
 
+    /**
+     * @param degraded If true, the events of some providers are missing (failed or not finished in time).
+     * @param degradedSources The names of the providers whose events are missing.
+     */
     internal class CalendarData(val date: LocalDate,
                                 @Suppress("unused") val events: List<BigCalendarEvent>,
-                                @Suppress("unused") val specialDays: Map<LocalDate, HolidayAndWeekendProvider.SpecialDayInfo>)
+                                @Suppress("unused") val specialDays: Map<LocalDate, HolidayAndWeekendProvider.SpecialDayInfo>,
+                                @Suppress("unused") val degraded: Boolean = false,
+                                @Suppress("unused") val degradedSources: List<String>? = null)
 
     private class DateTimeRange(var start: PFDateTime,
                                 var end: PFDateTime? = null)
@@ -90,6 +96,9 @@ class CalendarServicesRest {
     @Autowired
     private lateinit var userPrefService: UserPrefService
 
+    @Autowired
+    private lateinit var eventsProviderExecutor: EventsProviderExecutor
+
     @PostMapping("events")
     fun getEvents(@RequestBody filter: CalendarRestFilter): ResponseEntity<Any> {
         filter.afterDeserialization()
@@ -170,7 +179,6 @@ class CalendarServicesRest {
     }
 
     private fun buildEvents(filter: CalendarRestFilter): CalendarData { //startParam: PFDateTime? = null, endParam: PFDateTime? = null, viewParam: CalendarViewType? = null): Response {
-        val events = mutableListOf<BigCalendarEvent>()
         val view = CalendarView.from(filter.view)
         // Workaround for BigCalendar, if the browser's timezone differs from user's timezone in ThreadLocalUserContext.
         // ZoneInfo.getTimeZone returns null, if timeZone not known. TimeZone.getTimeZone returns GMT on failure!
@@ -181,7 +189,8 @@ class CalendarServicesRest {
         val range = DateTimeRange(PFDateTime.fromOrNow(filter.start, timeZone = timeZone),
                 PFDateTime.fromOrNull(filter.end, timeZone = timeZone))
         adjustRange(range, view)
-        timesheetsProvider.addTimesheetEvents(range.start, range.end!!, filter.timesheetUserId, events)
+        val start = range.start
+        val end = range.end!!
         var visibleCalendarIds = filter.activeCalendarIds
         if (filter.useVisibilityState == true && !visibleCalendarIds.isNullOrEmpty()) {
             val currentFilter = CalendarFilterServicesRest.getCurrentFilter(userPrefService)
@@ -196,24 +205,41 @@ class CalendarServicesRest {
 
         }
         val visibleTeamCalendarIds = visibleCalendarIds?.filter { it >= 0 } // calendars with id < 0 are pseudo calendars (such as birthdays etc.)
+        val styleMap = calendarFilterServicesRest.getStyleMap()
+        // All providers are running in parallel:
+        val tasks = mutableListOf<EventsProviderExecutor.Task>()
+        tasks.add(EventsProviderExecutor.Task("timesheets") { events ->
+            timesheetsProvider.addTimesheetEvents(start, end, filter.timesheetUserId, events)
+        })
         if (useNewCalendarEvents) {
-            calendarEventsProvider.addEvents(range.start, range.end!!, events, visibleTeamCalendarIds, calendarFilterServicesRest.getStyleMap())
+            tasks.add(EventsProviderExecutor.Task("calendarEvents") { events ->
+                calendarEventsProvider.addEvents(start, end, events, visibleTeamCalendarIds, styleMap)
+            })
         } else {
-            teamCalEventsProvider.addEvents(range.start, range.end!!, events, visibleTeamCalendarIds, calendarFilterServicesRest.getStyleMap())
+            tasks.add(EventsProviderExecutor.Task("teamEvents") { events ->
+                teamCalEventsProvider.addEvents(start, end, events, visibleTeamCalendarIds, styleMap)
+            })
         }
 
         val showFavoritesBirthdays = visibleCalendarIds?.contains(TeamCalendar.BIRTHDAYS_FAVS_CAL_ID) ?: false
         val showAllBirthdays = visibleCalendarIds?.contains(TeamCalendar.BIRTHDAYS_ALL_CAL_ID) ?: false
         if (showAllBirthdays || showFavoritesBirthdays) {
-            BirthdaysProvider.addEvents(addressDao, range.start, range.end!!, events, calendarFilterServicesRest.getStyleMap(),
-                    showFavoritesBirthdays,
-                    showAllBirthdays,
-                    !accessChecker.isLoggedInUserMemberOfGroup(
-                            ProjectForgeGroup.FINANCE_GROUP,
-                            ProjectForgeGroup.HR_GROUP,
-                            ProjectForgeGroup.ORGA_TEAM))
+            val dataProtection = !accessChecker.isLoggedInUserMemberOfGroup(
+                    ProjectForgeGroup.FINANCE_GROUP,
+                    ProjectForgeGroup.HR_GROUP,
+                    ProjectForgeGroup.ORGA_TEAM)
+            tasks.add(EventsProviderExecutor.Task("birthdays") { events ->
+                BirthdaysProvider.addEvents(addressDao, start, end, events, styleMap,
+                        showFavoritesBirthdays,
+                        showAllBirthdays,
+                        dataProtection)
+            })
         }
-        vacationProvider.addEvents(range.start, range.end!!, events, filter.vacationGroupIds, filter.vacationUserIds)
+        tasks.add(EventsProviderExecutor.Task("vacations") { events ->
+            vacationProvider.addEvents(start, end, events, filter.vacationGroupIds, filter.vacationUserIds)
+        })
+        val result = eventsProviderExecutor.run(tasks)
+        val events = result.events
 
         val specialDays = HolidayAndWeekendProvider.getSpecialDayInfos(range.start, range.end!!)
         if (view != CalendarView.MONTH) {
@@ -237,7 +263,7 @@ class CalendarServicesRest {
         events.forEach {
             it.key = "e-${counter++}"
         }
-        return CalendarData(range.start.localDate, events, specialDays)
+        return CalendarData(range.start.localDate, events, specialDays, result.degraded, result.degradedSources)
     }
 
     /**
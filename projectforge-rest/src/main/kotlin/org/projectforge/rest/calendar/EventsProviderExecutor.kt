@@ -0,0 +1,190 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.rest.calendar
+
+import mu.KotlinLogging
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicLong
+import javax.annotation.PreDestroy
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Runs the events providers (timesheets, team events, birthdays, vacations etc.) of a calendar request in parallel.
+ * Each provider runs as task of its own with the user context of the calling thread. The results of providers not
+ * finished in their time budget are dropped and the result is marked as degraded, so a slow provider doesn't block
+ * the whole calendar view. The time budget of a provider starts when it starts running, not while it's waiting for a
+ * free thread. The durations of the providers are recorded in [stats].
+ */
+@Component
+class EventsProviderExecutor {
+    /**
+     * @param source Name of the provider (used for logging and statistics).
+     * @param collect Adds the events of the provider to the given list.
+     */
+    class Task(val source: String, val collect: (events: MutableList<BigCalendarEvent>) -> Unit)
+
+    /**
+     * @param events The events of all providers (in the order of the given tasks).
+     * @param degradedSources The providers which failed or didn't finish in time (their events are missing).
+     */
+    class Result(val events: MutableList<BigCalendarEvent>, val degradedSources: List<String>) {
+        val degraded: Boolean
+            get() = degradedSources.isNotEmpty()
+    }
+
+    /**
+     * Statistics of one provider.
+     */
+    class Stats {
+        val calls = AtomicLong()
+        val totalMillis = AtomicLong()
+        val maxMillis = AtomicLong()
+        val timeouts = AtomicLong()
+        val errors = AtomicLong()
+
+        val averageMillis: Long
+            get() = calls.get().let { if (it > 0) totalMillis.get() / it else 0 }
+
+        internal fun record(millis: Long) {
+            calls.incrementAndGet()
+            totalMillis.addAndGet(millis)
+            maxMillis.accumulateAndGet(millis) { a, b -> maxOf(a, b) }
+        }
+
+        override fun toString(): String {
+            return "calls=${calls.get()}, avg=${averageMillis}ms, max=${maxMillis.get()}ms, timeouts=${timeouts.get()}, errors=${errors.get()}"
+        }
+    }
+
+    /**
+     * Time budget of each provider in milliseconds.
+     */
+    @Value("\${calendar.eventsProviderTimeout:5000}")
+    var timeoutMillis: Long = 5000
+
+    private val statsMap = ConcurrentHashMap<String, Stats>()
+
+    /**
+     * Statistics of all providers (by source name).
+     */
+    val stats: Map<String, Stats>
+        get() = statsMap
+
+    /**
+     * Threads are started on demand up to [POOL_SIZE] and stopped after one minute of idleness.
+     */
+    private val executor = ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+        val thread = Thread(runnable, "CalendarEventsProvider")
+        thread.isDaemon = true
+        thread
+    }.also { it.allowCoreThreadTimeOut(true) }
+
+    fun run(tasks: List<Task>): Result {
+        val userContext = ThreadLocalUserContext.getUserContext()
+        val start = System.currentTimeMillis()
+        // Start times of the tasks (0, if still queued):
+        val startTimes = tasks.map { AtomicLong() }
+        val futures = tasks.mapIndexed { index, task ->
+            executor.submit(Callable<MutableList<BigCalendarEvent>> {
+                ThreadLocalUserContext.setUserContext(userContext)
+                val begin = System.currentTimeMillis()
+                startTimes[index].set(begin)
+                try {
+                    val events = mutableListOf<BigCalendarEvent>()
+                    task.collect(events)
+                    events
+                } finally {
+                    getStats(task.source).record(System.currentTimeMillis() - begin)
+                    ThreadLocalUserContext.clear()
+                }
+            })
+        }
+        val events = mutableListOf<BigCalendarEvent>()
+        val degradedSources = mutableListOf<String>()
+        tasks.forEachIndexed { index, task ->
+            val future = futures[index]
+            try {
+                events.addAll(getResult(future, startTimes[index]))
+            } catch (ex: TimeoutException) {
+                future.cancel(true)
+                getStats(task.source).timeouts.incrementAndGet()
+                log.warn { "Events provider '${task.source}' didn't finish in ${timeoutMillis}ms, its events are skipped." }
+                degradedSources.add(task.source)
+            } catch (ex: ExecutionException) {
+                getStats(task.source).errors.incrementAndGet()
+                log.error("Error while getting events of provider '${task.source}': ${ex.cause?.message}", ex.cause)
+                degradedSources.add(task.source)
+            } catch (ex: InterruptedException) {
+                futures.forEach { it.cancel(true) }
+                Thread.currentThread().interrupt()
+                degradedSources.addAll(tasks.subList(index, tasks.size).map { it.source })
+                return Result(events, degradedSources)
+            }
+        }
+        log.debug { "Events of ${tasks.size} providers collected in ${System.currentTimeMillis() - start}ms." }
+        return Result(events, degradedSources)
+    }
+
+    /**
+     * Waits for the result of the provider until its time budget (starting with the start of the provider) is exceeded.
+     * A provider still queued gets at most one time budget for starting.
+     * @throws TimeoutException if the provider didn't start or finish in time.
+     */
+    private fun getResult(future: Future<MutableList<BigCalendarEvent>>, startTime: AtomicLong): MutableList<BigCalendarEvent> {
+        var startMillis = startTime.get()
+        if (startMillis == 0L) {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS)
+            } catch (ex: TimeoutException) {
+                startMillis = startTime.get()
+                if (startMillis == 0L) {
+                    throw ex // Not started (no free thread).
+                }
+            }
+        }
+        val remaining = maxOf(startMillis + timeoutMillis - System.currentTimeMillis(), 0L)
+        return future.get(remaining, TimeUnit.MILLISECONDS)
+    }
+
+    private fun getStats(source: String): Stats {
+        return statsMap.computeIfAbsent(source) { Stats() }
+    }
+
+    @PreDestroy
+    fun shutdown() {
+        executor.shutdownNow()
+    }
+
+    companion object {
+        /**
+         * Maximum number of providers running in parallel (of all requests).
+         */
+        const val POOL_SIZE = 20
+    }
+}
@@ -410,6 +410,25 @@ constructor(private val baseDaoClazz: Class<B>,
         return resultSet
     }
 
+    /**
+     * Get one page of the items matching the given filter (keyset pagination). For getting the next page, the
+     * [ResultSet.cursor] of the previous page should be given as cursor.
+     * @param pageSize The size of the page (1 up to [QUERY_FILTER_MAX_ROWS], [MagicFilter.maxRows] at default).
+     */
+    @RequestMapping("${RestPaths.LIST}/page")
+    fun getListPage(@RequestBody filter: MagicFilter,
+                    @RequestParam("pageSize", required = false) pageSize: Int?,
+                    @RequestParam("cursor", required = false) cursor: String?): ResultSet<*> {
+        filter.autoWildcardSearch = true
+        fixMagicFilterFromClient(filter)
+        val size = (pageSize ?: filter.maxRows).coerceIn(1, QUERY_FILTER_MAX_ROWS)
+        val page = getPage(this, baseDao, filter, size, cursor)
+        val resultSet = processResultSetBeforeExport(page)
+        resultSet.cursor = page.cursor
+        resultSet.hasMore = page.hasMore
+        return resultSet
+    }
+
     private fun getFilterFavorites(): Favorites<MagicFilter> {
         var favorites: Favorites<MagicFilter>? = null
         try {
@@ -53,6 +53,29 @@ fun <O : ExtendedBaseDO<Int>, DTO : Any, B : BaseDao<O>>
     return resultSet
 }
 
+/**
+ * Gets one page of the list (keyset pagination), so huge lists may be served without loading all entries at once.
+ * @param cursor The cursor of the previous page or null for the first page.
+ */
+fun <O : ExtendedBaseDO<Int>, DTO : Any, B : BaseDao<O>>
+        getPage(pagesRest: AbstractPagesRest<O, DTO, B>,
+                baseDao: BaseDao<O>,
+                magicFilter: MagicFilter,
+                pageSize: Int,
+                cursor: String?)
+        : ResultSet<O> {
+    magicFilter.sortAndLimitMaxRowsWhileSelect = true
+    val queryFilter = QueryFilter()
+    val customResultFilters = pagesRest.preProcessMagicFilter(queryFilter, magicFilter)
+    MagicFilterProcessor.doIt(baseDao.doClass, magicFilter, queryFilter)
+    pagesRest.postProcessMagicFilter(queryFilter, magicFilter)
+    val page = baseDao.getPage(queryFilter, customResultFilters, pageSize, cursor)
+    val resultSet = ResultSet(pagesRest.filterList(page.list.toMutableList(), magicFilter))
+    resultSet.cursor = page.cursor
+    resultSet.hasMore = page.hasMore
+    return resultSet
+}
+
 fun <O : ExtendedBaseDO<Int>, DTO : Any, B : BaseDao<O>>
         saveOrUpdate(request: HttpServletRequest,
                      baseDao: BaseDao<O>,
@@ -30,4 +30,14 @@ class ResultSet<O : Any>(var resultSet: List<O>,
                          var totalSize: Int? = null,
                          var highlightRowId: Int? = null) {
     val size = resultSet.size
+
+    /**
+     * For pages only ([AbstractPagesRest.getListPage]): opaque cursor to be given for the next page.
+     */
+    var cursor: String? = null
+
+    /**
+     * For pages only ([AbstractPagesRest.getListPage]): true, if more entries may be available.
+     */
+    var hasMore: Boolean? = null
 }
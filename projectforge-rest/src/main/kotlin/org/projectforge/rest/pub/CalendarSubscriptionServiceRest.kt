@@ -28,7 +28,6 @@ import net.fortuna.ical4j.model.Date
 import net.fortuna.ical4j.model.component.VEvent
 import net.fortuna.ical4j.model.property.Description
 import net.fortuna.ical4j.model.property.Location
-import org.apache.commons.io.output.ByteArrayOutputStream
 import org.apache.commons.lang3.StringUtils
 import org.projectforge.SystemStatus
 import org.projectforge.business.configuration.ConfigurationService
@@ -40,6 +39,7 @@ import org.projectforge.business.teamcal.admin.model.TeamCalDO
 import org.projectforge.business.teamcal.common.CalendarHelper
 import org.projectforge.business.teamcal.event.TeamEventFilter
 import org.projectforge.business.teamcal.event.TeamEventService
+import org.projectforge.business.teamcal.event.ical.ICalFeedCache
 import org.projectforge.business.teamcal.event.ical.ICalGenerator
 import org.projectforge.business.teamcal.event.model.TeamEventDO
 import org.projectforge.business.teamcal.model.CalendarFeedConst
@@ -66,16 +66,14 @@ import org.projectforge.rest.dto.User
 import org.slf4j.LoggerFactory
 import org.slf4j.MDC
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.core.io.ByteArrayResource
 import org.springframework.http.HttpHeaders
-import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
-import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.GetMapping
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
 import org.springframework.web.context.WebApplicationContext
+import java.io.ByteArrayOutputStream
 import java.time.LocalDate
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
@@ -112,17 +110,28 @@ class CalendarSubscriptionServiceRest {
     @Autowired
     private lateinit var vacationCache: VacationCache
 
+    @Autowired
+    private lateinit var icalFeedCache: ICalFeedCache
+
+    /**
+     * Renders the ics feed completely before writing it to the response, so errors while reading the events don't
+     * result in truncated feeds. Rendered feeds are cached and their ETag is the hash of the content: the cached feed is
+     * returned or, if the client already has the current version (If-None-Match matches the ETag), only the status 304
+     * (not modified) is returned.
+     */
     @GetMapping
-    fun exportCalendar(request: HttpServletRequest): ResponseEntity<Any> {
+    fun exportCalendar(request: HttpServletRequest, response: HttpServletResponse) {
         var logMessage: String? = null
         try {
             val userId = ThreadLocalUserContext.getUserId() ?: run {
                 log.error("Internal errror: shouldn't occur: can't get context user! Should be denied by filter!!!")
-                return ResponseEntity(HttpStatus.BAD_REQUEST)
+                response.status = HttpServletResponse.SC_BAD_REQUEST
+                return
             }
             val params = decryptRequestParams(request, userId, userAuthenticationsService)
             if (params.isNullOrEmpty()) {
-                return ResponseEntity(HttpStatus.BAD_REQUEST)
+                response.status = HttpServletResponse.SC_BAD_REQUEST
+                return
             }
             // check timesheet user
             val timesheetUserParam = params[CalendarFeedConst.PARAM_NAME_TIMESHEET_USER]
@@ -130,42 +139,57 @@ class CalendarSubscriptionServiceRest {
             if (timesheetUserParam != null) {
                 timesheetUser = getTimesheetUser(userId, timesheetUserParam) ?: run {
                     log.error("Bad request, timesheet user not found: ${request.queryString}")
-                    return ResponseEntity(HttpStatus.BAD_REQUEST)
+                    response.status = HttpServletResponse.SC_BAD_REQUEST
+                    return
+                }
+            }
+            logMessage = params.filter { it.key != "token" }.map { "${it.key}=${it.value}" }.joinToString(", ")
+            val teamCalIds = getTeamCalIds(params)
+            val teamCals = teamCalIds.mapNotNull { teamCalDao.internalGetById(it) }
+            val filename = getFilename(params, teamCals, timesheetUser)
+            val cacheKey = icalFeedCache.createKey(userId, ThreadLocalUserContext.getLocale(), ThreadLocalUserContext.getTimeZone(), params)
+            icalFeedCache.get(cacheKey)?.let { cached ->
+                if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == cached.eTag) {
+                    log.info("Calendar entries not modified for: $logMessage")
+                    response.status = HttpServletResponse.SC_NOT_MODIFIED
+                    response.setHeader(HttpHeaders.ETAG, cached.eTag)
+                    return
                 }
+                log.info("Using cached calendar entries for: $logMessage")
+                setHeaders(response, filename, cached.eTag)
+                response.setContentLength(cached.content.size)
+                response.outputStream.write(cached.content)
+                return
             }
+            log.info("Read calendar entries for: $logMessage")
+            val modificationCounter = icalFeedCache.currentModificationCounter
+            val buffer = ByteArrayOutputStream()
             // create ical generator
             val generator = ICalGenerator.exportAllFields()
             generator.exportVEventAlarm("true" == params[PARAM_EXPORT_REMINDER])
+            generator.startStreaming(buffer)
             // read events
-            val processCalendars = readEventsFromCalendars(generator, params)
+            readEventsFromCalendars(generator, teamCalIds, teamCals)
             readTimesheets(generator, timesheetUser)
-            val holidaysProecessed = readHolidays(generator, params)
-            val weeksOfYearProcessed = readWeeksOfYear(generator, params)
+            readHolidays(generator, params)
+            readWeeksOfYear(generator, params)
             // setup event is needed for empty calendars
             if (generator.isEmpty) {
                 generator.addEvent(VEvent(Date(0), TeamCalConfig.SETUP_EVENT))
             }
-            logMessage = params.filter { it.key != "token" }.map { "${it.key}=${it.value}" }.joinToString(", ")
-            log.info("Read calendar entries for: $logMessage")
-            val baos = ByteArrayOutputStream()
-            generator.writeCalendarToOutputStream(baos)
-
-            val resource = ByteArrayResource(baos.toByteArray())
-            val sb = StringBuilder()
-            sb.append(processCalendars?.joinToString { StringUtils.abbreviate(it.title, 25) }
-                    ?: "")
-            timesheetUser?.let { sb.append(translate("timesheet.timesheets")).append("-").append(it.username) }
-            if (holidaysProecessed) {
-                sb.append(translate("holidays"))
-            }
-            if (weeksOfYearProcessed) {
-                sb.append(translate("weekOfYear"))
+            generator.finishStreaming()
+            val content = buffer.toByteArray()
+            val eTag = icalFeedCache.createETag(content)
+            icalFeedCache.put(ICalFeedCache.Entry(cacheKey, eTag, teamCalIds.toSet(), timesheetUser?.id, content), modificationCounter)
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == eTag) {
+                log.info("Calendar entries not modified for: $logMessage")
+                response.status = HttpServletResponse.SC_NOT_MODIFIED
+                response.setHeader(HttpHeaders.ETAG, eTag)
+                return
             }
-            val safeFilename = "projectforge-${ReplaceUtils.encodeFilename(sb.toString(), false)}.ics"
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=$safeFilename")
-                    .body(resource)
+            setHeaders(response, filename, eTag)
+            response.setContentLength(content.size)
+            response.outputStream.write(content)
         } finally {
             log.info("Finished request: $logMessage")
             ThreadLocalUserContext.setUser(getUserGroupCache(), null)
@@ -175,6 +199,31 @@ class CalendarSubscriptionServiceRest {
         }
     }
 
+    private fun setHeaders(response: HttpServletResponse, filename: String, eTag: String) {
+        response.contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=$filename")
+        response.setHeader(HttpHeaders.ETAG, eTag)
+    }
+
+    private fun getFilename(params: Map<String, String>, teamCals: List<TeamCalDO>, timesheetUser: PFUserDO?): String {
+        val sb = StringBuilder()
+        sb.append(teamCals.joinToString { StringUtils.abbreviate(it.title, 25) })
+        timesheetUser?.let { sb.append(translate("timesheet.timesheets")).append("-").append(it.username) }
+        if ("true" == params[CalendarFeedConst.PARAM_NAME_HOLIDAYS]) {
+            sb.append(translate("holidays"))
+        }
+        if ("true" == params[CalendarFeedConst.PARAM_NAME_WEEK_OF_YEARS]) {
+            sb.append(translate("weekOfYear"))
+        }
+        return "projectforge-${ReplaceUtils.encodeFilename(sb.toString(), false)}.ics"
+    }
+
+    private fun getTeamCalIds(params: Map<String, String>): List<Int> {
+        val teamCals = params["teamCals"] ?: return emptyList()
+        val teamCalIds = StringUtils.split(teamCals, ";") ?: return emptyList()
+        return teamCalIds.map { Integer.valueOf(it) }
+    }
+
     private fun getTimesheetUser(userId: Int, timesheetUserParam: String): PFUserDO? {
         var timesheetUser: PFUserDO? = null
         if (StringUtils.isNotBlank(timesheetUserParam)) {
@@ -199,21 +248,14 @@ class CalendarSubscriptionServiceRest {
         return timesheetUser
     }
 
-    /**
-     * @return processed team cals (for creating filename of export) or null/empty if no calendars were processed.
-     */
-    private fun readEventsFromCalendars(generator: ICalGenerator, params: Map<String, String>): List<TeamCalDO>? {
-        val teamCals = params["teamCals"] ?: return null
-        val teamCalIds = StringUtils.split(teamCals, ";") ?: return null
+    private fun readEventsFromCalendars(generator: ICalGenerator, teamCalIds: List<Int>, teamCals: List<TeamCalDO>) {
         val eventFilter = TeamEventFilter()
         val eventDateFromLimit = now().minusYears(1)
         val eventDateUntilLimit = now().plusYears(2)
         eventFilter.isDeleted = false
         eventFilter.startDate = eventDateFromLimit.utilDate
         val vacationEvents = mutableSetOf<Int>() // For avoiding multiple entries of vacation days. Ids of vacation event.
-        val processedTeamCals = mutableListOf<TeamCalDO>()
-        for (teamCalIdString in teamCalIds) {
-            val calId = Integer.valueOf(teamCalIdString)
+        for (calId in teamCalIds) {
             eventFilter.teamCalId = calId
             val teamEvents = teamEventService.getEventList(eventFilter, false)
             teamEvents?.forEach { teamEventObject ->
@@ -224,8 +266,7 @@ class CalendarSubscriptionServiceRest {
                 }
             }
 
-            teamCalDao.internalGetById(calId)?.let { cal ->
-                processedTeamCals.add(cal)
+            teamCals.find { it.id == calId }?.let { cal ->
                 if (!cal.includeLeaveDaysForGroups.isNullOrBlank() || !cal.includeLeaveDaysForUsers.isNullOrBlank()) {
                     val userIds = User.toIntArray(cal.includeLeaveDaysForUsers)?.toSet()
                     val groupIds = Group.toIntArray(cal.includeLeaveDaysForGroups)?.toSet()
@@ -242,7 +283,6 @@ class CalendarSubscriptionServiceRest {
                 }
             }
         }
-        return processedTeamCals
     }
 
     private data class VactionEvent(val employee: String, val startDate: LocalDate, val endDate: LocalDate)
@@ -279,12 +319,9 @@ class CalendarSubscriptionServiceRest {
         }
     }
 
-    /**
-     * @return true, if holidays where exported, otherwise false.
-     */
-    private fun readHolidays(generator: ICalGenerator, params: Map<String, String>): Boolean {
+    private fun readHolidays(generator: ICalGenerator, params: Map<String, String>) {
         if ("true" != params[CalendarFeedConst.PARAM_NAME_HOLIDAYS]) {
-            return false
+            return
         }
         val holidaysFrom = now().beginOfYear.plusYears(-2)
         val holidayTo = holidaysFrom.plusYears(6)
@@ -311,13 +348,12 @@ class CalendarSubscriptionServiceRest {
             generator.addEvent(holidaysFrom.utilDate, holidayTo.utilDate, true, title, "pf-holiday" + ++idCounter)
             day = day.plusDays(1)
         } while (!day.isAfter(holidayTo))
-        return true
     }
 
-    private fun readWeeksOfYear(generator: ICalGenerator, params: Map<String, String>): Boolean {
+    private fun readWeeksOfYear(generator: ICalGenerator, params: Map<String, String>) {
         val weeksOfYear = params[CalendarFeedConst.PARAM_NAME_WEEK_OF_YEARS]
         if ("true" != weeksOfYear) {
-            return false
+            return
         }
         var from = PFDateTime.now()
         from = from.beginOfYear.minusYears(2).beginOfWeek
@@ -333,7 +369,6 @@ class CalendarSubscriptionServiceRest {
                 log.warn("Dear developer, please have a look here, paranoiaCounter exceeded! Aborting calculation of weeks of year.")
             }
         } while (to.isBefore(to))
-        return true
     }
 
     private fun isOtherUsersAllowed(): Boolean {
@@ -0,0 +1,48 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.rest
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+class AttachmentsServicesRestTest {
+
+    @Test
+    fun parseRangeTest() {
+        assertEquals(0L..99L, AttachmentsServicesRest.parseRange("bytes=0-99", 1000))
+        assertEquals(100L..999L, AttachmentsServicesRest.parseRange("bytes=100-", 1000))
+        assertEquals(900L..999L, AttachmentsServicesRest.parseRange("bytes=-100", 1000))
+        assertEquals(0L..999L, AttachmentsServicesRest.parseRange("bytes=-2000", 1000))
+        assertEquals(500L..999L, AttachmentsServicesRest.parseRange("bytes=500-5000", 1000), "Last byte limited by size.")
+
+        assertNull(AttachmentsServicesRest.parseRange("bytes=0-9,20-29", 1000), "Multiple ranges not supported.")
+        assertNull(AttachmentsServicesRest.parseRange("items=0-9", 1000))
+        assertNull(AttachmentsServicesRest.parseRange("bytes=a-9", 1000))
+        assertNull(AttachmentsServicesRest.parseRange("bytes=20-10", 1000), "Invalid range is ignored (full content).")
+
+        assertSame(AttachmentsServicesRest.INVALID_RANGE, AttachmentsServicesRest.parseRange("bytes=1000-", 1000))
+        assertSame(AttachmentsServicesRest.INVALID_RANGE, AttachmentsServicesRest.parseRange("bytes=-0", 1000))
+    }
+}
@@ -0,0 +1,99 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.rest.calendar
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.util.*
+
+class EventsProviderExecutorTest {
+    @Test
+    fun runTest() {
+        val executor = EventsProviderExecutor()
+        executor.timeoutMillis = 500
+        val user = PFUserDO()
+        user.id = 42
+        ThreadLocalUserContext.setUserContext(UserContext.createTestInstance(user))
+        try {
+            val result = executor.run(listOf(
+                    EventsProviderExecutor.Task("user") { events ->
+                        events.add(createEvent("${ThreadLocalUserContext.getUserId()}"))
+                    },
+                    EventsProviderExecutor.Task("slow") { events ->
+                        Thread.sleep(5000)
+                        events.add(createEvent("slow"))
+                    },
+                    EventsProviderExecutor.Task("failing") {
+                        throw IllegalStateException("Test")
+                    },
+                    EventsProviderExecutor.Task("fast") { events ->
+                        events.add(createEvent("fast1"))
+                        events.add(createEvent("fast2"))
+                    }))
+            assertEquals(listOf("42", "fast1", "fast2"), result.events.map { it.title }, "User context of caller expected, order of providers preserved.")
+            assertTrue(result.degraded)
+            assertEquals(listOf("slow", "failing"), result.degradedSources)
+            assertEquals(1, executor.stats["slow"]!!.timeouts.get())
+            assertEquals(1, executor.stats["failing"]!!.errors.get())
+            assertEquals(1, executor.stats["fast"]!!.calls.get())
+
+            val result2 = executor.run(listOf(EventsProviderExecutor.Task("fast") { events -> events.add(createEvent("fast")) }))
+            assertFalse(result2.degraded)
+            assertEquals(2, executor.stats["fast"]!!.calls.get())
+        } finally {
+            ThreadLocalUserContext.clear()
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * More providers than threads: the time budget of the queued provider starts when it's running.
+     */
+    @Test
+    fun queuedProviderTest() {
+        val executor = EventsProviderExecutor()
+        executor.timeoutMillis = 1000
+        try {
+            val tasks = (0..EventsProviderExecutor.POOL_SIZE).map { index ->
+                EventsProviderExecutor.Task("queued-$index") { events ->
+                    Thread.sleep(700)
+                    events.add(createEvent("$index"))
+                }
+            }
+            val result = executor.run(tasks)
+            assertFalse(result.degraded)
+            assertEquals(EventsProviderExecutor.POOL_SIZE + 1, result.events.size)
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun createEvent(title: String): BigCalendarEvent {
+        return BigCalendarEvent(title, Date(), Date(), category = "test")
+    }
+}
@@ -37,6 +37,7 @@ import org.projectforge.business.fibu.KontoDO;
 import org.projectforge.business.fibu.KostFormatter;
 import org.projectforge.business.fibu.kost.*;
 import org.projectforge.business.fibu.kost.reporting.Report;
+import org.projectforge.business.fibu.kost.reporting.ReportDao;
 import org.projectforge.business.fibu.kost.reporting.ReportStorage;
 import org.projectforge.business.user.UserRightId;
 import org.projectforge.business.user.UserRightValue;
@@ -62,6 +63,9 @@ public class AccountingRecordListPage
   @SpringBean
   private BuchungssatzDao buchungssatzDao;
 
+  @SpringBean
+  private ReportDao reportDao;
+
   protected BusinessAssessment businessAssessment;
 
   protected String reportId;
@@ -262,6 +266,8 @@ public class AccountingRecordListPage
       if (reportStorage != null) {
         report = reportStorage.findById(this.reportId);
         if (report != null) {
+          // The report's business assessments are calculated by the ledger cube, the records are loaded for drill-down:
+          reportDao.loadAccountRecords(report);
           if (this.businessAssessmentRowId != null) {
             final BusinessAssessmentRow row = report.getBusinessAssessment().getRow(businessAssessmentRowId);
             if (row != null) {
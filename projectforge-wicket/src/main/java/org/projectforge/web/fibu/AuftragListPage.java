@@ -244,7 +244,7 @@ public class AuftragListPage extends AbstractListPage<AuftragListForm, AuftragDa
                   return;
                 }
                 final String filename = "ProjectForge-OrderExport_" + DateHelper.getDateAsFilenameSuffix(new Date())
-                        + ".xls";
+                        + ".xlsx";
                 DownloadUtils.setDownloadTarget(xls, filename);
               }
             }, getString("exportAsXls")).setTooltip(getString("tooltip.export.excel"));
@@ -555,14 +555,20 @@ public class TimesheetListPage extends AbstractListPage<TimesheetListForm, Times
 
   protected void exportExcel()
   {
-    refresh();
-    final List<TimesheetDO> timeSheets = getList();
-    if (timeSheets == null || timeSheets.size() == 0) {
+    final TimesheetFilter filter = form.getSearchFilter();
+    if (filter.getStartTime() == null && filter.getStopTime() == null && filter.getTaskId() == null) {
+      // Nothing to export (see buildList()).
+      form.addError("validation.error.nothingToExport");
+      return;
+    }
+    // The time sheets are loaded page by page while writing the streaming workbook:
+    final Iterator<TimesheetDO> timeSheets = getBaseDao().iterate(filter);
+    if (!timeSheets.hasNext()) {
       // Nothing to export.
       form.addError("validation.error.nothingToExport");
       return;
     }
-    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xls";
+    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xlsx";
     final byte[] xls = timesheetExport.export(timeSheets);
     if (xls == null || xls.length == 0) {
       log.error("Oups, xls has zero size. Filename: " + filename);